@@ -41,6 +41,7 @@ import cn.edu.tsinghua.iginx.engine.physical.PhysicalEngineImpl;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.StorageManager;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.Result;
 import cn.edu.tsinghua.iginx.engine.shared.function.manager.FunctionManager;
 import cn.edu.tsinghua.iginx.exception.StatusCode;
 import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
@@ -820,7 +821,9 @@ public class IginxWorker implements IService.Iface {
     RequestContext ctx = contextBuilder.build(req);
     executor.execute(ctx);
     queryManager.registerQuery(ctx.getId(), ctx);
-    return ctx.getResult().getExecuteStatementResp(req.getFetchSize());
+    Result result = ctx.getResult();
+    result.setUseArrow(req.isUseArrow());
+    return result.getExecuteStatementResp(req.getFetchSize());
   }
 
   @Override
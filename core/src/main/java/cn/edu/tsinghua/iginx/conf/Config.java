@@ -130,8 +130,16 @@ public class Config {
 
   private int maxCachedPhysicalTaskPerStorage = 500;
 
+  private boolean enableStoragePrefetch = false;
+
+  private int storagePrefetchBatchSize = 1024;
+
+  private long storagePrefetchMemoryThreshold = 1024 * 16;
+
   private double cachedTimeseriesProb = 0.01;
 
+  private int columnStatisticsSampleThreshold = 1000;
+
   private int retryCount = 10;
 
   private int retryWait = 5000;
@@ -146,8 +154,20 @@ public class Config {
 
   private boolean enablePushDown = true;
 
+  private boolean enableTwoPhaseAggregate = true;
+
   private boolean useStreamExecutor = true;
 
+  private boolean useBatchExecutor = false;
+
+  private int batchExecutorBatchSize = 4096;
+
+  private long hashJoinMemoryThreshold = 1024 * 256;
+
+  private int hashJoinSpillPartitionNum = 16;
+
+  private long sortMemoryThreshold = 1024 * 256;
+
   private boolean enableMemoryControl = true;
 
   private String systemResourceMetrics = "default";
@@ -183,7 +203,7 @@ public class Config {
   private int maxThriftWrokerThreadNum = 2147483647;
 
   private String ruleBasedOptimizer =
-      "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on";
+      "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on,LimitSortToTopNRule=on";
 
   //////////////
 
@@ -633,6 +653,30 @@ public class Config {
     this.maxCachedPhysicalTaskPerStorage = maxCachedPhysicalTaskPerStorage;
   }
 
+  public boolean isEnableStoragePrefetch() {
+    return enableStoragePrefetch;
+  }
+
+  public void setEnableStoragePrefetch(boolean enableStoragePrefetch) {
+    this.enableStoragePrefetch = enableStoragePrefetch;
+  }
+
+  public int getStoragePrefetchBatchSize() {
+    return storagePrefetchBatchSize;
+  }
+
+  public void setStoragePrefetchBatchSize(int storagePrefetchBatchSize) {
+    this.storagePrefetchBatchSize = storagePrefetchBatchSize;
+  }
+
+  public long getStoragePrefetchMemoryThreshold() {
+    return storagePrefetchMemoryThreshold;
+  }
+
+  public void setStoragePrefetchMemoryThreshold(long storagePrefetchMemoryThreshold) {
+    this.storagePrefetchMemoryThreshold = storagePrefetchMemoryThreshold;
+  }
+
   public double getCachedTimeseriesProb() {
     return cachedTimeseriesProb;
   }
@@ -641,6 +685,14 @@ public class Config {
     this.cachedTimeseriesProb = cachedTimeseriesProb;
   }
 
+  public int getColumnStatisticsSampleThreshold() {
+    return columnStatisticsSampleThreshold;
+  }
+
+  public void setColumnStatisticsSampleThreshold(int columnStatisticsSampleThreshold) {
+    this.columnStatisticsSampleThreshold = columnStatisticsSampleThreshold;
+  }
+
   public int getRetryCount() {
     return retryCount;
   }
@@ -697,6 +749,14 @@ public class Config {
     this.enablePushDown = enablePushDown;
   }
 
+  public boolean isEnableTwoPhaseAggregate() {
+    return enableTwoPhaseAggregate;
+  }
+
+  public void setEnableTwoPhaseAggregate(boolean enableTwoPhaseAggregate) {
+    this.enableTwoPhaseAggregate = enableTwoPhaseAggregate;
+  }
+
   public boolean isUseStreamExecutor() {
     return useStreamExecutor;
   }
@@ -705,6 +765,46 @@ public class Config {
     this.useStreamExecutor = useStreamExecutor;
   }
 
+  public boolean isUseBatchExecutor() {
+    return useBatchExecutor;
+  }
+
+  public void setUseBatchExecutor(boolean useBatchExecutor) {
+    this.useBatchExecutor = useBatchExecutor;
+  }
+
+  public int getBatchExecutorBatchSize() {
+    return batchExecutorBatchSize;
+  }
+
+  public void setBatchExecutorBatchSize(int batchExecutorBatchSize) {
+    this.batchExecutorBatchSize = batchExecutorBatchSize;
+  }
+
+  public long getHashJoinMemoryThreshold() {
+    return hashJoinMemoryThreshold;
+  }
+
+  public void setHashJoinMemoryThreshold(long hashJoinMemoryThreshold) {
+    this.hashJoinMemoryThreshold = hashJoinMemoryThreshold;
+  }
+
+  public int getHashJoinSpillPartitionNum() {
+    return hashJoinSpillPartitionNum;
+  }
+
+  public void setHashJoinSpillPartitionNum(int hashJoinSpillPartitionNum) {
+    this.hashJoinSpillPartitionNum = hashJoinSpillPartitionNum;
+  }
+
+  public long getSortMemoryThreshold() {
+    return sortMemoryThreshold;
+  }
+
+  public void setSortMemoryThreshold(long sortMemoryThreshold) {
+    this.sortMemoryThreshold = sortMemoryThreshold;
+  }
+
   public boolean isEnableMemoryControl() {
     return enableMemoryControl;
   }
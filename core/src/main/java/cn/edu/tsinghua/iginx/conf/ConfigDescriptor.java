@@ -166,9 +166,17 @@ public class ConfigDescriptor {
 
       config.setMaxCachedPhysicalTaskPerStorage(
           Integer.parseInt(properties.getProperty("maxCachedPhysicalTaskPerStorage", "500")));
+      config.setEnableStoragePrefetch(
+          Boolean.parseBoolean(properties.getProperty("enableStoragePrefetch", "false")));
+      config.setStoragePrefetchBatchSize(
+          Integer.parseInt(properties.getProperty("storagePrefetchBatchSize", "1024")));
+      config.setStoragePrefetchMemoryThreshold(
+          Long.parseLong(properties.getProperty("storagePrefetchMemoryThreshold", "16384")));
 
       config.setCachedTimeseriesProb(
           Double.parseDouble(properties.getProperty("cachedTimeseriesProb", "0.01")));
+      config.setColumnStatisticsSampleThreshold(
+          Integer.parseInt(properties.getProperty("columnStatisticsSampleThreshold", "1000")));
       config.setRetryCount(Integer.parseInt(properties.getProperty("retryCount", "10")));
       config.setRetryWait(Integer.parseInt(properties.getProperty("retryWait", "5000")));
       config.setFragmentPerEngine(
@@ -182,8 +190,20 @@ public class ConfigDescriptor {
 
       config.setEnablePushDown(
           Boolean.parseBoolean(properties.getProperty("enablePushDown", "true")));
+      config.setEnableTwoPhaseAggregate(
+          Boolean.parseBoolean(properties.getProperty("enableTwoPhaseAggregate", "true")));
       config.setUseStreamExecutor(
           Boolean.parseBoolean(properties.getProperty("useStreamExecutor", "true")));
+      config.setUseBatchExecutor(
+          Boolean.parseBoolean(properties.getProperty("useBatchExecutor", "false")));
+      config.setBatchExecutorBatchSize(
+          Integer.parseInt(properties.getProperty("batchExecutorBatchSize", "4096")));
+      config.setHashJoinMemoryThreshold(
+          Long.parseLong(properties.getProperty("hashJoinMemoryThreshold", "262144")));
+      config.setHashJoinSpillPartitionNum(
+          Integer.parseInt(properties.getProperty("hashJoinSpillPartitionNum", "16")));
+      config.setSortMemoryThreshold(
+          Long.parseLong(properties.getProperty("sortMemoryThreshold", "262144")));
 
       config.setEnableMemoryControl(
           Boolean.parseBoolean(properties.getProperty("enableMemoryControl", "true")));
@@ -233,7 +253,7 @@ public class ConfigDescriptor {
       config.setRuleBasedOptimizer(
           properties.getProperty(
               "ruleBasedOptimizer",
-              "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on"));
+              "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on,LimitSortToTopNRule=on"));
       config.setEnableEmailNotification(
           Boolean.parseBoolean(properties.getProperty("enableEmailNotification", "false")));
       config.setMailSmtpHost(properties.getProperty("mailSmtpHost", ""));
@@ -309,8 +329,18 @@ public class ConfigDescriptor {
     config.setMaxCachedPhysicalTaskPerStorage(
         EnvUtils.loadEnv(
             "maxCachedPhysicalTaskPerStorage", config.getMaxCachedPhysicalTaskPerStorage()));
+    config.setEnableStoragePrefetch(
+        EnvUtils.loadEnv("enableStoragePrefetch", config.isEnableStoragePrefetch()));
+    config.setStoragePrefetchBatchSize(
+        EnvUtils.loadEnv("storagePrefetchBatchSize", config.getStoragePrefetchBatchSize()));
+    config.setStoragePrefetchMemoryThreshold(
+        EnvUtils.loadEnv(
+            "storagePrefetchMemoryThreshold", config.getStoragePrefetchMemoryThreshold()));
     config.setCachedTimeseriesProb(
         EnvUtils.loadEnv("cachedTimeseriesProb", config.getCachedTimeseriesProb()));
+    config.setColumnStatisticsSampleThreshold(
+        EnvUtils.loadEnv(
+            "columnStatisticsSampleThreshold", config.getColumnStatisticsSampleThreshold()));
     config.setRetryCount(EnvUtils.loadEnv("retryCount", config.getRetryCount()));
     config.setRetryWait(EnvUtils.loadEnv("retryWait", config.getRetryWait()));
     config.setFragmentPerEngine(
@@ -321,8 +351,19 @@ public class ConfigDescriptor {
     config.setStorageGroupValueLimit(
         EnvUtils.loadEnv("storageGroupValueLimit", config.getStorageGroupValueLimit()));
     config.setEnablePushDown(EnvUtils.loadEnv("enablePushDown", config.isEnablePushDown()));
+    config.setEnableTwoPhaseAggregate(
+        EnvUtils.loadEnv("enableTwoPhaseAggregate", config.isEnableTwoPhaseAggregate()));
     config.setUseStreamExecutor(
         EnvUtils.loadEnv("useStreamExecutor", config.isUseStreamExecutor()));
+    config.setUseBatchExecutor(EnvUtils.loadEnv("useBatchExecutor", config.isUseBatchExecutor()));
+    config.setBatchExecutorBatchSize(
+        EnvUtils.loadEnv("batchExecutorBatchSize", config.getBatchExecutorBatchSize()));
+    config.setHashJoinMemoryThreshold(
+        EnvUtils.loadEnv("hashJoinMemoryThreshold", config.getHashJoinMemoryThreshold()));
+    config.setHashJoinSpillPartitionNum(
+        EnvUtils.loadEnv("hashJoinSpillPartitionNum", config.getHashJoinSpillPartitionNum()));
+    config.setSortMemoryThreshold(
+        EnvUtils.loadEnv("sortMemoryThreshold", config.getSortMemoryThreshold()));
     config.setEnableMemoryControl(
         EnvUtils.loadEnv("enableMemoryControl", config.isEnableMemoryControl()));
     config.setSystemResourceMetrics(
@@ -374,11 +374,18 @@ public class StatementExecutor {
                 new Field("Logical Tree", DataType.BINARY),
                 new Field("Operator Type", DataType.BINARY),
                 new Field("Operator Info", DataType.BINARY)));
-    Header header = new Header(fields);
 
     OperatorInfoVisitor visitor = new OperatorInfoVisitor();
     root.accept(visitor);
-    formatTree(ctx, header, visitor.getCache(), visitor.getMaxLen());
+    List<Object[]> cache = visitor.getCache();
+    if (visitor.hasEstimatedCost()) {
+      // 经过代价优化的查询额外展示估算的行数与代价
+      fields.add(new Field("Estimated Cost", DataType.BINARY));
+    } else {
+      cache.replaceAll(values -> Arrays.copyOf(values, fields.size()));
+    }
+    Header header = new Header(fields);
+    formatTree(ctx, header, cache, visitor.getMaxLen());
   }
 
   private void processExplainPhysicalStatement(RequestContext ctx)
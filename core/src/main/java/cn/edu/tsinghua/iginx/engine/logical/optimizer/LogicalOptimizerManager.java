@@ -33,6 +33,11 @@ public class LogicalOptimizerManager {
   private static final String RULE_BASE_class =
       "cn.edu.tsinghua.iginx.logical.optimizer.rbo.RuleBasedOptimizer";
 
+  private static final String COST_BASE = "cbo";
+
+  private static final String COST_BASE_class =
+      "cn.edu.tsinghua.iginx.logical.optimizer.cbo.CostBasedOptimizer";
+
   private LogicalOptimizerManager() {}
 
   public static LogicalOptimizerManager getInstance() {
@@ -52,6 +57,12 @@ public class LogicalOptimizerManager {
               .loadClass(RULE_BASE_class)
               .asSubclass(Optimizer.class)
               .newInstance();
+        case COST_BASE:
+          return Optimizer.class
+              .getClassLoader()
+              .loadClass(COST_BASE_class)
+              .asSubclass(Optimizer.class)
+              .newInstance();
         default:
           throw new IllegalArgumentException(String.format("unknown logical optimizer: %s", name));
       }
@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute;
 
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.BatchOperatorMemoryExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.naive.NaiveOperatorMemoryExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.StreamOperatorMemoryExecutor;
 
@@ -30,6 +31,9 @@ public class OperatorMemoryExecutorFactory {
   private OperatorMemoryExecutorFactory() {}
 
   public OperatorMemoryExecutor getMemoryExecutor() {
+    if (ConfigDescriptor.getInstance().getConfig().isUseBatchExecutor()) {
+      return BatchOperatorMemoryExecutor.getInstance();
+    }
     if (ConfigDescriptor.getInstance().getConfig().isUseStreamExecutor()) {
       return StreamOperatorMemoryExecutor.getInstance();
     }
@@ -0,0 +1,187 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** 一批按列存储的数据，列的顺序与 header 中的 field 顺序一致 */
+public class Batch {
+
+  private final Header header;
+
+  private long[] keys; // header 没有 key 时为 null
+
+  private final ColumnVector[] columns;
+
+  private int size;
+
+  public Batch(Header header, int capacity) {
+    this.header = header;
+    this.keys = header.hasKey() ? new long[Math.max(capacity, 1)] : null;
+    this.columns = new ColumnVector[header.getFieldSize()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = new ColumnVector(header.getField(i).getType(), capacity);
+    }
+    this.size = 0;
+  }
+
+  public Batch(Header header, long[] keys, ColumnVector[] columns, int size) {
+    this.header = header;
+    this.keys = keys;
+    this.columns = columns;
+    this.size = size;
+  }
+
+  public static Batch fromRows(Header header, List<Row> rows) {
+    Batch batch = new Batch(header, rows.size());
+    for (Row row : rows) {
+      batch.appendRow(row);
+    }
+    return batch;
+  }
+
+  public Header getHeader() {
+    return header;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  public ColumnVector getColumn(int index) {
+    return columns[index];
+  }
+
+  public long[] getKeys() {
+    return keys;
+  }
+
+  public long getKey(int index) {
+    return keys == null ? Row.NON_EXISTED_KEY : keys[index];
+  }
+
+  public void appendRow(Row row) {
+    append(row.getKey(), row.getValues());
+  }
+
+  public void append(long key, Object[] values) {
+    ensureCapacity(size + 1);
+    if (keys != null) {
+      keys[size] = key;
+    }
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].setObject(size, values[i]);
+    }
+    size++;
+  }
+
+  /** 将 source 的第 index 行追加到本批次末尾，两个批次的列类型需一致 */
+  public void appendFrom(Batch source, int index) {
+    ensureCapacity(size + 1);
+    if (keys != null) {
+      keys[size] = source.getKey(index);
+    }
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].copyFrom(source.columns[i], index, size);
+    }
+    size++;
+  }
+
+  private void ensureCapacity(int required) {
+    if (keys != null && keys.length < required) {
+      keys = Arrays.copyOf(keys, Math.max(required, keys.length + (keys.length >> 1)));
+    }
+    for (ColumnVector column : columns) {
+      column.ensureCapacity(required);
+    }
+  }
+
+  public Object[] getValues(int index) {
+    Object[] values = new Object[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      values[i] = columns[i].getObject(index);
+    }
+    return values;
+  }
+
+  public Row getRow(int index) {
+    return new Row(header, getKey(index), getValues(index));
+  }
+
+  public List<Row> getRows() {
+    List<Row> rows = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      rows.add(getRow(i));
+    }
+    return rows;
+  }
+
+  /**
+   * 根据选择向量过滤批次中的行
+   *
+   * @param selection 被选中的行下标，需递增
+   * @param count 选择向量中的有效长度
+   * @return 只包含被选中行的新批次，若全部被选中则返回自身
+   */
+  public Batch select(int[] selection, int count) {
+    if (count == size) {
+      return this;
+    }
+    long[] newKeys = null;
+    if (keys != null) {
+      newKeys = new long[Math.max(count, 1)];
+      for (int i = 0; i < count; i++) {
+        newKeys[i] = keys[selection[i]];
+      }
+    }
+    ColumnVector[] newColumns = new ColumnVector[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      newColumns[i] = columns[i].select(selection, count);
+    }
+    return new Batch(header, newKeys, newColumns, count);
+  }
+
+  /**
+   * 选取部分列构成新的批次，新批次与原批次共享列数据
+   *
+   * @param newHeader 新批次的表头
+   * @param indices 新批次每一列在原批次中的下标
+   * @return 投影后的批次
+   */
+  public Batch project(Header newHeader, int[] indices) {
+    ColumnVector[] newColumns = new ColumnVector[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      newColumns[i] = columns[indices[i]];
+    }
+    return new Batch(newHeader, newHeader.hasKey() ? keys : null, newColumns, size);
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
+import java.util.List;
+
+/** 按批次计算过滤条件，语义与 FilterUtils.validate 一致 */
+public class BatchFilterUtils {
+
+  /**
+   * 计算批次中满足过滤条件的行
+   *
+   * @param filter 过滤条件
+   * @param batch 输入批次
+   * @return 选择向量，长度即为满足条件的行数
+   */
+  public static int[] filter(Filter filter, Batch batch) throws PhysicalException {
+    boolean[] mask = evaluate(filter, batch);
+    int[] selection = new int[batch.getSize()];
+    int count = 0;
+    for (int i = 0; i < batch.getSize(); i++) {
+      if (mask[i]) {
+        selection[count++] = i;
+      }
+    }
+    return Arrays.copyOf(selection, count);
+  }
+
+  public static boolean[] evaluate(Filter filter, Batch batch) throws PhysicalException {
+    int size = batch.getSize();
+    boolean[] mask;
+    switch (filter.getType()) {
+      case And:
+        mask = new boolean[size];
+        Arrays.fill(mask, true);
+        for (Filter child : ((AndFilter) filter).getChildren()) {
+          boolean[] childMask = evaluate(child, batch);
+          boolean any = false;
+          for (int i = 0; i < size; i++) {
+            mask[i] &= childMask[i];
+            any |= mask[i];
+          }
+          if (!any) { // 所有行均已不满足，无需计算剩余子条件
+            break;
+          }
+        }
+        return mask;
+      case Or:
+        mask = new boolean[size];
+        for (Filter child : ((OrFilter) filter).getChildren()) {
+          boolean[] childMask = evaluate(child, batch);
+          boolean all = true;
+          for (int i = 0; i < size; i++) {
+            mask[i] |= childMask[i];
+            all &= mask[i];
+          }
+          if (all) { // 所有行均已满足，无需计算剩余子条件
+            break;
+          }
+        }
+        return mask;
+      case Not:
+        mask = evaluate(((NotFilter) filter).getChild(), batch);
+        for (int i = 0; i < size; i++) {
+          mask[i] = !mask[i];
+        }
+        return mask;
+      case Bool:
+        mask = new boolean[size];
+        Arrays.fill(mask, ((BoolFilter) filter).isTrue());
+        return mask;
+      case Key:
+        return evaluateKeyFilter((KeyFilter) filter, batch);
+      case Value:
+        mask = evaluateValueFilter((ValueFilter) filter, batch);
+        if (mask != null) {
+          return mask;
+        }
+        return evaluateByRow(filter, batch);
+      default:
+        return evaluateByRow(filter, batch);
+    }
+  }
+
+  private static boolean[] evaluateByRow(Filter filter, Batch batch) throws PhysicalException {
+    boolean[] mask = new boolean[batch.getSize()];
+    RowPredicate predicate = FilterCompiler.compile(filter, batch.getHeader());
+    for (int i = 0; i < batch.getSize(); i++) {
+      mask[i] = predicate.test(batch.getRow(i));
+    }
+    return mask;
+  }
+
+  private static boolean[] evaluateKeyFilter(KeyFilter keyFilter, Batch batch) {
+    int size = batch.getSize();
+    boolean[] mask = new boolean[size];
+    long[] keys = batch.getKeys();
+    if (keys == null) {
+      return mask;
+    }
+    long value = keyFilter.getValue();
+    Op op = keyFilter.getOp();
+    if (op == Op.LIKE || op == Op.LIKE_AND) {
+      return mask;
+    }
+    for (int i = 0; i < size; i++) {
+      mask[i] = keys[i] != Row.NON_EXISTED_KEY && test(op, Long.compare(keys[i], value));
+    }
+    return mask;
+  }
+
+  /** 仅处理路径唯一匹配到一个数值列、且比较值也为数值的情况，其余情况返回 null 交由逐行计算 */
+  private static boolean[] evaluateValueFilter(ValueFilter valueFilter, Batch batch) {
+    Op op = valueFilter.getOp();
+    Value target = valueFilter.getValue();
+    if (target.isNull()) { // targetValue是空值，则认为不可比较
+      return new boolean[batch.getSize()];
+    }
+    if (op == Op.LIKE || op == Op.LIKE_AND || op == Op.NOT_LIKE || op == Op.NOT_LIKE_AND) {
+      return null;
+    }
+    List<Integer> indices = batch.getHeader().patternIndexOf(valueFilter.getPath());
+    if (indices.size() != 1 || indices.get(0) == -1) {
+      return null;
+    }
+    ColumnVector column = batch.getColumn(indices.get(0));
+    DataType type = column.getType();
+    if (!ValueUtils.isNumericType(type) || !ValueUtils.isNumericType(target)) {
+      return null;
+    }
+
+    int size = batch.getSize();
+    boolean[] mask = new boolean[size];
+    if (type == target.getDataType()) {
+      switch (type) {
+        case INTEGER:
+          int intV = target.getIntV();
+          for (int i = 0; i < size; i++) {
+            mask[i] = !column.isNull(i) && test(op, Integer.compare(column.getInt(i), intV));
+          }
+          return mask;
+        case LONG:
+          long longV = target.getLongV();
+          for (int i = 0; i < size; i++) {
+            mask[i] = !column.isNull(i) && test(op, Long.compare(column.getLong(i), longV));
+          }
+          return mask;
+        case FLOAT:
+          float floatV = target.getFloatV();
+          for (int i = 0; i < size; i++) {
+            mask[i] = !column.isNull(i) && test(op, Float.compare(column.getFloat(i), floatV));
+          }
+          return mask;
+        default:
+          break;
+      }
+    }
+    // 两值类型不同或均为double时，统一转为double进行比较
+    double doubleV = ValueUtils.transformToDouble(target).getDoubleV();
+    for (int i = 0; i < size; i++) {
+      mask[i] = !column.isNull(i) && test(op, Double.compare(getAsDouble(column, i), doubleV));
+    }
+    return mask;
+  }
+
+  private static double getAsDouble(ColumnVector column, int index) {
+    switch (column.getType()) {
+      case INTEGER:
+        return column.getInt(index);
+      case LONG:
+        return column.getLong(index);
+      case FLOAT:
+        // 与 ValueUtils.transformToDouble 保持一致，避免 float 直接转换带来的精度误差
+        return Double.parseDouble(Float.toString(column.getFloat(index)));
+      case DOUBLE:
+        return column.getDouble(index);
+      default:
+        throw new IllegalArgumentException("Unexpected dataType: " + column.getType());
+    }
+  }
+
+  private static boolean test(Op op, int compareResult) {
+    switch (op) {
+      case E:
+      case E_AND:
+        return compareResult == 0;
+      case G:
+      case G_AND:
+        return compareResult > 0;
+      case L:
+      case L_AND:
+        return compareResult < 0;
+      case GE:
+      case GE_AND:
+        return compareResult >= 0;
+      case LE:
+      case LE_AND:
+        return compareResult <= 0;
+      case NE:
+      case NE_AND:
+        return compareResult != 0;
+      default:
+        return false;
+    }
+  }
+}
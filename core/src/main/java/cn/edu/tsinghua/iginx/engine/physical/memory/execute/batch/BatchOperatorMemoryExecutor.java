@@ -0,0 +1,155 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.naive.NaiveOperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.StreamOperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.RowTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.source.ConstantSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+
+/**
+ * 按批次执行算子的执行器。
+ *
+ * <p>Project、Select、RowTransform、SetTransform、Downsample 以 BatchStream 的方式执行，相邻的批处理算子之间直接传递
+ * Batch；其余算子通过适配器交由 StreamOperatorMemoryExecutor 按行执行，后续可逐个算子迁移。
+ */
+public class BatchOperatorMemoryExecutor implements OperatorMemoryExecutor {
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private BatchOperatorMemoryExecutor() {}
+
+  public static BatchOperatorMemoryExecutor getInstance() {
+    return BatchOperatorMemoryExecutorHolder.INSTANCE;
+  }
+
+  @Override
+  public RowStream executeUnaryOperator(
+      UnaryOperator operator, RowStream stream, RequestContext context) throws PhysicalException {
+    RowStream result;
+    switch (operator.getType()) {
+      case Project:
+        result = executeProject((Project) operator, stream);
+        break;
+      case Select:
+        result = executeSelect((Select) operator, stream);
+        break;
+      case RowTransform:
+        result = executeRowTransform((RowTransform) operator, stream);
+        break;
+      case SetTransform:
+        result = executeSetTransform((SetTransform) operator, stream);
+        break;
+      case Downsample:
+        result = executeDownsample((Downsample) operator, stream, context);
+        break;
+      default:
+        return StreamOperatorMemoryExecutor.getInstance()
+            .executeUnaryOperator(operator, stream, context);
+    }
+    result.setContext(context);
+    return result;
+  }
+
+  @Override
+  public RowStream executeBinaryOperator(
+      BinaryOperator operator, RowStream streamA, RowStream streamB, RequestContext context)
+      throws PhysicalException {
+    return StreamOperatorMemoryExecutor.getInstance()
+        .executeBinaryOperator(operator, streamA, streamB, context);
+  }
+
+  private static BatchStream toBatchStream(RowStream stream) {
+    if (stream instanceof BatchToRowStreamAdapter) {
+      return ((BatchToRowStreamAdapter) stream).getBatchStream();
+    }
+    return new RowToBatchStreamAdapter(stream, config.getBatchExecutorBatchSize());
+  }
+
+  private static RowStream toRowStream(BatchStream stream) {
+    return new BatchToRowStreamAdapter(stream);
+  }
+
+  private RowStream executeProject(Project project, RowStream stream) throws PhysicalException {
+    Source source = project.getSource();
+    switch (source.getType()) {
+      case Operator:
+      case Empty:
+        return toRowStream(new ProjectBatchStream(project, toBatchStream(stream)));
+      case Constant:
+        ConstantSource constantSource = (ConstantSource) source;
+        return new Table(RowUtils.buildConstRow(constantSource.getExpressionList()));
+      default:
+        throw new PhysicalException(
+            "Unexpected project source type in memory task: " + source.getType());
+    }
+  }
+
+  private RowStream executeSelect(Select select, RowStream stream) {
+    return toRowStream(new SelectBatchStream(select, toBatchStream(stream)));
+  }
+
+  private RowStream executeRowTransform(RowTransform rowTransform, RowStream stream) {
+    return toRowStream(new RowTransformBatchStream(rowTransform, toBatchStream(stream)));
+  }
+
+  private RowStream executeSetTransform(SetTransform setTransform, RowStream stream) {
+    return toRowStream(new SetTransformBatchStream(setTransform, toBatchStream(stream)));
+  }
+
+  private RowStream executeDownsample(
+      Downsample downsample, RowStream stream, RequestContext context) throws PhysicalException {
+    if (!stream.getHeader().hasKey()) {
+      throw new InvalidOperatorParameterException(
+          "downsample operator is not support for row stream without key.");
+    }
+    // 滑动窗口中一行可能属于多个窗口，暂由 NaiveOperatorMemoryExecutor 执行
+    if (downsample.getPrecision() != downsample.getSlideDistance()) {
+      return NaiveOperatorMemoryExecutor.getInstance()
+          .executeUnaryOperator(downsample, stream, context);
+    }
+    return toRowStream(
+        new DownsampleBatchStream(
+            downsample, toBatchStream(stream), config.getBatchExecutorBatchSize()));
+  }
+
+  private static class BatchOperatorMemoryExecutorHolder {
+
+    private static final BatchOperatorMemoryExecutor INSTANCE = new BatchOperatorMemoryExecutor();
+
+    private BatchOperatorMemoryExecutorHolder() {}
+  }
+}
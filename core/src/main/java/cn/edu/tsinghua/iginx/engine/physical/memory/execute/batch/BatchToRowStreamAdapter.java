@@ -0,0 +1,84 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+
+/** 将 BatchStream 适配为按行读取的 RowStream，供尚未支持批处理的算子及上层使用 */
+public class BatchToRowStreamAdapter implements RowStream {
+
+  private final BatchStream stream;
+
+  private Batch batch;
+
+  private int index = 0;
+
+  public BatchToRowStreamAdapter(BatchStream stream) {
+    this.stream = stream;
+  }
+
+  public BatchStream getBatchStream() {
+    return stream;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    stream.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    while (batch == null || index >= batch.getSize()) {
+      if (!stream.hasNext()) {
+        return false;
+      }
+      batch = stream.next();
+      index = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("row stream doesn't have more data!");
+    }
+    return batch.getRow(index++);
+  }
+
+  @Override
+  public void setContext(RequestContext context) {
+    stream.setContext(context);
+  }
+
+  @Override
+  public RequestContext getContext() {
+    return stream.getContext();
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
+
+/** 单列的列式存储，按数据类型使用原生数组保存数据，并用位图记录空值 */
+public class ColumnVector {
+
+  private final DataType type;
+
+  private int capacity;
+
+  private long[] nulls; // 第 i 位为 1 表示第 i 行为空值
+
+  private boolean[] booleanValues;
+
+  private int[] intValues;
+
+  private long[] longValues;
+
+  private float[] floatValues;
+
+  private double[] doubleValues;
+
+  private byte[][] binaryValues;
+
+  public ColumnVector(DataType type, int capacity) {
+    this.type = type;
+    this.capacity = Math.max(capacity, 1);
+    this.nulls = new long[bitmapLength(this.capacity)];
+    switch (type) {
+      case BOOLEAN:
+        booleanValues = new boolean[this.capacity];
+        break;
+      case INTEGER:
+        intValues = new int[this.capacity];
+        break;
+      case LONG:
+        longValues = new long[this.capacity];
+        break;
+      case FLOAT:
+        floatValues = new float[this.capacity];
+        break;
+      case DOUBLE:
+        doubleValues = new double[this.capacity];
+        break;
+      case BINARY:
+        binaryValues = new byte[this.capacity][];
+        break;
+      default:
+        throw new IllegalArgumentException("unsupported data type: " + type);
+    }
+  }
+
+  private static int bitmapLength(int capacity) {
+    return (capacity + 63) >>> 6;
+  }
+
+  public DataType getType() {
+    return type;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void ensureCapacity(int required) {
+    if (required <= capacity) {
+      return;
+    }
+    int newCapacity = Math.max(required, capacity + (capacity >> 1));
+    nulls = Arrays.copyOf(nulls, bitmapLength(newCapacity));
+    switch (type) {
+      case BOOLEAN:
+        booleanValues = Arrays.copyOf(booleanValues, newCapacity);
+        break;
+      case INTEGER:
+        intValues = Arrays.copyOf(intValues, newCapacity);
+        break;
+      case LONG:
+        longValues = Arrays.copyOf(longValues, newCapacity);
+        break;
+      case FLOAT:
+        floatValues = Arrays.copyOf(floatValues, newCapacity);
+        break;
+      case DOUBLE:
+        doubleValues = Arrays.copyOf(doubleValues, newCapacity);
+        break;
+      case BINARY:
+        binaryValues = Arrays.copyOf(binaryValues, newCapacity);
+        break;
+    }
+    capacity = newCapacity;
+  }
+
+  public boolean isNull(int index) {
+    return (nulls[index >>> 6] & (1L << index)) != 0;
+  }
+
+  public void setNull(int index) {
+    nulls[index >>> 6] |= 1L << index;
+    if (type == DataType.BINARY) {
+      binaryValues[index] = null;
+    }
+  }
+
+  private void setNotNull(int index) {
+    nulls[index >>> 6] &= ~(1L << index);
+  }
+
+  public boolean getBoolean(int index) {
+    return booleanValues[index];
+  }
+
+  public int getInt(int index) {
+    return intValues[index];
+  }
+
+  public long getLong(int index) {
+    return longValues[index];
+  }
+
+  public float getFloat(int index) {
+    return floatValues[index];
+  }
+
+  public double getDouble(int index) {
+    return doubleValues[index];
+  }
+
+  public byte[] getBinary(int index) {
+    return binaryValues[index];
+  }
+
+  public void setBoolean(int index, boolean value) {
+    booleanValues[index] = value;
+    setNotNull(index);
+  }
+
+  public void setInt(int index, int value) {
+    intValues[index] = value;
+    setNotNull(index);
+  }
+
+  public void setLong(int index, long value) {
+    longValues[index] = value;
+    setNotNull(index);
+  }
+
+  public void setFloat(int index, float value) {
+    floatValues[index] = value;
+    setNotNull(index);
+  }
+
+  public void setDouble(int index, double value) {
+    doubleValues[index] = value;
+    setNotNull(index);
+  }
+
+  public void setBinary(int index, byte[] value) {
+    if (value == null) {
+      setNull(index);
+      return;
+    }
+    binaryValues[index] = value;
+    setNotNull(index);
+  }
+
+  /** 以装箱对象的形式读取第 index 行的值，空值返回 null */
+  public Object getObject(int index) {
+    if (isNull(index)) {
+      return null;
+    }
+    switch (type) {
+      case BOOLEAN:
+        return booleanValues[index];
+      case INTEGER:
+        return intValues[index];
+      case LONG:
+        return longValues[index];
+      case FLOAT:
+        return floatValues[index];
+      case DOUBLE:
+        return doubleValues[index];
+      case BINARY:
+        return binaryValues[index];
+      default:
+        return null;
+    }
+  }
+
+  /** 以装箱对象的形式写入第 index 行的值，数值类型按列类型进行转换 */
+  public void setObject(int index, Object value) {
+    if (value == null) {
+      setNull(index);
+      return;
+    }
+    switch (type) {
+      case BOOLEAN:
+        setBoolean(index, (Boolean) value);
+        break;
+      case INTEGER:
+        setInt(index, ((Number) value).intValue());
+        break;
+      case LONG:
+        setLong(index, ((Number) value).longValue());
+        break;
+      case FLOAT:
+        setFloat(index, ((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        setDouble(index, ((Number) value).doubleValue());
+        break;
+      case BINARY:
+        setBinary(index, (byte[]) value);
+        break;
+    }
+  }
+
+  /** 将 source 中第 from 行的值复制到本列的第 to 行，两列类型需一致 */
+  public void copyFrom(ColumnVector source, int from, int to) {
+    if (source.isNull(from)) {
+      setNull(to);
+      return;
+    }
+    switch (type) {
+      case BOOLEAN:
+        setBoolean(to, source.booleanValues[from]);
+        break;
+      case INTEGER:
+        setInt(to, source.intValues[from]);
+        break;
+      case LONG:
+        setLong(to, source.longValues[from]);
+        break;
+      case FLOAT:
+        setFloat(to, source.floatValues[from]);
+        break;
+      case DOUBLE:
+        setDouble(to, source.doubleValues[from]);
+        break;
+      case BINARY:
+        setBinary(to, source.binaryValues[from]);
+        break;
+    }
+  }
+
+  /**
+   * 根据选择向量生成新的列
+   *
+   * @param selection 被选中的行下标，需递增
+   * @param count 选择向量中的有效长度
+   * @return 只包含被选中行的新列
+   */
+  public ColumnVector select(int[] selection, int count) {
+    ColumnVector vector = new ColumnVector(type, count);
+    for (int i = 0; i < count; i++) {
+      vector.copyFrom(this, selection[i], i);
+    }
+    return vector;
+  }
+}
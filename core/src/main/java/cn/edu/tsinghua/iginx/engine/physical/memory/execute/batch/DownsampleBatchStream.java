@@ -0,0 +1,172 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupAccumulator;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 窗口长度与滑动距离相等的 Downsample，要求输入按 key 升序。
+ *
+ * <p>每个窗口在读到下一个窗口的第一行时即被计算并输出，无需缓存全部输入。
+ */
+public class DownsampleBatchStream extends UnaryBatchStream {
+
+  private final Downsample downsample;
+
+  private final List<FunctionCall> functionCallList;
+
+  private final int batchSize;
+
+  private Header header;
+
+  private Header inputHeader;
+
+  private Batch current;
+
+  private int index;
+
+  private boolean hasBias = false;
+
+  private long bias;
+
+  private Batch nextBatch;
+
+  public DownsampleBatchStream(Downsample downsample, BatchStream stream, int batchSize) {
+    super(stream);
+    this.downsample = downsample;
+    this.functionCallList = downsample.getFunctionCallList();
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    if (header == null) {
+      if (nextBatch == null) {
+        nextBatch = calculateNext();
+      }
+      if (header == null) {
+        header = Header.EMPTY_HEADER;
+      }
+    }
+    return header;
+  }
+
+  private boolean hasMoreRows() throws PhysicalException {
+    while (current == null || index >= current.getSize()) {
+      if (!stream.hasNext()) {
+        return false;
+      }
+      current = stream.next();
+      index = 0;
+    }
+    return true;
+  }
+
+  private Batch calculateNext() throws PhysicalException {
+    List<Row> rows = new ArrayList<>();
+    while (rows.size() < batchSize) {
+      Row row = calculateNextWindow();
+      if (row == null) {
+        break;
+      }
+      rows.add(row);
+    }
+    if (rows.isEmpty()) {
+      return null;
+    }
+    if (header == null) {
+      header = rows.get(0).getHeader();
+    }
+    return Batch.fromRows(header, rows);
+  }
+
+  private Row calculateNextWindow() throws PhysicalException {
+    long precision = downsample.getPrecision();
+    while (hasMoreRows()) {
+      if (inputHeader == null) {
+        inputHeader = stream.getHeader();
+      }
+      if (!hasBias) {
+        bias =
+            downsample.notSetInterval()
+                ? current.getKey(index)
+                : downsample.getKeyRange().getActualBeginKey();
+        hasBias = true;
+      }
+      long firstKey = current.getKey(index);
+      long windowStartKey = firstKey - (firstKey - bias) % precision;
+      GroupAccumulator accumulator = new GroupAccumulator(functionCallList, inputHeader);
+      while (hasMoreRows() && current.getKey(index) < windowStartKey + precision) {
+        // 窗口在当前批次内的部分整体更新
+        int end = index;
+        while (end < current.getSize() && current.getKey(end) < windowStartKey + precision) {
+          end++;
+        }
+        accumulator.update(current, index, end);
+        index = end;
+      }
+      Row row = accumulator.finishAsRow();
+      if (row == null) {
+        continue;
+      }
+
+      List<Field> fields = new ArrayList<>(row.getHeader().getFields());
+      fields.add(0, new Field(WINDOW_START_COL, DataType.LONG));
+      fields.add(1, new Field(WINDOW_END_COL, DataType.LONG));
+      Object[] values = new Object[row.getValues().length + 2];
+      values[0] = windowStartKey;
+      values[1] = windowStartKey + precision - 1;
+      System.arraycopy(row.getValues(), 0, values, 2, row.getValues().length);
+      Header windowHeader = header != null ? header : new Header(Field.KEY, fields);
+      return new Row(windowHeader, windowStartKey, values);
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    if (nextBatch == null) {
+      nextBatch = calculateNext();
+    }
+    return nextBatch != null;
+  }
+
+  @Override
+  public Batch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    Batch batch = nextBatch;
+    nextBatch = null;
+    return batch;
+  }
+}
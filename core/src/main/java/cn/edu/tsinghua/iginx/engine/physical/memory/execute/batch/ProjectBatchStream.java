@@ -0,0 +1,123 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.KEY;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class ProjectBatchStream extends UnaryBatchStream {
+
+  private final Project project;
+
+  private Header header;
+
+  private int[] indices;
+
+  private Batch nextBatch = null;
+
+  public ProjectBatchStream(Project project, BatchStream stream) {
+    super(stream);
+    this.project = project;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    if (header == null) {
+      List<String> patterns = project.getPatterns();
+      Header header = stream.getHeader();
+      List<Field> targetFields = new ArrayList<>();
+      List<Integer> targetIndices = new ArrayList<>();
+
+      for (int i = 0; i < header.getFieldSize(); i++) {
+        Field field = header.getField(i);
+        if (project.isRemainKey() && field.getName().endsWith(KEY)) {
+          targetFields.add(field);
+          targetIndices.add(i);
+          continue;
+        }
+        for (String pattern : patterns) {
+          if (!StringUtils.isPattern(pattern)) {
+            if (pattern.equals(field.getFullName())) {
+              targetFields.add(field);
+              targetIndices.add(i);
+            }
+          } else {
+            if (Pattern.matches(StringUtils.reformatPath(pattern), field.getFullName())) {
+              targetFields.add(field);
+              targetIndices.add(i);
+            }
+          }
+        }
+      }
+      this.indices = targetIndices.stream().mapToInt(Integer::intValue).toArray();
+      this.header = new Header(header.getKey(), targetFields);
+    }
+    return header;
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    if (nextBatch == null) {
+      nextBatch = calculateNext();
+    }
+    return nextBatch != null;
+  }
+
+  private Batch calculateNext() throws PhysicalException {
+    Header header = getHeader();
+    while (stream.hasNext()) {
+      Batch projected = stream.next().project(header, indices);
+      int size = projected.getSize();
+      // 与按行执行保持一致，所有投影列均为空值的行会被丢弃
+      int[] selection = new int[size];
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < indices.length; j++) {
+          if (!projected.getColumn(j).isNull(i)) {
+            selection[count++] = i;
+            break;
+          }
+        }
+      }
+      if (count != 0) {
+        return projected.select(selection, count);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Batch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    Batch batch = nextBatch;
+    nextBatch = null;
+    return batch;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+
+/** 将按行读取的 RowStream 适配为 BatchStream，每次最多攒够 batchSize 行 */
+public class RowToBatchStreamAdapter implements BatchStream {
+
+  private final RowStream stream;
+
+  private final int batchSize;
+
+  public RowToBatchStreamAdapter(RowStream stream, int batchSize) {
+    this.stream = stream;
+    this.batchSize = batchSize;
+  }
+
+  public RowStream getRowStream() {
+    return stream;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    stream.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    return stream.hasNext();
+  }
+
+  @Override
+  public Batch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    Batch batch = new Batch(getHeader(), batchSize);
+    while (batch.getSize() < batchSize && stream.hasNext()) {
+      batch.appendRow(stream.next());
+    }
+    return batch;
+  }
+
+  @Override
+  public void setContext(RequestContext context) {
+    stream.setContext(context);
+  }
+
+  @Override
+  public RequestContext getContext() {
+    return stream.getContext();
+  }
+}
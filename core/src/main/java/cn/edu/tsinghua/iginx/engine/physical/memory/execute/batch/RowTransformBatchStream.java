@@ -0,0 +1,110 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.MappingType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.RowTransform;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RowTransformBatchStream extends UnaryBatchStream {
+
+  private final List<FunctionCall> functionCallList;
+
+  private Batch nextBatch;
+
+  private Header header;
+
+  public RowTransformBatchStream(RowTransform rowTransform, BatchStream stream) {
+    super(stream);
+    List<FunctionCall> functionCallList = new ArrayList<>();
+    rowTransform
+        .getFunctionCallList()
+        .forEach(
+            functionCall -> {
+              if (functionCall == null || functionCall.getFunction() == null) {
+                throw new IllegalArgumentException("function shouldn't be null");
+              }
+              if (functionCall.getFunction().getMappingType() != MappingType.RowMapping) {
+                throw new IllegalArgumentException("function should be row mapping function");
+              }
+              functionCallList.add(functionCall);
+            });
+    // 同一流中的行共享表头，表达式只需编译一次
+    this.functionCallList = RowUtils.compileRowTransform(functionCallList);
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    if (header == null) {
+      if (nextBatch == null) {
+        nextBatch = calculateNext();
+      }
+      if (header == null) {
+        header = Header.EMPTY_HEADER;
+      }
+    }
+    return header;
+  }
+
+  private Batch calculateNext() throws PhysicalException {
+    while (stream.hasNext()) {
+      Batch batch = stream.next();
+      List<Row> rows = new ArrayList<>(batch.getSize());
+      for (int i = 0; i < batch.getSize(); i++) {
+        Row row = RowUtils.calRowTransform(batch.getRow(i), functionCallList, false);
+        if (!row.equals(Row.EMPTY_ROW)) {
+          rows.add(row);
+        }
+      }
+      if (!rows.isEmpty()) {
+        // 与按行执行保持一致，输出表头由第一条结果决定
+        if (header == null) {
+          header = rows.get(0).getHeader();
+        }
+        return Batch.fromRows(header, rows);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    if (nextBatch == null) {
+      nextBatch = calculateNext();
+    }
+    return nextBatch != null;
+  }
+
+  @Override
+  public Batch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    Batch batch = nextBatch;
+    nextBatch = null;
+    return batch;
+  }
+}
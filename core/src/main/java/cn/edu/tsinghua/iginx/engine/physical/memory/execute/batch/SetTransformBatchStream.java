@@ -0,0 +1,86 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupAccumulator;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import java.util.Collections;
+import java.util.List;
+
+/** SetTransform，逐批更新各函数的增量计算状态，将所有输入聚合为一行 */
+public class SetTransformBatchStream extends UnaryBatchStream {
+
+  private final List<FunctionCall> functionCallList;
+
+  private Batch result;
+
+  private boolean hasCalculated = false;
+
+  private boolean hasConsumed = false;
+
+  public SetTransformBatchStream(SetTransform setTransform, BatchStream stream) {
+    super(stream);
+    this.functionCallList = setTransform.getFunctionCallList();
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    calculate();
+    return result == null ? Header.EMPTY_HEADER : result.getHeader();
+  }
+
+  private void calculate() throws PhysicalException {
+    if (hasCalculated) {
+      return;
+    }
+    hasCalculated = true;
+
+    GroupAccumulator accumulator = new GroupAccumulator(functionCallList, stream.getHeader());
+    while (stream.hasNext()) {
+      accumulator.update(stream.next());
+    }
+    List<Row> rowList = accumulator.finish();
+    if (rowList.isEmpty()) {
+      return;
+    }
+    Row combinedRow = RowUtils.combineMultipleColumns(rowList);
+    result = Batch.fromRows(combinedRow.getHeader(), Collections.singletonList(combinedRow));
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    calculate();
+    return result != null && !hasConsumed;
+  }
+
+  @Override
+  public Batch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    hasConsumed = true;
+    return result;
+  }
+}
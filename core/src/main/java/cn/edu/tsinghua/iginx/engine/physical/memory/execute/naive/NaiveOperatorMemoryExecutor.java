@@ -80,6 +80,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
 import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
 import cn.edu.tsinghua.iginx.engine.shared.operator.ValueToSelectedPath;
@@ -124,6 +125,8 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
         return executeSort((Sort) operator, table);
       case Limit:
         return executeLimit((Limit) operator, table);
+      case TopN:
+        return executeTopN((TopN) operator, table);
       case Downsample:
         return executeDownsample((Downsample) operator, table);
       case RowTransform:
@@ -273,6 +276,20 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
     return table;
   }
 
+  private RowStream executeTopN(TopN topN, Table table) throws PhysicalException {
+    RowTransform preRowTransform =
+        HeaderUtils.checkSortHeader(table.getHeader(), topN.getSortByExpressions());
+    if (preRowTransform != null) {
+      table = transformToTable(executeRowTransform(preRowTransform, table));
+    }
+
+    RowUtils.sortRows(table.getRows(), topN.getAscendingList(), topN.getSortByCols());
+    List<Row> rows = table.getRows();
+    int from = Math.min(topN.getOffset(), rows.size());
+    int to = (int) Math.min((long) from + topN.getLimit(), rows.size());
+    return new Table(table.getHeader(), new ArrayList<>(rows.subList(from, to)));
+  }
+
   private RowStream executeLimit(Limit limit, Table table) {
     int rowSize = table.getRowSize();
     Header header = table.getHeader();
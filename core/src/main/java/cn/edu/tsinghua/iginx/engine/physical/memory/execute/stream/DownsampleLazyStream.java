@@ -23,8 +23,7 @@ import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
 import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupAccumulator;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -32,8 +31,6 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStreamWrapper;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
-import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
-import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import java.util.ArrayList;
@@ -96,30 +93,17 @@ public class DownsampleLazyStream extends UnaryLazyStream {
     int n = (int) (Math.ceil((double) (endKey - bias - precision + 1) / slideDistance) + 1);
     while (row == null && wrapper.hasNext()) {
       windowStartKey = wrapper.nextTimestamp() - (wrapper.nextTimestamp() - bias) % precision;
-      List<Row> rows = new ArrayList<>();
+      // 窗口内的行逐行更新到各函数的增量计算状态中，无需缓存
+      GroupAccumulator accumulator = new GroupAccumulator(functionCallList, wrapper.getHeader());
       while (wrapper.hasNext() && wrapper.nextTimestamp() < windowStartKey + precision) {
-        rows.add(wrapper.next());
+        accumulator.update(wrapper.next());
       }
-      Table table = new Table(rows.get(0).getHeader(), rows);
-
-      List<Row> subRowList = new ArrayList<>();
-      for (FunctionCall functionCall : functionCallList) {
-        FunctionParams params = functionCall.getParams();
-        SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
-        try {
-          subRowList.add(function.transform(table, params));
-        } catch (Exception e) {
-          throw new PhysicalTaskExecuteFailureException(
-              "encounter error when execute set mapping function " + function.getIdentifier() + ".",
-              e);
-        }
-      }
-      row = RowUtils.combineMultipleColumns(subRowList);
+      row = RowUtils.combineMultipleColumns(accumulator.finish());
     }
     if (row == null) {
       return null;
     } else {
-      List<Field> fields = row.getHeader().getFields();
+      List<Field> fields = new ArrayList<>(row.getHeader().getFields());
       fields.add(0, new Field(WINDOW_START_COL, DataType.LONG));
       fields.add(1, new Field(WINDOW_END_COL, DataType.LONG));
       Object[] values = new Object[row.getValues().length + 2];
@@ -24,6 +24,7 @@ import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupAccumulator;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupByKey;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
@@ -32,13 +33,13 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,29 +89,6 @@ public class GroupByLazyStream extends UnaryLazyStream {
   }
 
   private void cacheResult() throws PhysicalException {
-    List<Row> rows = new ArrayList<>();
-    while (stream.hasNext() && rows.size() < config.getParallelGroupByRowsThreshold()) {
-      rows.add(stream.next());
-    }
-
-    List<Row> cache;
-    if (stream.hasNext()) {
-      // more than threshold, use parallel cache.
-      cache = parallelCache(rows);
-    } else {
-      cache = RowUtils.cacheGroupByResult(groupBy, new Table(stream.getHeader(), rows));
-    }
-
-    Header newHeader;
-    if (cache.isEmpty()) {
-      newHeader = Header.EMPTY_HEADER;
-    } else {
-      newHeader = cache.get(0).getHeader();
-    }
-    this.resultTable = new Table(newHeader, cache);
-  }
-
-  private List<Row> parallelCache(List<Row> firstPartialRows) throws PhysicalException {
     // search the required fields
     Header header = stream.getHeader();
     List<String> cols = groupBy.getGroupByCols();
@@ -128,63 +106,78 @@ public class GroupByLazyStream extends UnaryLazyStream {
       fields.add(header.getField(index));
     }
 
-    // split first partial rows into workers' cache
-    List<List<Row>> partition = new ArrayList<>();
-    int partialSize = (int) Math.ceil(1.0 * firstPartialRows.size() / WORKER_NUM);
-    for (int i = 0; i < WORKER_NUM; i++) {
-      int end = Math.min(firstPartialRows.size(), (i + 1) * partialSize);
-      List<Row> queue = new ArrayList<>(firstPartialRows.subList(i * partialSize, end));
-      partition.add(queue);
+    // 每个分组只保存聚合状态，输入行在读取后即被丢弃
+    Map<GroupByKey, GroupAccumulator> groups = new HashMap<>();
+    int rowCnt = 0;
+    while (stream.hasNext() && rowCnt < config.getParallelGroupByRowsThreshold()) {
+      RowUtils.updateGroup(groupBy, header, groups, stream.next(), colIndex);
+      rowCnt++;
     }
 
-    Map<GroupByKey, List<Row>> groups = new ConcurrentHashMap<>();
+    if (stream.hasNext()) {
+      // more than threshold, use parallel cache.
+      parallelCache(header, colIndex, groups);
+    }
+
+    List<Row> cache;
+    try {
+      cache = RowUtils.applyFunc(fields, groups);
+    } catch (PhysicalTaskExecuteFailureException e) {
+      throw new PhysicalTaskExecuteFailureException("encounter error when apply func: ", e);
+    }
+
+    Header newHeader;
+    if (cache.isEmpty()) {
+      newHeader = Header.EMPTY_HEADER;
+    } else {
+      newHeader = cache.get(0).getHeader();
+    }
+    this.resultTable = new Table(newHeader, cache);
+  }
+
+  private void parallelCache(
+      Header header, int[] colIndex, Map<GroupByKey, GroupAccumulator> groups)
+      throws PhysicalException {
+    // 每个worker独立维护各分组的聚合状态，全部读取完毕后再合并
+    List<Map<GroupByKey, GroupAccumulator>> partialGroups = new ArrayList<>();
+    for (int i = 0; i < WORKER_NUM; i++) {
+      partialGroups.add(new HashMap<>());
+    }
+    AtomicReference<PhysicalException> exception = new AtomicReference<>();
     CountDownLatch latch = new CountDownLatch(WORKER_NUM);
 
     for (int i = 0; i < WORKER_NUM; i++) {
-      int workerIndex = i;
+      Map<GroupByKey, GroupAccumulator> partial = partialGroups.get(i);
       pool.submit(
           () -> {
-            List<Row> list = partition.get(workerIndex);
+            List<Row> list = new ArrayList<>(BATCH_SIZE);
             try {
-              while (true) {
+              while (exception.get() == null) {
                 // 开启多个线程但是加速比率又比较低的情况。加锁部分执行时间可能会占大头。
                 // parallel get batch rows and then calculate hash value.
                 lock.lock();
-                int getRowCnt = 0;
-                while (getRowCnt < BATCH_SIZE && stream.hasNext()) {
-                  list.add(stream.next());
-                  getRowCnt++;
+                try {
+                  int getRowCnt = 0;
+                  while (getRowCnt < BATCH_SIZE && stream.hasNext()) {
+                    list.add(stream.next());
+                    getRowCnt++;
+                  }
+                } finally {
+                  lock.unlock();
                 }
-                lock.unlock();
 
                 if (list.isEmpty()) { // no more lines
                   break;
                 }
 
                 for (Row row : list) {
-                  Object[] values = row.getValues();
-                  List<Object> hashValues = new ArrayList<>();
-                  for (int index : colIndex) {
-                    if (values[index] instanceof byte[]) {
-                      hashValues.add(new String((byte[]) values[index]));
-                    } else {
-                      hashValues.add(values[index]);
-                    }
-                  }
-
-                  GroupByKey key = new GroupByKey(hashValues);
-                  // make sure concurrent safe.
-                  List<Row> rows =
-                      groups.putIfAbsent(key, Collections.synchronizedList(new ArrayList<>()));
-                  if (rows == null) {
-                    rows = groups.get(key);
-                  }
-                  rows.add(row);
+                  RowUtils.updateGroup(groupBy, header, partial, row, colIndex);
                 }
                 list.clear();
               }
             } catch (PhysicalException e) {
               LOGGER.error("encounter error when parallel calculate hash: ", e);
+              exception.compareAndSet(null, e);
             } finally {
               latch.countDown();
             }
@@ -197,11 +190,12 @@ public class GroupByLazyStream extends UnaryLazyStream {
       throw new PhysicalTaskExecuteFailureException(
           "encounter error when wait for parallel build: ", e);
     }
+    if (exception.get() != null) {
+      throw exception.get();
+    }
 
-    try {
-      return RowUtils.applyFunc(groupBy, fields, header, groups);
-    } catch (PhysicalTaskExecuteFailureException e) {
-      throw new PhysicalTaskExecuteFailureException("encounter error when apply func: ", e);
+    for (Map<GroupByKey, GroupAccumulator> partial : partialGroups) {
+      RowUtils.mergeGroups(groups, partial);
     }
   }
 }
@@ -22,11 +22,13 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils.calculateHashJoinPath;
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.checkJoinColumns;
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.getSamePathWithSpecificPrefix;
-import static cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils.getHash;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GraceHashJoin;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.JoinHashTable;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -38,7 +40,6 @@ import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.ArrayList;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -46,7 +47,11 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
 
   private final InnerJoin innerJoin;
 
-  private final HashMap<Integer, List<Row>> streamBHashMap;
+  private final RowPredicate filterPredicate;
+
+  private GraceHashJoin hashJoin;
+
+  private RowStream probeStream;
 
   private final Deque<Row> cache;
 
@@ -69,7 +74,7 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
   public HashInnerJoinLazyStream(InnerJoin innerJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.innerJoin = innerJoin;
-    this.streamBHashMap = new HashMap<>();
+    this.filterPredicate = FilterCompiler.compileLazily(innerJoin.getFilter());
     this.cache = new LinkedList<>();
   }
 
@@ -114,19 +119,7 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
       this.needTypeCast = true;
     }
 
-    while (streamB.hasNext()) {
-      Row rowB = streamB.next();
-      Value value = rowB.getAsValue(joinPathB);
-      if (value.isNull()) {
-        continue;
-      }
-      if (needTypeCast) {
-        value = ValueUtils.transformToDouble(value);
-      }
-      int hash = getHash(value, needTypeCast);
-      List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
-      rows.add(rowB);
-    }
+    this.hashJoin = new GraceHashJoin(streamB, joinPathB, streamA, joinPathA, needTypeCast);
 
     this.header =
         HeaderUtils.constructNewHead(
@@ -154,23 +147,30 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
     if (!hasInitialized) {
       initialize();
     }
-    while (cache.isEmpty() && streamA.hasNext()) {
-      tryMatch();
+    while (cache.isEmpty()) {
+      if (probeStream != null && probeStream.hasNext()) {
+        tryMatch(probeStream.next());
+      } else if (hashJoin.nextPartition()) {
+        probeStream = hashJoin.getProbeStream();
+      } else {
+        probeStream = null;
+        break;
+      }
     }
     return !cache.isEmpty();
   }
 
-  private void tryMatch() throws PhysicalException {
-    Row rowA = streamA.next();
-
+  private void tryMatch(Row rowA) throws PhysicalException {
     Value value = rowA.getAsValue(joinPathA);
     if (value.isNull()) {
       return;
     }
-    int hash = getHash(value, needTypeCast);
 
-    if (streamBHashMap.containsKey(hash)) {
-      for (Row rowB : streamBHashMap.get(hash)) {
+    JoinHashTable hashTable = hashJoin.getHashTable();
+    int group = hashTable.getGroup(value);
+    if (group != -1) {
+      for (int rowId = hashTable.firstRow(group); rowId != -1; rowId = hashTable.nextRow(rowId)) {
+        Row rowB = hashTable.getRow(rowId);
         if (!RowUtils.equalOnSpecificPaths(rowA, rowB, extraJoinPaths)) {
           continue;
         } else if (!RowUtils.equalOnSpecificPaths(
@@ -188,7 +188,7 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
                 joinColumns,
                 extraJoinPaths);
         if (innerJoin.getFilter() != null) {
-          if (!FilterUtils.validate(innerJoin.getFilter(), joinedRow)) {
+          if (!filterPredicate.test(joinedRow)) {
             continue;
           }
         }
@@ -204,4 +204,12 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
     }
     return cache.pollFirst();
   }
+
+  @Override
+  public void close() throws PhysicalException {
+    if (hashJoin != null) {
+      hashJoin.close();
+    }
+    super.close();
+  }
 }
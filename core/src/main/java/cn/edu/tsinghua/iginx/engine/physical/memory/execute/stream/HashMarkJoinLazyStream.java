@@ -23,6 +23,8 @@ import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterU
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils.constructNewHead;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GraceHashJoin;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.JoinHashTable;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -32,17 +34,14 @@ import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.MarkJoin;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
 
 public class HashMarkJoinLazyStream extends BinaryLazyStream {
 
   private final MarkJoin markJoin;
-  private final HashMap<Integer, List<Row>> streamBHashMap;
+  private GraceHashJoin hashJoin;
+  private RowStream probeStream;
   private final Deque<Row> cache;
   private Header header;
   private boolean hasInitialized = false;
@@ -52,7 +51,6 @@ public class HashMarkJoinLazyStream extends BinaryLazyStream {
   public HashMarkJoinLazyStream(MarkJoin markJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.markJoin = markJoin;
-    this.streamBHashMap = new HashMap<>();
     this.cache = new LinkedList<>();
   }
 
@@ -71,24 +69,7 @@ public class HashMarkJoinLazyStream extends BinaryLazyStream {
       this.needTypeCast = true;
     }
 
-    while (streamB.hasNext()) {
-      Row rowB = streamB.next();
-      Value value = rowB.getAsValue(joinPathB);
-      if (value.isNull()) {
-        continue;
-      }
-      if (needTypeCast) {
-        value = ValueUtils.transformToDouble(value);
-      }
-      int hash;
-      if (value.getDataType() == DataType.BINARY) {
-        hash = Arrays.hashCode(value.getBinaryV());
-      } else {
-        hash = value.getValue().hashCode();
-      }
-      List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
-      rows.add(rowB);
-    }
+    this.hashJoin = new GraceHashJoin(streamB, joinPathB, streamA, joinPathA, needTypeCast);
     this.hasInitialized = true;
   }
 
@@ -105,30 +86,28 @@ public class HashMarkJoinLazyStream extends BinaryLazyStream {
     if (!hasInitialized) {
       initialize();
     }
-    while (cache.isEmpty() && streamA.hasNext()) {
-      tryMatch();
+    while (cache.isEmpty()) {
+      if (probeStream != null && probeStream.hasNext()) {
+        tryMatch(probeStream.next());
+      } else if (hashJoin.nextPartition()) {
+        probeStream = hashJoin.getProbeStream();
+      } else {
+        probeStream = null;
+        break;
+      }
     }
     return !cache.isEmpty();
   }
 
-  private void tryMatch() throws PhysicalException {
-    Row rowA = streamA.next();
-
+  private void tryMatch(Row rowA) throws PhysicalException {
     Value value = rowA.getAsValue(joinPathA);
     if (value.isNull()) {
       return;
     }
-    if (needTypeCast) {
-      value = ValueUtils.transformToDouble(value);
-    }
-    int hash;
-    if (value.getDataType() == DataType.BINARY) {
-      hash = Arrays.hashCode(value.getBinaryV());
-    } else {
-      hash = value.getValue().hashCode();
-    }
 
-    if (streamBHashMap.containsKey(hash)) {
+    JoinHashTable hashTable = hashJoin.getHashTable();
+    int group = hashTable.getGroup(value);
+    if (group != -1) {
       Row returnRow = RowUtils.constructNewRowWithMark(header, rowA, !markJoin.isAntiJoin());
       cache.add(returnRow);
     } else {
@@ -144,4 +123,12 @@ public class HashMarkJoinLazyStream extends BinaryLazyStream {
     }
     return cache.pollFirst();
   }
+
+  @Override
+  public void close() throws PhysicalException {
+    if (hashJoin != null) {
+      hashJoin.close();
+    }
+    super.close();
+  }
 }
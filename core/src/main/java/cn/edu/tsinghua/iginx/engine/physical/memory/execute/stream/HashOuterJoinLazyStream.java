@@ -24,10 +24,12 @@ import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderU
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.checkJoinColumns;
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.equalOnSpecificPaths;
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.getSamePathWithSpecificPrefix;
-import static cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils.getHash;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GraceHashJoin;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.JoinHashTable;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -39,24 +41,24 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 public class HashOuterJoinLazyStream extends BinaryLazyStream {
 
   private final OuterJoin outerJoin;
 
-  private final HashMap<Integer, List<Row>> streamBHashMap;
+  private final RowPredicate filterPredicate;
 
-  private final List<Integer> streamBHashPutOrder;
+  private GraceHashJoin hashJoin;
 
-  private final List<Row> unmatchedStreamARows; // 未被匹配过的StreamA的行
+  private RowStream probeStream;
 
-  private final Set<Integer> matchedStreamBRowHashSet; // 已被匹配过的StreamB的行
+  private final List<Row> unmatchedStreamARows; // 当前分区中未被匹配过的StreamA的行
+
+  private final BitSet matchedStreamBGroups; // 当前分区中已被匹配过的StreamB的分组
 
   private final Deque<Row> cache;
 
@@ -72,8 +74,6 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
 
   private boolean hasInitialized = false;
 
-  private boolean lastPartHasInitialized = false; // 外连接未匹配部分是否被初始化
-
   private String joinPathA;
 
   private String joinPathB;
@@ -83,10 +83,9 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
   public HashOuterJoinLazyStream(OuterJoin outerJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.outerJoin = outerJoin;
-    this.streamBHashMap = new HashMap<>();
-    this.streamBHashPutOrder = new LinkedList<>();
+    this.filterPredicate = FilterCompiler.compileLazily(outerJoin.getFilter());
     this.unmatchedStreamARows = new ArrayList<>();
-    this.matchedStreamBRowHashSet = new HashSet<>();
+    this.matchedStreamBGroups = new BitSet();
     this.cache = new LinkedList<>();
   }
 
@@ -147,22 +146,7 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
       this.needTypeCast = true;
     }
 
-    while (streamB.hasNext()) {
-      Row rowB = streamB.next();
-      Value value = rowB.getAsValue(joinPathB);
-      if (value.isNull()) {
-        continue;
-      }
-      if (needTypeCast) {
-        value = ValueUtils.transformToDouble(value);
-      }
-      int hash = getHash(value, needTypeCast);
-      List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
-      rows.add(rowB);
-      if (rows.size() == 1) {
-        streamBHashPutOrder.add(hash);
-      }
-    }
+    this.hashJoin = new GraceHashJoin(streamB, joinPathB, streamA, joinPathA, needTypeCast);
 
     // 计算连接之后的header
     this.header =
@@ -178,10 +162,8 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
     this.hasInitialized = true;
   }
 
-  private void initializeLastPart() throws PhysicalException {
-    if (lastPartHasInitialized) {
-      return;
-    }
+  /** 当前分区探测完毕后，输出其中未匹配的行 */
+  private void addUnmatchedRows() throws PhysicalException {
     OuterJoinType outerType = outerJoin.getOuterJoinType();
     if (outerType == OuterJoinType.FULL || outerType == OuterJoinType.LEFT) {
       int anotherRowSize =
@@ -206,10 +188,10 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
       anotherRowSize -= joinColumns.size();
       anotherRowSize -= extraJoinPaths.size();
 
-      for (int hash : streamBHashPutOrder) {
-        if (!matchedStreamBRowHashSet.contains(hash)) {
-          List<Row> unmatchedRows = streamBHashMap.get(hash);
-          for (Row halfRow : unmatchedRows) {
+      JoinHashTable hashTable = hashJoin.getHashTable();
+      for (int group = 0; group < hashTable.getGroupCount(); group++) {
+        if (!matchedStreamBGroups.get(group)) {
+          for (Row halfRow : hashTable.getGroupRows(group)) {
             Row unmatchedRow =
                 RowUtils.constructUnmatchedRow(
                     header, halfRow, outerJoin.getPrefixB(), anotherRowSize, false);
@@ -218,7 +200,8 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
         }
       }
     }
-    this.lastPartHasInitialized = true;
+    unmatchedStreamARows.clear();
+    matchedStreamBGroups.clear();
   }
 
   @Override
@@ -234,30 +217,32 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
     if (!hasInitialized) {
       initialize();
     }
-    while (cache.isEmpty() && streamA.hasNext()) {
-      tryMatch();
-    }
-    if (cache.isEmpty() && !lastPartHasInitialized) {
-      initializeLastPart();
+    while (cache.isEmpty()) {
+      if (probeStream != null && probeStream.hasNext()) {
+        tryMatch(probeStream.next());
+      } else if (probeStream != null) {
+        addUnmatchedRows();
+        probeStream = null;
+      } else if (hashJoin.nextPartition()) {
+        probeStream = hashJoin.getProbeStream();
+      } else {
+        break;
+      }
     }
     return !cache.isEmpty();
   }
 
-  private void tryMatch() throws PhysicalException {
-    Row rowA = streamA.next();
-
+  private void tryMatch(Row rowA) throws PhysicalException {
     Value value = rowA.getAsValue(joinPathA);
     if (value.isNull()) {
       return;
     }
-    if (needTypeCast) {
-      value = ValueUtils.transformToDouble(value);
-    }
-    int hash = getHash(value, needTypeCast);
 
-    if (streamBHashMap.containsKey(hash)) {
-      List<Row> rowsB = streamBHashMap.get(hash);
-      for (Row rowB : rowsB) {
+    JoinHashTable hashTable = hashJoin.getHashTable();
+    int group = hashTable.getGroup(value);
+    if (group != -1) {
+      for (int rowId = hashTable.firstRow(group); rowId != -1; rowId = hashTable.nextRow(rowId)) {
+        Row rowB = hashTable.getRow(rowId);
         if (!equalOnSpecificPaths(rowA, rowB, extraJoinPaths)) {
           continue;
         } else if (!equalOnSpecificPaths(
@@ -275,13 +260,13 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
                 joinColumns,
                 extraJoinPaths);
         if (outerJoin.getFilter() != null) {
-          if (!FilterUtils.validate(outerJoin.getFilter(), joinedRow)) {
+          if (!filterPredicate.test(joinedRow)) {
             continue;
           }
         }
         cache.addLast(joinedRow);
       }
-      matchedStreamBRowHashSet.add(hash);
+      matchedStreamBGroups.set(group);
     } else {
       unmatchedStreamARows.add(rowA);
     }
@@ -294,4 +279,12 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
     }
     return cache.pollFirst();
   }
+
+  @Override
+  public void close() throws PhysicalException {
+    if (hashJoin != null) {
+      hashJoin.close();
+    }
+    super.close();
+  }
 }
@@ -21,7 +21,9 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GraceHashJoin;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.JoinHashTable;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -31,17 +33,14 @@ import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
 
 public class HashSingleJoinLazyStream extends BinaryLazyStream {
 
   private final SingleJoin singleJoin;
-  private final HashMap<Integer, List<Row>> streamBHashMap;
+  private GraceHashJoin hashJoin;
+  private RowStream probeStream;
   private final Deque<Row> cache;
   private Header header;
   private boolean hasInitialized = false;
@@ -51,7 +50,6 @@ public class HashSingleJoinLazyStream extends BinaryLazyStream {
   public HashSingleJoinLazyStream(SingleJoin singleJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.singleJoin = singleJoin;
-    this.streamBHashMap = new HashMap<>();
     this.cache = new LinkedList<>();
   }
 
@@ -71,24 +69,7 @@ public class HashSingleJoinLazyStream extends BinaryLazyStream {
       this.needTypeCast = true;
     }
 
-    while (streamB.hasNext()) {
-      Row rowB = streamB.next();
-      Value value = rowB.getAsValue(joinPathB);
-      if (value.isNull()) {
-        continue;
-      }
-      if (needTypeCast) {
-        value = ValueUtils.transformToDouble(value);
-      }
-      int hash;
-      if (value.getDataType() == DataType.BINARY) {
-        hash = Arrays.hashCode(value.getBinaryV());
-      } else {
-        hash = value.getValue().hashCode();
-      }
-      List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
-      rows.add(rowB);
-    }
+    this.hashJoin = new GraceHashJoin(streamB, joinPathB, streamA, joinPathA, needTypeCast);
 
     this.hasInitialized = true;
   }
@@ -106,33 +87,31 @@ public class HashSingleJoinLazyStream extends BinaryLazyStream {
     if (!hasInitialized) {
       initialize();
     }
-    while (cache.isEmpty() && streamA.hasNext()) {
-      tryMatch();
+    while (cache.isEmpty()) {
+      if (probeStream != null && probeStream.hasNext()) {
+        tryMatch(probeStream.next());
+      } else if (hashJoin.nextPartition()) {
+        probeStream = hashJoin.getProbeStream();
+      } else {
+        probeStream = null;
+        break;
+      }
     }
     return !cache.isEmpty();
   }
 
-  private void tryMatch() throws PhysicalException {
-    Row rowA = streamA.next();
-
+  private void tryMatch(Row rowA) throws PhysicalException {
     Value value = rowA.getAsValue(joinPathA);
     if (value.isNull()) {
       return;
     }
-    if (needTypeCast) {
-      value = ValueUtils.transformToDouble(value);
-    }
-    int hash;
-    if (value.getDataType() == DataType.BINARY) {
-      hash = Arrays.hashCode(value.getBinaryV());
-    } else {
-      hash = value.getValue().hashCode();
-    }
 
-    if (streamBHashMap.containsKey(hash)) {
-      List<Row> hashRowsB = streamBHashMap.get(hash);
-      if (hashRowsB.size() == 1) {
-        Row joinedRow = RowUtils.constructNewRow(header, rowA, hashRowsB.get(0), true);
+    JoinHashTable hashTable = hashJoin.getHashTable();
+    int group = hashTable.getGroup(value);
+    if (group != -1) {
+      int rowId = hashTable.firstRow(group);
+      if (hashTable.nextRow(rowId) == -1) {
+        Row joinedRow = RowUtils.constructNewRow(header, rowA, hashTable.getRow(rowId), true);
         cache.add(joinedRow);
       } else {
         throw new PhysicalException("the return value of sub-query has more than one rows");
@@ -153,4 +132,12 @@ public class HashSingleJoinLazyStream extends BinaryLazyStream {
     }
     return cache.pollFirst();
   }
+
+  @Override
+  public void close() throws PhysicalException {
+    if (hashJoin != null) {
+      hashJoin.close();
+    }
+    super.close();
+  }
 }
@@ -20,8 +20,9 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -34,6 +35,8 @@ public class NestedLoopInnerJoinLazyStream extends BinaryLazyStream {
 
   private final InnerJoin innerJoin;
 
+  private final RowPredicate filterPredicate;
+
   private final List<Row> streamBCache;
 
   private int[] indexOfJoinColumnInTableB;
@@ -57,6 +60,7 @@ public class NestedLoopInnerJoinLazyStream extends BinaryLazyStream {
   public NestedLoopInnerJoinLazyStream(InnerJoin innerJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.innerJoin = innerJoin;
+    this.filterPredicate = FilterCompiler.compileLazily(innerJoin.getFilter());
     this.streamBCache = new ArrayList<>();
   }
 
@@ -167,7 +171,7 @@ public class NestedLoopInnerJoinLazyStream extends BinaryLazyStream {
             joinColumns,
             extraJoinPaths);
     if (innerJoin.getFilter() != null) {
-      if (!FilterUtils.validate(innerJoin.getFilter(), joinedRow)) {
+      if (!filterPredicate.test(joinedRow)) {
         nextB = null;
         return null;
       }
@@ -20,8 +20,9 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -33,6 +34,8 @@ import java.util.List;
 public class NestedLoopMarkJoinLazyStream extends BinaryLazyStream {
 
   private final MarkJoin markJoin;
+
+  private final RowPredicate filterPredicate;
   private final List<Row> streamBCache;
   private final List<Row> unmatchedStreamARows;
   private final List<Row> lastPart;
@@ -50,6 +53,7 @@ public class NestedLoopMarkJoinLazyStream extends BinaryLazyStream {
   public NestedLoopMarkJoinLazyStream(MarkJoin markJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.markJoin = markJoin;
+    this.filterPredicate = FilterCompiler.compileLazily(markJoin.getFilter());
     this.streamBCache = new ArrayList<>();
     this.unmatchedStreamARows = new ArrayList<>();
     this.lastPart = new ArrayList<>();
@@ -151,7 +155,7 @@ public class NestedLoopMarkJoinLazyStream extends BinaryLazyStream {
 
     Row joinedRow = RowUtils.constructNewRow(joinHeader, nextA, nextB, true);
     nextB = null;
-    if (FilterUtils.validate(markJoin.getFilter(), joinedRow)) {
+    if (filterPredicate.test(joinedRow)) {
       if (!this.curNextAHasMatched) {
         this.curNextAHasMatched = true;
         return RowUtils.constructNewRowWithMark(targetHeader, nextA, !markJoin.isAntiJoin());
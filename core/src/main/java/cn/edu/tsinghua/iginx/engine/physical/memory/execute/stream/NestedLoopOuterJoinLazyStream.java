@@ -20,8 +20,9 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -37,6 +38,8 @@ public class NestedLoopOuterJoinLazyStream extends BinaryLazyStream {
 
   private final OuterJoin outerJoin;
 
+  private final RowPredicate filterPredicate;
+
   private final List<Row> streamBCache;
 
   private final List<Row> unmatchedStreamARows; // 未被匹配过的StreamA的行
@@ -74,6 +77,7 @@ public class NestedLoopOuterJoinLazyStream extends BinaryLazyStream {
   public NestedLoopOuterJoinLazyStream(OuterJoin outerJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.outerJoin = outerJoin;
+    this.filterPredicate = FilterCompiler.compileLazily(outerJoin.getFilter());
     this.streamBCache = new ArrayList<>();
     this.unmatchedStreamARows = new ArrayList<>();
     this.matchedStreamBRowIndexSet = new HashSet<>();
@@ -252,7 +256,7 @@ public class NestedLoopOuterJoinLazyStream extends BinaryLazyStream {
             joinColumns,
             extraJoinPaths);
     if (outerJoin.getFilter() != null) {
-      if (!FilterUtils.validate(outerJoin.getFilter(), joinedRow)) {
+      if (!filterPredicate.test(joinedRow)) {
         nextB = null;
         return null;
       }
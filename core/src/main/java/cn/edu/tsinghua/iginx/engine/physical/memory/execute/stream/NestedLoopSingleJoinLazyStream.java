@@ -20,8 +20,9 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -33,6 +34,8 @@ import java.util.List;
 public class NestedLoopSingleJoinLazyStream extends BinaryLazyStream {
 
   private final SingleJoin singleJoin;
+
+  private final RowPredicate filterPredicate;
   private final List<Row> streamBCache;
   private final List<Row> unmatchedStreamARows;
   private final List<Row> lastPart;
@@ -50,6 +53,7 @@ public class NestedLoopSingleJoinLazyStream extends BinaryLazyStream {
       SingleJoin singleJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.singleJoin = singleJoin;
+    this.filterPredicate = FilterCompiler.compileLazily(singleJoin.getFilter());
     this.unmatchedStreamARows = new ArrayList<>();
     this.streamBCache = new ArrayList<>();
     this.lastPart = new ArrayList<>();
@@ -149,7 +153,7 @@ public class NestedLoopSingleJoinLazyStream extends BinaryLazyStream {
 
     Row row = RowUtils.constructNewRow(header, nextA, nextB, true);
     nextB = null;
-    if (FilterUtils.validate(singleJoin.getFilter(), row)) {
+    if (filterPredicate.test(row)) {
       if (!this.curNextAHasMatched) {
         this.curNextAHasMatched = true;
         return row;
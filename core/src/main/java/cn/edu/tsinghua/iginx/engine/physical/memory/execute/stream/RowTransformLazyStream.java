@@ -40,7 +40,7 @@ public class RowTransformLazyStream extends UnaryLazyStream {
 
   public RowTransformLazyStream(RowTransform rowTransform, RowStream stream) {
     super(stream);
-    this.functionCallList = new ArrayList<>();
+    List<FunctionCall> functionCallList = new ArrayList<>();
     rowTransform
         .getFunctionCallList()
         .forEach(
@@ -51,8 +51,10 @@ public class RowTransformLazyStream extends UnaryLazyStream {
               if (functionCall.getFunction().getMappingType() != MappingType.RowMapping) {
                 throw new IllegalArgumentException("function should be row mapping function");
               }
-              this.functionCallList.add(functionCall);
+              functionCallList.add(functionCall);
             });
+    // 同一流中的行共享表头，表达式只需编译一次
+    this.functionCallList = RowUtils.compileRowTransform(functionCallList);
   }
 
   @Override
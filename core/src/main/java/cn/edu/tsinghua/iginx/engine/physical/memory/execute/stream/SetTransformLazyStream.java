@@ -19,21 +19,14 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
-import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.combineMultipleColumns;
-
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupAccumulator;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
-import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
-import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class SetTransformLazyStream extends UnaryLazyStream {
 
@@ -41,20 +34,10 @@ public class SetTransformLazyStream extends UnaryLazyStream {
 
   private Row nextRow;
 
-  private final Map<List<String>, RowStream> rowTransformStreamMap; // 用于存储参数为表达式的stream
-
-  private final Map<List<String>, RowStream> distinctStreamMap; // 用于存储distinct处理过的stream
-
   private boolean hasConsumed = false;
 
-  public SetTransformLazyStream(
-      SetTransform setTransform,
-      RowStream stream,
-      Map<List<String>, RowStream> rowTransformStreamMap,
-      Map<List<String>, RowStream> distinctStreamMap) {
+  public SetTransformLazyStream(SetTransform setTransform, RowStream stream) {
     super(stream);
-    this.rowTransformStreamMap = rowTransformStreamMap;
-    this.distinctStreamMap = distinctStreamMap;
     this.functionCallList = setTransform.getFunctionCallList();
   }
 
@@ -77,33 +60,13 @@ public class SetTransformLazyStream extends UnaryLazyStream {
   }
 
   private Row calculate() throws PhysicalException {
-    SetMappingFunction function = null;
-    List<Row> rowList = new ArrayList<>();
-    try {
-      for (FunctionCall functionCall : functionCallList) {
-        function = (SetMappingFunction) functionCall.getFunction();
-        FunctionParams params = functionCall.getParams();
-        if (params.isDistinct()) {
-          rowList.add(function.transform((Table) distinctStreamMap.get(params.getPaths()), params));
-        } else if (functionCall.isNeedPreRowTransform()) {
-          rowList.add(
-              function.transform((Table) rowTransformStreamMap.get(params.getPaths()), params));
-        } else {
-          rowList.add(function.transform((Table) stream, params));
-        }
-      }
-
-    } catch (Exception e) {
-      if (function != null) {
-        throw new PhysicalTaskExecuteFailureException(
-            "encounter error when execute set mapping function " + function.getIdentifier() + ".",
-            e);
-      } else {
-        throw new PhysicalTaskExecuteFailureException(
-            "encounter error when execute set mapping function.", e);
-      }
+    // 一次遍历输入，各函数增量地计算结果，无需缓存输入
+    GroupAccumulator accumulator = new GroupAccumulator(functionCallList, stream.getHeader());
+    while (stream.hasNext()) {
+      accumulator.update(stream.next());
     }
-    return combineMultipleColumns(rowList);
+    Row row = accumulator.finishAsRow();
+    return row == null ? Row.EMPTY_ROW : row;
   }
 
   @Override
@@ -20,31 +20,25 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.ExternalSorter;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
 
 public class SortLazyStream extends UnaryLazyStream {
 
   private final Sort sort;
 
-  private final List<Boolean> ascendingList;
+  private ExternalSorter sorter;
 
-  private final List<Row> rows;
-
-  private boolean hasSorted = false;
-
-  private int cur = 0;
+  private RowStream sortedStream;
 
   public SortLazyStream(Sort sort, RowStream stream) {
     super(stream);
     this.sort = sort;
-    this.ascendingList = sort.getAscendingList();
-    this.rows = new ArrayList<>();
   }
 
   @Override
@@ -54,14 +48,19 @@ public class SortLazyStream extends UnaryLazyStream {
 
   @Override
   public boolean hasNext() throws PhysicalException {
-    if (!hasSorted) {
+    if (sortedStream == null) {
+      if (!stream.hasNext()) {
+        sortedStream = new Table(stream.getHeader(), Collections.emptyList());
+        return false;
+      }
+      sorter =
+          new ExternalSorter(stream.getHeader(), sort.getAscendingList(), sort.getSortByCols());
       while (stream.hasNext()) {
-        rows.add(stream.next());
+        sorter.add(stream.next());
       }
-      RowUtils.sortRows(rows, ascendingList, sort.getSortByCols());
-      hasSorted = true;
+      sortedStream = sorter.sort();
     }
-    return cur < rows.size();
+    return sortedStream.hasNext();
   }
 
   @Override
@@ -69,6 +68,14 @@ public class SortLazyStream extends UnaryLazyStream {
     if (!hasNext()) {
       throw new IllegalStateException("row stream doesn't have more data!");
     }
-    return rows.get(cur++);
+    return sortedStream.next();
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    if (sorter != null) {
+      sorter.close();
+    }
+    super.close();
   }
 }
@@ -21,8 +21,10 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -45,6 +47,8 @@ public class SortedMergeInnerJoinLazyStream extends BinaryLazyStream {
 
   private final InnerJoin innerJoin;
 
+  private final RowPredicate filterPredicate;
+
   private Header header;
 
   private boolean hasInitialized = false;
@@ -68,6 +72,7 @@ public class SortedMergeInnerJoinLazyStream extends BinaryLazyStream {
   public SortedMergeInnerJoinLazyStream(InnerJoin innerJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.innerJoin = innerJoin;
+    this.filterPredicate = FilterCompiler.compileLazily(innerJoin.getFilter());
     this.sameValueStreamBRows = new ArrayList<>();
     this.cache = new LinkedList<>();
   }
@@ -169,7 +174,7 @@ public class SortedMergeInnerJoinLazyStream extends BinaryLazyStream {
           Row row =
               RowUtils.constructNewRow(
                   header, nextA, rowB, innerJoin.getPrefixA(), innerJoin.getPrefixB());
-          if (FilterUtils.validate(innerJoin.getFilter(), row)) {
+          if (filterPredicate.test(row)) {
             cache.addLast(row);
           }
         } else {
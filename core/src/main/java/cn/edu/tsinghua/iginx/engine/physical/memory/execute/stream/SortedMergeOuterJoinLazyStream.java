@@ -21,8 +21,10 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -45,6 +47,8 @@ public class SortedMergeOuterJoinLazyStream extends BinaryLazyStream {
 
   private final OuterJoin outerJoin;
 
+  private final RowPredicate filterPredicate;
+
   private Header header;
 
   private int index;
@@ -76,6 +80,7 @@ public class SortedMergeOuterJoinLazyStream extends BinaryLazyStream {
   public SortedMergeOuterJoinLazyStream(OuterJoin outerJoin, RowStream streamA, RowStream streamB) {
     super(streamA, streamB);
     this.outerJoin = outerJoin;
+    this.filterPredicate = FilterCompiler.compileLazily(outerJoin.getFilter());
     this.sameValueStreamBRows = new ArrayList<>();
     this.cache = new LinkedList<>();
     this.unmatchedStreamARows = new ArrayList<>();
@@ -265,7 +270,7 @@ public class SortedMergeOuterJoinLazyStream extends BinaryLazyStream {
           Row row =
               RowUtils.constructNewRow(
                   header, nextA, rowB, outerJoin.getPrefixA(), outerJoin.getPrefixB());
-          if (FilterUtils.validate(outerJoin.getFilter(), row)) {
+          if (filterPredicate.test(row)) {
             cache.addLast(row);
           }
         } else {
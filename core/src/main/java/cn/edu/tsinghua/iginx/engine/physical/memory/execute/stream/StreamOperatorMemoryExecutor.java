@@ -19,8 +19,6 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
-import static cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils.isCanUseSetQuantifierFunction;
-
 import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.UnexpectedOperatorException;
@@ -31,12 +29,6 @@ import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.Constants;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
-import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
-import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
-import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
-import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
 import cn.edu.tsinghua.iginx.engine.shared.operator.AddSchemaPrefix;
 import cn.edu.tsinghua.iginx.engine.shared.operator.AddSequence;
 import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
@@ -61,15 +53,13 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
 import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
 import cn.edu.tsinghua.iginx.engine.shared.operator.ValueToSelectedPath;
 import cn.edu.tsinghua.iginx.engine.shared.source.ConstantSource;
 import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
 import cn.edu.tsinghua.iginx.engine.shared.source.Source;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
 
@@ -96,6 +86,9 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
       case Limit:
         result = executeLimit((Limit) operator, stream);
         break;
+      case TopN:
+        result = executeTopN((TopN) operator, stream);
+        break;
       case Downsample:
         result = executeDownsample((Downsample) operator, stream);
         break;
@@ -207,6 +200,16 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
     return new SortLazyStream(sort, stream);
   }
 
+  private RowStream executeTopN(TopN topN, RowStream stream) throws PhysicalException {
+    RowTransform preRowTransform =
+        HeaderUtils.checkSortHeader(stream.getHeader(), topN.getSortByExpressions());
+    if (preRowTransform != null) {
+      stream = executeRowTransform(preRowTransform, stream);
+    }
+
+    return new TopNLazyStream(topN, stream);
+  }
+
   private RowStream executeLimit(Limit limit, RowStream stream) {
     return new LimitLazyStream(limit, stream);
   }
@@ -224,40 +227,8 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
     return new RowTransformLazyStream(rowTransform, stream);
   }
 
-  private RowStream executeSetTransform(SetTransform setTransform, RowStream stream)
-      throws PhysicalException {
-    List<FunctionCall> functionCallList = setTransform.getFunctionCallList();
-    Map<List<String>, RowStream> distinctStreamMap = new HashMap<>();
-    Map<List<String>, RowStream> rowTransformStreamMap = new HashMap<>();
-
-    for (FunctionCall functionCall : functionCallList) {
-      FunctionParams params = functionCall.getParams();
-      SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
-      RowStream input = stream;
-      // 如果参数是表达式,构造不同function对应的stream的Map
-      if (functionCall.isNeedPreRowTransform()) {
-        List<FunctionCall> list = FunctionUtils.getArithFunctionCalls(params.getExpressions());
-        RowTransform rowTransform = new RowTransform(EmptySource.EMPTY_SOURCE, list);
-        input = executeRowTransform(rowTransform, input);
-        rowTransformStreamMap.put(params.getPaths(), input);
-      }
-      // 如果有distinct,构造不同function对应的stream的Map
-      if (params.isDistinct()) {
-        if (!isCanUseSetQuantifierFunction(function.getIdentifier())) {
-          throw new IllegalArgumentException(
-              "function " + function.getIdentifier() + " can't use DISTINCT");
-        }
-        // min和max无需去重
-        if (!function.getIdentifier().equals(Max.MAX)
-            && !function.getIdentifier().equals(Min.MIN)) {
-          Distinct distinct = new Distinct(EmptySource.EMPTY_SOURCE, params.getPaths());
-          distinctStreamMap.put(params.getPaths(), executeDistinct(distinct, input));
-        }
-      }
-    }
-
-    return new SetTransformLazyStream(
-        setTransform, stream, rowTransformStreamMap, distinctStreamMap);
+  private RowStream executeSetTransform(SetTransform setTransform, RowStream stream) {
+    return new SetTransformLazyStream(setTransform, stream);
   }
 
   private RowStream executeMappingTransform(MappingTransform mappingTransform, RowStream stream) {
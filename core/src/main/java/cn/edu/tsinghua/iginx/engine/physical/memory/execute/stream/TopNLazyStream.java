@@ -0,0 +1,114 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** 使用大小为 limit + offset 的有界堆保留排序后最靠前的行，相等的行保持输入顺序 */
+public class TopNLazyStream extends UnaryLazyStream {
+
+  private final TopN topN;
+
+  private List<Row> rows;
+
+  private int cur;
+
+  public TopNLazyStream(TopN topN, RowStream stream) {
+    super(stream);
+    this.topN = topN;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  private void calculate() throws PhysicalException {
+    rows = new ArrayList<>();
+    long size = (long) topN.getLimit() + topN.getOffset();
+    if (size == 0 || !stream.hasNext()) {
+      return;
+    }
+
+    Comparator<Row> rowComparator =
+        RowUtils.buildRowComparator(
+            stream.getHeader(), topN.getAscendingList(), topN.getSortByCols());
+    Comparator<Entry> comparator =
+        (a, b) -> {
+          int cmp = rowComparator.compare(a.row, b.row);
+          return cmp != 0 ? cmp : Long.compare(a.seq, b.seq);
+        };
+    // 堆顶为当前保留的行中最靠后的一行
+    PriorityQueue<Entry> heap = new PriorityQueue<>(comparator.reversed());
+    long seq = 0;
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      if (heap.size() < size) {
+        heap.add(new Entry(row, seq++));
+      } else if (rowComparator.compare(row, heap.peek().row) < 0) {
+        heap.poll();
+        heap.add(new Entry(row, seq++));
+      }
+    }
+
+    List<Entry> entries = new ArrayList<>(heap);
+    entries.sort(comparator);
+    for (int i = topN.getOffset(); i < entries.size(); i++) {
+      rows.add(entries.get(i).row);
+    }
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    if (rows == null) {
+      calculate();
+    }
+    return cur < rows.size();
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("row stream doesn't have more data!");
+    }
+    return rows.get(cur++);
+  }
+
+  private static class Entry {
+
+    private final Row row;
+
+    private final long seq;
+
+    Entry(Row row, long seq) {
+      this.row = row;
+      this.seq = seq;
+    }
+  }
+}
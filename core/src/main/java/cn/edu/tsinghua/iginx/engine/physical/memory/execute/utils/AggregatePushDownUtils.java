@@ -0,0 +1,122 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutorFactory;
+import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.DataTypeUtils;
+import java.util.Collection;
+import java.util.List;
+
+/** 将聚合与降采样下推到存储引擎时的公共判断与内存回退，存储引擎只需将聚合翻译为自身的查询 */
+public class AggregatePushDownUtils {
+
+  private AggregatePushDownUtils() {}
+
+  /**
+   * 判断函数列表能否下推到存储引擎，下推的结果需要能按 {@link PartialAggregateUtils} 在分片间合并
+   *
+   * @param functionCallList 聚合函数列表
+   * @param functions 存储引擎支持的聚合函数标识
+   */
+  public static boolean isSupportPushDown(
+      List<FunctionCall> functionCallList, Collection<String> functions) {
+    if (!PartialAggregateUtils.isSupportTwoPhaseAggregate(functionCallList)) {
+      return false;
+    }
+    for (FunctionCall functionCall : functionCallList) {
+      if (!functions.contains(functionCall.getFunction().getIdentifier())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** sum、avg、max、min 只下推数值类型的列，其余情况在内存中计算以保持与内存执行相同的结果和报错 */
+  public static boolean isSupportPushDown(String identifier, DataType dataType) {
+    switch (identifier) {
+      case Count.COUNT:
+      case FirstValue.FIRST_VALUE:
+      case LastValue.LAST_VALUE:
+        return true;
+      default:
+        return DataTypeUtils.isNumber(dataType);
+    }
+  }
+
+  /**
+   * 将存储引擎返回的聚合结果转换为与内存中计算相同的类型
+   *
+   * @param value 存储引擎返回的聚合结果，空输入时为 null，转换为内存中计算的结果
+   * @param identifier 聚合函数标识
+   * @param dataType 聚合结果在内存中计算时的类型
+   */
+  public static Object toAggregateValue(Object value, String identifier, DataType dataType) {
+    if (value == null) {
+      return PartialAggregateUtils.getEmptyResult(identifier, dataType);
+    }
+    if (!(value instanceof Number)) {
+      return value;
+    }
+    Number number = (Number) value;
+    switch (dataType) {
+      case INTEGER:
+        return number.intValue();
+      case LONG:
+        return number.longValue();
+      case FLOAT:
+        return number.floatValue();
+      case DOUBLE:
+        return number.doubleValue();
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * 在 project 的结果上于内存中执行聚合或降采样，用于存储引擎无法下推的情况
+   *
+   * @param operator SetTransform 或 Downsample
+   * @param projectResult 存储引擎执行 project 的结果
+   */
+  public static TaskExecuteResult executeInMemory(
+      UnaryOperator operator, TaskExecuteResult projectResult) {
+    if (projectResult.getException() != null) {
+      return projectResult;
+    }
+    try {
+      RowStream rowStream =
+          OperatorMemoryExecutorFactory.getInstance()
+              .getMemoryExecutor()
+              .executeUnaryOperator(operator, projectResult.getRowStream(), null);
+      return new TaskExecuteResult(rowStream);
+    } catch (PhysicalException e) {
+      return new TaskExecuteResult(e);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BinaryExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BracketExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.CaseWhenExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.ConstantExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.FuncExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.MultipleExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.expr.UnaryExpression;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import java.util.List;
+
+/**
+ * 将 Expression 绑定到给定的 Header，编译为 RowEvaluator，语义与 {@link ExprUtils#calculateExpr} 一致。
+ *
+ * <p>列名在编译时解析为列下标，运算符在编译时确定，求值时不再遍历表达式树。输入行的 Header 与绑定的 Header 不一致时退回逐行解释执行。
+ */
+public class ExprCompiler {
+
+  private ExprCompiler() {}
+
+  public static RowEvaluator compile(Expression expr, Header header) {
+    RowEvaluator evaluator = bind(expr, header);
+    return row ->
+        FilterCompiler.isBound(row, header)
+            ? evaluator.evaluate(row)
+            : ExprUtils.calculateExpr(row, expr);
+  }
+
+  static RowEvaluator bind(Expression expr, Header header) {
+    switch (expr.getType()) {
+      case Constant:
+        Object constant = ((ConstantExpression) expr).getValue();
+        return row -> new Value(constant);
+      case Key:
+        if (!header.hasKey()) {
+          return row -> {
+            throw new PhysicalTaskExecuteFailureException("there is no key in row");
+          };
+        }
+        return row -> new Value(row.getKey());
+      case Base:
+        return bindColumn(header, ((BaseExpression) expr).getColumnName(), null);
+      case Function:
+        FuncExpression funcExpr = (FuncExpression) expr;
+        return bindColumn(header, funcExpr.getColumnName(), funcExpr);
+      case Bracket:
+        return bind(((BracketExpression) expr).getExpression(), header);
+      case Unary:
+        UnaryExpression unaryExpr = (UnaryExpression) expr;
+        RowEvaluator child = bind(unaryExpr.getExpression(), header);
+        if (unaryExpr.getOperator().equals(Operator.PLUS)) {
+          return child;
+        }
+        return row -> ExprUtils.calculateNegative(child.evaluate(row));
+      case Binary:
+        return bindBinaryExpr((BinaryExpression) expr, header);
+      case Multiple:
+        return bindMultipleExpr((MultipleExpression) expr, header);
+      case CaseWhen:
+        return bindCaseWhenExpr((CaseWhenExpression) expr, header);
+      default:
+        return row -> ExprUtils.calculateExpr(row, expr);
+    }
+  }
+
+  private static RowEvaluator bindColumn(Header header, String colName, FuncExpression funcExpr) {
+    int index = header.indexOf(colName);
+    if (index != -1) {
+      return row -> new Value(row.getValues()[index]);
+    }
+    if (funcExpr == null) {
+      return row -> null;
+    }
+    // 函数结果不在输入中时，按行计算函数
+    return row -> ExprUtils.calculateFuncExprNative(row, funcExpr);
+  }
+
+  private static RowEvaluator bindBinaryExpr(BinaryExpression binaryExpr, Header header) {
+    RowEvaluator left = bind(binaryExpr.getLeftExpression(), header);
+    RowEvaluator right = bind(binaryExpr.getRightExpression(), header);
+    Operator operator = binaryExpr.getOp();
+    return row -> ExprUtils.calculateBinary(operator, left.evaluate(row), right.evaluate(row));
+  }
+
+  private static RowEvaluator bindMultipleExpr(MultipleExpression multipleExpr, Header header) {
+    List<Expression> children = multipleExpr.getChildren();
+    RowEvaluator[] evaluators = new RowEvaluator[children.size()];
+    for (int i = 0; i < children.size(); i++) {
+      evaluators[i] = bind(children.get(i), header);
+    }
+    Operator[] ops = multipleExpr.getOps().toArray(new Operator[0]);
+    boolean negateFirst = ops[0] == Operator.MINUS;
+    return row -> {
+      Value result = evaluators[0].evaluate(row);
+      if (negateFirst) {
+        result = ExprUtils.calculateNegative(result);
+      }
+      for (int i = 1; i < ops.length; i++) {
+        result = ExprUtils.calculateBinary(ops[i], result, evaluators[i].evaluate(row));
+        if (result == null) {
+          return null;
+        }
+      }
+      return result;
+    };
+  }
+
+  private static RowEvaluator bindCaseWhenExpr(CaseWhenExpression caseWhenExpr, Header header) {
+    List<Filter> conditionList = caseWhenExpr.getConditions();
+    List<Expression> resultList = caseWhenExpr.getResults();
+    RowPredicate[] conditions = new RowPredicate[conditionList.size()];
+    RowEvaluator[] results = new RowEvaluator[conditionList.size()];
+    for (int i = 0; i < conditionList.size(); i++) {
+      conditions[i] = FilterCompiler.bind(conditionList.get(i), header);
+      results[i] = bind(resultList.get(i), header);
+    }
+    RowEvaluator resultElse =
+        caseWhenExpr.getResultElse() == null ? null : bind(caseWhenExpr.getResultElse(), header);
+    return row -> {
+      for (int i = 0; i < conditions.length; i++) {
+        if (conditions[i].test(row)) {
+          return results[i].evaluate(row);
+        }
+      }
+      return resultElse == null ? null : resultElse.evaluate(row);
+    };
+  }
+}
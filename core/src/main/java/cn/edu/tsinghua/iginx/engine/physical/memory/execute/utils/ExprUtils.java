@@ -117,8 +117,7 @@ public class ExprUtils {
     return new Value(row.getValues()[index]);
   }
 
-  private static Value calculateFuncExprNative(Row row, FuncExpression funcExpr)
-      throws PhysicalException {
+  static Value calculateFuncExprNative(Row row, FuncExpression funcExpr) throws PhysicalException {
     initFunctionManager();
     Function function = functionManager.getFunction(funcExpr.getFuncName());
     if (!function.getMappingType().equals(MappingType.RowMapping)) {
@@ -157,8 +156,11 @@ public class ExprUtils {
     if (operator.equals(Operator.PLUS)) { // positive
       return value;
     }
+    return calculateNegative(value);
+  }
 
-    switch (value.getDataType()) { // negative
+  static Value calculateNegative(Value value) {
+    switch (value.getDataType()) {
       case INTEGER:
         return new Value(-value.getIntV());
       case LONG:
@@ -180,7 +182,10 @@ public class ExprUtils {
 
     Value leftVal = calculateExpr(row, leftExpr);
     Value rightVal = calculateExpr(row, rightExpr);
+    return calculateBinary(operator, leftVal, rightVal);
+  }
 
+  static Value calculateBinary(Operator operator, Value leftVal, Value rightVal) {
     if (!leftVal.getDataType().equals(rightVal.getDataType())) { // 两值类型不同，但均为数值类型，转为double再运算
       if (DataTypeUtils.isNumber(leftVal.getDataType())
           && DataTypeUtils.isNumber(rightVal.getDataType())) {
@@ -217,8 +222,7 @@ public class ExprUtils {
     }
 
     if (ops.get(0) == Operator.MINUS) {
-      values.set(0, calculateUnaryExpr(row, new UnaryExpression(Operator.MINUS, children.get(0))));
-      ops.set(0, Operator.PLUS);
+      values.set(0, calculateNegative(values.get(0)));
     }
 
     for (int i = 1; i < ops.size(); i++) {
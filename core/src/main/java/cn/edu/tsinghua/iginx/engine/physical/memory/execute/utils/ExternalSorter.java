@@ -0,0 +1,187 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 外部排序。缓存的行超过内存上限时，排序后写入本地临时文件作为一个有序段，全部输入读完后将各有序段与内存中剩余的行多路归并输出。
+ *
+ * <p>相等的行保持输入顺序，与 {@link RowUtils#sortRows} 的结果一致。
+ */
+public class ExternalSorter implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExternalSorter.class);
+
+  private final Header header;
+
+  private final Comparator<Row> comparator;
+
+  private final long memoryThreshold;
+
+  private final List<RowSpillFile> runs = new ArrayList<>();
+
+  private final List<RowStream> runStreams = new ArrayList<>();
+
+  private List<Row> buffer = new ArrayList<>();
+
+  private long bufferSize;
+
+  public ExternalSorter(Header header, List<Boolean> ascendingList, List<String> sortByCols)
+      throws PhysicalException {
+    this(
+        header,
+        ascendingList,
+        sortByCols,
+        ConfigDescriptor.getInstance().getConfig().getSortMemoryThreshold() * 1024);
+  }
+
+  public ExternalSorter(
+      Header header, List<Boolean> ascendingList, List<String> sortByCols, long memoryThreshold)
+      throws PhysicalException {
+    this.header = header;
+    this.comparator = RowUtils.buildRowComparator(header, ascendingList, sortByCols);
+    this.memoryThreshold = memoryThreshold;
+  }
+
+  public void add(Row row) throws PhysicalException {
+    buffer.add(row);
+    bufferSize += RowUtils.estimateRowSize(row);
+    if (bufferSize > memoryThreshold) {
+      spill();
+    }
+  }
+
+  public int getRunCount() {
+    return runs.size();
+  }
+
+  /** 结束输入并返回有序的 RowStream，只能调用一次 */
+  public RowStream sort() throws PhysicalException {
+    buffer.sort(comparator);
+    if (runs.isEmpty()) {
+      return new Table(header, buffer);
+    }
+    for (RowSpillFile run : runs) {
+      runStreams.add(run.read());
+    }
+    runStreams.add(new Table(header, buffer));
+    buffer = null;
+    return new MergeRowStream();
+  }
+
+  private void spill() throws PhysicalException {
+    buffer.sort(comparator);
+    RowSpillFile run = new RowSpillFile(header);
+    runs.add(run);
+    for (Row row : buffer) {
+      run.write(row);
+    }
+    LOGGER.debug("sort spilled run {} with {} rows", runs.size(), buffer.size());
+    buffer = new ArrayList<>();
+    bufferSize = 0;
+  }
+
+  @Override
+  public void close() {
+    for (RowSpillFile run : runs) {
+      run.close();
+    }
+    runs.clear();
+    runStreams.clear();
+    buffer = null;
+  }
+
+  private static class RunCursor {
+
+    private final int runIndex;
+
+    private Row current;
+
+    RunCursor(int runIndex, Row current) {
+      this.runIndex = runIndex;
+      this.current = current;
+    }
+  }
+
+  private class MergeRowStream implements RowStream {
+
+    private PriorityQueue<RunCursor> queue;
+
+    @Override
+    public Header getHeader() {
+      return header;
+    }
+
+    @Override
+    public void close() {
+      ExternalSorter.this.close();
+    }
+
+    private void init() throws PhysicalException {
+      queue =
+          new PriorityQueue<>(
+              runStreams.size(),
+              (a, b) -> {
+                int cmp = comparator.compare(a.current, b.current);
+                return cmp != 0 ? cmp : Integer.compare(a.runIndex, b.runIndex);
+              });
+      for (int i = 0; i < runStreams.size(); i++) {
+        if (runStreams.get(i).hasNext()) {
+          queue.add(new RunCursor(i, runStreams.get(i).next()));
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+      if (queue == null) {
+        init();
+      }
+      return !queue.isEmpty();
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+      if (!hasNext()) {
+        throw new IllegalStateException("row stream doesn't have more data!");
+      }
+      RunCursor cursor = queue.poll();
+      Row row = cursor.current;
+      RowStream stream = runStreams.get(cursor.runIndex);
+      if (stream.hasNext()) {
+        cursor.current = stream.next();
+        queue.add(cursor);
+      }
+      return row;
+    }
+  }
+}
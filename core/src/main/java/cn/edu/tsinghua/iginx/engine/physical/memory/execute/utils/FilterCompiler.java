@@ -0,0 +1,401 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ExprFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.InFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 将 Filter 绑定到给定的 Header，编译为 RowPredicate，语义与 {@link FilterUtils#validate(Filter, Row)} 一致。
+ *
+ * <p>列名（包括带通配符的路径）在编译时解析为列下标，数值比较按列类型直接比较原始值，不再为每行创建 Value。输入行的 Header 与绑定的 Header 不一致时退回逐行解释执行。
+ */
+public class FilterCompiler {
+
+  private FilterCompiler() {}
+
+  public static RowPredicate compile(Filter filter, Header header) {
+    RowPredicate predicate = bind(filter, header);
+    return row -> isBound(row, header) ? predicate.test(row) : FilterUtils.validate(filter, row);
+  }
+
+  /** 返回在第一次求值时按输入行的 Header 编译的谓词，用于构造时尚未确定 Header 的场景，非线程安全 */
+  public static RowPredicate compileLazily(Filter filter) {
+    return new RowPredicate() {
+
+      private RowPredicate predicate;
+
+      @Override
+      public boolean test(Row row) throws PhysicalException {
+        if (predicate == null) {
+          predicate = compile(filter, row.getHeader());
+        }
+        return predicate.test(row);
+      }
+    };
+  }
+
+  static boolean isBound(Row row, Header header) {
+    return row.getHeader() == header || header.equals(row.getHeader());
+  }
+
+  static RowPredicate bind(Filter filter, Header header) {
+    switch (filter.getType()) {
+      case Or:
+        RowPredicate[] orChildren = bindChildren(((OrFilter) filter).getChildren(), header);
+        return row -> {
+          for (RowPredicate child : orChildren) {
+            if (child.test(row)) {
+              return true;
+            }
+          }
+          return false;
+        };
+      case And:
+        RowPredicate[] andChildren = bindChildren(((AndFilter) filter).getChildren(), header);
+        return row -> {
+          for (RowPredicate child : andChildren) {
+            if (!child.test(row)) {
+              return false;
+            }
+          }
+          return true;
+        };
+      case Bool:
+        boolean isTrue = ((BoolFilter) filter).isTrue();
+        return row -> isTrue;
+      case Not:
+        RowPredicate child = bind(((NotFilter) filter).getChild(), header);
+        return row -> !child.test(row);
+      case Key:
+        return bindKeyFilter((KeyFilter) filter);
+      case Value:
+        return bindValueFilter((ValueFilter) filter, header);
+      case Path:
+        return bindPathFilter((PathFilter) filter, header);
+      case Expr:
+        return bindExprFilter((ExprFilter) filter, header);
+      case In:
+        return bindInFilter((InFilter) filter, header);
+      default:
+        return row -> false;
+    }
+  }
+
+  private static RowPredicate[] bindChildren(List<Filter> children, Header header) {
+    RowPredicate[] predicates = new RowPredicate[children.size()];
+    for (int i = 0; i < children.size(); i++) {
+      predicates[i] = bind(children.get(i), header);
+    }
+    return predicates;
+  }
+
+  private static RowPredicate bindKeyFilter(KeyFilter keyFilter) {
+    IntPredicate cmp = compareResultPredicate(keyFilter.getOp());
+    if (cmp == null) {
+      return row -> false;
+    }
+    long target = keyFilter.getValue();
+    // 与 FilterUtils#validateKeyFilter 一致，没有 key 的行不满足任何 key 过滤条件
+    return row ->
+        row.getKey() != Row.NON_EXISTED_KEY && cmp.test(Long.compare(row.getKey(), target));
+  }
+
+  private static RowPredicate bindValueFilter(ValueFilter valueFilter, Header header) {
+    Op op = valueFilter.getOp();
+    Value target = valueFilter.getValue();
+    if (target.isNull()) { // targetValue是空值，则认为不可比较
+      return row -> false;
+    }
+    int[] indices = patternIndices(header, valueFilter.getPath());
+    ValueTest[] tests = new ValueTest[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      tests[i] = bindCompare(op, header.getField(indices[i]).getType(), target);
+    }
+
+    if (indices.length == 0) {
+      return row -> false;
+    } else if (indices.length == 1) {
+      int index = indices[0];
+      ValueTest test = tests[0];
+      return row -> {
+        Object value = row.getValues()[index];
+        return value != null && test.test(value);
+      };
+    } else if (Op.isOrOp(op)) {
+      return row -> {
+        Object[] values = row.getValues();
+        for (int i = 0; i < indices.length; i++) {
+          Object value = values[indices[i]];
+          if (value != null && tests[i].test(value)) {
+            return true;
+          }
+        }
+        return false;
+      };
+    } else if (Op.isAndOp(op)) {
+      return row -> {
+        Object[] values = row.getValues();
+        for (int i = 0; i < indices.length; i++) {
+          Object value = values[indices[i]];
+          if (value == null || !tests[i].test(value)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    } else {
+      return row -> {
+        throw new IllegalArgumentException("Unknown op type: " + op);
+      };
+    }
+  }
+
+  private static RowPredicate bindPathFilter(PathFilter pathFilter, Header header) {
+    int indexA = header.indexOf(pathFilter.getPathA());
+    int indexB = header.indexOf(pathFilter.getPathB());
+    if (indexA == -1 || indexB == -1) {
+      return row -> false;
+    }
+    Op op = pathFilter.getOp();
+    DataType typeA = header.getField(indexA).getType();
+    DataType typeB = header.getField(indexB).getType();
+    IntPredicate cmp = compareResultPredicate(op);
+    if (cmp != null && typeA == typeB && ValueUtils.isNumericType(typeA)) {
+      return row -> {
+        Object[] values = row.getValues();
+        Object valueA = values[indexA];
+        Object valueB = values[indexB];
+        return valueA != null
+            && valueB != null
+            && cmp.test(ValueUtils.compare(valueA, valueB, typeA));
+      };
+    }
+    return row -> {
+      Object[] values = row.getValues();
+      Object valueA = values[indexA];
+      Object valueB = values[indexB];
+      if (valueA == null || valueB == null) { // 如果任何一个是空值，则认为不可比较
+        return false;
+      }
+      return FilterUtils.validateValueCompare(
+          op, new Value(typeA, valueA), new Value(typeB, valueB));
+    };
+  }
+
+  private static RowPredicate bindExprFilter(ExprFilter exprFilter, Header header) {
+    RowEvaluator evaluatorA = ExprCompiler.bind(exprFilter.getExpressionA(), header);
+    RowEvaluator evaluatorB = ExprCompiler.bind(exprFilter.getExpressionB(), header);
+    Op op = exprFilter.getOp();
+    return row -> {
+      Value valueA = evaluatorA.evaluate(row);
+      Value valueB = evaluatorB.evaluate(row);
+      if (valueA == null
+          || valueA.isNull()
+          || valueB == null
+          || valueB.isNull()) { // 如果任何一个是空值，则认为不可比较
+        return false;
+      }
+      return FilterUtils.validateValueCompare(op, valueA, valueB);
+    };
+  }
+
+  private static RowPredicate bindInFilter(InFilter inFilter, Header header) {
+    String path = inFilter.getPath();
+    Set<Value> targets = inFilter.getValues();
+    InFilter.InOp inOp = inFilter.getInOp();
+    boolean isNot = inOp.isNotOp();
+
+    if (!path.contains("*")) {
+      int index = header.indexOf(path);
+      if (index == -1) {
+        return row -> false;
+      }
+      DataType type = header.getField(index).getType();
+      return row -> {
+        Object value = row.getValues()[index];
+        return value != null && isNot ^ targets.contains(new Value(type, value));
+      };
+    }
+
+    int[] indices = patternIndices(header, path);
+    DataType[] types = new DataType[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      types[i] = header.getField(indices[i]).getType();
+    }
+    if (inOp.isOrOp()) {
+      return row -> {
+        Object[] values = row.getValues();
+        for (int i = 0; i < indices.length; i++) {
+          Object value = values[indices[i]];
+          if (value == null) { // value是空值，则认为不可比较
+            return false;
+          }
+          if (isNot ^ targets.contains(new Value(types[i], value))) {
+            return true;
+          }
+        }
+        return false;
+      };
+    } else {
+      return row -> {
+        Object[] values = row.getValues();
+        for (int i = 0; i < indices.length; i++) {
+          Object value = values[indices[i]];
+          if (value == null) { // value是空值，则认为不可比较
+            return false;
+          }
+          if (isNot == targets.contains(new Value(types[i], value))) {
+            return false;
+          }
+        }
+        return true;
+      };
+    }
+  }
+
+  private static int[] patternIndices(Header header, String pattern) {
+    List<Integer> indexList = header.patternIndexOf(pattern);
+    List<Integer> indices = new ArrayList<>();
+    if (indexList != null) {
+      for (int index : indexList) {
+        if (index != -1) {
+          indices.add(index);
+        }
+      }
+    }
+    return indices.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /** 单列与常量的比较，调用前已排除空值 */
+  @FunctionalInterface
+  private interface ValueTest {
+
+    boolean test(Object value) throws PhysicalException;
+  }
+
+  private static ValueTest bindCompare(Op op, DataType type, Value target) {
+    DataType targetType = target.getDataType();
+    IntPredicate cmp = compareResultPredicate(op);
+    if (cmp != null) {
+      if (type == targetType) {
+        switch (type) {
+          case INTEGER:
+            int intTarget = target.getIntV();
+            return value -> cmp.test(Integer.compare((Integer) value, intTarget));
+          case LONG:
+            long longTarget = target.getLongV();
+            return value -> cmp.test(Long.compare((Long) value, longTarget));
+          case FLOAT:
+            float floatTarget = target.getFloatV();
+            return value -> cmp.test(Float.compare((Float) value, floatTarget));
+          case DOUBLE:
+            double doubleTarget = target.getDoubleV();
+            return value -> cmp.test(Double.compare((Double) value, doubleTarget));
+          default:
+            break;
+        }
+      } else if (ValueUtils.isNumericType(type) && ValueUtils.isNumericType(targetType)) {
+        double doubleTarget = ValueUtils.transformToDouble(target).getDoubleV();
+        return value -> cmp.test(Double.compare(toDouble(value, type), doubleTarget));
+      }
+    } else if (type == DataType.BINARY && targetType == DataType.BINARY) {
+      // LIKE 与 NOT LIKE 的正则只编译一次，非法的正则留到求值时按原逻辑报错
+      Pattern pattern = compilePattern(target.getBinaryVAsString());
+      if (pattern != null) {
+        boolean isNot = op == Op.NOT_LIKE || op == Op.NOT_LIKE_AND;
+        return value -> isNot ^ pattern.matcher(new String((byte[]) value)).matches();
+      }
+    }
+    return value -> FilterUtils.validateValueCompare(op, new Value(type, value), target);
+  }
+
+  private static Pattern compilePattern(String regex) {
+    try {
+      return Pattern.compile(regex);
+    } catch (PatternSyntaxException e) {
+      return null;
+    }
+  }
+
+  private static double toDouble(Object value, DataType type) {
+    switch (type) {
+      case INTEGER:
+        return ((Integer) value).doubleValue();
+      case LONG:
+        return ((Long) value).doubleValue();
+      case FLOAT:
+        // 与 ValueUtils.transformToDouble 保持一致
+        return new BigDecimal(value.toString()).doubleValue();
+      case DOUBLE:
+        return (Double) value;
+      default:
+        throw new IllegalArgumentException("Unexpected dataType: " + type);
+    }
+  }
+
+  /** 将比较运算符转换为对 compare 结果的判断，LIKE 类运算符返回 null */
+  private static IntPredicate compareResultPredicate(Op op) {
+    switch (op) {
+      case E:
+      case E_AND:
+        return cmp -> cmp == 0;
+      case G:
+      case G_AND:
+        return cmp -> cmp > 0;
+      case L:
+      case L_AND:
+        return cmp -> cmp < 0;
+      case GE:
+      case GE_AND:
+        return cmp -> cmp >= 0;
+      case LE:
+      case LE_AND:
+        return cmp -> cmp <= 0;
+      case NE:
+      case NE_AND:
+        return cmp -> cmp != 0;
+      default:
+        return null;
+    }
+  }
+}
@@ -61,9 +61,6 @@ public class FilterUtils {
         return !validate(notFilter.getChild(), row);
       case Key:
         KeyFilter keyFilter = (KeyFilter) filter;
-        if (row.getKey() == Row.NON_EXISTED_KEY) {
-          return false;
-        }
         return validateKeyFilter(keyFilter, row);
       case Value:
         ValueFilter valueFilter = (ValueFilter) filter;
@@ -127,6 +124,9 @@ public class FilterUtils {
 
   private static boolean validateKeyFilter(KeyFilter keyFilter, Row row) {
     long timestamp = row.getKey();
+    if (timestamp == Row.NON_EXISTED_KEY) { // 没有 key 的行不满足任何 key 过滤条件
+      return false;
+    }
     switch (keyFilter.getOp()) {
       case E:
       case E_AND:
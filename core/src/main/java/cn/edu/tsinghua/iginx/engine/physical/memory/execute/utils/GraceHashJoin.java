@@ -0,0 +1,287 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 哈希连接的构建与分区。
+ *
+ * <p>构建侧读入 {@link JoinHashTable}，若估计的内存占用超过 hashJoinMemoryThreshold，则转为 grace hash
+ * join：构建侧和探测侧的行按连接键的哈希值分区写入本地临时文件， 之后逐个分区建立哈希表并探测，任一时刻内存中只保留一个分区的构建侧。未溢写时只有一个分区，探测侧即原始的输入流。
+ *
+ * <p>若某个分区的构建侧仍超过阈值，则以不同的哈希种子将该分区的构建侧和探测侧再次分区，最多递归 {@link #MAX_SPILL_LEVEL}
+ * 层。只包含单个连接键的分区无法再拆分，此时以及达到最大层数时才在内存中构建超出阈值的分区。
+ *
+ * <p>连接键为空的行不会被连接，分区时直接丢弃。
+ */
+public class GraceHashJoin implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GraceHashJoin.class);
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  static final int MAX_SPILL_LEVEL = 3;
+
+  private final RowStream buildStream;
+
+  private final String buildPath;
+
+  private final RowStream probeStream;
+
+  private final String probePath;
+
+  private final boolean needTypeCast;
+
+  private final long memoryThreshold;
+
+  private final int partitionNum;
+
+  private JoinHashTable hashTable;
+
+  private RowStream currentProbeStream;
+
+  // 尚未处理的分区，子分区插入队首，使临时文件尽早删除
+  private final Deque<Partition> partitions = new ArrayDeque<>();
+
+  private Partition currentPartition;
+
+  private boolean started = false;
+
+  private boolean spilled = false;
+
+  public GraceHashJoin(
+      RowStream buildStream,
+      String buildPath,
+      RowStream probeStream,
+      String probePath,
+      boolean needTypeCast) {
+    this(
+        buildStream,
+        buildPath,
+        probeStream,
+        probePath,
+        needTypeCast,
+        config.getHashJoinMemoryThreshold() * 1024);
+  }
+
+  public GraceHashJoin(
+      RowStream buildStream,
+      String buildPath,
+      RowStream probeStream,
+      String probePath,
+      boolean needTypeCast,
+      long memoryThreshold) {
+    this.buildStream = buildStream;
+    this.buildPath = buildPath;
+    this.probeStream = probeStream;
+    this.probePath = probePath;
+    this.needTypeCast = needTypeCast;
+    this.memoryThreshold = memoryThreshold;
+    this.partitionNum = Math.max(config.getHashJoinSpillPartitionNum(), 2);
+  }
+
+  /** 准备下一个分区的哈希表和探测侧，全部分区处理完时返回 false */
+  public boolean nextPartition() throws PhysicalException {
+    if (!started) {
+      started = true;
+      Partition[] children = build(buildStream, 0);
+      if (children == null) {
+        currentProbeStream = probeStream;
+        return true;
+      }
+      spilled = true;
+      scatterProbe(probeStream, children, 0);
+    } else if (currentProbeStream == null) {
+      return false;
+    } else if (!spilled) {
+      hashTable = null;
+      currentProbeStream = null;
+      return false;
+    } else {
+      currentProbeStream.close();
+      currentPartition.close();
+      currentPartition = null;
+    }
+
+    while (!partitions.isEmpty()) {
+      Partition partition = partitions.pollFirst();
+      currentPartition = partition;
+      RowStream partitionBuildStream = partition.build.read();
+      Partition[] children;
+      try {
+        children = build(partitionBuildStream, partition.level);
+      } finally {
+        partitionBuildStream.close();
+      }
+      if (children == null) {
+        currentProbeStream = partition.probe.read();
+        return true;
+      }
+      RowStream partitionProbeStream = partition.probe.read();
+      try {
+        scatterProbe(partitionProbeStream, children, partition.level);
+      } finally {
+        partitionProbeStream.close();
+      }
+      partition.close();
+      currentPartition = null;
+    }
+    hashTable = null;
+    currentProbeStream = null;
+    return false;
+  }
+
+  public JoinHashTable getHashTable() {
+    return hashTable;
+  }
+
+  /** 当前分区的探测侧 */
+  public RowStream getProbeStream() {
+    return currentProbeStream;
+  }
+
+  public boolean isSpilled() {
+    return spilled;
+  }
+
+  /** 将第 level 层的构建侧读入哈希表。超过阈值且允许再分区时，把已读入和剩余的行写入第 level + 1 层的子分区，子分区加入队首并返回，否则返回 null，哈希表保存全部行。 */
+  private Partition[] build(RowStream stream, int level) throws PhysicalException {
+    hashTable = new JoinHashTable(stream.getHeader(), needTypeCast);
+    Partition[] children = null;
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      Value value = row.getAsValue(buildPath);
+      if (value.isNull()) {
+        continue;
+      }
+      if (children != null) {
+        children[partitionOf(value, level)].build.write(row);
+        continue;
+      }
+      hashTable.put(value, row);
+      if (hashTable.getEstimatedSize() > memoryThreshold
+          && level < MAX_SPILL_LEVEL
+          && hashTable.getGroupCount() > 1) {
+        children = spillHashTable(level);
+      }
+    }
+    if (children == null && hashTable.getEstimatedSize() > memoryThreshold) {
+      LOGGER.warn(
+          "partition of hash join at level {} with {} keys still exceeds memory threshold, estimated size: {}",
+          level,
+          hashTable.getGroupCount(),
+          hashTable.getEstimatedSize());
+    }
+    return children;
+  }
+
+  private Partition[] spillHashTable(int level) throws PhysicalException {
+    LOGGER.info(
+        "build side of hash join at level {} exceeds memory threshold {}, spill to {} partitions",
+        level,
+        memoryThreshold,
+        partitionNum);
+    Partition[] children = new Partition[partitionNum];
+    for (int i = 0; i < partitionNum; i++) {
+      children[i] =
+          new Partition(
+              new RowSpillFile(buildStream.getHeader()),
+              new RowSpillFile(probeStream.getHeader()),
+              level + 1);
+    }
+    // 子分区立即入队，出错时由 close 删除已创建的临时文件
+    for (int i = partitionNum - 1; i >= 0; i--) {
+      partitions.addFirst(children[i]);
+    }
+    for (int rowId = 0; rowId < hashTable.getRowCount(); rowId++) {
+      Row row = hashTable.getRow(rowId);
+      children[partitionOf(row.getAsValue(buildPath), level)].build.write(row);
+    }
+    hashTable = null;
+    return children;
+  }
+
+  private void scatterProbe(RowStream stream, Partition[] children, int level)
+      throws PhysicalException {
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      Value value = row.getAsValue(probePath);
+      if (value.isNull()) {
+        continue;
+      }
+      children[partitionOf(value, level)].probe.write(row);
+    }
+  }
+
+  /** 第 level 层的行所属的子分区，每层使用不同的种子，使同一分区内的键在下一层仍能分散 */
+  private int partitionOf(Value value, int level) {
+    // 哈希表的槽位直接使用哈希值的低位，分区使用再次混合后的哈希值，避免同一分区内的键集中在少数槽位
+    int h = JoinHashTable.hash(value, needTypeCast) + level * 0x9E3779B9;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return Math.floorMod(h, partitionNum);
+  }
+
+  @Override
+  public void close() {
+    if (currentPartition != null) {
+      currentPartition.close();
+      currentPartition = null;
+    }
+    for (Partition partition : partitions) {
+      partition.close();
+    }
+    partitions.clear();
+    hashTable = null;
+  }
+
+  private static class Partition {
+
+    private final RowSpillFile build;
+
+    private final RowSpillFile probe;
+
+    private final int level;
+
+    private Partition(RowSpillFile build, RowSpillFile probe, int level) {
+      this.build = build;
+      this.probe = probe;
+      this.level = level;
+    }
+
+    private void close() {
+      build.close();
+      probe.close();
+    }
+  }
+}
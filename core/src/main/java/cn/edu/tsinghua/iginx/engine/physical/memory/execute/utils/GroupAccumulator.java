@@ -0,0 +1,270 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils.isCanUseSetQuantifierFunction;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.Accumulator;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 一个分组（或一个窗口）内全部聚合函数的增量计算状态，供 SetTransform、Downsample、GroupBy 使用。
+ *
+ * <p>参数为表达式的函数在更新前逐行计算表达式；使用 distinct 的函数（max、min 除外）先将输入投影到参数列上并去重，只保存去重后的值， 在 finish
+ * 时再计算结果。其余函数直接更新各自的 {@link Accumulator}，无需缓存输入行。
+ */
+public class GroupAccumulator {
+
+  private final CallAccumulator[] accumulators;
+
+  public GroupAccumulator(List<FunctionCall> functionCallList, Header header)
+      throws PhysicalException {
+    this.accumulators = new CallAccumulator[functionCallList.size()];
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i] = new CallAccumulator(functionCallList.get(i), header);
+    }
+  }
+
+  public void update(Row row) throws PhysicalException {
+    for (CallAccumulator accumulator : accumulators) {
+      accumulator.update(row);
+    }
+  }
+
+  /** 使用批次中 [from, to) 范围内的行更新状态 */
+  public void update(Batch batch, int from, int to) throws PhysicalException {
+    for (CallAccumulator accumulator : accumulators) {
+      accumulator.update(batch, from, to);
+    }
+  }
+
+  public void update(Batch batch) throws PhysicalException {
+    update(batch, 0, batch.getSize());
+  }
+
+  /** 合并由相同函数列表、相同表头创建的另一个状态，other 中的数据视为位于当前状态的数据之后 */
+  public void merge(GroupAccumulator other) throws PhysicalException {
+    for (int i = 0; i < accumulators.length; i++) {
+      accumulators[i].merge(other.accumulators[i]);
+    }
+  }
+
+  /** 按函数顺序返回各函数的计算结果，结果为 null 的函数被跳过 */
+  public List<Row> finish() throws PhysicalException {
+    List<Row> rows = new ArrayList<>();
+    for (CallAccumulator accumulator : accumulators) {
+      Row row = accumulator.finish();
+      if (row != null) {
+        rows.add(row);
+      }
+    }
+    return rows;
+  }
+
+  /** 将各函数的计算结果合并为一行，若所有函数的结果均为 null 则返回 null */
+  public Row finishAsRow() throws PhysicalException {
+    List<Row> rows = finish();
+    if (rows.isEmpty()) {
+      return null;
+    }
+    return RowUtils.combineMultipleColumns(rows);
+  }
+
+  private static class CallAccumulator {
+
+    private final SetMappingFunction function;
+
+    private final FunctionParams params;
+
+    private final List<FunctionCall> preRowTransform; // 参数为表达式时，需要先计算的表达式
+
+    private final boolean distinct;
+
+    private Header header; // 函数实际的输入表头，参数为表达式时由第一行计算结果确定
+
+    private int[] projectIndices;
+
+    private Accumulator accumulator;
+
+    private Map<List<Object>, Row> distinctRows;
+
+    CallAccumulator(FunctionCall functionCall, Header header) throws PhysicalException {
+      this.function = (SetMappingFunction) functionCall.getFunction();
+      this.params = functionCall.getParams();
+      if (params.isDistinct() && !isCanUseSetQuantifierFunction(function.getIdentifier())) {
+        throw new IllegalArgumentException(
+            "function " + function.getIdentifier() + " can't use DISTINCT");
+      }
+      // min和max无需去重
+      this.distinct =
+          params.isDistinct()
+              && !function.getIdentifier().equals(Max.MAX)
+              && !function.getIdentifier().equals(Min.MIN);
+      if (functionCall.isNeedPreRowTransform()) {
+        this.preRowTransform = FunctionUtils.getArithFunctionCalls(params.getExpressions());
+      } else {
+        this.preRowTransform = null;
+        init(header);
+      }
+    }
+
+    private void init(Header inputHeader) throws PhysicalException {
+      if (distinct) {
+        // 与 Project 的匹配规则相同，只在参数列上去重
+        List<Field> fields = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < inputHeader.getFieldSize(); i++) {
+          Field field = inputHeader.getField(i);
+          for (String path : params.getPaths()) {
+            boolean matched =
+                StringUtils.isPattern(path)
+                    ? Pattern.matches(StringUtils.reformatPath(path), field.getFullName())
+                    : path.equals(field.getFullName());
+            if (matched) {
+              fields.add(field);
+              indices.add(i);
+            }
+          }
+        }
+        this.header = new Header(inputHeader.getKey(), fields);
+        this.projectIndices = indices.stream().mapToInt(Integer::intValue).toArray();
+        this.distinctRows = new LinkedHashMap<>();
+      } else {
+        this.header = inputHeader;
+        try {
+          this.accumulator = function.createAccumulator(inputHeader, params);
+        } catch (Exception e) {
+          throw failure(e);
+        }
+      }
+    }
+
+    private PhysicalTaskExecuteFailureException failure(Exception e) {
+      return new PhysicalTaskExecuteFailureException(
+          "encounter error when execute set mapping function " + function.getIdentifier() + ".", e);
+    }
+
+    void update(Row row) throws PhysicalException {
+      if (preRowTransform != null) {
+        row = RowUtils.calRowTransform(row, preRowTransform);
+        if (header == null) {
+          init(row.getHeader());
+        }
+      }
+      if (distinct) {
+        addDistinctRow(row);
+        return;
+      }
+      try {
+        accumulator.update(row);
+      } catch (Exception e) {
+        throw failure(e);
+      }
+    }
+
+    void update(Batch batch, int from, int to) throws PhysicalException {
+      if (preRowTransform != null || distinct) {
+        for (int i = from; i < to; i++) {
+          update(batch.getRow(i));
+        }
+        return;
+      }
+      try {
+        accumulator.update(batch, from, to);
+      } catch (Exception e) {
+        throw failure(e);
+      }
+    }
+
+    private void addDistinctRow(Row row) {
+      Object[] values = new Object[projectIndices.length];
+      List<Object> distinctKey = new ArrayList<>(projectIndices.length);
+      boolean allNull = true;
+      for (int i = 0; i < projectIndices.length; i++) {
+        values[i] = row.getValue(projectIndices[i]);
+        if (values[i] != null) {
+          allNull = false;
+        }
+        if (values[i] instanceof byte[]) {
+          distinctKey.add(new String((byte[]) values[i]));
+        } else {
+          distinctKey.add(values[i]);
+        }
+      }
+      if (allNull) {
+        return;
+      }
+      distinctRows.putIfAbsent(distinctKey, new Row(header, row.getKey(), values));
+    }
+
+    void merge(CallAccumulator other) throws PhysicalException {
+      if (other.header == null) {
+        return;
+      }
+      if (header == null) {
+        init(other.header);
+      }
+      if (distinct) {
+        other.distinctRows.forEach(distinctRows::putIfAbsent);
+        return;
+      }
+      try {
+        accumulator.merge(other.accumulator);
+      } catch (Exception e) {
+        throw failure(e);
+      }
+    }
+
+    Row finish() throws PhysicalException {
+      if (header == null) {
+        init(Header.EMPTY_HEADER);
+      }
+      try {
+        if (distinct) {
+          Accumulator accumulator = function.createAccumulator(header, params);
+          for (Row row : distinctRows.values()) {
+            accumulator.update(row);
+          }
+          return accumulator.finish();
+        }
+        return accumulator.finish();
+      } catch (Exception e) {
+        throw failure(e);
+      }
+    }
+  }
+}
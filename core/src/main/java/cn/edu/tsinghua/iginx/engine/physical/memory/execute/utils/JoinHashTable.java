@@ -0,0 +1,306 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 哈希连接构建侧使用的哈希表，以连接列的值为键，采用开放寻址。
+ *
+ * <p>数值类型（需要类型转换时统一转为 double）和布尔类型的键以 long 保存，二进制类型的键以 byte[] 保存，避免装箱，并且按键值精确比较而非只比较
+ * hashCode。相同键值的行组成一个分组，分组按首次插入的顺序编号；构建侧的行按插入顺序编号，以列存的 {@link Batch} 保存，同一分组内的行通过 next
+ * 数组串联，只在被访问时构造 Row。
+ */
+public class JoinHashTable {
+
+  private static final int EMPTY = -1;
+
+  private static final byte KIND_LONG = 0;
+
+  private static final byte KIND_DOUBLE = 1;
+
+  private static final byte KIND_BOOLEAN = 2;
+
+  private static final byte KIND_BINARY = 3;
+
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private final boolean needTypeCast;
+
+  // 开放寻址的槽位，保存分组编号
+  private int[] slots;
+
+  private int mask;
+
+  private int groupCount;
+
+  private byte[] groupKinds;
+
+  private long[] groupLongKeys;
+
+  private byte[][] groupBinaryKeys;
+
+  private int[] groupHashes;
+
+  private int[] groupHeads;
+
+  private int[] groupTails;
+
+  private final Batch rows;
+
+  private int[] rowNexts;
+
+  // 每行除二进制值的内容外占用的字节数
+  private final long fixedRowSize;
+
+  private long estimatedSize;
+
+  public JoinHashTable(Header header, boolean needTypeCast) {
+    this.needTypeCast = needTypeCast;
+    this.slots = new int[16];
+    Arrays.fill(slots, EMPTY);
+    this.mask = slots.length - 1;
+    this.groupKinds = new byte[8];
+    this.groupLongKeys = new long[8];
+    this.groupBinaryKeys = new byte[8][];
+    this.groupHashes = new int[8];
+    this.groupHeads = new int[8];
+    this.groupTails = new int[8];
+    this.rows = new Batch(header, 16);
+    this.rowNexts = new int[16];
+    this.fixedRowSize = estimateFixedRowSize(header);
+  }
+
+  private static long estimateFixedRowSize(Header header) {
+    // key、next 数组中的编号
+    long size = (header.hasKey() ? 8 : 0) + 4;
+    for (Field field : header.getFields()) {
+      switch (field.getType()) {
+        case BOOLEAN:
+          size += 1;
+          break;
+        case INTEGER:
+        case FLOAT:
+          size += 4;
+          break;
+        case BINARY:
+          // 数组引用与数组对象头
+          size += 8 + 16;
+          break;
+        default:
+          size += 8;
+      }
+    }
+    return size;
+  }
+
+  /** 计算键的哈希值，与 needTypeCast 相同的两张哈希表对相同的键得到相同的哈希值，可用于溢写时的分区 */
+  public static int hash(Value value, boolean needTypeCast) {
+    Value key = needTypeCast ? ValueUtils.transformToDouble(value) : value;
+    byte kind = kindOf(key.getDataType());
+    if (kind == KIND_BINARY) {
+      return mix(Arrays.hashCode(key.getBinaryV()));
+    }
+    return mix(Long.hashCode(toLongKey(key, kind)) * 31 + kind);
+  }
+
+  public void put(Value value, Row row) {
+    Value key = needTypeCast ? ValueUtils.transformToDouble(value) : value;
+    byte kind = kindOf(key.getDataType());
+    long longKey = kind == KIND_BINARY ? 0 : toLongKey(key, kind);
+    byte[] binaryKey = kind == KIND_BINARY ? key.getBinaryV() : null;
+    int hash =
+        kind == KIND_BINARY
+            ? mix(Arrays.hashCode(binaryKey))
+            : mix(Long.hashCode(longKey) * 31 + kind);
+
+    int rowId = rows.getSize();
+    rows.appendRow(row);
+    if (rowId == rowNexts.length) {
+      rowNexts = Arrays.copyOf(rowNexts, rowId * 2);
+    }
+    rowNexts[rowId] = EMPTY;
+    estimatedSize += fixedRowSize;
+    for (Object rowValue : row.getValues()) {
+      if (rowValue instanceof byte[]) {
+        estimatedSize += ((byte[]) rowValue).length;
+      }
+    }
+
+    int group = findGroup(kind, longKey, binaryKey, hash);
+    if (group == EMPTY) {
+      group = addGroup(kind, longKey, binaryKey, hash);
+      groupHeads[group] = rowId;
+    } else {
+      rowNexts[groupTails[group]] = rowId;
+    }
+    groupTails[group] = rowId;
+  }
+
+  /** 返回键所在分组的编号，不存在时返回 -1 */
+  public int getGroup(Value value) {
+    Value key = needTypeCast ? ValueUtils.transformToDouble(value) : value;
+    byte kind = kindOf(key.getDataType());
+    if (kind == KIND_BINARY) {
+      byte[] binaryKey = key.getBinaryV();
+      return findGroup(kind, 0, binaryKey, mix(Arrays.hashCode(binaryKey)));
+    }
+    long longKey = toLongKey(key, kind);
+    return findGroup(kind, longKey, null, mix(Long.hashCode(longKey) * 31 + kind));
+  }
+
+  public int getGroupCount() {
+    return groupCount;
+  }
+
+  /** 分组中第一行的编号 */
+  public int firstRow(int group) {
+    return groupHeads[group];
+  }
+
+  /** 同一分组中的下一行的编号，没有时返回 -1 */
+  public int nextRow(int rowId) {
+    return rowNexts[rowId];
+  }
+
+  /** 构造第 rowId 行，每次调用返回新的 Row */
+  public Row getRow(int rowId) {
+    return rows.getRow(rowId);
+  }
+
+  public List<Row> getGroupRows(int group) {
+    List<Row> groupRows = new ArrayList<>();
+    for (int rowId = firstRow(group); rowId != EMPTY; rowId = nextRow(rowId)) {
+      groupRows.add(rows.getRow(rowId));
+    }
+    return groupRows;
+  }
+
+  public int getRowCount() {
+    return rows.getSize();
+  }
+
+  /** 构建侧占用内存的估计值，单位为字节 */
+  public long getEstimatedSize() {
+    return estimatedSize;
+  }
+
+  private int findGroup(byte kind, long longKey, byte[] binaryKey, int hash) {
+    int slot = hash & mask;
+    while (slots[slot] != EMPTY) {
+      int group = slots[slot];
+      if (groupHashes[group] == hash && groupKinds[group] == kind) {
+        if (kind == KIND_BINARY
+            ? Arrays.equals(groupBinaryKeys[group], binaryKey)
+            : groupLongKeys[group] == longKey) {
+          return group;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+    return EMPTY;
+  }
+
+  private int addGroup(byte kind, long longKey, byte[] binaryKey, int hash) {
+    int group = groupCount++;
+    if (group == groupKinds.length) {
+      int capacity = group * 2;
+      groupKinds = Arrays.copyOf(groupKinds, capacity);
+      groupLongKeys = Arrays.copyOf(groupLongKeys, capacity);
+      groupBinaryKeys = Arrays.copyOf(groupBinaryKeys, capacity);
+      groupHashes = Arrays.copyOf(groupHashes, capacity);
+      groupHeads = Arrays.copyOf(groupHeads, capacity);
+      groupTails = Arrays.copyOf(groupTails, capacity);
+    }
+    groupKinds[group] = kind;
+    groupLongKeys[group] = longKey;
+    groupBinaryKeys[group] = binaryKey;
+    groupHashes[group] = hash;
+    if (groupCount > slots.length * LOAD_FACTOR) {
+      rehash();
+    } else {
+      insertSlot(group, hash);
+    }
+    return group;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    Arrays.fill(slots, EMPTY);
+    mask = slots.length - 1;
+    for (int group = 0; group < groupCount; group++) {
+      insertSlot(group, groupHashes[group]);
+    }
+  }
+
+  private void insertSlot(int group, int hash) {
+    int slot = hash & mask;
+    while (slots[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = group;
+  }
+
+  private static byte kindOf(DataType dataType) {
+    switch (dataType) {
+      case INTEGER:
+      case LONG:
+        return KIND_LONG;
+      case FLOAT:
+      case DOUBLE:
+        return KIND_DOUBLE;
+      case BOOLEAN:
+        return KIND_BOOLEAN;
+      case BINARY:
+        return KIND_BINARY;
+      default:
+        throw new IllegalArgumentException("Unexpected dataType: " + dataType);
+    }
+  }
+
+  private static long toLongKey(Value key, byte kind) {
+    switch (kind) {
+      case KIND_LONG:
+        return key.getDataType() == DataType.INTEGER ? key.getIntV() : key.getLongV();
+      case KIND_DOUBLE:
+        double d = key.getDataType() == DataType.FLOAT ? key.getFloatV() : key.getDoubleV();
+        // 0.0 与 -0.0 视为相等
+        return Double.doubleToLongBits(d == 0.0 ? 0.0 : d);
+      case KIND_BOOLEAN:
+        return key.getBoolV() ? 1 : 0;
+      default:
+        throw new IllegalArgumentException("Unexpected key kind: " + kind);
+    }
+  }
+
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * 两阶段聚合的工具方法。
+ *
+ * <p>第一阶段在每个分片上计算部分聚合结果（avg 拆分为 sum 与 count），降采样时按窗口分别计算，第二阶段将各分片的部分结果按分片的 key 顺序合并为最终结果：sum 与
+ * count 相加，max 与 min 取最值，first_value 取第一个非空值，last_value 取最后一个非空值，avg 由 sum 之和除以 count 之和得到。
+ */
+public class PartialAggregateUtils {
+
+  private static final Set<String> SUPPORTED_FUNCTIONS =
+      new HashSet<>(
+          Arrays.asList(
+              Sum.SUM,
+              Count.COUNT,
+              Max.MAX,
+              Min.MIN,
+              FirstValue.FIRST_VALUE,
+              LastValue.LAST_VALUE,
+              Avg.AVG));
+
+  private PartialAggregateUtils() {}
+
+  /** 判断函数列表中的函数是否都能拆分为部分聚合与最终合并 */
+  public static boolean isSupportTwoPhaseAggregate(List<FunctionCall> functionCallList) {
+    if (functionCallList == null || functionCallList.isEmpty()) {
+      return false;
+    }
+    for (FunctionCall functionCall : functionCallList) {
+      if (functionCall.getFunction().getFunctionType() != FunctionType.System
+          || functionCall.isNeedPreRowTransform()) {
+        return false;
+      }
+      String identifier = functionCall.getFunction().getIdentifier();
+      if (!SUPPORTED_FUNCTIONS.contains(identifier)) {
+        return false;
+      }
+      FunctionParams params = functionCall.getParams();
+      if (params.getPaths() == null || params.getPaths().size() != 1) {
+        return false;
+      }
+      // 去重后的 sum、count、avg 无法由各分片的部分结果合并得到
+      if (params.isDistinct() && !identifier.equals(Max.MAX) && !identifier.equals(Min.MIN)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** 生成在分片上计算的部分聚合函数列表，avg 被拆分为 sum 与 count，重复的函数只保留一个 */
+  public static List<FunctionCall> getPartialFunctionCalls(List<FunctionCall> functionCallList) {
+    Map<String, FunctionCall> partialCalls = new LinkedHashMap<>();
+    for (FunctionCall functionCall : functionCallList) {
+      if (functionCall.getFunction().getIdentifier().equals(Avg.AVG)) {
+        FunctionParams params = functionCall.getParams();
+        FunctionCall sum =
+            new FunctionCall(Sum.getInstance(), new FunctionParams(params.getExpressions()));
+        FunctionCall count =
+            new FunctionCall(Count.getInstance(), new FunctionParams(params.getExpressions()));
+        partialCalls.putIfAbsent(sum.getFunctionStr(), sum);
+        partialCalls.putIfAbsent(count.getFunctionStr(), count);
+      } else {
+        partialCalls.putIfAbsent(functionCall.getFunctionStr(), functionCall.copy());
+      }
+    }
+    return new ArrayList<>(partialCalls.values());
+  }
+
+  /**
+   * 合并各分片的部分聚合结果
+   *
+   * @param functionCallList 原始的聚合函数列表
+   * @param partialRows 各分片的部分聚合结果，需按分片的 key 顺序排列
+   * @return 与直接对全部数据执行原始聚合函数相同的结果
+   */
+  public static Row mergePartialRows(List<FunctionCall> functionCallList, List<Row> partialRows)
+      throws PhysicalException {
+    List<Field> fields = new ArrayList<>();
+    List<Object> values = new ArrayList<>();
+    for (FunctionCall functionCall : functionCallList) {
+      Map<String, MergeState> states;
+      if (functionCall.getFunction().getIdentifier().equals(Avg.AVG)) {
+        states = mergeAvg(functionCall.getParams(), partialRows);
+      } else {
+        states = merge(functionCall, partialRows);
+      }
+      for (MergeState state : states.values()) {
+        fields.add(state.field);
+        values.add(state.value);
+      }
+    }
+    return new Row(new Header(fields), values.toArray());
+  }
+
+  /**
+   * 合并各分片的部分降采样结果，相同窗口的部分结果按 {@link #mergePartialRows} 合并
+   *
+   * @param functionCallList 原始的聚合函数列表
+   * @param partialRows 各分片的部分降采样结果，key 为窗口起点，需按分片的 key 顺序排列
+   * @return 按窗口起点升序排列的降采样结果
+   */
+  public static Table mergePartialWindows(
+      List<FunctionCall> functionCallList, List<Row> partialRows) throws PhysicalException {
+    Map<Long, List<Row>> windows = new TreeMap<>();
+    for (Row row : partialRows) {
+      windows.computeIfAbsent(row.getKey(), k -> new ArrayList<>()).add(row);
+    }
+
+    // 不同窗口中出现的列可能不同，输出的表头为所有窗口的列的并集
+    List<Row> mergedRows = new ArrayList<>();
+    Map<String, Field> fieldMap = new LinkedHashMap<>();
+    for (List<Row> rows : windows.values()) {
+      Row row = mergePartialRows(functionCallList, rows);
+      for (Field field : row.getHeader().getFields()) {
+        fieldMap.putIfAbsent(field.getFullName(), field);
+      }
+      mergedRows.add(row);
+    }
+
+    List<Field> fields = new ArrayList<>();
+    fields.add(new Field(WINDOW_START_COL, DataType.LONG));
+    fields.add(new Field(WINDOW_END_COL, DataType.LONG));
+    fields.addAll(fieldMap.values());
+    Header header = new Header(Field.KEY, fields);
+
+    List<Row> rows = new ArrayList<>();
+    int index = 0;
+    for (List<Row> windowRows : windows.values()) {
+      Row first = windowRows.get(0);
+      Row merged = mergedRows.get(index++);
+      Object[] values = new Object[fields.size()];
+      values[0] = first.getValue(WINDOW_START_COL);
+      values[1] = first.getValue(WINDOW_END_COL);
+      for (int i = 2; i < fields.size(); i++) {
+        Field field = fields.get(i);
+        int mergedIndex = merged.getHeader().indexOf(field.getFullName());
+        values[i] =
+            mergedIndex == -1
+                ? getEmptyResult(getIdentifier(field.getFullName()), field.getType())
+                : merged.getValue(mergedIndex);
+      }
+      rows.add(new Row(header, first.getKey(), values));
+    }
+    return new Table(header, rows);
+  }
+
+  /** 聚合函数作用于不含非空值的列时的结果 */
+  public static Object getEmptyResult(String identifier, DataType dataType) {
+    switch (identifier) {
+      case Count.COUNT:
+        return 0L;
+      case Sum.SUM:
+        return dataType == DataType.LONG ? (Object) 0L : (Object) 0.0;
+      case Avg.AVG:
+        return Double.NaN;
+      default:
+        return null;
+    }
+  }
+
+  private static String getIdentifier(String fullName) {
+    return fullName.substring(0, fullName.indexOf('('));
+  }
+
+  private static Map<String, MergeState> merge(FunctionCall functionCall, List<Row> partialRows)
+      throws PhysicalException {
+    String identifier = functionCall.getFunction().getIdentifier();
+    FunctionParams params = functionCall.getParams();
+    String prefix = identifier + "(" + (params.isDistinct() ? "distinct " : "");
+    Pattern pattern = getPattern(params);
+
+    Map<String, MergeState> states = new LinkedHashMap<>();
+    for (Row row : partialRows) {
+      List<Field> rowFields = row.getHeader().getFields();
+      Set<String> visited = new HashSet<>();
+      for (int i = 0; i < rowFields.size(); i++) {
+        Field field = rowFields.get(i);
+        if (!isTargetField(field, prefix, pattern) || !visited.add(field.getFullName())) {
+          continue;
+        }
+        MergeState state = states.get(field.getFullName());
+        if (state == null) {
+          states.put(field.getFullName(), new MergeState(field, row.getValue(i)));
+        } else {
+          state.merge(identifier, field, row.getValue(i));
+        }
+      }
+    }
+    return states;
+  }
+
+  private static Map<String, MergeState> mergeAvg(FunctionParams params, List<Row> partialRows) {
+    String sumPrefix = Sum.SUM + "(";
+    Pattern pattern = getPattern(params);
+
+    Map<String, Field> sumFields = new LinkedHashMap<>();
+    Map<String, Double> sums = new HashMap<>();
+    Map<String, Long> counts = new HashMap<>();
+    for (Row row : partialRows) {
+      Header header = row.getHeader();
+      List<Field> rowFields = header.getFields();
+      Set<String> visited = new HashSet<>();
+      for (int i = 0; i < rowFields.size(); i++) {
+        Field field = rowFields.get(i);
+        String fullName = field.getFullName();
+        if (!isTargetField(field, sumPrefix, pattern) || !visited.add(fullName)) {
+          continue;
+        }
+        sumFields.putIfAbsent(fullName, field);
+        Object sum = row.getValue(i);
+        if (sum != null) {
+          sums.merge(fullName, ((Number) sum).doubleValue(), Double::sum);
+        }
+        int countIndex = header.indexOf(Count.COUNT + "(" + getInner(fullName, sumPrefix) + ")");
+        if (countIndex != -1 && row.getValue(countIndex) != null) {
+          counts.merge(fullName, (Long) row.getValue(countIndex), Long::sum);
+        }
+      }
+    }
+
+    Map<String, MergeState> states = new LinkedHashMap<>();
+    for (Map.Entry<String, Field> entry : sumFields.entrySet()) {
+      Field sumField = entry.getValue();
+      String name = Avg.AVG + "(" + getInner(sumField.getName(), sumPrefix) + ")";
+      String fullName = Avg.AVG + "(" + getInner(sumField.getFullName(), sumPrefix) + ")";
+      double sum = sums.getOrDefault(entry.getKey(), 0.0);
+      long count = counts.getOrDefault(entry.getKey(), 0L);
+      states.put(fullName, new MergeState(new Field(name, fullName, DataType.DOUBLE), sum / count));
+    }
+    return states;
+  }
+
+  private static Pattern getPattern(FunctionParams params) {
+    return Pattern.compile(StringUtils.reformatPath(params.getPaths().get(0)) + ".*");
+  }
+
+  /** 判断部分聚合结果中的列是否由给定的函数作用于匹配参数的列得到 */
+  private static boolean isTargetField(Field field, String prefix, Pattern pattern) {
+    String fullName = field.getFullName();
+    return fullName.startsWith(prefix)
+        && fullName.endsWith(")")
+        && pattern.matcher(getInner(fullName, prefix)).matches();
+  }
+
+  private static String getInner(String name, String prefix) {
+    return name.substring(prefix.length(), name.length() - 1);
+  }
+
+  private static class MergeState {
+
+    private Field field;
+
+    private Object value;
+
+    MergeState(Field field, Object value) {
+      this.field = field;
+      this.value = value;
+    }
+
+    void merge(String identifier, Field otherField, Object other) throws PhysicalException {
+      if (other == null) {
+        return;
+      }
+      if (value == null) { // 之前的分片中没有非空值
+        field = otherField;
+        value = other;
+        return;
+      }
+      switch (identifier) {
+        case Sum.SUM:
+          if (field.getType() == DataType.LONG && otherField.getType() == DataType.LONG) {
+            value = (long) value + (long) other;
+          } else {
+            field = new Field(field.getName(), field.getFullName(), DataType.DOUBLE);
+            value = ((Number) value).doubleValue() + ((Number) other).doubleValue();
+          }
+          break;
+        case Count.COUNT:
+          value = (long) value + (long) other;
+          break;
+        case Max.MAX:
+          if (ValueUtils.compare(other, value, otherField.getType(), field.getType()) > 0) {
+            field = otherField;
+            value = other;
+          }
+          break;
+        case Min.MIN:
+          if (ValueUtils.compare(other, value, otherField.getType(), field.getType()) < 0) {
+            field = otherField;
+            value = other;
+          }
+          break;
+        case FirstValue.FIRST_VALUE:
+          break;
+        case LastValue.LAST_VALUE:
+          field = otherField;
+          value = other;
+          break;
+        default:
+          throw new IllegalArgumentException(
+              "unsupported partial aggregate function " + identifier);
+      }
+    }
+  }
+}
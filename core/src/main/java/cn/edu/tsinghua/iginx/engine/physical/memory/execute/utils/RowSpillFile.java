@@ -0,0 +1,185 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import cn.edu.tsinghua.iginx.utils.ByteUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 溢写到本地临时文件中的行，写入完成后可按写入顺序读出一次。
+ *
+ * <p>每行依次保存 key（若有）、非空值的 bitmap 和 {@link ByteUtils#getRowByteBuffer} 编码的非空值。
+ */
+public class RowSpillFile implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RowSpillFile.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Header header;
+
+  private final List<DataType> types;
+
+  private final File file;
+
+  private DataOutputStream out;
+
+  private DataInputStream in;
+
+  private long rowCount;
+
+  public RowSpillFile(Header header) throws PhysicalException {
+    this.header = header;
+    this.types = new ArrayList<>();
+    for (Field field : header.getFields()) {
+      types.add(field.getType());
+    }
+    try {
+      this.file = File.createTempFile("iginx-spill-", ".tmp");
+      file.deleteOnExit();
+      this.out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    } catch (IOException e) {
+      throw new PhysicalException("failed to create spill file", e);
+    }
+  }
+
+  public void write(Row row) throws PhysicalException {
+    Object[] values = row.getValues();
+    Bitmap bitmap = new Bitmap(values.length);
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        bitmap.mark(i);
+      }
+    }
+    ByteBuffer buffer = ByteUtils.getRowByteBuffer(values, types);
+    try {
+      if (header.hasKey()) {
+        out.writeLong(row.getKey());
+      }
+      out.write(bitmap.getBytes());
+      out.writeInt(buffer.remaining());
+      out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    } catch (IOException e) {
+      throw new PhysicalException("failed to write spill file " + file, e);
+    }
+    rowCount++;
+  }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /** 结束写入并返回读取全部行的 RowStream，关闭该 RowStream 时删除文件 */
+  public RowStream read() throws PhysicalException {
+    try {
+      out.close();
+      out = null;
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    } catch (IOException e) {
+      throw new PhysicalException("failed to read spill file " + file, e);
+    }
+    return new SpillFileRowStream();
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (out != null) {
+        out.close();
+        out = null;
+      }
+      if (in != null) {
+        in.close();
+        in = null;
+      }
+    } catch (IOException e) {
+      LOGGER.warn("failed to close spill file {}", file, e);
+    }
+    if (file.exists() && !file.delete()) {
+      LOGGER.warn("failed to delete spill file {}", file);
+    }
+  }
+
+  private class SpillFileRowStream implements RowStream {
+
+    private long readCount = 0;
+
+    @Override
+    public Header getHeader() {
+      return header;
+    }
+
+    @Override
+    public void close() {
+      RowSpillFile.this.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return readCount < rowCount;
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+      if (!hasNext()) {
+        throw new IllegalStateException("row stream doesn't have more data!");
+      }
+      try {
+        long key = header.hasKey() ? in.readLong() : 0;
+        byte[] bitmapBytes = new byte[(types.size() + 7) / 8];
+        in.readFully(bitmapBytes);
+        Bitmap bitmap = new Bitmap(types.size(), bitmapBytes);
+        byte[] valueBytes = new byte[in.readInt()];
+        in.readFully(valueBytes);
+        ByteBuffer buffer = ByteBuffer.wrap(valueBytes);
+        Object[] values = new Object[types.size()];
+        for (int i = 0; i < values.length; i++) {
+          if (bitmap.get(i)) {
+            values[i] = ByteUtils.getValueFromByteBufferByDataType(buffer, types.get(i));
+          }
+        }
+        readCount++;
+        return header.hasKey() ? new Row(header, key, values) : new Row(header, values);
+      } catch (IOException e) {
+        throw new PhysicalException("failed to read spill file " + file, e);
+      }
+    }
+  }
+}
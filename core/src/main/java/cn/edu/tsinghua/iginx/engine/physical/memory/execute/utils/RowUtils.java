@@ -19,7 +19,6 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
 
-import static cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils.isCanUseSetQuantifierFunction;
 import static cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils.getHash;
 import static cn.edu.tsinghua.iginx.sql.SQLConstant.DOT;
 
@@ -41,11 +40,9 @@ import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
 import cn.edu.tsinghua.iginx.engine.shared.function.MappingFunction;
 import cn.edu.tsinghua.iginx.engine.shared.function.RowMappingFunction;
-import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.ArithmeticExpr;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.First;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Last;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
@@ -55,11 +52,10 @@ import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -630,24 +626,88 @@ public class RowUtils {
       fields.add(header.getField(index));
     }
 
-    Map<GroupByKey, List<Row>> groups;
+    Map<GroupByKey, GroupAccumulator> groups;
     if (table.getRowSize() > config.getParallelGroupByRowsThreshold()) {
-      groups = parallelBuild(table, colIndex);
+      groups = parallelBuild(groupBy, table, colIndex);
     } else {
-      groups = seqBuild(table, colIndex);
+      groups = seqBuild(groupBy, table, colIndex);
     }
 
-    return applyFunc(groupBy, fields, header, groups);
+    return applyFunc(fields, groups);
   }
 
-  public static List<Row> applyFunc(
-      GroupBy groupBy, List<Field> fields, Header header, Map<GroupByKey, List<Row>> groups)
+  public static GroupByKey buildGroupByKey(Row row, int[] colIndex) {
+    Object[] values = row.getValues();
+    List<Object> hashValues = new ArrayList<>();
+    for (int index : colIndex) {
+      if (values[index] instanceof byte[]) {
+        hashValues.add(new String((byte[]) values[index]));
+      } else {
+        hashValues.add(values[index]);
+      }
+    }
+    return new GroupByKey(hashValues);
+  }
+
+  /**
+   * 将一行数据更新到其所属分组的聚合状态中，分组不存在时创建新的状态
+   *
+   * @param groupBy GroupBy算子
+   * @param header 输入表头
+   * @param groups 各分组的聚合状态
+   * @param row 输入行
+   * @param colIndex GroupBy列的索引
+   */
+  public static void updateGroup(
+      GroupBy groupBy,
+      Header header,
+      Map<GroupByKey, GroupAccumulator> groups,
+      Row row,
+      int[] colIndex)
       throws PhysicalException {
+    GroupByKey key = buildGroupByKey(row, colIndex);
+    GroupAccumulator accumulator = groups.get(key);
+    if (accumulator == null) {
+      accumulator = new GroupAccumulator(groupBy.getFunctionCallList(), header);
+      groups.put(key, accumulator);
+    }
+    accumulator.update(row);
+  }
 
-    if (groups.size() > config.getParallelApplyFuncGroupsThreshold()) {
-      parallelApplyFunc(groupBy, fields, header, groups);
-    } else {
-      seqApplyFunc(groupBy, fields, header, groups);
+  /**
+   * 将partial中的各分组状态按顺序合并到groups中
+   *
+   * @param groups 合并的目标
+   * @param partial 待合并的分组状态，其数据视为位于groups中数据之后
+   */
+  public static void mergeGroups(
+      Map<GroupByKey, GroupAccumulator> groups, Map<GroupByKey, GroupAccumulator> partial)
+      throws PhysicalException {
+    for (Map.Entry<GroupByKey, GroupAccumulator> entry : partial.entrySet()) {
+      GroupAccumulator accumulator = groups.putIfAbsent(entry.getKey(), entry.getValue());
+      if (accumulator != null) {
+        accumulator.merge(entry.getValue());
+      }
+    }
+  }
+
+  public static List<Row> applyFunc(List<Field> fields, Map<GroupByKey, GroupAccumulator> groups)
+      throws PhysicalException {
+    if (!groups.isEmpty()) {
+      // 第一个分组的结果决定输出的表头
+      Iterator<Map.Entry<GroupByKey, GroupAccumulator>> iterator = groups.entrySet().iterator();
+      Map.Entry<GroupByKey, GroupAccumulator> first = iterator.next();
+      for (Row row : finishGroup(first.getKey(), first.getValue())) {
+        fields.addAll(row.getHeader().getFields());
+      }
+      if (groups.size() > config.getParallelApplyFuncGroupsThreshold()) {
+        parallelFinish(groups, first.getKey());
+      } else {
+        while (iterator.hasNext()) {
+          Map.Entry<GroupByKey, GroupAccumulator> entry = iterator.next();
+          finishGroup(entry.getKey(), entry.getValue());
+        }
+      }
     }
 
     Header newHeader = new Header(fields);
@@ -669,195 +729,91 @@ public class RowUtils {
     return cache;
   }
 
-  public static void seqApplyFunc(
-      GroupBy groupBy, List<Field> fields, Header header, Map<GroupByKey, List<Row>> groups)
+  private static List<Row> finishGroup(GroupByKey key, GroupAccumulator accumulator)
       throws PhysicalException {
-    List<FunctionCall> functionCallList = groupBy.getFunctionCallList();
-    for (FunctionCall functionCall : functionCallList) {
-      SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
-      FunctionParams params = functionCall.getParams();
-
-      Header tmpHeader = header;
-      boolean hasAddedFields = false;
-      for (Map.Entry<GroupByKey, List<Row>> entry : groups.entrySet()) {
-        List<Row> group = entry.getValue();
-        List<Row> transformedGroup;
-        if (functionCall.isNeedPreRowTransform()) {
-          List<FunctionCall> list = FunctionUtils.getArithFunctionCalls(params.getExpressions());
-          Table tmp = RowUtils.calRowTransform(new Table(header, group), list);
-          tmpHeader = tmp.getHeader();
-          transformedGroup = tmp.getRows();
-        } else {
-          transformedGroup = group;
-        }
-
-        if (params.isDistinct()) {
-          if (!isCanUseSetQuantifierFunction(function.getIdentifier())) {
-            throw new IllegalArgumentException(
-                "function " + function.getIdentifier() + " can't use DISTINCT");
-          }
-          // min和max无需去重
-          if (!function.getIdentifier().equals(Max.MAX)
-              && !function.getIdentifier().equals(Min.MIN)) {
-            transformedGroup = removeDuplicateRows(transformedGroup);
-          }
-        }
-
-        try {
-          Row row = function.transform(new Table(tmpHeader, transformedGroup), params);
-          if (row != null) {
-            entry.getKey().getFuncRet().addAll(Arrays.asList(row.getValues()));
-            if (!hasAddedFields) {
-              fields.addAll(row.getHeader().getFields());
-              hasAddedFields = true;
-            }
-          }
-        } catch (Exception e) {
-          throw new PhysicalTaskExecuteFailureException(
-              "encounter error when execute set mapping function " + function.getIdentifier() + ".",
-              e);
-        }
-      }
+    List<Row> rows = accumulator.finish();
+    for (Row row : rows) {
+      key.getFuncRet().addAll(Arrays.asList(row.getValues()));
     }
+    return rows;
   }
 
-  private static void parallelApplyFunc(
-      GroupBy groupBy, List<Field> fields, Header header, Map<GroupByKey, List<Row>> groups)
+  private static void parallelFinish(Map<GroupByKey, GroupAccumulator> groups, GroupByKey finished)
       throws PhysicalException {
-    List<FunctionCall> functionCallList = groupBy.getFunctionCallList();
-
-    for (FunctionCall functionCall : functionCallList) {
-      CountDownLatch latch = new CountDownLatch(1);
-      SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
-      FunctionParams params = functionCall.getParams();
-
-      AtomicBoolean hasAddedFields = new AtomicBoolean(false);
-      ForkJoinPool pool = null;
-      try {
-        // 我们可能需要一种退化情况：获取不到线程池的时候，直接串行执行
-        pool = poolQueue.take();
-        pool.submit(
-            () -> {
-              groups
-                  .entrySet()
-                  .parallelStream()
-                  .forEach(
-                      entry -> {
-                        List<Row> group = entry.getValue();
-                        Header tmpHeader = header;
-                        List<Row> transformedGroup = new ArrayList<>();
-                        if (functionCall.isNeedPreRowTransform()) {
-                          List<FunctionCall> list =
-                              FunctionUtils.getArithFunctionCalls(params.getExpressions());
-                          try {
-                            Table tmp = RowUtils.calRowTransform(new Table(header, group), list);
-                            tmpHeader = tmp.getHeader();
-                            transformedGroup.addAll(tmp.getRows());
-                          } catch (PhysicalException e) {
-                            LOGGER.error(
-                                "encounter error when execute set mapping function parameters");
-                          }
-                        } else {
-                          transformedGroup = group;
-                        }
-
-                        if (params.isDistinct()) {
-                          if (!isCanUseSetQuantifierFunction(function.getIdentifier())) {
-                            throw new IllegalArgumentException(
-                                "function " + function.getIdentifier() + " can't use DISTINCT");
-                          }
-                          // min和max无需去重
-                          if (!function.getIdentifier().equals(Max.MAX)
-                              && !function.getIdentifier().equals(Min.MIN)) {
+    ForkJoinPool pool = null;
+    try {
+      // 我们可能需要一种退化情况：获取不到线程池的时候，直接串行执行
+      pool = poolQueue.take();
+      pool.submit(
+              () ->
+                  groups
+                      .entrySet()
+                      .parallelStream()
+                      .filter(entry -> entry.getKey() != finished)
+                      .forEach(
+                          entry -> {
                             try {
-                              transformedGroup = removeDuplicateRows(transformedGroup);
+                              finishGroup(entry.getKey(), entry.getValue());
                             } catch (PhysicalException e) {
-                              LOGGER.error(
-                                  "encounter error when execute distinct in set mapping function");
-                            }
-                          }
-                        }
-
-                        try {
-                          Row row =
-                              function.transform(new Table(tmpHeader, transformedGroup), params);
-                          if (row != null) {
-                            entry.getKey().getFuncRet().addAll(Arrays.asList(row.getValues()));
-                            if (hasAddedFields.compareAndSet(false, true)) {
-                              fields.addAll(row.getHeader().getFields());
+                              throw new IllegalStateException(e);
                             }
-                          }
-                        } catch (Exception e) {
-                          LOGGER.error("encounter error when execute set mapping function ");
-                        }
-                      });
-              latch.countDown();
-            });
-
-        try {
-          latch.await();
-        } catch (InterruptedException e) {
-          throw new PhysicalException("Interrupt when latch await ", e);
-        }
-      } catch (InterruptedException e) {
-        throw new PhysicalException("Interrupt when parallel apply func", e);
-      } finally {
-        if (pool != null) {
-          poolQueue.add(pool);
-        }
+                          }))
+          .get();
+    } catch (InterruptedException e) {
+      throw new PhysicalException("Interrupt when parallel apply func", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IllegalStateException && cause.getCause() instanceof PhysicalException) {
+        throw (PhysicalException) cause.getCause();
+      }
+      throw new PhysicalException("parallel apply func failed", cause);
+    } finally {
+      if (pool != null) {
+        poolQueue.add(pool);
       }
     }
   }
 
-  private static Map<GroupByKey, List<Row>> seqBuild(Table table, int[] colIndex) {
-    Map<GroupByKey, List<Row>> groups = new HashMap<>();
-    while (table.hasNext()) {
-      Row row = table.next();
-      Object[] values = row.getValues();
-      List<Object> hashValues = new ArrayList<>();
-      for (int index : colIndex) {
-        if (values[index] instanceof byte[]) {
-          hashValues.add(new String((byte[]) values[index]));
-        } else {
-          hashValues.add(values[index]);
-        }
-      }
-
-      GroupByKey key = new GroupByKey(hashValues);
-      groups.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+  private static Map<GroupByKey, GroupAccumulator> seqBuild(
+      GroupBy groupBy, Table table, int[] colIndex) throws PhysicalException {
+    Map<GroupByKey, GroupAccumulator> groups = new HashMap<>();
+    for (Row row : table.getRows()) {
+      updateGroup(groupBy, table.getHeader(), groups, row, colIndex);
     }
     return groups;
   }
 
-  private static Map<GroupByKey, List<Row>> parallelBuild(Table table, int[] colIndex)
-      throws PhysicalException {
+  private static Map<GroupByKey, GroupAccumulator> parallelBuild(
+      GroupBy groupBy, Table table, int[] colIndex) throws PhysicalException {
+    // 每个分片独立计算各分组的聚合状态，最后按分片顺序合并
     List<Row> rows = table.getRows();
+    int partitionNum = config.getParallelGroupByPoolSize();
+    int partitionSize = (int) Math.ceil(1.0 * rows.size() / partitionNum);
+    List<Future<Map<GroupByKey, GroupAccumulator>>> futures = new ArrayList<>();
     ForkJoinPool pool = null;
     try {
       pool = poolQueue.take();
-      Map<GroupByKey, List<Row>> groups =
-          pool.submit(
-                  () ->
-                      Collections.synchronizedList(rows)
-                          .parallelStream()
-                          .collect(
-                              Collectors.groupingBy(
-                                  row -> {
-                                    Object[] values = row.getValues();
-                                    List<Object> hashValues = new ArrayList<>();
-                                    for (int index : colIndex) {
-                                      if (values[index] instanceof byte[]) {
-                                        hashValues.add(new String((byte[]) values[index]));
-                                      } else {
-                                        hashValues.add(values[index]);
-                                      }
-                                    }
-                                    return new GroupByKey(hashValues);
-                                  })))
-              .get();
+      for (int i = 0; i < partitionNum; i++) {
+        List<Row> partition =
+            rows.subList(
+                Math.min(rows.size(), i * partitionSize),
+                Math.min(rows.size(), (i + 1) * partitionSize));
+        futures.add(
+            pool.submit(
+                () -> seqBuild(groupBy, new Table(table.getHeader(), partition), colIndex)));
+      }
+      Map<GroupByKey, GroupAccumulator> groups = new HashMap<>();
+      for (Future<Map<GroupByKey, GroupAccumulator>> future : futures) {
+        mergeGroups(groups, future.get());
+      }
       return groups;
-    } catch (InterruptedException | ExecutionException e) {
+    } catch (InterruptedException e) {
       throw new PhysicalException("parallel build failed");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof PhysicalException) {
+        throw (PhysicalException) e.getCause();
+      }
+      throw new PhysicalException("parallel build failed", e.getCause());
     } finally {
       if (pool != null) {
         poolQueue.add(pool);
@@ -867,6 +823,15 @@ public class RowUtils {
 
   public static List<Row> cacheFilterResult(List<Row> rows, Filter filter)
       throws PhysicalException {
+    if (rows.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return cacheFilterResult(rows, FilterCompiler.compile(filter, rows.get(0).getHeader()));
+  }
+
+  /** 使用已绑定 Header 的谓词过滤，谓词无状态，可在并行流中共享 */
+  public static List<Row> cacheFilterResult(List<Row> rows, RowPredicate predicate)
+      throws PhysicalException {
     if (rows.size() > config.getParallelFilterThreshold()) {
       ForkJoinPool pool = null;
       try {
@@ -875,7 +840,7 @@ public class RowUtils {
             .filter(
                 row -> {
                   try {
-                    return FilterUtils.validate(filter, row);
+                    return predicate.test(row);
                   } catch (PhysicalException e) {
                     LOGGER.error("execute parallel filter error, cause by: ", e);
                     return false;
@@ -894,7 +859,7 @@ public class RowUtils {
           .filter(
               row -> {
                 try {
-                  return FilterUtils.validate(filter, row);
+                  return predicate.test(row);
                 } catch (PhysicalException e) {
                   LOGGER.error("execute sequence filter error, cause by: ", e);
                   return false;
@@ -912,8 +877,13 @@ public class RowUtils {
     if (sortByCols == null || sortByCols.isEmpty()) {
       return;
     }
-    Header header = rows.get(0).getHeader();
+    rows.sort(buildRowComparator(rows.get(0).getHeader(), ascendingList, sortByCols));
+  }
 
+  /** 构造按 sortByCols 排序的行比较器，若包含 key 列则 key 需位于首位 */
+  public static Comparator<Row> buildRowComparator(
+      Header header, List<Boolean> ascendingList, List<String> sortByCols)
+      throws PhysicalTaskExecuteFailureException {
     List<Integer> indexList = new ArrayList<>();
     List<DataType> typeList = new ArrayList<>();
     boolean hasKey = false;
@@ -932,33 +902,43 @@ public class RowUtils {
     }
 
     boolean finalHasKey = hasKey;
-    rows.sort(
-        (a, b) -> {
-          if (finalHasKey) {
-            int cmp =
-                ascendingList.get(0)
-                    ? Long.compare(a.getKey(), b.getKey())
-                    : Long.compare(b.getKey(), a.getKey());
-            if (cmp != 0) {
-              return cmp;
-            }
-          }
-          for (int i = 0; i < indexList.size(); i++) {
-            boolean asc = finalHasKey ? ascendingList.get(i + 1) : ascendingList.get(i);
-            int cmp =
-                asc
-                    ? ValueUtils.compare(
-                        a.getValue(indexList.get(i)), b.getValue(indexList.get(i)), typeList.get(i))
-                    : ValueUtils.compare(
-                        b.getValue(indexList.get(i)),
-                        a.getValue(indexList.get(i)),
-                        typeList.get(i));
-            if (cmp != 0) {
-              return cmp;
-            }
-          }
-          return 0;
-        });
+    return (a, b) -> {
+      if (finalHasKey) {
+        int cmp =
+            ascendingList.get(0)
+                ? Long.compare(a.getKey(), b.getKey())
+                : Long.compare(b.getKey(), a.getKey());
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      for (int i = 0; i < indexList.size(); i++) {
+        boolean asc = finalHasKey ? ascendingList.get(i + 1) : ascendingList.get(i);
+        int cmp =
+            asc
+                ? ValueUtils.compare(
+                    a.getValue(indexList.get(i)), b.getValue(indexList.get(i)), typeList.get(i))
+                : ValueUtils.compare(
+                    b.getValue(indexList.get(i)), a.getValue(indexList.get(i)), typeList.get(i));
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return 0;
+    };
+  }
+
+  /** 估算一行在堆中占用的字节数，包括对象头、values 数组及每个装箱值的大致开销 */
+  public static long estimateRowSize(Row row) {
+    long size = 64 + 8L * row.getValues().length;
+    for (Object value : row.getValues()) {
+      if (value instanceof byte[]) {
+        size += 16 + ((byte[]) value).length;
+      } else if (value != null) {
+        size += 16;
+      }
+    }
+    return size;
   }
 
   public static List<Row> removeDuplicateRows(List<Row> rows) throws PhysicalException {
@@ -1202,6 +1182,25 @@ public class RowUtils {
     return new Table(newHeader, newRows);
   }
 
+  /**
+   * 将 FunctionCall 列表中的 arithmetic_expr 替换为缓存表达式编译结果的实例，供单个流逐行计算 RowTransform 时使用
+   *
+   * @param functionCallList RowTransform的FunctionCall列表
+   * @return 替换后的FunctionCall列表
+   */
+  public static List<FunctionCall> compileRowTransform(List<FunctionCall> functionCallList) {
+    List<FunctionCall> ret = new ArrayList<>(functionCallList.size());
+    for (FunctionCall functionCall : functionCallList) {
+      if (functionCall.getFunction() == ArithmeticExpr.getInstance()
+          && !functionCall.isNeedPreRowTransform()) {
+        ret.add(new FunctionCall(ArithmeticExpr.newCompiledInstance(), functionCall.getParams()));
+      } else {
+        ret.add(functionCall);
+      }
+    }
+    return ret;
+  }
+
   public static Row calRowTransform(Row row, List<FunctionCall> functionCallList)
       throws PhysicalException {
     return calRowTransform(row, functionCallList, true);
@@ -24,6 +24,7 @@ import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
@@ -56,15 +57,31 @@ public interface IStorage {
   TaskExecuteResult executeProjectDummyWithSelect(
       Project project, Select select, DataArea dataArea);
 
+  /**
+   * 询问底层是否支持对非叠加分片带聚合下推的查询。两阶段聚合时，SetTransform 为分片上的部分聚合，只包含 sum、count、max、min、first_value 与
+   * last_value，不支持时由存储任务在内存中计算
+   */
   default boolean isSupportProjectWithSetTransform(SetTransform setTransform, DataArea dataArea) {
     return false;
   }
 
+  /** 对非叠加分片带聚合下推的查询，返回的结果为一行，列名需与内存中执行 SetTransform 的结果一致，如 sum(a.b) */
   default TaskExecuteResult executeProjectWithSetTransform(
       Project project, SetTransform setTransform, DataArea dataArea) {
     throw new UnsupportedOperationException();
   }
 
+  /** 询问底层是否支持对非叠加分片带降采样下推的查询，不支持时由存储任务在内存中计算 */
+  default boolean isSupportProjectWithDownsample(Downsample downsample, DataArea dataArea) {
+    return false;
+  }
+
+  /** 对非叠加分片带降采样下推的查询，返回结果的表头需与内存中执行 Downsample 的结果一致 */
+  default TaskExecuteResult executeProjectWithDownsample(
+      Project project, Downsample downsample, DataArea dataArea) {
+    throw new UnsupportedOperationException();
+  }
+
   /** 对非叠加分片删除数据 */
   TaskExecuteResult executeDelete(Delete delete, DataArea dataArea);
 
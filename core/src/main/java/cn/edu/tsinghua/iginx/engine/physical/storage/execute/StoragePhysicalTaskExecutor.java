@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.engine.physical.storage.execute;
 
 import cn.edu.tsinghua.iginx.auth.SessionManager;
+import cn.edu.tsinghua.iginx.conf.Config;
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.NonExecutablePhysicalTaskException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
@@ -28,6 +29,7 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.UnexpectedOperatorExcepti
 import cn.edu.tsinghua.iginx.engine.physical.memory.MemoryPhysicalTaskDispatcher;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutorFactory;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.ReplicaDispatcher;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.StorageManager;
@@ -38,6 +40,7 @@ import cn.edu.tsinghua.iginx.engine.physical.task.GlobalPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.MemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.PrefetchRowStreamWrapper;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
@@ -80,8 +83,9 @@ public class StoragePhysicalTaskExecutor {
 
   private MemoryPhysicalTaskDispatcher memoryTaskExecutor;
 
-  private final int maxCachedPhysicalTaskPerStorage =
-      ConfigDescriptor.getInstance().getConfig().getMaxCachedPhysicalTaskPerStorage();
+  private final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private final int maxCachedPhysicalTaskPerStorage = config.getMaxCachedPhysicalTaskPerStorage();
 
   private StoragePhysicalTaskExecutor() {
     StorageUnitHook storageUnitHook =
@@ -159,17 +163,30 @@ public class StoragePhysicalTaskExecutor {
                                       operators.size() == 2
                                           && operators.get(1).getType()
                                               == OperatorType.SetTransform;
+                                  boolean needDownsamplePushDown =
+                                      operators.size() == 2
+                                          && operators.get(1).getType() == OperatorType.Downsample;
                                   boolean canSetTransformPushDown =
                                       needSetTransformPushDown
                                           && pair.k.isSupportProjectWithSetTransform(
                                               (SetTransform) operators.get(1), dataArea);
+                                  boolean canDownsamplePushDown =
+                                      needDownsamplePushDown
+                                          && pair.k.isSupportProjectWithDownsample(
+                                              (Downsample) operators.get(1), dataArea);
                                   if (isDummyStorageUnit) {
                                     if (needSelectPushDown) {
                                       result =
                                           pair.k.executeProjectDummyWithSelect(
                                               (Project) op, (Select) operators.get(1), dataArea);
-                                    } else if (needSetTransformPushDown) {
-                                      throw new IllegalStateException();
+                                    } else if (needSetTransformPushDown || needDownsamplePushDown) {
+                                      // dummy storage unit does not support set transform or
+                                      // downsample push down, execute it in memory
+                                      result =
+                                          executeInMemory(
+                                              pair.k.executeProjectDummy((Project) op, dataArea),
+                                              (UnaryOperator) operators.get(1),
+                                              task);
                                     } else {
                                       result = pair.k.executeProjectDummy((Project) op, dataArea);
                                     }
@@ -178,36 +195,26 @@ public class StoragePhysicalTaskExecutor {
                                       result =
                                           pair.k.executeProjectWithSelect(
                                               (Project) op, (Select) operators.get(1), dataArea);
-                                    } else if (needSetTransformPushDown) {
-                                      if (canSetTransformPushDown) {
-                                        result =
-                                            pair.k.executeProjectWithSetTransform(
-                                                (Project) op,
-                                                (SetTransform) operators.get(1),
-                                                dataArea);
-                                      } else {
-                                        TaskExecuteResult tempResult =
-                                            pair.k.executeProject((Project) op, dataArea);
-                                        if (tempResult.getException() != null) {
-                                          result = tempResult;
-                                        } else {
-                                          // set transform push down is not supported, execute set
-                                          // transform in memory
-                                          OperatorMemoryExecutor executor =
-                                              OperatorMemoryExecutorFactory.getInstance()
-                                                  .getMemoryExecutor();
-                                          try {
-                                            RowStream rowStream =
-                                                executor.executeUnaryOperator(
-                                                    (SetTransform) operators.get(1),
-                                                    tempResult.getRowStream(),
-                                                    task.getContext());
-                                            result = new TaskExecuteResult(rowStream);
-                                          } catch (PhysicalException e) {
-                                            result = new TaskExecuteResult(e);
-                                          }
-                                        }
-                                      }
+                                    } else if (canSetTransformPushDown) {
+                                      result =
+                                          pair.k.executeProjectWithSetTransform(
+                                              (Project) op,
+                                              (SetTransform) operators.get(1),
+                                              dataArea);
+                                    } else if (canDownsamplePushDown) {
+                                      result =
+                                          pair.k.executeProjectWithDownsample(
+                                              (Project) op,
+                                              (Downsample) operators.get(1),
+                                              dataArea);
+                                    } else if (needSetTransformPushDown || needDownsamplePushDown) {
+                                      // set transform or downsample push down is not supported,
+                                      // execute it in memory
+                                      result =
+                                          executeInMemory(
+                                              pair.k.executeProject((Project) op, dataArea),
+                                              (UnaryOperator) operators.get(1),
+                                              task);
                                     } else {
                                       result = pair.k.executeProject((Project) op, dataArea);
                                     }
@@ -225,6 +232,9 @@ public class StoragePhysicalTaskExecutor {
                                           new NonExecutablePhysicalTaskException(
                                               "unsupported physical task"));
                               }
+                              if (op.getType() == OperatorType.Project) {
+                                result = prefetch(result, pair.v, task);
+                              }
                             } catch (Exception e) {
                               LOGGER.error("execute task error: ", e);
                               result = new TaskExecuteResult(new PhysicalException(e));
@@ -321,6 +331,51 @@ public class StoragePhysicalTaskExecutor {
     }
   }
 
+  /** 在内存中对存储任务的查询结果执行存储引擎无法下推的算子 */
+  private TaskExecuteResult executeInMemory(
+      TaskExecuteResult result, UnaryOperator operator, StoragePhysicalTask task) {
+    if (result.getException() != null) {
+      return result;
+    }
+    OperatorMemoryExecutor executor =
+        OperatorMemoryExecutorFactory.getInstance().getMemoryExecutor();
+    try {
+      return new TaskExecuteResult(
+          executor.executeUnaryOperator(operator, result.getRowStream(), task.getContext()));
+    } catch (PhysicalException e) {
+      return new TaskExecuteResult(e);
+    }
+  }
+
+  /** 查询结果交由存储的任务线程池异步预取，已在内存中的结果无需预取 */
+  private TaskExecuteResult prefetch(
+      TaskExecuteResult result, ExecutorService executor, StoragePhysicalTask task) {
+    if (!config.isEnableStoragePrefetch() || result == null || result.getException() != null) {
+      return result;
+    }
+    RowStream stream = result.getRowStream();
+    if (stream == null || stream instanceof Table) {
+      return result;
+    }
+    try {
+      RowStream prefetched =
+          new PrefetchRowStreamWrapper(
+              stream,
+              executor,
+              config.getStoragePrefetchBatchSize(),
+              config.getStoragePrefetchMemoryThreshold() * 1024,
+              () -> isCancelled(task.getSessionId()));
+      return new TaskExecuteResult(prefetched);
+    } catch (PhysicalException e) {
+      try {
+        stream.close();
+      } catch (PhysicalException ex) {
+        e.addSuppressed(ex);
+      }
+      return new TaskExecuteResult(e);
+    }
+  }
+
   private boolean isCancelled(long sessionId) {
     if (sessionId == 0) { // empty ctx
       return false;
@@ -30,7 +30,9 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** 目前专门用于 CombineNonQuery 操作符 */
+/**
+ * 本身用于 CombineNonQuery 操作符，子类 FoldedMemoryPhysicalTask 与 PartialAggregateMergePhysicalTask 覆盖了执行逻辑
+ */
 public class MultipleMemoryPhysicalTask extends MemoryPhysicalTask {
   @SuppressWarnings("unused")
   private static final Logger LOGGER = LoggerFactory.getLogger(MultipleMemoryPhysicalTask.class);
@@ -0,0 +1,104 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.task;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.PartialAggregateUtils;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 两阶段聚合中的最终合并任务，唯一的算子为原始的 SetTransform 或 Downsample。
+ *
+ * <p>父任务为各分片上计算部分聚合结果的存储任务，Downsample 中跨越分片边界的窗口在此合并。父任务需按分片的 key 顺序排列，以便正确合并 first_value 和
+ * last_value。
+ */
+public class PartialAggregateMergePhysicalTask extends MultipleMemoryPhysicalTask {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(PartialAggregateMergePhysicalTask.class);
+
+  public PartialAggregateMergePhysicalTask(
+      List<Operator> operators, List<PhysicalTask> parentTasks, RequestContext context) {
+    super(operators, parentTasks, context);
+  }
+
+  @Override
+  public TaskExecuteResult execute() {
+    List<Operator> operators = getOperators();
+    if (operators.size() != 1) {
+      return new TaskExecuteResult(
+          new PhysicalException("unexpected partial aggregate merge physical task"));
+    }
+    Operator operator = operators.get(0);
+    if (operator.getType() != OperatorType.SetTransform
+        && operator.getType() != OperatorType.Downsample) {
+      return new TaskExecuteResult(
+          new PhysicalException("unexpected partial aggregate merge physical task"));
+    }
+
+    List<Row> partialRows = new ArrayList<>();
+    try {
+      for (PhysicalTask parentTask : getParentTasks()) {
+        TaskExecuteResult parentResult = parentTask.getResult();
+        if (parentResult == null) {
+          return new TaskExecuteResult(
+              new PhysicalException(
+                  "unexpected parent task execute result for " + this + ": null"));
+        }
+        if (parentResult.getException() != null) {
+          return parentResult;
+        }
+        RowStream stream = parentResult.getRowStream();
+        while (stream.hasNext()) {
+          partialRows.add(stream.next());
+        }
+        stream.close();
+      }
+      RowStream result;
+      if (operator.getType() == OperatorType.SetTransform) {
+        Row row =
+            PartialAggregateUtils.mergePartialRows(
+                ((SetTransform) operator).getFunctionCallList(), partialRows);
+        result = new Table(row.getHeader(), Collections.singletonList(row));
+      } else {
+        result =
+            PartialAggregateUtils.mergePartialWindows(
+                ((Downsample) operator).getFunctionCallList(), partialRows);
+      }
+      result.setContext(getContext());
+      return new TaskExecuteResult(result);
+    } catch (PhysicalException e) {
+      LOGGER.error("encounter error when merge partial aggregate results: ", e);
+      return new TaskExecuteResult(e);
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.engine.shared;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.ArrowResultSerializer;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -64,6 +65,8 @@ public class Result {
   private long queryId;
   private JobState jobState;
   private RowStream resultStream;
+  // 流式查询的结果是否以 Arrow IPC 格式返回，由 ExecuteStatementReq 指定，后续的 fetch 沿用
+  private boolean useArrow;
 
   private long jobId;
   private List<Long> jobIdList;
@@ -239,36 +242,14 @@ public class Result {
                 }
               });
 
-      List<ByteBuffer> valuesList = new ArrayList<>();
-      List<ByteBuffer> bitmapList = new ArrayList<>();
-
-      int cnt = 0;
-      boolean hasKey = resultStream.getHeader().hasKey();
-      while (resultStream.hasNext() && cnt < fetchSize) {
-        Row row = resultStream.next();
-
-        Object[] rawValues = row.getValues();
-        Object[] rowValues = rawValues;
-        if (hasKey) {
-          rowValues = new Object[rawValues.length + 1];
-          rowValues[0] = row.getKey();
-          System.arraycopy(rawValues, 0, rowValues, 1, rawValues.length);
-        }
-        valuesList.add(ByteUtils.getRowByteBuffer(rowValues, types));
-
-        Bitmap bitmap = new Bitmap(rowValues.length);
-        for (int i = 0; i < rowValues.length; i++) {
-          if (rowValues[i] != null) {
-            bitmap.mark(i);
-          }
-        }
-        bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
-        cnt++;
-      }
       resp.setColumns(paths);
       resp.setTagsList(tagsList);
       resp.setDataTypeList(types);
-      resp.setQueryDataSet(new QueryDataSetV2(valuesList, bitmapList));
+      if (useArrow) {
+        resp.setArrowData(ArrowResultSerializer.serialize(resultStream, fetchSize));
+      } else {
+        resp.setQueryDataSet(getQueryDataSet(types, fetchSize));
+      }
 
       // OUTFILE AS STREAM
       resp.setExportStreamDir(exportByteStreamDir);
@@ -332,38 +313,47 @@ public class Result {
 
       resultStream.getHeader().getFields().forEach(field -> types.add(field.getType()));
 
-      List<ByteBuffer> valuesList = new ArrayList<>();
-      List<ByteBuffer> bitmapList = new ArrayList<>();
-
-      int cnt = 0;
-      boolean hasKey = resultStream.getHeader().hasKey();
-      while (resultStream.hasNext() && cnt < fetchSize) {
-        Row row = resultStream.next();
-
-        Object[] rawValues = row.getValues();
-        Object[] rowValues = rawValues;
-        if (hasKey) {
-          rowValues = new Object[rawValues.length + 1];
-          rowValues[0] = row.getKey();
-          System.arraycopy(rawValues, 0, rowValues, 1, rawValues.length);
-        }
-        valuesList.add(ByteUtils.getRowByteBuffer(rowValues, types));
-
-        Bitmap bitmap = new Bitmap(rowValues.length);
-        for (int i = 0; i < rowValues.length; i++) {
-          if (rowValues[i] != null) {
-            bitmap.mark(i);
-          }
-        }
-        bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
-        cnt++;
+      if (useArrow) {
+        resp.setArrowData(ArrowResultSerializer.serialize(resultStream, fetchSize));
+      } else {
+        resp.setQueryDataSet(getQueryDataSet(types, fetchSize));
       }
       resp.setHasMoreResults(resultStream.hasNext());
-      resp.setQueryDataSet(new QueryDataSetV2(valuesList, bitmapList));
     } catch (PhysicalException e) {
       LOGGER.error("unexpected error when load row stream: ", e);
       resp.setStatus(RpcUtils.FAILURE);
     }
     return resp;
   }
+
+  private QueryDataSetV2 getQueryDataSet(List<DataType> types, int fetchSize)
+      throws PhysicalException {
+    List<ByteBuffer> valuesList = new ArrayList<>();
+    List<ByteBuffer> bitmapList = new ArrayList<>();
+
+    int cnt = 0;
+    boolean hasKey = resultStream.getHeader().hasKey();
+    while (resultStream.hasNext() && cnt < fetchSize) {
+      Row row = resultStream.next();
+
+      Object[] rawValues = row.getValues();
+      Object[] rowValues = rawValues;
+      if (hasKey) {
+        rowValues = new Object[rawValues.length + 1];
+        rowValues[0] = row.getKey();
+        System.arraycopy(rawValues, 0, rowValues, 1, rawValues.length);
+      }
+      valuesList.add(ByteUtils.getRowByteBuffer(rowValues, types));
+
+      Bitmap bitmap = new Bitmap(rowValues.length);
+      for (int i = 0; i < rowValues.length; i++) {
+        if (rowValues[i] != null) {
+          bitmap.mark(i);
+        }
+      }
+      bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
+      cnt++;
+    }
+    return new QueryDataSetV2(valuesList, bitmapList);
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * 将 RowStream 按列编码为 Arrow IPC 流格式，用于 ExecuteStatement/FetchResults 的结果传输。
+ *
+ * <p>每次编码得到的数据包含完整的 schema 和若干 record batch，可以被客户端独立解码。若结果带有 key，key 作为第一列，列的顺序与
+ * ExecuteStatementResp 中的 columns 一致。
+ */
+public class ArrowResultSerializer {
+
+  private static final BufferAllocator ROOT_ALLOCATOR = new RootAllocator();
+
+  // 单个 record batch 的最大行数，避免 fetchSize 很大时一次分配过大的向量
+  private static final int MAX_BATCH_ROW_COUNT = 4096;
+
+  private ArrowResultSerializer() {}
+
+  /** 从 stream 中读取至多 fetchSize 行并编码 */
+  public static ByteBuffer serialize(RowStream stream, int fetchSize) throws PhysicalException {
+    Header header = stream.getHeader();
+    boolean hasKey = header.hasKey();
+    List<org.apache.arrow.vector.types.pojo.Field> arrowFields = new ArrayList<>();
+    if (hasKey) {
+      arrowFields.add(toArrowField(Field.KEY.getFullName(), Field.KEY.getType()));
+    }
+    for (Field field : header.getFields()) {
+      arrowFields.add(toArrowField(field.getFullName(), field.getType()));
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (BufferAllocator allocator =
+            ROOT_ALLOCATOR.newChildAllocator("arrow-result", 0, Long.MAX_VALUE);
+        VectorSchemaRoot root = VectorSchemaRoot.create(new Schema(arrowFields), allocator);
+        ArrowStreamWriter writer = new ArrowStreamWriter(root, null, Channels.newChannel(out))) {
+      writer.start();
+      int cnt = 0;
+      while (cnt < fetchSize && stream.hasNext()) {
+        root.allocateNew();
+        int rowCount = 0;
+        while (rowCount < MAX_BATCH_ROW_COUNT && cnt < fetchSize && stream.hasNext()) {
+          Row row = stream.next();
+          int offset = 0;
+          if (hasKey) {
+            ((BigIntVector) root.getVector(0)).setSafe(rowCount, row.getKey());
+            offset = 1;
+          }
+          Object[] values = row.getValues();
+          for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+              setValue(root.getVector(i + offset), rowCount, values[i]);
+            }
+          }
+          rowCount++;
+          cnt++;
+        }
+        root.setRowCount(rowCount);
+        writer.writeBatch();
+      }
+      writer.end();
+    } catch (IOException e) {
+      throw new PhysicalException("encounter error when serialize result as arrow", e);
+    }
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+
+  private static org.apache.arrow.vector.types.pojo.Field toArrowField(
+      String name, DataType dataType) {
+    return new org.apache.arrow.vector.types.pojo.Field(
+        name, FieldType.nullable(toArrowType(dataType)), null);
+  }
+
+  private static ArrowType toArrowType(DataType dataType) {
+    switch (dataType) {
+      case BOOLEAN:
+        return ArrowType.Bool.INSTANCE;
+      case INTEGER:
+        return new ArrowType.Int(32, true);
+      case LONG:
+        return new ArrowType.Int(64, true);
+      case FLOAT:
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+      case DOUBLE:
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+      case BINARY:
+        return ArrowType.Binary.INSTANCE;
+      default:
+        throw new IllegalArgumentException("unsupported data type: " + dataType);
+    }
+  }
+
+  private static void setValue(FieldVector vector, int index, Object value) {
+    if (vector instanceof BitVector) {
+      ((BitVector) vector).setSafe(index, (boolean) value ? 1 : 0);
+    } else if (vector instanceof IntVector) {
+      ((IntVector) vector).setSafe(index, (int) value);
+    } else if (vector instanceof BigIntVector) {
+      ((BigIntVector) vector).setSafe(index, (long) value);
+    } else if (vector instanceof Float4Vector) {
+      ((Float4Vector) vector).setSafe(index, (float) value);
+    } else if (vector instanceof Float8Vector) {
+      ((Float8Vector) vector).setSafe(index, (double) value);
+    } else if (vector instanceof VarBinaryVector) {
+      ((VarBinaryVector) vector).setSafe(index, (byte[]) value);
+    } else {
+      throw new IllegalArgumentException("unsupported vector type: " + vector.getClass());
+    }
+  }
+}
@@ -21,7 +21,8 @@ package cn.edu.tsinghua.iginx.engine.shared.data.read;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import java.util.NoSuchElementException;
 
@@ -31,6 +32,8 @@ public class FilterRowStreamWrapper implements RowStream {
 
   private final Filter filter;
 
+  private RowPredicate predicate;
+
   private Row nextRow;
 
   public FilterRowStreamWrapper(RowStream stream, Filter filter) {
@@ -69,9 +72,12 @@ public class FilterRowStreamWrapper implements RowStream {
   }
 
   private Row loadNextRow() throws PhysicalException {
+    if (predicate == null) {
+      predicate = FilterCompiler.compile(filter, stream.getHeader());
+    }
     while (stream.hasNext()) {
       Row row = stream.next();
-      if (FilterUtils.validate(filter, row)) {
+      if (predicate.test(row)) {
         return row;
       }
     }
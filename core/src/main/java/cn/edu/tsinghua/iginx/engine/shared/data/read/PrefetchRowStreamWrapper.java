@@ -0,0 +1,387 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 在后台线程池中预取底层 RowStream 的包装器，使存储后端的网络往返与内存算子的计算重叠。
+ *
+ * <p>后台任务按批次拉取数据放入队列，已缓存批次的估算大小或批次数超过上限时暂停拉取，消费者取走批次后再继续；后台任务不会阻塞等待，因此多个包装器可以共用一个很小的线程池。 底层
+ * RowStream 可以由后台任务打开，此时 {@link #getHeader()} 等待其打开；读完或出错后立即关闭底层 RowStream。会话关闭后预取停止，消费者收到异常。
+ */
+public class PrefetchRowStreamWrapper implements RowStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchRowStreamWrapper.class);
+
+  private static final Object END = new Object();
+
+  private static final long POLL_INTERVAL_MS = 100;
+
+  private final Callable<? extends RowStream> opener;
+
+  private final Executor executor;
+
+  private final int batchSize;
+
+  private final int maxBatches;
+
+  private final long memoryThreshold;
+
+  private final BooleanSupplier cancelled;
+
+  private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+  private final AtomicLong bufferedBytes = new AtomicLong();
+
+  private final AtomicInteger bufferedBatches = new AtomicInteger();
+
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+  private final ReentrantLock pullLock = new ReentrantLock();
+
+  private final CountDownLatch opened = new CountDownLatch(1);
+
+  // 只在持有 pullLock 时修改，关闭后置为 null
+  private volatile RowStream stream;
+
+  private volatile RequestContext context;
+
+  private volatile Header header;
+
+  private volatile Throwable failure;
+
+  private volatile boolean exhausted = false;
+
+  private volatile boolean closed = false;
+
+  private Batch current;
+
+  private int index;
+
+  private boolean finished = false;
+
+  /**
+   * @param stream 被预取的 RowStream，由包装器负责关闭
+   * @param executor 执行预取的线程池
+   * @param batchSize 每个批次的最大行数
+   * @param memoryThreshold 已缓存批次的估算大小上限，单位为字节
+   * @param cancelled 返回 true 时停止预取，通常表示会话已关闭
+   */
+  public PrefetchRowStreamWrapper(
+      RowStream stream,
+      Executor executor,
+      int batchSize,
+      long memoryThreshold,
+      BooleanSupplier cancelled)
+      throws PhysicalException {
+    this(
+        null,
+        stream,
+        stream.getHeader(),
+        executor,
+        batchSize,
+        Integer.MAX_VALUE,
+        memoryThreshold,
+        cancelled);
+  }
+
+  /**
+   * @param opener 打开被预取的 RowStream，在后台线程池中调用，打开的 RowStream 由包装器负责关闭
+   * @param executor 执行打开与预取的线程池
+   * @param batchSize 每个批次的最大行数
+   * @param maxBatches 已缓存批次数的上限
+   */
+  public PrefetchRowStreamWrapper(
+      Callable<? extends RowStream> opener, Executor executor, int batchSize, int maxBatches) {
+    this(opener, null, null, executor, batchSize, maxBatches, Long.MAX_VALUE, () -> false);
+  }
+
+  private PrefetchRowStreamWrapper(
+      Callable<? extends RowStream> opener,
+      RowStream stream,
+      Header header,
+      Executor executor,
+      int batchSize,
+      int maxBatches,
+      long memoryThreshold,
+      BooleanSupplier cancelled) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batch size should be positive: " + batchSize);
+    }
+    if (maxBatches <= 0) {
+      throw new IllegalArgumentException("max batches should be positive: " + maxBatches);
+    }
+    this.opener = opener;
+    this.executor = executor;
+    this.batchSize = batchSize;
+    this.maxBatches = maxBatches;
+    this.memoryThreshold = memoryThreshold;
+    this.cancelled = cancelled;
+    if (stream != null) {
+      this.stream = stream;
+      this.header = header;
+      this.context = stream.getContext();
+      opened.countDown();
+    }
+    schedule();
+  }
+
+  private static class Batch {
+    private final List<Row> rows;
+    private final long bytes;
+
+    private Batch(List<Row> rows, long bytes) {
+      this.rows = rows;
+      this.bytes = bytes;
+    }
+  }
+
+  /** 已缓存批次的估算大小，单位为字节 */
+  long getBufferedBytes() {
+    return bufferedBytes.get();
+  }
+
+  private boolean isFull() {
+    return bufferedBytes.get() >= memoryThreshold || bufferedBatches.get() >= maxBatches;
+  }
+
+  private void schedule() {
+    if (exhausted || closed || !scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::fill);
+    } catch (RejectedExecutionException e) {
+      scheduled.set(false);
+      finish(new RowFetchException("failed to schedule prefetch of row stream", e));
+    }
+  }
+
+  private void fill() {
+    pullLock.lock();
+    try {
+      if (stream == null && !exhausted && !closed) {
+        RowStream source = opener.call();
+        stream = source;
+        if (context != null) {
+          source.setContext(context);
+        } else {
+          context = source.getContext();
+        }
+        header = source.getHeader();
+        opened.countDown();
+      }
+      while (!exhausted && !closed && !isFull()) {
+        if (cancelled.getAsBoolean()) {
+          finish(new PhysicalTaskExecuteFailureException("prefetch is cancelled"));
+          break;
+        }
+        List<Row> rows = new ArrayList<>(batchSize);
+        long bytes = 0;
+        while (rows.size() < batchSize && stream.hasNext()) {
+          Row row = stream.next();
+          rows.add(row);
+          bytes += RowUtils.estimateRowSize(row);
+        }
+        if (!rows.isEmpty()) {
+          bufferedBytes.addAndGet(bytes);
+          bufferedBatches.incrementAndGet();
+          queue.add(new Batch(rows, bytes));
+        }
+        if (rows.size() < batchSize) {
+          finish(END);
+        }
+      }
+    } catch (Exception e) {
+      finish(e);
+    } finally {
+      if (exhausted) {
+        closeStream();
+      }
+      pullLock.unlock();
+      scheduled.set(false);
+    }
+    // 消费者可能在本任务结束前取走了批次，需要重新检查
+    if (!isFull()) {
+      schedule();
+    }
+  }
+
+  private void finish(Object marker) {
+    if (marker instanceof Throwable) {
+      failure = (Throwable) marker;
+    }
+    exhausted = true;
+    queue.add(marker);
+    opened.countDown();
+  }
+
+  /** 在持有 pullLock 时调用 */
+  private void closeStream() {
+    if (stream == null) {
+      return;
+    }
+    try {
+      stream.close();
+    } catch (PhysicalException | RuntimeException e) {
+      LOGGER.warn("failed to close prefetched row stream", e);
+    }
+    stream = null;
+  }
+
+  private static PhysicalException wrap(Throwable e) {
+    if (e instanceof PhysicalException) {
+      return (PhysicalException) e;
+    }
+    return new RowFetchException(e);
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    try {
+      opened.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RowFetchException("interrupted while opening row stream", e);
+    }
+    if (header == null) {
+      throw wrap(failure != null ? failure : new IllegalStateException("row stream is closed"));
+    }
+    return header;
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    while (current == null || index >= current.rows.size()) {
+      if (finished) {
+        return false;
+      }
+      Object item = take();
+      if (item == END) {
+        finished = true;
+        return false;
+      }
+      if (item instanceof Throwable) {
+        finished = true;
+        throw wrap((Throwable) item);
+      }
+      current = (Batch) item;
+      index = 0;
+      release(current);
+      if (!isFull()) {
+        schedule();
+      }
+    }
+    return true;
+  }
+
+  private Object take() throws PhysicalException {
+    try {
+      while (true) {
+        Object item = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (item != null) {
+          return item;
+        }
+        if (cancelled.getAsBoolean()) {
+          throw new PhysicalTaskExecuteFailureException("prefetch is cancelled");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RowFetchException("interrupted while waiting for prefetched rows", e);
+    }
+  }
+
+  private void release(Batch batch) {
+    bufferedBytes.addAndGet(-batch.bytes);
+    bufferedBatches.decrementAndGet();
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("row stream doesn't have more data!");
+    }
+    return current.rows.get(index++);
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    opened.countDown();
+    // 等待正在进行的拉取结束，最多等待一个批次
+    pullLock.lock();
+    try {
+      Object item;
+      while ((item = queue.poll()) != null) {
+        if (item instanceof Batch) {
+          release((Batch) item);
+        }
+      }
+      current = null;
+      finished = true;
+      if (stream != null) {
+        RowStream toClose = stream;
+        stream = null;
+        toClose.close();
+      }
+    } finally {
+      pullLock.unlock();
+    }
+  }
+
+  @Override
+  public void setContext(RequestContext context) {
+    this.context = context;
+    RowStream current = stream;
+    if (current != null) {
+      current.setContext(context);
+    }
+  }
+
+  @Override
+  public RequestContext getContext() {
+    return context;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.function;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+
+/**
+ * 聚合函数的增量计算状态，由 {@link SetMappingFunction#createAccumulator} 根据输入表头创建。
+ *
+ * <p>输入数据可以逐行或逐批地更新到状态中，finish 返回的结果与对全部输入调用 transform 的结果相同，因此只需为每个分组保存状态，而无需缓存分组内的所有行。
+ * 不同分区上的状态可以通过 merge 合并，合并时认为 other 中的数据位于当前状态的数据之后。
+ */
+public interface Accumulator {
+
+  /** 使用一行数据更新状态，行的表头需与创建状态时的表头一致 */
+  void update(Row row) throws Exception;
+
+  /** 使用批次中 [from, to) 范围内的行更新状态，批次的表头需与创建状态时的表头一致 */
+  default void update(Batch batch, int from, int to) throws Exception {
+    for (int i = from; i < to; i++) {
+      update(batch.getRow(i));
+    }
+  }
+
+  default void update(Batch batch) throws Exception {
+    update(batch, 0, batch.getSize());
+  }
+
+  /** 将同一函数、相同输入表头的另一个状态合并到当前状态中 */
+  void merge(Accumulator other) throws Exception;
+
+  /** 计算最终结果，返回的行不含 key */
+  Row finish() throws Exception;
+}
@@ -0,0 +1,59 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.function;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import java.util.ArrayList;
+import java.util.List;
+
+/** 缓存全部输入行，在 finish 时调用 transform 计算结果，用于没有提供增量计算实现的函数（如 UDAF） */
+public class BufferedAccumulator implements Accumulator {
+
+  private final SetMappingFunction function;
+
+  private final Header header;
+
+  private final FunctionParams params;
+
+  private final List<Row> rows = new ArrayList<>();
+
+  public BufferedAccumulator(SetMappingFunction function, Header header, FunctionParams params) {
+    this.function = function;
+    this.header = header;
+    this.params = params;
+  }
+
+  @Override
+  public void update(Row row) {
+    rows.add(row);
+  }
+
+  @Override
+  public void merge(Accumulator other) {
+    rows.addAll(((BufferedAccumulator) other).rows);
+  }
+
+  @Override
+  public Row finish() throws Exception {
+    return function.transform(new Table(header, rows), params);
+  }
+}
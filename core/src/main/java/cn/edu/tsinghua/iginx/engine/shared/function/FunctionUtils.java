@@ -184,6 +184,23 @@ public class FunctionUtils {
     return expectedParamNumMap.get(identifier.toLowerCase());
   }
 
+  /**
+   * 通过函数的增量计算状态计算整张表的结果
+   *
+   * @param function 聚合函数
+   * @param table 输入的表
+   * @param params 函数参数
+   * @return 聚合结果
+   */
+  public static Row accumulate(SetMappingFunction function, Table table, FunctionParams params)
+      throws Exception {
+    Accumulator accumulator = function.createAccumulator(table.getHeader(), params);
+    for (Row row : table.getRows()) {
+      accumulator.update(row);
+    }
+    return accumulator.finish();
+  }
+
   /**
    * 用于提取table中的表头字段和对应的索引
    *
@@ -194,7 +211,20 @@ public class FunctionUtils {
    */
   public static Pair<List<Field>, List<Integer>> getFieldAndIndices(
       Table table, FunctionParams params, SetMappingFunction function) {
-    List<Field> fields = table.getHeader().getFields();
+    return getFieldAndIndices(table.getHeader(), params, function);
+  }
+
+  /**
+   * 用于提取表头中的目标字段和对应的索引
+   *
+   * @param header 输入的表头
+   * @param params 函数参数
+   * @param function 函数本身，用于命名输出列
+   * @return Pair，第一个元素是输出的表头字段，第二个元素是对应的索引
+   */
+  public static Pair<List<Field>, List<Integer>> getFieldAndIndices(
+      Header header, FunctionParams params, SetMappingFunction function) {
+    List<Field> fields = header.getFields();
     List<String> pathParams = params.getPaths();
 
     if (pathParams == null || pathParams.size() != 1) {
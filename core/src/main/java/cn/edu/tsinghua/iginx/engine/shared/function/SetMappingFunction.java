@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.engine.shared.function;
 
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 
 public interface SetMappingFunction extends Function {
@@ -29,4 +30,14 @@ public interface SetMappingFunction extends Function {
    * 注意如果函数使用next()来遍历Table,则需要在函数执行完毕后调用Table.reset()来重置Table的指针。
    */
   Row transform(Table table, FunctionParams params) throws Exception;
+
+  /**
+   * 创建增量计算状态，输入数据可以逐行或逐批地更新到状态中，而无需缓存为Table。默认实现缓存全部输入行并在结束时调用transform，系统函数均提供了增量实现。
+   *
+   * @param header 输入数据的表头
+   * @param params 函数参数
+   */
+  default Accumulator createAccumulator(Header header, FunctionParams params) throws Exception {
+    return new BufferedAccumulator(this, header, params);
+  }
 }
@@ -19,7 +19,10 @@
  */
 package cn.edu.tsinghua.iginx.engine.shared.function.system;
 
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.ExprCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.ExprUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowEvaluator;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -43,6 +46,11 @@ public class ArithmeticExpr implements RowMappingFunction {
     return INSTANCE;
   }
 
+  /** 创建缓存表达式编译结果的实例，仅供单个流逐行计算时使用，非线程安全 */
+  public static ArithmeticExpr newCompiledInstance() {
+    return new CompiledArithmeticExpr();
+  }
+
   @Override
   public FunctionType getFunctionType() {
     return FunctionType.System;
@@ -65,7 +73,7 @@ public class ArithmeticExpr implements RowMappingFunction {
     }
     Expression expr = params.getExpression(0);
 
-    Value ret = ExprUtils.calculateExpr(row, expr);
+    Value ret = calculate(row, expr);
     if (ret == null) {
       return Row.EMPTY_ROW;
     }
@@ -79,4 +87,24 @@ public class ArithmeticExpr implements RowMappingFunction {
 
     return new Row(header, row.getKey(), new Object[] {ret.getValue()});
   }
+
+  protected Value calculate(Row row, Expression expr) throws PhysicalException {
+    return ExprUtils.calculateExpr(row, expr);
+  }
+
+  private static class CompiledArithmeticExpr extends ArithmeticExpr {
+
+    private Expression expr;
+
+    private RowEvaluator evaluator;
+
+    @Override
+    protected Value calculate(Row row, Expression expr) throws PhysicalException {
+      if (evaluator == null || this.expr != expr) {
+        this.expr = expr;
+        this.evaluator = ExprCompiler.compile(expr, row.getHeader());
+      }
+      return evaluator.evaluate(row);
+    }
+  }
 }
@@ -20,10 +20,13 @@
 package cn.edu.tsinghua.iginx.engine.shared.function.system;
 
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.ColumnVector;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.function.*;
+import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.DataTypeUtils;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.List;
@@ -57,27 +60,51 @@ public class Avg implements SetMappingFunction {
 
   @Override
   public Row transform(Table table, FunctionParams params) throws Exception {
-    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(table, params, this);
-    List<Field> fields = table.getHeader().getFields();
-    List<Field> targetFields = pair.k;
-    List<Integer> indices = pair.v;
+    return FunctionUtils.accumulate(this, table, params);
+  }
 
-    for (Field field : targetFields) {
+  @Override
+  public Accumulator createAccumulator(Header header, FunctionParams params) {
+    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(header, params, this);
+    for (Field field : pair.k) {
       if (!DataTypeUtils.isNumber(field.getType())) {
         throw new IllegalArgumentException("only number can calculate average");
       }
     }
+    return new AvgAccumulator(header, pair.k, pair.v);
+  }
+
+  private static class AvgAccumulator implements Accumulator {
+
+    private final List<Field> targetFields;
+
+    private final int[] indices;
 
-    double[] targetSums = new double[targetFields.size()];
-    long[] counts = new long[targetFields.size()];
-    for (Row row : table.getRows()) {
-      for (int i = 0; i < indices.size(); i++) {
-        int index = indices.get(i);
-        Object value = row.getValue(index);
+    private final DataType[] types;
+
+    private final double[] targetSums;
+
+    private final long[] counts;
+
+    AvgAccumulator(Header header, List<Field> targetFields, List<Integer> indices) {
+      this.targetFields = targetFields;
+      this.indices = indices.stream().mapToInt(Integer::intValue).toArray();
+      this.types = new DataType[this.indices.length];
+      for (int i = 0; i < this.indices.length; i++) {
+        types[i] = header.getField(this.indices[i]).getType();
+      }
+      this.targetSums = new double[this.indices.length];
+      this.counts = new long[this.indices.length];
+    }
+
+    @Override
+    public void update(Row row) {
+      for (int i = 0; i < indices.length; i++) {
+        Object value = row.getValue(indices[i]);
         if (value == null) {
           continue;
         }
-        switch (fields.get(index).getType()) {
+        switch (types[i]) {
           case INTEGER:
             targetSums[i] += (int) value;
             break;
@@ -91,16 +118,57 @@ public class Avg implements SetMappingFunction {
             targetSums[i] += (double) value;
             break;
           default:
-            throw new IllegalStateException(
-                "Unexpected field type: " + fields.get(index).getType().toString());
+            throw new IllegalStateException("Unexpected field type: " + types[i].toString());
         }
         counts[i]++;
       }
     }
-    Object[] targetValues = new Object[targetFields.size()];
-    for (int i = 0; i < targetValues.length; i++) {
-      targetValues[i] = targetSums[i] / counts[i];
+
+    @Override
+    public void update(Batch batch, int from, int to) {
+      for (int i = 0; i < indices.length; i++) {
+        ColumnVector column = batch.getColumn(indices[i]);
+        for (int j = from; j < to; j++) {
+          if (column.isNull(j)) {
+            continue;
+          }
+          switch (types[i]) {
+            case INTEGER:
+              targetSums[i] += column.getInt(j);
+              break;
+            case LONG:
+              targetSums[i] += column.getLong(j);
+              break;
+            case FLOAT:
+              targetSums[i] += column.getFloat(j);
+              break;
+            case DOUBLE:
+              targetSums[i] += column.getDouble(j);
+              break;
+            default:
+              throw new IllegalStateException("Unexpected field type: " + types[i].toString());
+          }
+          counts[i]++;
+        }
+      }
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+      AvgAccumulator accumulator = (AvgAccumulator) other;
+      for (int i = 0; i < indices.length; i++) {
+        targetSums[i] += accumulator.targetSums[i];
+        counts[i] += accumulator.counts[i];
+      }
+    }
+
+    @Override
+    public Row finish() {
+      Object[] targetValues = new Object[targetFields.size()];
+      for (int i = 0; i < targetValues.length; i++) {
+        targetValues[i] = targetSums[i] / counts[i];
+      }
+      return new Row(new Header(targetFields), targetValues);
     }
-    return new Row(new Header(targetFields), targetValues);
   }
 }
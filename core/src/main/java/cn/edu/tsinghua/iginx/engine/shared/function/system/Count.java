@@ -20,6 +20,8 @@
 package cn.edu.tsinghua.iginx.engine.shared.function.system;
 
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.ColumnVector;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -61,24 +63,66 @@ public class Count implements SetMappingFunction {
 
   @Override
   public Row transform(Table table, FunctionParams params) throws Exception {
-    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(table, params, this);
-    List<Field> targetFields = pair.k;
-    List<Integer> indices = pair.v;
+    return FunctionUtils.accumulate(this, table, params);
+  }
+
+  @Override
+  public Accumulator createAccumulator(Header header, FunctionParams params) {
+    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(header, params, this);
+    return new CountAccumulator(pair.k, pair.v);
+  }
+
+  private static class CountAccumulator implements Accumulator {
+
+    private final List<Field> targetFields;
+
+    private final int[] indices;
+
+    private final long[] counts;
+
+    CountAccumulator(List<Field> targetFields, List<Integer> indices) {
+      this.targetFields = targetFields;
+      this.indices = indices.stream().mapToInt(Integer::intValue).toArray();
+      this.counts = new long[this.indices.length];
+    }
 
-    long[] counts = new long[targetFields.size()];
-    for (Row row : table.getRows()) {
+    @Override
+    public void update(Row row) {
       Object[] values = row.getValues();
-      for (int i = 0; i < indices.size(); i++) {
-        int index = indices.get(i);
-        if (values[index] != null) {
+      for (int i = 0; i < indices.length; i++) {
+        if (values[indices[i]] != null) {
           counts[i]++;
         }
       }
     }
-    Object[] targetValues = new Object[targetFields.size()];
-    for (int i = 0; i < counts.length; i++) {
-      targetValues[i] = counts[i];
+
+    @Override
+    public void update(Batch batch, int from, int to) {
+      for (int i = 0; i < indices.length; i++) {
+        ColumnVector column = batch.getColumn(indices[i]);
+        for (int j = from; j < to; j++) {
+          if (!column.isNull(j)) {
+            counts[i]++;
+          }
+        }
+      }
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+      CountAccumulator accumulator = (CountAccumulator) other;
+      for (int i = 0; i < indices.length; i++) {
+        counts[i] += accumulator.counts[i];
+      }
+    }
+
+    @Override
+    public Row finish() {
+      Object[] targetValues = new Object[targetFields.size()];
+      for (int i = 0; i < counts.length; i++) {
+        targetValues[i] = counts[i];
+      }
+      return new Row(new Header(targetFields), targetValues);
     }
-    return new Row(new Header(targetFields), targetValues);
   }
 }
@@ -20,6 +20,8 @@
 package cn.edu.tsinghua.iginx.engine.shared.function.system;
 
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.ColumnVector;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -56,20 +58,66 @@ public class LastValue implements SetMappingFunction {
 
   @Override
   public Row transform(Table table, FunctionParams params) throws Exception {
-    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(table, params, this);
-    List<Field> targetFields = pair.k;
-    List<Integer> indices = pair.v;
-
-    Object[] targetValues = new Object[targetFields.size()];
-    for (Row row : table.getRows()) {
-      for (int i = 0; i < indices.size(); i++) {
-        Object value = row.getValue(indices.get(i));
+    return FunctionUtils.accumulate(this, table, params);
+  }
+
+  @Override
+  public Accumulator createAccumulator(Header header, FunctionParams params) {
+    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(header, params, this);
+    return new LastValueAccumulator(pair.k, pair.v);
+  }
+
+  private static class LastValueAccumulator implements Accumulator {
+
+    private final List<Field> targetFields;
+
+    private final int[] indices;
+
+    private final Object[] targetValues;
+
+    LastValueAccumulator(List<Field> targetFields, List<Integer> indices) {
+      this.targetFields = targetFields;
+      this.indices = indices.stream().mapToInt(Integer::intValue).toArray();
+      this.targetValues = new Object[this.indices.length];
+    }
+
+    @Override
+    public void update(Row row) {
+      for (int i = 0; i < indices.length; i++) {
+        Object value = row.getValue(indices[i]);
         if (value == null) {
           continue;
         }
         targetValues[i] = value;
       }
     }
-    return new Row(new Header(targetFields), targetValues);
+
+    @Override
+    public void update(Batch batch, int from, int to) {
+      for (int i = 0; i < indices.length; i++) {
+        ColumnVector column = batch.getColumn(indices[i]);
+        for (int j = to - 1; j >= from; j--) {
+          if (!column.isNull(j)) {
+            targetValues[i] = column.getObject(j);
+            break;
+          }
+        }
+      }
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+      LastValueAccumulator accumulator = (LastValueAccumulator) other;
+      for (int i = 0; i < indices.length; i++) {
+        if (accumulator.targetValues[i] != null) {
+          targetValues[i] = accumulator.targetValues[i];
+        }
+      }
+    }
+
+    @Override
+    public Row finish() {
+      return new Row(new Header(targetFields), targetValues.clone());
+    }
   }
 }
@@ -20,6 +20,8 @@
 package cn.edu.tsinghua.iginx.engine.shared.function.system;
 
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.ColumnVector;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -57,25 +59,71 @@ public class Max implements SetMappingFunction {
 
   @Override
   public Row transform(Table table, FunctionParams params) throws Exception {
-    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(table, params, this);
-    List<Field> targetFields = pair.k;
-    List<Integer> indices = pair.v;
+    return FunctionUtils.accumulate(this, table, params);
+  }
 
-    Object[] targetValues = new Object[targetFields.size()];
-    for (Row row : table.getRows()) {
-      Object[] values = row.getValues();
-      for (int i = 0; i < indices.size(); i++) {
-        Object value = values[indices.get(i)];
-        if (targetValues[i] == null) {
+  @Override
+  public Accumulator createAccumulator(Header header, FunctionParams params) {
+    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(header, params, this);
+    return new MaxAccumulator(pair.k, pair.v);
+  }
+
+  private static class MaxAccumulator implements Accumulator {
+
+    private final List<Field> targetFields;
+
+    private final int[] indices;
+
+    private final Object[] targetValues;
+
+    MaxAccumulator(List<Field> targetFields, List<Integer> indices) {
+      this.targetFields = targetFields;
+      this.indices = indices.stream().mapToInt(Integer::intValue).toArray();
+      this.targetValues = new Object[this.indices.length];
+    }
+
+    private void accept(int i, Object value) {
+      if (targetValues[i] == null) {
+        targetValues[i] = value;
+      } else {
+        if (value != null
+            && ValueUtils.compare(targetValues[i], value, targetFields.get(i).getType()) < 0) {
           targetValues[i] = value;
-        } else {
-          if (value != null
-              && ValueUtils.compare(targetValues[i], value, targetFields.get(i).getType()) < 0) {
-            targetValues[i] = value;
+        }
+      }
+    }
+
+    @Override
+    public void update(Row row) {
+      Object[] values = row.getValues();
+      for (int i = 0; i < indices.length; i++) {
+        accept(i, values[indices[i]]);
+      }
+    }
+
+    @Override
+    public void update(Batch batch, int from, int to) {
+      for (int i = 0; i < indices.length; i++) {
+        ColumnVector column = batch.getColumn(indices[i]);
+        for (int j = from; j < to; j++) {
+          if (!column.isNull(j)) {
+            accept(i, column.getObject(j));
           }
         }
       }
     }
-    return new Row(new Header(targetFields), targetValues);
+
+    @Override
+    public void merge(Accumulator other) {
+      MaxAccumulator accumulator = (MaxAccumulator) other;
+      for (int i = 0; i < indices.length; i++) {
+        accept(i, accumulator.targetValues[i]);
+      }
+    }
+
+    @Override
+    public Row finish() {
+      return new Row(new Header(targetFields), targetValues.clone());
+    }
   }
 }
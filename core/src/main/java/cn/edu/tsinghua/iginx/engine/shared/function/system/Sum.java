@@ -20,6 +20,8 @@
 package cn.edu.tsinghua.iginx.engine.shared.function.system;
 
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.ColumnVector;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -58,52 +60,117 @@ public class Sum implements SetMappingFunction {
 
   @Override
   public Row transform(Table table, FunctionParams params) throws Exception {
-    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(table, params, this);
-    List<Field> targetFields = pair.k;
-    List<Field> fields = table.getHeader().getFields();
-    List<Integer> indices = pair.v;
+    return FunctionUtils.accumulate(this, table, params);
+  }
 
-    for (Field field : targetFields) {
+  @Override
+  public Accumulator createAccumulator(Header header, FunctionParams params) {
+    Pair<List<Field>, List<Integer>> pair = FunctionUtils.getFieldAndIndices(header, params, this);
+    for (Field field : pair.k) {
       if (!DataTypeUtils.isNumber(field.getType())) {
         throw new IllegalArgumentException("only number can calculate sum");
       }
     }
+    return new SumAccumulator(header, pair.k, pair.v);
+  }
+
+  private static class SumAccumulator implements Accumulator {
+
+    private final List<Field> targetFields;
+
+    private final int[] indices;
 
-    Object[] targetValues = new Object[targetFields.size()];
-    for (int i = 0; i < targetFields.size(); i++) {
-      Field targetField = targetFields.get(i);
-      if (targetField.getType() == DataType.LONG) {
-        targetValues[i] = 0L;
-      } else {
-        targetValues[i] = 0.0D;
+    private final DataType[] types;
+
+    private final long[] longSums;
+
+    private final double[] doubleSums;
+
+    SumAccumulator(Header header, List<Field> targetFields, List<Integer> indices) {
+      this.targetFields = targetFields;
+      this.indices = indices.stream().mapToInt(Integer::intValue).toArray();
+      this.types = new DataType[this.indices.length];
+      for (int i = 0; i < this.indices.length; i++) {
+        types[i] = header.getField(this.indices[i]).getType();
       }
+      this.longSums = new long[this.indices.length];
+      this.doubleSums = new double[this.indices.length];
     }
-    for (Row row : table.getRows()) {
-      for (int i = 0; i < indices.size(); i++) {
-        int index = indices.get(i);
-        Object value = row.getValue(index);
+
+    @Override
+    public void update(Row row) {
+      for (int i = 0; i < indices.length; i++) {
+        Object value = row.getValue(indices[i]);
         if (value == null) {
           continue;
         }
-        switch (fields.get(index).getType()) {
+        switch (types[i]) {
           case INTEGER:
-            targetValues[i] = ((long) targetValues[i]) + (int) value;
+            longSums[i] += (int) value;
             break;
           case LONG:
-            targetValues[i] = ((long) targetValues[i]) + (long) value;
+            longSums[i] += (long) value;
             break;
           case FLOAT:
-            targetValues[i] = ((double) targetValues[i]) + (float) value;
+            doubleSums[i] += (float) value;
             break;
           case DOUBLE:
-            targetValues[i] = ((double) targetValues[i]) + (double) value;
+            doubleSums[i] += (double) value;
             break;
           default:
-            throw new IllegalStateException(
-                "Unexpected field type: " + fields.get(index).getType().toString());
+            throw new IllegalStateException("Unexpected field type: " + types[i].toString());
+        }
+      }
+    }
+
+    @Override
+    public void update(Batch batch, int from, int to) {
+      for (int i = 0; i < indices.length; i++) {
+        ColumnVector column = batch.getColumn(indices[i]);
+        for (int j = from; j < to; j++) {
+          if (column.isNull(j)) {
+            continue;
+          }
+          switch (types[i]) {
+            case INTEGER:
+              longSums[i] += column.getInt(j);
+              break;
+            case LONG:
+              longSums[i] += column.getLong(j);
+              break;
+            case FLOAT:
+              doubleSums[i] += column.getFloat(j);
+              break;
+            case DOUBLE:
+              doubleSums[i] += column.getDouble(j);
+              break;
+            default:
+              throw new IllegalStateException("Unexpected field type: " + types[i].toString());
+          }
+        }
+      }
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+      SumAccumulator accumulator = (SumAccumulator) other;
+      for (int i = 0; i < indices.length; i++) {
+        longSums[i] += accumulator.longSums[i];
+        doubleSums[i] += accumulator.doubleSums[i];
+      }
+    }
+
+    @Override
+    public Row finish() {
+      Object[] targetValues = new Object[targetFields.size()];
+      for (int i = 0; i < targetValues.length; i++) {
+        if (targetFields.get(i).getType() == DataType.LONG) {
+          targetValues[i] = longSums[i];
+        } else {
+          targetValues[i] = doubleSums[i];
         }
       }
+      return new Row(new Header(targetFields), targetValues);
     }
-    return new Row(new Header(targetFields), targetValues);
   }
 }
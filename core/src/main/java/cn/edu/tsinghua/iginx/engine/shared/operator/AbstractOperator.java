@@ -25,6 +25,8 @@ public abstract class AbstractOperator implements Operator {
 
   private final OperatorType type;
 
+  private OperatorCost estimatedCost;
+
   public AbstractOperator() {
     this.type = OperatorType.Unknown;
   }
@@ -40,4 +42,14 @@ public abstract class AbstractOperator implements Operator {
   public OperatorType getType() {
     return type;
   }
+
+  @Override
+  public OperatorCost getEstimatedCost() {
+    return estimatedCost;
+  }
+
+  @Override
+  public void setEstimatedCost(OperatorCost estimatedCost) {
+    this.estimatedCost = estimatedCost;
+  }
 }
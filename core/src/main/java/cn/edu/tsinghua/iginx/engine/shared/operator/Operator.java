@@ -31,4 +31,9 @@ public interface Operator {
   Operator copy();
 
   String getInfo();
+
+  /** 代价优化器估算的代价，未经代价优化时为 null */
+  OperatorCost getEstimatedCost();
+
+  void setEstimatedCost(OperatorCost estimatedCost);
 }
@@ -0,0 +1,46 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.operator;
+
+/** 代价优化器为算子估算的输出行数与累计代价（包含全部子树），用于在 EXPLAIN 中展示 */
+public class OperatorCost {
+
+  private final double rowCount;
+
+  private final double cost;
+
+  public OperatorCost(double rowCount, double cost) {
+    this.rowCount = rowCount;
+    this.cost = cost;
+  }
+
+  public double getRowCount() {
+    return rowCount;
+  }
+
+  public double getCost() {
+    return cost;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Rows: %.0f, Cost: %.2f", rowCount, cost);
+  }
+}
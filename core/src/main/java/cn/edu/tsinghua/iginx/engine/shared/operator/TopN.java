@@ -0,0 +1,147 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.operator;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.ExprUtils;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/** 排序后取前 limit + offset 行中的后 limit 行，由优化器将相邻的 Limit 与 Sort 合并得到 */
+public class TopN extends AbstractUnaryOperator {
+
+  private final List<Expression> sortByExpressions;
+
+  private final List<String> sortByCols;
+
+  private final List<Sort.SortType> sortTypes;
+
+  private final int limit;
+
+  private final int offset;
+
+  public TopN(
+      Source source,
+      List<Expression> sortByExpressions,
+      List<Sort.SortType> sortTypes,
+      int limit,
+      int offset) {
+    super(OperatorType.TopN, source);
+    if (sortByExpressions == null || sortByExpressions.isEmpty()) {
+      throw new IllegalArgumentException("sortBy shouldn't be null");
+    }
+    if (sortTypes == null || sortTypes.isEmpty()) {
+      throw new IllegalArgumentException("sortType shouldn't be null");
+    }
+    if (limit < 0 || offset < 0) {
+      throw new IllegalArgumentException("limit and offset shouldn't less than zero");
+    }
+    this.sortByExpressions = sortByExpressions;
+    this.sortByCols =
+        sortByExpressions.stream().map(Expression::getColumnName).collect(Collectors.toList());
+    this.sortTypes = sortTypes;
+    this.limit = limit;
+    this.offset = offset;
+  }
+
+  public List<Expression> getSortByExpressions() {
+    return sortByExpressions;
+  }
+
+  public List<String> getSortByCols() {
+    return sortByCols;
+  }
+
+  public List<Sort.SortType> getSortTypes() {
+    return sortTypes;
+  }
+
+  public List<Boolean> getAscendingList() {
+    List<Boolean> ascendingList = new ArrayList<>(sortTypes.size());
+    for (Sort.SortType sortType : sortTypes) {
+      ascendingList.add(sortType == Sort.SortType.ASC);
+    }
+    return ascendingList;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public Operator copy() {
+    return copyWithSource(getSource().copy());
+  }
+
+  @Override
+  public UnaryOperator copyWithSource(Source source) {
+    List<Expression> copySortByExpressions = new ArrayList<>(sortByExpressions.size());
+    for (Expression expression : sortByExpressions) {
+      copySortByExpressions.add(ExprUtils.copy(expression));
+    }
+    return new TopN(source, copySortByExpressions, new ArrayList<>(sortTypes), limit, offset);
+  }
+
+  @Override
+  public String getInfo() {
+    return "SortBy: "
+        + String.join(",", sortByCols)
+        + ", SortType: "
+        + sortTypes.stream().map(String::valueOf).collect(Collectors.joining(","))
+        + ", Limit: "
+        + limit
+        + ", Offset: "
+        + offset;
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+    if (object == null || getClass() != object.getClass()) {
+      return false;
+    }
+    TopN topN = (TopN) object;
+    if (this.sortByExpressions.size() != topN.sortByExpressions.size()) {
+      return false;
+    }
+    for (int i = 0; i < this.sortByExpressions.size(); i++) {
+      if (!this.sortByExpressions.get(i).equalExceptAlias(topN.sortByExpressions.get(i))) {
+        return false;
+      }
+    }
+    return sortTypes.equals(topN.sortTypes) && limit == topN.limit && offset == topN.offset;
+  }
+
+  @Override
+  public int hashCode() {
+    // equals 中排序表达式忽略别名比较，因此只使用表达式个数参与计算
+    return Objects.hash(sortByExpressions.size(), sortTypes, limit, offset);
+  }
+}
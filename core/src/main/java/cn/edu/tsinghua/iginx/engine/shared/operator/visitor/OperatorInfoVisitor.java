@@ -35,6 +35,8 @@ public class OperatorInfoVisitor implements OperatorVisitor {
 
   private int depth = -1;
 
+  private boolean hasEstimatedCost = false;
+
   public List<Object[]> getCache() {
     return cache;
   }
@@ -43,6 +45,10 @@ public class OperatorInfoVisitor implements OperatorVisitor {
     return maxLen;
   }
 
+  public boolean hasEstimatedCost() {
+    return hasEstimatedCost;
+  }
+
   @Override
   public void enter() {
     depth++;
@@ -81,10 +87,14 @@ public class OperatorInfoVisitor implements OperatorVisitor {
 
     maxLen = Math.max(maxLen, builder.length());
 
-    Object[] values = new Object[3];
+    Object[] values = new Object[4];
     values[0] = builder.toString();
     values[1] = op.getType().toString().getBytes();
     values[2] = op.getInfo().getBytes();
+    if (op.getEstimatedCost() != null) {
+      values[3] = op.getEstimatedCost().toString().getBytes();
+      hasEstimatedCost = true;
+    }
     cache.add(values);
   }
 }
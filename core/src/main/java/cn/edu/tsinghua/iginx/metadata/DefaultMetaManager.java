@@ -1399,6 +1399,11 @@ public class DefaultMetaManager implements IMetaManager {
     return cache.getMaxValueFromColumns();
   }
 
+  @Override
+  public List<ColumnCalDO> getColumnStatistics(List<String> patterns) {
+    return cache.getColumnStatistics(patterns);
+  }
+
   @Override
   public Map<String, Double> getColumnsData() {
     return storage.getColumnsData();
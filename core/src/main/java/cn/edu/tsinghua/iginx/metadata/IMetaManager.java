@@ -195,6 +195,9 @@ public interface IMetaManager {
 
   List<ColumnCalDO> getMaxValueFromColumns();
 
+  /** 获取与给定模式匹配的列在本节点上的写入统计信息，用于查询代价估算 */
+  List<ColumnCalDO> getColumnStatistics(List<String> patterns);
+
   Map<String, Double> getColumnsData();
 
   int updateVersion();
@@ -27,6 +27,7 @@ import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
 import cn.edu.tsinghua.iginx.sql.statement.InsertStatement;
 import cn.edu.tsinghua.iginx.thrift.AuthType;
 import cn.edu.tsinghua.iginx.utils.Pair;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
 import java.util.*;
 
 public class MetaManagerMock implements IMetaManager {
@@ -36,6 +37,8 @@ public class MetaManagerMock implements IMetaManager {
   private Map<ColumnsInterval, List<FragmentMeta>> getFragmentMapByColumnsIntervalMockMap =
       new HashMap<>();
 
+  private List<ColumnCalDO> columnStatistics = new ArrayList<>();
+
   private static volatile MetaManagerMock INSTANCE;
 
   private MetaManagerMock() {}
@@ -294,6 +297,22 @@ public class MetaManagerMock implements IMetaManager {
     return null;
   }
 
+  public void setColumnStatistics(List<ColumnCalDO> columnStatistics) {
+    this.columnStatistics = columnStatistics;
+  }
+
+  @Override
+  public List<ColumnCalDO> getColumnStatistics(List<String> patterns) {
+    List<ColumnCalDO> ret = new ArrayList<>();
+    for (ColumnCalDO columnCalDO : columnStatistics) {
+      if (patterns.stream()
+          .anyMatch(pattern -> StringUtils.match(columnCalDO.getColumn(), pattern))) {
+        ret.add(columnCalDO);
+      }
+    }
+    return ret;
+  }
+
   @Override
   public Map<String, Double> getColumnsData() {
     return null;
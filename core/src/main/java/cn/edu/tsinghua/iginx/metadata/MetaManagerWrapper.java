@@ -299,6 +299,11 @@ public class MetaManagerWrapper implements IMetaManager {
     return metaManager.getMaxValueFromColumns();
   }
 
+  @Override
+  public List<ColumnCalDO> getColumnStatistics(List<String> patterns) {
+    return metaManager.getColumnStatistics(patterns);
+  }
+
   @Override
   public Map<String, Double> getColumnsData() {
     return metaManager.getColumnsData();
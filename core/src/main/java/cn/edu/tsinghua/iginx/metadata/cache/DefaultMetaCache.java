@@ -25,14 +25,18 @@ import cn.edu.tsinghua.iginx.conf.Config;
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.*;
 import cn.edu.tsinghua.iginx.metadata.entity.*;
+import cn.edu.tsinghua.iginx.policy.simple.ColumnCalAccumulator;
 import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
 import cn.edu.tsinghua.iginx.sql.statement.InsertStatement;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,9 +49,12 @@ public class DefaultMetaCache implements IMetaCache {
 
   private static DefaultMetaCache INSTANCE = null;
 
-  // 分片列表的缓存
+  // 分片列表的缓存，仅由写者在 fragmentLock 写锁下修改
   private final List<Pair<ColumnsInterval, List<FragmentMeta>>> sortedFragmentMetaLists;
 
+  // 分片列表的只读索引，每次修改分片后重新构建，读者无需加锁
+  private volatile FragmentIndex fragmentIndex = FragmentIndex.EMPTY;
+
   private final Map<ColumnsInterval, List<FragmentMeta>> fragmentMetaListMap;
 
   private final List<FragmentMeta> dummyFragments;
@@ -85,11 +92,9 @@ public class DefaultMetaCache implements IMetaCache {
   // 序列信息版本号的缓存
   private final Map<Integer, Integer> columnsVersionMap;
 
-  private final ReadWriteLock insertRecordLock = new ReentrantReadWriteLock();
-
-  private final Map<String, ColumnCalDO> columnCalDOConcurrentHashMap = new ConcurrentHashMap<>();
-
-  private final Random random = new Random();
+  // 各列的写入统计信息，写入时无锁累加，读取时合并
+  private final Map<String, ColumnCalAccumulator> columnCalAccumulatorMap =
+      new ConcurrentHashMap<>();
 
   // transform task 的缓存
   private final Map<String, TransformTaskMeta> transformTaskMetaMap;
@@ -148,58 +153,6 @@ public class DefaultMetaCache implements IMetaCache {
     return minKey;
   }
 
-  private static List<Pair<ColumnsInterval, List<FragmentMeta>>> searchFragmentSeriesList(
-      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragmentSeriesList,
-      ColumnsInterval columnsInterval) {
-    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
-    if (fragmentSeriesList.isEmpty()) {
-      return resultList;
-    }
-    int index = 0;
-    while (index < fragmentSeriesList.size()
-        && !fragmentSeriesList.get(index).k.isCompletelyAfter(columnsInterval)) {
-      if (fragmentSeriesList.get(index).k.isIntersect(columnsInterval)) {
-        resultList.add(fragmentSeriesList.get(index));
-      }
-      index++;
-    }
-    return resultList;
-  }
-
-  private static List<Pair<ColumnsInterval, List<FragmentMeta>>> searchFragmentSeriesList(
-      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragmentSeriesList, String columnName) {
-    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
-    if (fragmentSeriesList.isEmpty()) {
-      return resultList;
-    }
-    int index = 0;
-    while (index < fragmentSeriesList.size()
-        && !fragmentSeriesList.get(index).k.isAfter(columnName)) {
-      if (fragmentSeriesList.get(index).k.isContain(columnName)) {
-        resultList.add(fragmentSeriesList.get(index));
-      }
-      index++;
-    }
-    return resultList;
-  }
-
-  private static List<FragmentMeta> searchFragmentList(
-      List<FragmentMeta> fragmentMetaList, KeyInterval keyInterval) {
-    List<FragmentMeta> resultList = new ArrayList<>();
-    if (fragmentMetaList.isEmpty()) {
-      return resultList;
-    }
-    int index = 0;
-    while (index < fragmentMetaList.size()
-        && !fragmentMetaList.get(index).getKeyInterval().isAfter(keyInterval)) {
-      if (fragmentMetaList.get(index).getKeyInterval().isIntersect(keyInterval)) {
-        resultList.add(fragmentMetaList.get(index));
-      }
-      index++;
-    }
-    return resultList;
-  }
-
   private static List<FragmentMeta> searchFragmentList(
       List<FragmentMeta> fragmentMetaList, String storageUnitId) {
     List<FragmentMeta> resultList = new ArrayList<>();
@@ -244,11 +197,16 @@ public class DefaultMetaCache implements IMetaCache {
           kickOffHistoryFragment();
         }
       }
+      rebuildFragmentIndex();
     } finally {
       fragmentLock.writeLock().unlock();
     }
   }
 
+  private void rebuildFragmentIndex() {
+    fragmentIndex = FragmentIndex.build(sortedFragmentMetaLists);
+  }
+
   private void kickOffHistoryFragment() {
     long nextMinKey = 0L;
     for (List<FragmentMeta> fragmentList : fragmentMetaListMap.values()) {
@@ -288,6 +246,7 @@ public class DefaultMetaCache implements IMetaCache {
           kickOffHistoryFragment();
         }
       }
+      rebuildFragmentIndex();
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -327,6 +286,7 @@ public class DefaultMetaCache implements IMetaCache {
       List<FragmentMeta> fragmentMetaList =
           fragmentMetaListMap.get(fragmentMeta.getColumnsInterval());
       fragmentMetaList.set(fragmentMetaList.size() - 1, fragmentMeta);
+      rebuildFragmentIndex();
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -349,6 +309,7 @@ public class DefaultMetaCache implements IMetaCache {
           columnsIntervalListPair.k = fragmentMeta.getColumnsInterval();
         }
       }
+      rebuildFragmentIndex();
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -374,6 +335,7 @@ public class DefaultMetaCache implements IMetaCache {
           break;
         }
       }
+      rebuildFragmentIndex();
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -383,13 +345,7 @@ public class DefaultMetaCache implements IMetaCache {
   public Map<ColumnsInterval, List<FragmentMeta>> getFragmentMapByColumnsInterval(
       ColumnsInterval columnsInterval) {
     Map<ColumnsInterval, List<FragmentMeta>> resultMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      searchFragmentSeriesList(sortedFragmentMetaLists, columnsInterval)
-          .forEach(e -> resultMap.put(e.k, e.v));
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex.search(columnsInterval).forEach(e -> resultMap.put(e.k, new ArrayList<>(e.v)));
     return resultMap;
   }
 
@@ -413,15 +369,10 @@ public class DefaultMetaCache implements IMetaCache {
   @Override
   public Map<ColumnsInterval, FragmentMeta> getLatestFragmentMap() {
     Map<ColumnsInterval, FragmentMeta> latestFragmentMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      sortedFragmentMetaLists.stream()
-          .map(e -> e.v.get(e.v.size() - 1))
-          .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
-          .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex.getAll().stream()
+        .map(e -> e.v.get(e.v.size() - 1))
+        .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
+        .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
     return latestFragmentMap;
   }
 
@@ -429,15 +380,10 @@ public class DefaultMetaCache implements IMetaCache {
   public Map<ColumnsInterval, FragmentMeta> getLatestFragmentMapByColumnsInterval(
       ColumnsInterval columnsInterval) {
     Map<ColumnsInterval, FragmentMeta> latestFragmentMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      searchFragmentSeriesList(sortedFragmentMetaLists, columnsInterval).stream()
-          .map(e -> e.v.get(e.v.size() - 1))
-          .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
-          .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex.search(columnsInterval).stream()
+        .map(e -> e.v.get(e.v.size() - 1))
+        .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
+        .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
     return latestFragmentMap;
   }
 
@@ -445,19 +391,16 @@ public class DefaultMetaCache implements IMetaCache {
   public Map<ColumnsInterval, List<FragmentMeta>> getFragmentMapByColumnsIntervalAndKeyInterval(
       ColumnsInterval columnsInterval, KeyInterval keyInterval) {
     Map<ColumnsInterval, List<FragmentMeta>> resultMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      searchFragmentSeriesList(sortedFragmentMetaLists, columnsInterval)
-          .forEach(
-              e -> {
-                List<FragmentMeta> fragmentMetaList = searchFragmentList(e.v, keyInterval);
-                if (!fragmentMetaList.isEmpty()) {
-                  resultMap.put(e.k, fragmentMetaList);
-                }
-              });
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex
+        .search(columnsInterval)
+        .forEach(
+            e -> {
+              List<FragmentMeta> fragmentMetaList =
+                  FragmentIndex.searchFragmentList(e.v, keyInterval);
+              if (!fragmentMetaList.isEmpty()) {
+                resultMap.put(e.k, fragmentMetaList);
+              }
+            });
     return resultMap;
   }
 
@@ -482,46 +425,20 @@ public class DefaultMetaCache implements IMetaCache {
 
   @Override
   public List<FragmentMeta> getFragmentListByColumnName(String columnName) {
-    List<FragmentMeta> resultList;
-    fragmentLock.readLock().lock();
-    try {
-      resultList =
-          searchFragmentSeriesList(sortedFragmentMetaLists, columnName).stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .sorted(
-                  (o1, o2) -> {
-                    if (o1.getColumnsInterval().getStartColumn() == null
-                        && o2.getColumnsInterval().getStartColumn() == null) return 0;
-                    else if (o1.getColumnsInterval().getStartColumn() == null) return -1;
-                    else if (o2.getColumnsInterval().getStartColumn() == null) return 1;
-                    return o1.getColumnsInterval()
-                        .getStartColumn()
-                        .compareTo(o2.getColumnsInterval().getStartColumn());
-                  })
-              .collect(Collectors.toList());
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    // 索引按起始列有序，结果无需再排序
+    List<FragmentMeta> resultList = new ArrayList<>();
+    fragmentIndex.search(columnName).forEach(e -> resultList.addAll(e.v));
     return resultList;
   }
 
   @Override
   public FragmentMeta getLatestFragmentByColumnName(String columnName) {
-    FragmentMeta result;
-    fragmentLock.readLock().lock();
-    try {
-      result =
-          searchFragmentSeriesList(sortedFragmentMetaLists, columnName).stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
-              .findFirst()
-              .orElse(null);
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
-    return result;
+    return fragmentIndex.search(columnName).stream()
+        .map(e -> e.v)
+        .flatMap(List::stream)
+        .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
+        .findFirst()
+        .orElse(null);
   }
 
   @Override
@@ -542,43 +459,28 @@ public class DefaultMetaCache implements IMetaCache {
   @Override
   public List<FragmentMeta> getFragmentListByColumnNameAndKeyInterval(
       String columnName, KeyInterval keyInterval) {
-    List<FragmentMeta> resultList;
-    fragmentLock.readLock().lock();
-    try {
-      List<FragmentMeta> fragmentMetas =
-          searchFragmentSeriesList(sortedFragmentMetaLists, columnName).stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
-              .collect(Collectors.toList());
-      resultList = searchFragmentList(fragmentMetas, keyInterval);
-    } finally {
-      fragmentLock.readLock().unlock();
+    List<FragmentMeta> resultList = new ArrayList<>();
+    for (Pair<ColumnsInterval, List<FragmentMeta>> pair : fragmentIndex.search(columnName)) {
+      resultList.addAll(FragmentIndex.searchFragmentList(pair.v, keyInterval));
     }
+    resultList.sort(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()));
     return resultList;
   }
 
   @Override
   public List<FragmentMeta> getFragmentListByStorageUnitId(String storageUnitId) {
-    List<FragmentMeta> resultList;
-    fragmentLock.readLock().lock();
-    try {
-      List<FragmentMeta> fragmentMetas =
-          sortedFragmentMetaLists.stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
-              .collect(Collectors.toList());
-      resultList = searchFragmentList(fragmentMetas, storageUnitId);
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
-    return resultList;
+    List<FragmentMeta> fragmentMetas =
+        fragmentIndex.getAll().stream()
+            .map(e -> e.v)
+            .flatMap(List::stream)
+            .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
+            .collect(Collectors.toList());
+    return searchFragmentList(fragmentMetas, storageUnitId);
   }
 
   @Override
   public boolean hasFragment() {
-    return !sortedFragmentMetaLists.isEmpty() || (enableFragmentCacheControl && minKey != 0L);
+    return !fragmentIndex.isEmpty() || (enableFragmentCacheControl && minKey != 0L);
   }
 
   @Override
@@ -740,13 +642,8 @@ public class DefaultMetaCache implements IMetaCache {
   @Override
   public List<FragmentMeta> getFragments() {
     List<FragmentMeta> fragments = new ArrayList<>();
-    fragmentLock.readLock().lock();
-    try {
-      for (Pair<ColumnsInterval, List<FragmentMeta>> pair : sortedFragmentMetaLists) {
-        fragments.addAll(pair.v);
-      }
-    } finally {
-      fragmentLock.readLock().unlock();
+    for (Pair<ColumnsInterval, List<FragmentMeta>> pair : fragmentIndex.getAll()) {
+      fragments.addAll(pair.v);
     }
     return fragments;
   }
@@ -827,51 +724,64 @@ public class DefaultMetaCache implements IMetaCache {
 
   @Override
   public void saveColumnsData(InsertStatement statement) {
-    insertRecordLock.writeLock().lock();
-    try {
-      long now = System.currentTimeMillis();
-
-      RawData data = statement.getRawData();
-      List<String> paths = data.getPaths();
-      if (data.isColumnData()) {
-        DataView view =
-            new ColumnDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
-        for (int i = 0; i < view.getPathNum(); i++) {
-          long minn = Long.MAX_VALUE;
-          long maxx = Long.MIN_VALUE;
-          long totalByte = 0L;
-          int count = 0;
-          BitmapView bitmapView = view.getBitmapView(i);
-          for (int j = 0; j < view.getKeySize(); j++) {
-            if (bitmapView.get(j)) {
-              minn = Math.min(minn, view.getKey(j));
-              maxx = Math.max(maxx, view.getKey(j));
-              if (view.getDataType(i) == DataType.BINARY) {
-                totalByte += ((byte[]) view.getValue(i, j)).length;
-              } else {
-                totalByte += transDatatypeToByte(view.getDataType(i));
-              }
-              count++;
+    long now = System.currentTimeMillis();
+
+    RawData data = statement.getRawData();
+    List<String> paths = data.getPaths();
+    // 列数过多时按比例随机采样列，并按采样率放大统计值
+    int sampleThreshold = config.getColumnStatisticsSampleThreshold();
+    double sampleRatio =
+        sampleThreshold > 0 && paths.size() > sampleThreshold
+            ? 1.0 * sampleThreshold / paths.size()
+            : 1.0;
+    boolean[] sampled = new boolean[paths.size()];
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < sampled.length; i++) {
+      sampled[i] = sampleRatio >= 1.0 || random.nextDouble() < sampleRatio;
+    }
+
+    if (data.isColumnData()) {
+      DataView view = new ColumnDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
+      for (int i = 0; i < view.getPathNum(); i++) {
+        if (!sampled[i]) {
+          continue;
+        }
+        long minn = Long.MAX_VALUE;
+        long maxx = Long.MIN_VALUE;
+        long totalByte = 0L;
+        int count = 0;
+        BitmapView bitmapView = view.getBitmapView(i);
+        for (int j = 0; j < view.getKeySize(); j++) {
+          if (bitmapView.get(j)) {
+            minn = Math.min(minn, view.getKey(j));
+            maxx = Math.max(maxx, view.getKey(j));
+            if (view.getDataType(i) == DataType.BINARY) {
+              totalByte += ((byte[]) view.getValue(i, j)).length;
+            } else {
+              totalByte += transDatatypeToByte(view.getDataType(i));
             }
-          }
-          if (count > 0) {
-            updateColumnCalDOConcurrentHashMap(paths.get(i), now, minn, maxx, totalByte, count);
+            count++;
           }
         }
-      } else {
-        DataView view = new RowDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
-        long[] totalByte = new long[view.getPathNum()];
-        int[] count = new int[view.getPathNum()];
-        long[] minn = new long[view.getPathNum()];
-        long[] maxx = new long[view.getPathNum()];
-        Arrays.fill(minn, Long.MAX_VALUE);
-        Arrays.fill(maxx, Long.MIN_VALUE);
-
-        for (int i = 0; i < view.getKeySize(); i++) {
-          BitmapView bitmapView = view.getBitmapView(i);
-          int index = 0;
-          for (int j = 0; j < view.getPathNum(); j++) {
-            if (bitmapView.get(j)) {
+        if (count > 0) {
+          accumulateColumnCal(paths.get(i), now, minn, maxx, totalByte, count, sampleRatio);
+        }
+      }
+    } else {
+      DataView view = new RowDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
+      long[] totalByte = new long[view.getPathNum()];
+      int[] count = new int[view.getPathNum()];
+      long[] minn = new long[view.getPathNum()];
+      long[] maxx = new long[view.getPathNum()];
+      Arrays.fill(minn, Long.MAX_VALUE);
+      Arrays.fill(maxx, Long.MIN_VALUE);
+
+      for (int i = 0; i < view.getKeySize(); i++) {
+        BitmapView bitmapView = view.getBitmapView(i);
+        int index = 0;
+        for (int j = 0; j < view.getPathNum(); j++) {
+          if (bitmapView.get(j)) {
+            if (sampled[j]) {
               minn[j] = Math.min(minn[j], view.getKey(i));
               maxx[j] = Math.max(maxx[j], view.getKey(i));
               if (view.getDataType(j) == DataType.BINARY) {
@@ -880,31 +790,28 @@ public class DefaultMetaCache implements IMetaCache {
                 totalByte[j] += transDatatypeToByte(view.getDataType(j));
               }
               count[j]++;
-              index++;
             }
+            index++;
           }
         }
-        for (int i = 0; i < count.length; i++) {
-          if (count[i] > 0) {
-            updateColumnCalDOConcurrentHashMap(
-                paths.get(i), now, minn[i], maxx[i], totalByte[i], count[i]);
-          }
+      }
+      for (int i = 0; i < count.length; i++) {
+        if (count[i] > 0) {
+          accumulateColumnCal(
+              paths.get(i), now, minn[i], maxx[i], totalByte[i], count[i], sampleRatio);
         }
       }
-    } finally {
-      insertRecordLock.writeLock().unlock();
     }
   }
 
-  private void updateColumnCalDOConcurrentHashMap(
-      String path, long now, long minn, long maxx, long totalByte, int count) {
-    ColumnCalDO columnCalDO = new ColumnCalDO();
-    columnCalDO.setColumn(path);
-    if (columnCalDOConcurrentHashMap.containsKey(path)) {
-      columnCalDO = columnCalDOConcurrentHashMap.get(path);
+  private void accumulateColumnCal(
+      String path, long now, long minn, long maxx, long totalByte, int count, double sampleRatio) {
+    ColumnCalAccumulator accumulator = columnCalAccumulatorMap.get(path);
+    if (accumulator == null) {
+      accumulator = columnCalAccumulatorMap.computeIfAbsent(path, ColumnCalAccumulator::new);
     }
-    columnCalDO.merge(now, minn, maxx, count, totalByte);
-    columnCalDOConcurrentHashMap.put(path, columnCalDO);
+    accumulator.accumulate(
+        now, minn, maxx, Math.round(count / sampleRatio), Math.round(totalByte / sampleRatio));
   }
 
   private long transDatatypeToByte(DataType dataType) {
@@ -924,29 +831,32 @@ public class DefaultMetaCache implements IMetaCache {
 
   @Override
   public List<ColumnCalDO> getMaxValueFromColumns() {
-    List<ColumnCalDO> ret;
-    insertRecordLock.readLock().lock();
-    try {
-      ret =
-          columnCalDOConcurrentHashMap.values().stream()
-              .filter(e -> random.nextDouble() < config.getCachedTimeseriesProb())
-              .collect(Collectors.toList());
-    } finally {
-      insertRecordLock.readLock().unlock();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return columnCalAccumulatorMap.values().stream()
+        .filter(e -> random.nextDouble() < config.getCachedTimeseriesProb())
+        .map(ColumnCalAccumulator::snapshot)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<ColumnCalDO> getColumnStatistics(List<String> patterns) {
+    List<ColumnCalDO> ret = new ArrayList<>();
+    List<Predicate<String>> matchers =
+        patterns.stream().map(StringUtils::toColumnMatcher).collect(Collectors.toList());
+    for (ColumnCalAccumulator accumulator : columnCalAccumulatorMap.values()) {
+      String column = accumulator.getColumn();
+      if (matchers.stream().anyMatch(matcher -> matcher.test(column))) {
+        ret.add(accumulator.snapshot());
+      }
     }
     return ret;
   }
 
   @Override
   public double getSumFromColumns() {
-    double ret;
-    insertRecordLock.readLock().lock();
-    try {
-      ret = columnCalDOConcurrentHashMap.values().stream().mapToDouble(ColumnCalDO::getValue).sum();
-    } finally {
-      insertRecordLock.readLock().unlock();
-    }
-    return ret;
+    return columnCalAccumulatorMap.values().stream()
+        .mapToDouble(e -> e.snapshot().getValue())
+        .sum();
   }
 
   @Override
@@ -0,0 +1,210 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 分片在（列区间，key 区间）上的二维索引。
+ *
+ * <p>列区间按起始列排序，并在其上建立记录子树最大结束列的线段树，查询时先二分找到起始列不晚于查询终点的前缀，再只访问结束列可能晚于查询起点的子树； 每个列区间内的分片按 key
+ * 排序，通过二分查找定位与查询 key 区间相交的分片。
+ *
+ * <p>索引不可变，分片发生变化时由写者重新构建并整体替换，读者无需加锁。
+ */
+public final class FragmentIndex {
+
+  public static final FragmentIndex EMPTY = new FragmentIndex(new ArrayList<>());
+
+  private final List<Pair<ColumnsInterval, List<FragmentMeta>>> entries;
+
+  private final int size;
+
+  /** 线段树节点对应区间内最大的结束列，结束列为 null 表示无上界，用 unbounded 标记 */
+  private final String[] maxEndColumns;
+
+  private final boolean[] unbounded;
+
+  private FragmentIndex(List<Pair<ColumnsInterval, List<FragmentMeta>>> entries) {
+    this.entries = entries;
+    this.size = entries.size();
+    this.maxEndColumns = new String[Math.max(4 * size, 1)];
+    this.unbounded = new boolean[Math.max(4 * size, 1)];
+    if (size > 0) {
+      buildTree(1, 0, size);
+    }
+  }
+
+  /**
+   * 由按列区间排序的分片列表构建索引，分片列表会被复制，构建后对原列表的修改不影响索引
+   *
+   * @param sortedFragmentMetaLists 按列区间排序，每个列区间内的分片按 key 排序
+   */
+  public static FragmentIndex build(
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> sortedFragmentMetaLists) {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> entries = new ArrayList<>();
+    for (Pair<ColumnsInterval, List<FragmentMeta>> pair : sortedFragmentMetaLists) {
+      if (!pair.v.isEmpty()) {
+        entries.add(new Pair<>(pair.k, Collections.unmodifiableList(new ArrayList<>(pair.v))));
+      }
+    }
+    return entries.isEmpty() ? EMPTY : new FragmentIndex(entries);
+  }
+
+  private static String realEndColumn(ColumnsInterval columnsInterval) {
+    String endColumn = columnsInterval.getEndColumn();
+    if (endColumn != null && columnsInterval.getSchemaPrefix() != null) {
+      return columnsInterval.getSchemaPrefix() + "." + endColumn;
+    }
+    return endColumn;
+  }
+
+  private void buildTree(int node, int left, int right) {
+    if (right - left == 1) {
+      String endColumn = realEndColumn(entries.get(left).k);
+      unbounded[node] = endColumn == null;
+      maxEndColumns[node] = endColumn;
+      return;
+    }
+    int mid = (left + right) >>> 1;
+    buildTree(2 * node, left, mid);
+    buildTree(2 * node + 1, mid, right);
+    if (unbounded[2 * node] || unbounded[2 * node + 1]) {
+      unbounded[node] = true;
+    } else {
+      String leftMax = maxEndColumns[2 * node];
+      String rightMax = maxEndColumns[2 * node + 1];
+      maxEndColumns[node] = leftMax.compareTo(rightMax) >= 0 ? leftMax : rightMax;
+    }
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** 按列区间顺序返回全部列区间及其分片，分片列表不可修改 */
+  public List<Pair<ColumnsInterval, List<FragmentMeta>>> getAll() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  /** 按列区间顺序返回与给定列区间相交的列区间及其分片，分片列表不可修改 */
+  public List<Pair<ColumnsInterval, List<FragmentMeta>>> search(ColumnsInterval columnsInterval) {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
+    // 起始列晚于查询终点的列区间位于有序数组的尾部
+    int end = firstIndexAfter(e -> e.isCompletelyAfter(columnsInterval));
+    collect(
+        1,
+        0,
+        size,
+        end,
+        columnsInterval.getStartColumn(),
+        e -> e.isIntersect(columnsInterval),
+        resultList);
+    return resultList;
+  }
+
+  /** 按列区间顺序返回包含给定列的列区间及其分片，分片列表不可修改 */
+  public List<Pair<ColumnsInterval, List<FragmentMeta>>> search(String columnName) {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
+    int end = firstIndexAfter(e -> e.isAfter(columnName));
+    collect(1, 0, size, end, columnName, e -> e.isContain(columnName), resultList);
+    return resultList;
+  }
+
+  /** 返回分片列表中与给定 key 区间相交的分片。分片需按 key 排序且互不重叠，即同一列区间内的分片，此时结束 key 同样有序，可二分定位第一个可能相交的分片 */
+  public static List<FragmentMeta> searchFragmentList(
+      List<FragmentMeta> fragmentMetaList, KeyInterval keyInterval) {
+    List<FragmentMeta> resultList = new ArrayList<>();
+    int left = 0, right = fragmentMetaList.size();
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (fragmentMetaList.get(mid).getKeyInterval().getEndKey() > keyInterval.getStartKey()) {
+        right = mid;
+      } else {
+        left = mid + 1;
+      }
+    }
+    int index = left;
+    while (index < fragmentMetaList.size()
+        && !fragmentMetaList.get(index).getKeyInterval().isAfter(keyInterval)) {
+      if (fragmentMetaList.get(index).getKeyInterval().isIntersect(keyInterval)) {
+        resultList.add(fragmentMetaList.get(index));
+      }
+      index++;
+    }
+    return resultList;
+  }
+
+  /** 二分查找第一个满足 predicate 的位置，predicate 需在按起始列排序的数组上单调 */
+  private int firstIndexAfter(Predicate<ColumnsInterval> predicate) {
+    int left = 0, right = size;
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (predicate.test(entries.get(mid).k)) {
+        right = mid;
+      } else {
+        left = mid + 1;
+      }
+    }
+    return left;
+  }
+
+  private void collect(
+      int node,
+      int left,
+      int right,
+      int end,
+      String startColumn,
+      Predicate<ColumnsInterval> predicate,
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList) {
+    if (left >= end || !mayEndAfter(node, startColumn)) {
+      return;
+    }
+    if (right - left == 1) {
+      Pair<ColumnsInterval, List<FragmentMeta>> entry = entries.get(left);
+      if (predicate.test(entry.k)) {
+        resultList.add(entry);
+      }
+      return;
+    }
+    int mid = (left + right) >>> 1;
+    collect(2 * node, left, mid, end, startColumn, predicate, resultList);
+    collect(2 * node + 1, mid, right, end, startColumn, predicate, resultList);
+  }
+
+  /** 子树中是否可能存在结束列晚于 startColumn 的列区间，与 ColumnsInterval.isIntersect 的判断一致 */
+  private boolean mayEndAfter(int node, String startColumn) {
+    return startColumn == null
+        || unbounded[node]
+        || StringUtils.compare(startColumn, maxEndColumns[node], false) < 0;
+  }
+}
@@ -132,6 +132,8 @@ public interface IMetaCache {
 
   List<ColumnCalDO> getMaxValueFromColumns();
 
+  List<ColumnCalDO> getColumnStatistics(List<String> patterns);
+
   double getSumFromColumns();
 
   Map<Integer, Integer> getColumnsVersionMap();
@@ -0,0 +1,72 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.policy.simple;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单列写入统计信息的并发累加器。
+ *
+ * <p>各项统计由 LongAdder/LongAccumulator 分段累加，写入时不加锁，读取时才合并为 ColumnCalDO 快照。
+ */
+public class ColumnCalAccumulator {
+
+  private final String column;
+
+  private final LongAccumulator recentKey = new LongAccumulator(Math::max, 0L);
+
+  private final LongAccumulator firstKey = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+  private final LongAccumulator lastKey = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder totalByte = new LongAdder();
+
+  public ColumnCalAccumulator(String column) {
+    this.column = column;
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public void accumulate(long recentKey, long firstKey, long lastKey, long count, long totalByte) {
+    this.recentKey.accumulate(recentKey);
+    this.firstKey.accumulate(firstKey);
+    this.lastKey.accumulate(lastKey);
+    this.count.add(count);
+    this.totalByte.add(totalByte);
+  }
+
+  /** 合并当前的累加结果，并发写入时各项统计之间不保证来自同一时刻 */
+  public ColumnCalDO snapshot() {
+    ColumnCalDO columnCalDO = new ColumnCalDO();
+    columnCalDO.setColumn(column);
+    columnCalDO.merge(
+        recentKey.get(),
+        firstKey.get(),
+        lastKey.get(),
+        (int) Math.min(count.sum(), Integer.MAX_VALUE),
+        totalByte.sum());
+    return columnCalDO;
+  }
+}
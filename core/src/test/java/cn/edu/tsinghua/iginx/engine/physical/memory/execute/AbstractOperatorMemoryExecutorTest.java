@@ -35,15 +35,19 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
 import cn.edu.tsinghua.iginx.engine.shared.expr.KeyExpression;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Last;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
 import cn.edu.tsinghua.iginx.engine.shared.operator.CrossJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Except;
+import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
 import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Intersect;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
@@ -56,6 +60,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
@@ -2214,6 +2219,46 @@ public abstract class AbstractOperatorMemoryExecutorTest {
     assertEquals(0, index);
   }
 
+  @Test
+  public void testTopN() throws PhysicalException {
+    Table table = generateTableForUnaryOperator(true);
+    Table copyTable = generateTableForUnaryOperator(true);
+    TopN topN =
+        new TopN(
+            EmptySource.EMPTY_SOURCE,
+            Collections.singletonList(new KeyExpression(SQLConstant.KEY)),
+            Collections.singletonList(Sort.SortType.DESC),
+            3,
+            2);
+    RowStream stream = getExecutor().executeUnaryOperator(topN, copyTable, null);
+    assertEquals(table.getHeader(), stream.getHeader());
+    int index = table.getRowSize() - 2;
+    while (stream.hasNext()) {
+      index--;
+      Row targetRow = stream.next();
+      Row row = table.getRow(index);
+      assertEquals(row, targetRow);
+    }
+    assertEquals(table.getRowSize() - 5, index);
+
+    topN =
+        new TopN(
+            EmptySource.EMPTY_SOURCE,
+            Collections.singletonList(new BaseExpression("a.b.c")),
+            Collections.singletonList(Sort.SortType.ASC),
+            100,
+            8);
+    stream = getExecutor().executeUnaryOperator(topN, generateTableForUnaryOperator(true), null);
+    index = 8;
+    while (stream.hasNext()) {
+      Row targetRow = stream.next();
+      Row row = table.getRow(index);
+      assertEquals(row, targetRow);
+      index++;
+    }
+    assertEquals(table.getRowSize(), index);
+  }
+
   @Test
   public void testLimit() throws PhysicalException {
     Table table = generateTableForUnaryOperator(true);
@@ -2378,4 +2423,82 @@ public abstract class AbstractOperatorMemoryExecutorTest {
 
     assertFalse(stream.hasNext());
   }
+
+  private Table generateTableForAggregate() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("a.g", DataType.INTEGER), new Field("a.v", DataType.INTEGER)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      rows.add(new Row(header, i, new Object[] {i % 3, i * i % 5}));
+    }
+    return new Table(header, rows);
+  }
+
+  @Test
+  public void testSetTransformWithDistinct() throws PhysicalException {
+    Table table = generateTableForAggregate();
+
+    List<Expression> expressions = Collections.singletonList(new BaseExpression("a.v"));
+    SetTransform setTransform =
+        new SetTransform(
+            EmptySource.EMPTY_SOURCE,
+            Arrays.asList(
+                new FunctionCall(
+                    Count.getInstance(), new FunctionParams(expressions, null, null, true)),
+                new FunctionCall(
+                    Sum.getInstance(), new FunctionParams(expressions, null, null, true))));
+
+    RowStream stream = getExecutor().executeUnaryOperator(setTransform, table, null);
+
+    Header targetHeader = stream.getHeader();
+    assertEquals(2, targetHeader.getFields().size());
+    assertEquals("count(distinct a.v)", targetHeader.getFields().get(0).getFullName());
+    assertEquals("sum(distinct a.v)", targetHeader.getFields().get(1).getFullName());
+
+    assertTrue(stream.hasNext());
+    Row targetRow = stream.next();
+    // a.v 的取值为 0, 1, 4
+    assertEquals(3L, targetRow.getValue(0));
+    assertEquals(5L, targetRow.getValue(1));
+    assertFalse(stream.hasNext());
+  }
+
+  @Test
+  public void testGroupBy() throws PhysicalException {
+    Table table = generateTableForAggregate();
+
+    FunctionParams params = new FunctionParams(new BaseExpression("a.v"));
+    GroupBy groupBy =
+        new GroupBy(
+            EmptySource.EMPTY_SOURCE,
+            Collections.singletonList(new BaseExpression("a.g")),
+            Arrays.asList(
+                new FunctionCall(Sum.getInstance(), params),
+                new FunctionCall(Count.getInstance(), params)));
+
+    RowStream stream = getExecutor().executeUnaryOperator(groupBy, table, null);
+
+    Header targetHeader = stream.getHeader();
+    assertFalse(targetHeader.hasKey());
+    assertEquals(3, targetHeader.getFields().size());
+    assertEquals("a.g", targetHeader.getFields().get(0).getFullName());
+    assertEquals("sum(a.v)", targetHeader.getFields().get(1).getFullName());
+    assertEquals("count(a.v)", targetHeader.getFields().get(2).getFullName());
+
+    long[] sums = new long[3];
+    for (Row row : table.getRows()) {
+      sums[(int) row.getValue(0)] += (int) row.getValue(1);
+    }
+    int groupCnt = 0;
+    while (stream.hasNext()) {
+      Row targetRow = stream.next();
+      int group = (int) targetRow.getValue(0);
+      assertEquals(sums[group], targetRow.getValue(1));
+      assertEquals(4L, targetRow.getValue(2));
+      groupCnt++;
+    }
+    assertEquals(3, groupCnt);
+  }
 }
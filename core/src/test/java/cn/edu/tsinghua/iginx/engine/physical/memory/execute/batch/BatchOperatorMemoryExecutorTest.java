@@ -0,0 +1,185 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.AbstractOperatorMemoryExecutorTest;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.StreamOperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchOperatorMemoryExecutorTest extends AbstractOperatorMemoryExecutorTest {
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private final BatchOperatorMemoryExecutor executor;
+
+  private int originBatchSize;
+
+  public BatchOperatorMemoryExecutorTest() {
+    this.executor = BatchOperatorMemoryExecutor.getInstance();
+  }
+
+  @Override
+  protected OperatorMemoryExecutor getExecutor() {
+    return executor;
+  }
+
+  @Before
+  public void setUp() {
+    originBatchSize = config.getBatchExecutorBatchSize();
+  }
+
+  @After
+  public void tearDown() {
+    config.setBatchExecutorBatchSize(originBatchSize);
+  }
+
+  private Table generateMixedTypeTable() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(
+                new Field("a.int", DataType.INTEGER),
+                new Field("a.long", DataType.LONG),
+                new Field("a.float", DataType.FLOAT),
+                new Field("a.double", DataType.DOUBLE)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      rows.add(
+          new Row(
+              header,
+              i * 2,
+              new Object[] {
+                i % 3 == 0 ? null : i,
+                i % 4 == 0 ? null : (long) i * 10,
+                i % 5 == 0 ? null : i + 0.1f,
+                i % 7 == 0 ? null : i + 0.5
+              }));
+    }
+    return new Table(header, rows);
+  }
+
+  private void assertSameAsStream(UnaryOperator operator) throws PhysicalException {
+    RowStream expected =
+        StreamOperatorMemoryExecutor.getInstance()
+            .executeUnaryOperator(operator, generateMixedTypeTable(), null);
+    RowStream actual = executor.executeUnaryOperator(operator, generateMixedTypeTable(), null);
+
+    Header expectedHeader = expected.getHeader();
+    Header actualHeader = actual.getHeader();
+    assertEquals(expectedHeader.hasKey(), actualHeader.hasKey());
+    assertEquals(expectedHeader.getFields(), actualHeader.getFields());
+    while (expected.hasNext()) {
+      assertTrue(actual.hasNext());
+      Row expectedRow = expected.next();
+      Row actualRow = actual.next();
+      assertEquals(expectedRow.getKey(), actualRow.getKey());
+      assertEquals(Arrays.asList(expectedRow.getValues()), Arrays.asList(actualRow.getValues()));
+    }
+    assertFalse(actual.hasNext());
+  }
+
+  @Test
+  public void testSelectAcrossBatches() throws PhysicalException {
+    config.setBatchExecutorBatchSize(3);
+    assertSameAsStream(
+        new Select(
+            EmptySource.EMPTY_SOURCE,
+            new AndFilter(
+                Arrays.asList(
+                    new ValueFilter("a.int", Op.GE, new Value(4L)),
+                    new NotFilter(new ValueFilter("a.float", Op.E, new Value(9.1D))),
+                    new OrFilter(
+                        Arrays.asList(
+                            new KeyFilter(Op.L, 30),
+                            new ValueFilter("a.double", Op.G, new Value(17.5D)))))),
+            null));
+  }
+
+  @Test
+  public void testSelectWithSameTypeValueFilter() throws PhysicalException {
+    config.setBatchExecutorBatchSize(4);
+    assertSameAsStream(
+        new Select(
+            EmptySource.EMPTY_SOURCE, new ValueFilter("a.long", Op.NE, new Value(50L)), null));
+    assertSameAsStream(
+        new Select(
+            EmptySource.EMPTY_SOURCE, new ValueFilter("a.float", Op.LE, new Value(7.1f)), null));
+  }
+
+  @Test
+  public void testProjectSkipsNullRowsAcrossBatches() throws PhysicalException {
+    config.setBatchExecutorBatchSize(2);
+    assertSameAsStream(
+        new Project(EmptySource.EMPTY_SOURCE, Arrays.asList("a.int", "a.long"), null));
+  }
+
+  @Test
+  public void testDownsampleAcrossBatches() throws PhysicalException {
+    config.setBatchExecutorBatchSize(3);
+    FunctionParams params = new FunctionParams(Collections.singletonList(new BaseExpression("a")));
+    assertSameAsStream(
+        new Downsample(
+            EmptySource.EMPTY_SOURCE,
+            5,
+            5,
+            Arrays.asList(
+                new FunctionCall(Sum.getInstance(), params),
+                new FunctionCall(Count.getInstance(), params)),
+            new KeyRange(0, 40)));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class AggregatePushDownUtilsTest {
+
+  private static FunctionParams params(String path) {
+    return new FunctionParams(Collections.singletonList(new BaseExpression(path)));
+  }
+
+  @Test
+  public void testSupportFunctionCalls() {
+    List<String> functions = Arrays.asList(Sum.SUM, Count.COUNT);
+    assertTrue(
+        AggregatePushDownUtils.isSupportPushDown(
+            Arrays.asList(
+                new FunctionCall(Sum.getInstance(), params("a")),
+                new FunctionCall(Count.getInstance(), params("a"))),
+            functions));
+    assertFalse(
+        AggregatePushDownUtils.isSupportPushDown(
+            Collections.singletonList(new FunctionCall(FirstValue.getInstance(), params("a"))),
+            functions));
+
+    FunctionParams distinct = params("a");
+    distinct.setDistinct(true);
+    assertFalse(
+        AggregatePushDownUtils.isSupportPushDown(
+            Collections.singletonList(new FunctionCall(Sum.getInstance(), distinct)), functions));
+  }
+
+  @Test
+  public void testSupportDataType() {
+    assertTrue(AggregatePushDownUtils.isSupportPushDown(Count.COUNT, DataType.BINARY));
+    assertTrue(AggregatePushDownUtils.isSupportPushDown(FirstValue.FIRST_VALUE, DataType.BOOLEAN));
+    assertFalse(AggregatePushDownUtils.isSupportPushDown(Sum.SUM, DataType.BINARY));
+    assertTrue(AggregatePushDownUtils.isSupportPushDown(Sum.SUM, DataType.INTEGER));
+  }
+
+  @Test
+  public void testToAggregateValue() {
+    assertEquals(0L, AggregatePushDownUtils.toAggregateValue(null, Count.COUNT, DataType.LONG));
+    assertEquals(6L, AggregatePushDownUtils.toAggregateValue(6.0, Sum.SUM, DataType.LONG));
+    assertEquals(1.5, AggregatePushDownUtils.toAggregateValue(1.5f, Sum.SUM, DataType.DOUBLE));
+  }
+
+  @Test
+  public void testExecuteInMemory() throws PhysicalException {
+    Header header = new Header(Field.KEY, Collections.singletonList(new Field("a", DataType.LONG)));
+    Table table =
+        new Table(
+            header,
+            Arrays.asList(
+                new Row(header, 1L, new Object[] {1L}), new Row(header, 2L, new Object[] {2L})));
+    SetTransform setTransform =
+        new SetTransform(
+            EmptySource.EMPTY_SOURCE,
+            Collections.singletonList(new FunctionCall(Sum.getInstance(), params("a"))));
+
+    TaskExecuteResult result =
+        AggregatePushDownUtils.executeInMemory(setTransform, new TaskExecuteResult(table));
+    RowStream rowStream = result.getRowStream();
+    assertNotNull(rowStream);
+    assertTrue(rowStream.hasNext());
+    assertEquals(3L, rowStream.next().getValue(0));
+
+    PhysicalException failure = new PhysicalException("project failed");
+    result = AggregatePushDownUtils.executeInMemory(setTransform, new TaskExecuteResult(failure));
+    assertEquals(failure, result.getException());
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class ExternalSorterTest {
+
+  @Test
+  public void testSortWithSpill() throws PhysicalException {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(
+                new Field("a.v", DataType.INTEGER),
+                new Field("a.s", DataType.BINARY),
+                new Field("a.d", DataType.DOUBLE)));
+    Random random = new Random(42);
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      Object d = i % 13 == 0 ? null : i * 0.5;
+      rows.add(
+          new Row(
+              header,
+              i,
+              new Object[] {random.nextInt(100), ("s" + random.nextInt(50)).getBytes(), d}));
+    }
+    List<Boolean> ascendingList = Arrays.asList(false, true);
+    List<String> sortByCols = Arrays.asList("a.v", "a.s");
+
+    List<Row> expected = new ArrayList<>(rows);
+    RowUtils.sortRows(expected, ascendingList, sortByCols);
+
+    try (ExternalSorter sorter = new ExternalSorter(header, ascendingList, sortByCols, 16 * 1024)) {
+      for (Row row : rows) {
+        sorter.add(row);
+      }
+      assertTrue(sorter.getRunCount() > 1);
+      RowStream stream = sorter.sort();
+      for (Row row : expected) {
+        assertTrue(stream.hasNext());
+        Row actual = stream.next();
+        assertEquals(row.getKey(), actual.getKey());
+        assertTrue(Arrays.deepEquals(row.getValues(), actual.getValues()));
+      }
+      assertFalse(stream.hasNext());
+      stream.close();
+    }
+  }
+}
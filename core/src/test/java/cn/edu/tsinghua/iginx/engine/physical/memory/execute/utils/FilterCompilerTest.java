@@ -0,0 +1,201 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BinaryExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BracketExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.CaseWhenExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.ConstantExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.KeyExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.MultipleExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.expr.UnaryExpression;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ExprFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.InFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class FilterCompilerTest {
+
+  private static final List<Field> FIELDS =
+      Arrays.asList(
+          new Field("a.l", DataType.LONG),
+          new Field("a.d", DataType.DOUBLE),
+          new Field("a.s", DataType.BINARY),
+          new Field("a.i", DataType.INTEGER),
+          new Field("b.i", DataType.INTEGER));
+
+  private static final Header HEADER = new Header(Field.KEY, FIELDS);
+
+  // 没有 key 列的行，key 为 Row.NON_EXISTED_KEY
+  private static final Header KEYLESS_HEADER = new Header(FIELDS);
+
+  private static List<Row> rows() {
+    return rows(HEADER);
+  }
+
+  private static List<Row> rows(Header header) {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      rows.add(
+          new Row(
+              header,
+              header.hasKey() ? i : Row.NON_EXISTED_KEY,
+              new Object[] {
+                i % 4 == 0 ? null : (long) i,
+                i * 0.5,
+                ("s" + i).getBytes(),
+                i % 3 == 0 ? null : i * 2,
+                10 - i
+              }));
+    }
+    return rows;
+  }
+
+  private static void assertSameAsInterpreted(Filter filter) throws PhysicalException {
+    assertSameAsInterpreted(filter, HEADER);
+  }
+
+  private static void assertSameAsInterpreted(Filter filter, Header header)
+      throws PhysicalException {
+    // 行的 Header 与编译时的 Header 是同一个对象，总是走编译后的谓词
+    RowPredicate predicate = FilterCompiler.compile(filter, header);
+    for (Row row : rows(header)) {
+      assertEquals(filter + " on " + row, FilterUtils.validate(filter, row), predicate.test(row));
+    }
+  }
+
+  private static void assertSameAsInterpreted(Expression expr) throws PhysicalException {
+    RowEvaluator evaluator = ExprCompiler.compile(expr, HEADER);
+    for (Row row : rows()) {
+      assertEquals(
+          expr + " on " + row, ExprUtils.calculateExpr(row, expr), evaluator.evaluate(row));
+    }
+  }
+
+  @Test
+  public void testSimpleFilters() throws PhysicalException {
+    for (Op op : Arrays.asList(Op.E, Op.NE, Op.G, Op.GE, Op.L, Op.LE)) {
+      assertSameAsInterpreted(new KeyFilter(op, 7));
+      assertSameAsInterpreted(new KeyFilter(op, 7), KEYLESS_HEADER);
+      assertSameAsInterpreted(new NotFilter(new KeyFilter(op, 7)), KEYLESS_HEADER);
+      assertSameAsInterpreted(new ValueFilter("a.l", op, new Value(7L)), KEYLESS_HEADER);
+      assertSameAsInterpreted(new ValueFilter("a.l", op, new Value(7L)));
+      assertSameAsInterpreted(new ValueFilter("a.d", op, new Value(3.5D)));
+      assertSameAsInterpreted(new ValueFilter("a.i", op, new Value(7L))); // 混合数值类型
+      assertSameAsInterpreted(new ValueFilter("a.s", op, new Value("s12")));
+      assertSameAsInterpreted(new ValueFilter("a.missing", op, new Value(1)));
+      assertSameAsInterpreted(new PathFilter("a.i", op, "b.i"));
+      assertSameAsInterpreted(new PathFilter("a.l", op, "a.d"));
+    }
+    assertSameAsInterpreted(new ValueFilter("a.s", Op.LIKE, new Value("s1.*")));
+    assertSameAsInterpreted(new ValueFilter("a.s", Op.NOT_LIKE, new Value("s1.*")));
+    assertSameAsInterpreted(new ValueFilter("a.l", Op.LIKE, new Value("s1.*")));
+  }
+
+  @Test
+  public void testPatternFilters() throws PhysicalException {
+    assertSameAsInterpreted(new ValueFilter("*.i", Op.G, new Value(4)));
+    assertSameAsInterpreted(new ValueFilter("*.i", Op.G_AND, new Value(4)));
+    assertSameAsInterpreted(new ValueFilter("a.*", Op.NE, new Value(6L)));
+    for (InFilter.InOp inOp : InFilter.InOp.values()) {
+      List<Value> values = Arrays.asList(new Value(4), new Value(6), new Value(8));
+      assertSameAsInterpreted(new InFilter("a.i", inOp, values));
+      assertSameAsInterpreted(new InFilter("*.i", inOp, values));
+    }
+  }
+
+  @Test
+  public void testCompositeFilters() throws PhysicalException {
+    Filter f1 = new ValueFilter("a.l", Op.G, new Value(5L));
+    Filter f2 = new KeyFilter(Op.L, 15);
+    Filter f3 = new ValueFilter("a.s", Op.LIKE, new Value("s1.*"));
+    assertSameAsInterpreted(new AndFilter(Arrays.asList(f1, f2)));
+    assertSameAsInterpreted(new OrFilter(Arrays.asList(f1, f3)));
+    assertSameAsInterpreted(new NotFilter(new AndFilter(Arrays.asList(f2, f3))));
+    assertSameAsInterpreted(new AndFilter(Arrays.asList(new BoolFilter(true), f1)));
+    assertSameAsInterpreted(
+        new ExprFilter(
+            new BinaryExpression(
+                new BaseExpression("b.i"), new ConstantExpression(2), Operator.STAR),
+            Op.GE,
+            new BaseExpression("a.d")));
+  }
+
+  @Test
+  public void testExpressions() throws PhysicalException {
+    Expression l = new BaseExpression("a.l");
+    Expression d = new BaseExpression("a.d");
+    Expression i = new BaseExpression("b.i");
+    assertSameAsInterpreted(new KeyExpression("key"));
+    assertSameAsInterpreted(new BinaryExpression(i, new ConstantExpression(3), Operator.MOD));
+    assertSameAsInterpreted(new BinaryExpression(i, d, Operator.PLUS));
+    assertSameAsInterpreted(new UnaryExpression(Operator.MINUS, new BracketExpression(d)));
+    assertSameAsInterpreted(
+        new MultipleExpression(
+            Arrays.asList(i, d, new ConstantExpression(2D)),
+            Arrays.asList(Operator.MINUS, Operator.PLUS, Operator.DIV)));
+    assertSameAsInterpreted(
+        new CaseWhenExpression(
+            Arrays.asList(
+                new ValueFilter("b.i", Op.G, new Value(5)),
+                new ValueFilter("b.i", Op.G, new Value(0))),
+            Arrays.asList(new ConstantExpression(1L), l),
+            new ConstantExpression(-1L),
+            "case"));
+    assertSameAsInterpreted(new BaseExpression("a.missing"));
+  }
+
+  @Test
+  public void testUnboundHeader() throws PhysicalException {
+    Filter filter = new ValueFilter("a.i", Op.G, new Value(4));
+    RowPredicate predicate = FilterCompiler.compile(filter, HEADER);
+    // 列顺序不同的行回退到逐行解释执行
+    Header other =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("b.i", DataType.INTEGER), new Field("a.i", DataType.INTEGER)));
+    Row row = new Row(other, 1, new Object[] {10, 2});
+    assertEquals(false, predicate.test(row));
+    row = new Row(other, 1, new Object[] {2, 10});
+    assertEquals(true, predicate.test(row));
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.HashInnerJoinLazyStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.HashOuterJoinLazyStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.JoinAlgType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GraceHashJoinTest {
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private long originThreshold;
+
+  @Before
+  public void setUp() {
+    originThreshold = config.getHashJoinMemoryThreshold();
+  }
+
+  @After
+  public void tearDown() {
+    config.setHashJoinMemoryThreshold(originThreshold);
+  }
+
+  private static final Header VALUE_HEADER =
+      new Header(Collections.singletonList(new Field("t.v", DataType.LONG)));
+
+  private static Row row(long value) {
+    return new Row(VALUE_HEADER, new Object[] {value});
+  }
+
+  private static List<Object> values(List<Row> rows) {
+    List<Object> values = new ArrayList<>();
+    for (Row row : rows) {
+      values.add(row.getValue(0));
+    }
+    return values;
+  }
+
+  @Test
+  public void testJoinHashTable() {
+    JoinHashTable numericTable = new JoinHashTable(VALUE_HEADER, true);
+    numericTable.put(new Value(1), row(1));
+    numericTable.put(new Value(1L), row(2));
+    numericTable.put(new Value(2.5D), row(3));
+    assertEquals(2, numericTable.getGroupCount());
+    assertEquals(3, numericTable.getRowCount());
+    assertEquals(
+        Arrays.asList(1L, 2L),
+        values(numericTable.getGroupRows(numericTable.getGroup(new Value(1.0D)))));
+    assertEquals(
+        Collections.singletonList(3L),
+        values(numericTable.getGroupRows(numericTable.getGroup(new Value(2.5F)))));
+    assertEquals(-1, numericTable.getGroup(new Value(3)));
+
+    JoinHashTable binaryTable = new JoinHashTable(VALUE_HEADER, false);
+    binaryTable.put(new Value("a".getBytes()), row(1));
+    binaryTable.put(new Value("b".getBytes()), row(2));
+    binaryTable.put(new Value("a".getBytes()), row(3));
+    assertEquals(
+        Arrays.asList(1L, 3L),
+        values(binaryTable.getGroupRows(binaryTable.getGroup(new Value("a")))));
+    assertEquals(-1, binaryTable.getGroup(new Value("c")));
+    // 类型不同的键不相等
+    assertEquals(-1, binaryTable.getGroup(new Value(1L)));
+
+    JoinHashTable largeTable = new JoinHashTable(VALUE_HEADER, false);
+    for (long i = 0; i < 100000; i++) {
+      largeTable.put(new Value(i), row(i));
+    }
+    assertEquals(100000, largeTable.getGroupCount());
+    for (long i = 0; i < 100000; i++) {
+      int group = largeTable.getGroup(new Value(i));
+      assertEquals(i, largeTable.getRow(largeTable.firstRow(group)).getValue(0));
+    }
+  }
+
+  @Test
+  public void testEstimatedSize() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("t.a", DataType.LONG), new Field("t.b", DataType.BINARY)));
+    JoinHashTable hashTable = new JoinHashTable(header, false);
+    hashTable.put(new Value(1L), new Row(header, 0, new Object[] {1L, new byte[100]}));
+    long size = hashTable.getEstimatedSize();
+    hashTable.put(new Value(2L), new Row(header, 1, new Object[] {2L, null}));
+    // 二进制值的内容计入估计值，定长部分每行相同
+    assertEquals(size - 100, hashTable.getEstimatedSize() - size);
+    assertEquals(1L, hashTable.getRow(1).getKey());
+    assertEquals(null, hashTable.getRow(1).getValue(1));
+  }
+
+  @Test
+  public void testSpillPartitions() throws PhysicalException {
+    Header headerA = new Header(Collections.singletonList(new Field("a.k", DataType.LONG)));
+    Header headerB = new Header(Collections.singletonList(new Field("b.k", DataType.INTEGER)));
+    List<Row> rowsA = new ArrayList<>();
+    for (long i = 0; i < 1000; i++) {
+      rowsA.add(new Row(headerA, new Object[] {i % 300}));
+    }
+    List<Row> rowsB = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      rowsB.add(new Row(headerB, new Object[] {i % 200}));
+    }
+
+    int matched = 0;
+    int partitions = 0;
+    try (GraceHashJoin hashJoin =
+        new GraceHashJoin(
+            new Table(headerB, rowsB), "b.k", new Table(headerA, rowsA), "a.k", true, 1024)) {
+      while (hashJoin.nextPartition()) {
+        partitions++;
+        RowStream probeStream = hashJoin.getProbeStream();
+        JoinHashTable hashTable = hashJoin.getHashTable();
+        while (probeStream.hasNext()) {
+          int group = hashTable.getGroup(probeStream.next().getAsValue("a.k"));
+          if (group != -1) {
+            matched += hashTable.getGroupRows(group).size();
+          }
+        }
+      }
+      assertTrue(hashJoin.isSpilled());
+      assertFalse(hashJoin.nextPartition());
+    }
+    // 超过阈值的分区会被再次分区，因此分区数不少于配置的分区数
+    assertTrue(partitions >= config.getHashJoinSpillPartitionNum());
+
+    int expected = 0;
+    for (Row rowA : rowsA) {
+      for (Row rowB : rowsB) {
+        if ((long) rowA.getValue(0) == (int) rowB.getValue(0)) {
+          expected++;
+        }
+      }
+    }
+    assertEquals(expected, matched);
+  }
+
+  /** 逐个分区探测，返回匹配的行数，并检查每个分区的哈希表不超过 maxTableSize */
+  private static int countMatches(
+      List<Long> buildKeys, List<Long> probeKeys, long threshold, long maxTableSize)
+      throws PhysicalException {
+    Header buildHeader = new Header(Collections.singletonList(new Field("b.k", DataType.LONG)));
+    Header probeHeader = new Header(Collections.singletonList(new Field("a.k", DataType.LONG)));
+    List<Row> buildRows = new ArrayList<>();
+    for (long key : buildKeys) {
+      buildRows.add(new Row(buildHeader, new Object[] {key}));
+    }
+    List<Row> probeRows = new ArrayList<>();
+    for (long key : probeKeys) {
+      probeRows.add(new Row(probeHeader, new Object[] {key}));
+    }
+
+    int matched = 0;
+    try (GraceHashJoin hashJoin =
+        new GraceHashJoin(
+            new Table(buildHeader, buildRows),
+            "b.k",
+            new Table(probeHeader, probeRows),
+            "a.k",
+            false,
+            threshold)) {
+      while (hashJoin.nextPartition()) {
+        RowStream probeStream = hashJoin.getProbeStream();
+        JoinHashTable hashTable = hashJoin.getHashTable();
+        assertTrue(hashTable.getEstimatedSize() <= maxTableSize);
+        while (probeStream.hasNext()) {
+          int group = hashTable.getGroup(probeStream.next().getAsValue("a.k"));
+          if (group != -1) {
+            matched += hashTable.getGroupRows(group).size();
+          }
+        }
+      }
+    }
+    return matched;
+  }
+
+  @Test
+  public void testRecursivePartition() throws PhysicalException {
+    List<Long> buildKeys = new ArrayList<>();
+    for (long i = 0; i < 20000; i++) {
+      buildKeys.add(i);
+    }
+    List<Long> probeKeys = new ArrayList<>();
+    for (long i = 0; i < 40000; i += 3) {
+      probeKeys.add(i);
+    }
+    // 一层分区后每个分区约有 1250 行，仍超过阈值，需要再次分区
+    assertEquals(6667, countMatches(buildKeys, probeKeys, 1024, 1024));
+  }
+
+  @Test
+  public void testSkewedKey() throws PhysicalException {
+    List<Long> buildKeys = new ArrayList<>();
+    for (long i = 0; i < 1000; i++) {
+      buildKeys.add(i % 10 == 0 ? i : 7L);
+    }
+    List<Long> probeKeys = Arrays.asList(7L, 7L, 10L, 11L, 990L);
+    // 键 7 的 900 行无法再拆分，在内存中构建
+    assertEquals(900 * 2 + 2, countMatches(buildKeys, probeKeys, 1024, Long.MAX_VALUE));
+  }
+
+  private static Table buildTable(String prefix, int rowCount, int mod) {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(
+                new Field(prefix + ".a", DataType.LONG),
+                new Field(prefix + ".v", DataType.DOUBLE)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      Object a = i % 7 == 0 ? null : (long) (i % mod);
+      rows.add(new Row(header, i, new Object[] {a, i * 0.5}));
+    }
+    return new Table(header, rows);
+  }
+
+  private static List<String> collect(RowStream stream) throws PhysicalException {
+    List<String> rows = new ArrayList<>();
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      rows.add(row.getKey() + Arrays.toString(row.getValues()));
+    }
+    stream.close();
+    Collections.sort(rows);
+    return rows;
+  }
+
+  @Test
+  public void testJoinWithSpill() throws PhysicalException {
+    InnerJoin innerJoin =
+        new InnerJoin(
+            EmptySource.EMPTY_SOURCE,
+            EmptySource.EMPTY_SOURCE,
+            "a",
+            "b",
+            new PathFilter("a.a", Op.E, "b.a"),
+            Collections.emptyList(),
+            false,
+            JoinAlgType.HashJoin);
+    List<String> inMemory =
+        collect(
+            new HashInnerJoinLazyStream(
+                innerJoin, buildTable("a", 2000, 50), buildTable("b", 1000, 80)));
+    config.setHashJoinMemoryThreshold(1);
+    List<String> spilled =
+        collect(
+            new HashInnerJoinLazyStream(
+                innerJoin, buildTable("a", 2000, 50), buildTable("b", 1000, 80)));
+    assertFalse(inMemory.isEmpty());
+    assertEquals(inMemory, spilled);
+
+    for (OuterJoinType outerJoinType : OuterJoinType.values()) {
+      OuterJoin outerJoin =
+          new OuterJoin(
+              EmptySource.EMPTY_SOURCE,
+              EmptySource.EMPTY_SOURCE,
+              "a",
+              "b",
+              outerJoinType,
+              new PathFilter("a.a", Op.E, "b.a"),
+              Collections.emptyList(),
+              false,
+              JoinAlgType.HashJoin);
+      config.setHashJoinMemoryThreshold(originThreshold);
+      inMemory =
+          collect(
+              new HashOuterJoinLazyStream(
+                  outerJoin, buildTable("a", 2000, 50), buildTable("b", 1000, 80)));
+      config.setHashJoinMemoryThreshold(1);
+      spilled =
+          collect(
+              new HashOuterJoinLazyStream(
+                  outerJoin, buildTable("a", 2000, 50), buildTable("b", 1000, 80)));
+      assertEquals(inMemory, spilled);
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.DownsampleLazyStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.SetTransformLazyStream;
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class PartialAggregateUtilsTest {
+
+  private static final Header HEADER =
+      new Header(
+          Field.KEY,
+          Arrays.asList(
+              new Field("a.int", DataType.INTEGER),
+              new Field("a.double", DataType.DOUBLE),
+              new Field("b.long", DataType.LONG)));
+
+  private static FunctionParams params(String path) {
+    return new FunctionParams(Collections.singletonList(new BaseExpression(path)));
+  }
+
+  private static List<FunctionCall> generateFunctionCalls() {
+    return Arrays.asList(
+        new FunctionCall(Avg.getInstance(), params("a")),
+        new FunctionCall(Count.getInstance(), params("a")),
+        new FunctionCall(FirstValue.getInstance(), params("a")),
+        new FunctionCall(LastValue.getInstance(), params("b")),
+        new FunctionCall(Max.getInstance(), params("a")),
+        new FunctionCall(Min.getInstance(), params("b")),
+        new FunctionCall(Sum.getInstance(), params("a")),
+        new FunctionCall(Sum.getInstance(), params("b")),
+        new FunctionCall(Avg.getInstance(), params("b")));
+  }
+
+  private static Object[] generateValues(int key) {
+    return new Object[] {
+      key % 3 == 0 ? null : (key * 7) % 11,
+      key % 4 == 0 ? null : key * 0.5,
+      key < 10 || key >= 20 || key % 5 == 0 ? null : (long) ((key * 13) % 17)
+    };
+  }
+
+  /** 模拟一个分片中的数据：key 位于 [startKey, endKey)，且只包含给定下标的列 */
+  private static Table generateFragment(long startKey, long endKey, int... columns) {
+    List<Field> fields = new ArrayList<>();
+    for (int column : columns) {
+      fields.add(HEADER.getField(column));
+    }
+    Header header = new Header(Field.KEY, fields);
+    List<Row> rows = new ArrayList<>();
+    for (long key = startKey; key < endKey; key++) {
+      Object[] values = generateValues((int) key);
+      Object[] fragmentValues = new Object[columns.length];
+      for (int i = 0; i < columns.length; i++) {
+        fragmentValues[i] = values[columns[i]];
+      }
+      rows.add(new Row(header, key, fragmentValues));
+    }
+    return new Table(header, rows);
+  }
+
+  private static Row aggregate(List<FunctionCall> functionCalls, Table table)
+      throws PhysicalException {
+    SetTransform setTransform = new SetTransform(EmptySource.EMPTY_SOURCE, functionCalls);
+    return new SetTransformLazyStream(setTransform, table).next();
+  }
+
+  private static void assertSameRow(Row expected, Row actual) {
+    List<Field> expectedFields = expected.getHeader().getFields();
+    assertEquals(expectedFields.size(), actual.getHeader().getFields().size());
+    for (int i = 0; i < expectedFields.size(); i++) {
+      Field field = expectedFields.get(i);
+      int index = actual.getHeader().indexOf(field.getFullName());
+      assertTrue("missing field " + field.getFullName(), index != -1);
+      assertEquals(field.getType(), actual.getHeader().getField(index).getType());
+      Object expectedValue = expected.getValue(i);
+      Object actualValue = actual.getValue(index);
+      if (expectedValue instanceof Double) {
+        assertEquals((double) expectedValue, (double) actualValue, 1e-9);
+      } else {
+        assertEquals(field.getFullName(), expectedValue, actualValue);
+      }
+    }
+  }
+
+  @Test
+  public void testMergeEqualsDirectAggregate() throws PhysicalException {
+    List<FunctionCall> functionCalls = generateFunctionCalls();
+    assertTrue(PartialAggregateUtils.isSupportTwoPhaseAggregate(functionCalls));
+    Row expected = aggregate(functionCalls, generateFragment(0, 30, 0, 1, 2));
+
+    // 前一个 key 区间按列拆分为两个分片，后一个 key 区间中没有 b.long 的数据，只有一个分片
+    List<FunctionCall> partialCalls = PartialAggregateUtils.getPartialFunctionCalls(functionCalls);
+    List<Row> partialRows =
+        Arrays.asList(
+            aggregate(partialCalls, generateFragment(0, 20, 0, 1)),
+            aggregate(partialCalls, generateFragment(0, 20, 2)),
+            aggregate(partialCalls, generateFragment(20, 30, 0, 1)),
+            aggregate(partialCalls, generateFragment(30, 30, 0, 1, 2)));
+
+    assertSameRow(expected, PartialAggregateUtils.mergePartialRows(functionCalls, partialRows));
+  }
+
+  @Test
+  public void testMergeDistinctMaxMin() throws PhysicalException {
+    FunctionParams maxParams = params("a");
+    maxParams.setDistinct(true);
+    FunctionParams minParams = params("b");
+    minParams.setDistinct(true);
+    List<FunctionCall> functionCalls =
+        Arrays.asList(
+            new FunctionCall(Max.getInstance(), maxParams),
+            new FunctionCall(Min.getInstance(), minParams));
+    assertTrue(PartialAggregateUtils.isSupportTwoPhaseAggregate(functionCalls));
+    Row expected = aggregate(functionCalls, generateFragment(0, 30, 0, 1, 2));
+
+    List<FunctionCall> partialCalls = PartialAggregateUtils.getPartialFunctionCalls(functionCalls);
+    List<Row> partialRows =
+        Arrays.asList(
+            aggregate(partialCalls, generateFragment(0, 15, 0, 1, 2)),
+            aggregate(partialCalls, generateFragment(15, 30, 0, 1, 2)));
+
+    assertSameRow(expected, PartialAggregateUtils.mergePartialRows(functionCalls, partialRows));
+  }
+
+  private static Table downsample(List<FunctionCall> functionCalls, Table table)
+      throws PhysicalException {
+    Downsample downsample =
+        new Downsample(EmptySource.EMPTY_SOURCE, 7, 7, functionCalls, new KeyRange(1, 40));
+    DownsampleLazyStream stream = new DownsampleLazyStream(downsample, table);
+    List<Row> rows = new ArrayList<>();
+    while (stream.hasNext()) {
+      rows.add(stream.next());
+    }
+    return new Table(stream.getHeader(), rows);
+  }
+
+  @Test
+  public void testMergeWindowsAcrossFragments() throws PhysicalException {
+    List<FunctionCall> functionCalls = generateFunctionCalls();
+    Table expected = downsample(functionCalls, generateFragment(1, 30, 0, 1, 2));
+
+    // 窗口 [15, 21] 跨越了两个 key 区间的边界，且 [1, 20) 中部分窗口只有 a.* 的分片有数据
+    List<FunctionCall> partialCalls = PartialAggregateUtils.getPartialFunctionCalls(functionCalls);
+    List<Row> partialRows = new ArrayList<>();
+    partialRows.addAll(downsample(partialCalls, generateFragment(1, 20, 0, 1)).getRows());
+    partialRows.addAll(downsample(partialCalls, generateFragment(1, 20, 2)).getRows());
+    partialRows.addAll(downsample(partialCalls, generateFragment(20, 30, 0, 1)).getRows());
+    Table actual = PartialAggregateUtils.mergePartialWindows(functionCalls, partialRows);
+
+    assertEquals(expected.getRowSize(), actual.getRowSize());
+    for (int i = 0; i < expected.getRowSize(); i++) {
+      assertEquals(expected.getRow(i).getKey(), actual.getRow(i).getKey());
+      assertSameRow(expected.getRow(i), actual.getRow(i));
+    }
+  }
+
+  @Test
+  public void testPartialFunctionCalls() {
+    List<FunctionCall> partialCalls =
+        PartialAggregateUtils.getPartialFunctionCalls(
+            Arrays.asList(
+                new FunctionCall(Avg.getInstance(), params("a")),
+                new FunctionCall(Sum.getInstance(), params("a")),
+                new FunctionCall(Count.getInstance(), params("a"))));
+    assertEquals(2, partialCalls.size());
+    assertEquals("sum(a)", partialCalls.get(0).getFunctionStr());
+    assertEquals("count(a)", partialCalls.get(1).getFunctionStr());
+  }
+
+  @Test
+  public void testUnsupportedFunctionCalls() {
+    FunctionParams distinct = params("a");
+    distinct.setDistinct(true);
+    assertFalse(
+        PartialAggregateUtils.isSupportTwoPhaseAggregate(
+            Collections.singletonList(new FunctionCall(Sum.getInstance(), distinct))));
+    assertFalse(PartialAggregateUtils.isSupportTwoPhaseAggregate(Collections.emptyList()));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.Test;
+
+public class ArrowResultSerializerTest {
+
+  private static Table buildTable(int rowCount) {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(
+                new Field("a.bool", DataType.BOOLEAN),
+                new Field("a.int", DataType.INTEGER),
+                new Field("a.long", DataType.LONG),
+                new Field("a.float", DataType.FLOAT),
+                new Field("a.double", DataType.DOUBLE),
+                new Field("a.binary", DataType.BINARY)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      Object[] values =
+          new Object[] {
+            i % 2 == 0, i, (long) i * 10, (float) i / 2, (double) i / 4, ("v" + i).getBytes()
+          };
+      values[i % values.length] = null;
+      rows.add(new Row(header, i, values));
+    }
+    return new Table(header, rows);
+  }
+
+  private static List<Object[]> deserialize(ByteBuffer data) throws IOException {
+    List<Object[]> rows = new ArrayList<>();
+    try (BufferAllocator allocator = new RootAllocator();
+        ArrowStreamReader reader =
+            new ArrowStreamReader(new ByteArrayInputStream(data.array()), allocator)) {
+      VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      assertEquals("key", root.getSchema().getFields().get(0).getName());
+      assertEquals("a.binary", root.getSchema().getFields().get(6).getName());
+      while (reader.loadNextBatch()) {
+        for (int i = 0; i < root.getRowCount(); i++) {
+          Object[] values = new Object[root.getFieldVectors().size()];
+          for (int j = 0; j < values.length; j++) {
+            values[j] = root.getVector(j).getObject(i);
+          }
+          rows.add(values);
+        }
+      }
+    }
+    return rows;
+  }
+
+  @Test
+  public void testSerializeInMultipleFetches() throws PhysicalException, IOException {
+    int rowCount = 10000;
+    Table table = buildTable(rowCount);
+    List<Object[]> rows = new ArrayList<>();
+    rows.addAll(deserialize(ArrowResultSerializer.serialize(table, 6000)));
+    assertEquals(6000, rows.size());
+    assertTrue(table.hasNext());
+    rows.addAll(deserialize(ArrowResultSerializer.serialize(table, 6000)));
+    assertFalse(table.hasNext());
+
+    Table expected = buildTable(rowCount);
+    assertEquals(rowCount, rows.size());
+    for (Object[] actual : rows) {
+      Row row = expected.next();
+      assertEquals(row.getKey(), actual[0]);
+      Object[] values = row.getValues();
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == null) {
+          assertNull(actual[i + 1]);
+        } else if (values[i] instanceof byte[]) {
+          assertArrayEquals((byte[]) values[i], (byte[]) actual[i + 1]);
+        } else {
+          assertEquals(values[i], actual[i + 1]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSerializeEmptyResult() throws PhysicalException, IOException {
+    Table table = buildTable(0);
+    assertTrue(deserialize(ArrowResultSerializer.serialize(table, 100)).isEmpty());
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefetchRowStreamWrapperTest {
+
+  private static final Header HEADER =
+      new Header(Field.KEY, Collections.singletonList(new Field("a", DataType.LONG)));
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /** 按需生成行的 RowStream，可在指定行抛出异常 */
+  private static class CountingRowStream implements RowStream {
+    private final int size;
+    private final int failAt;
+    private int next = 0;
+    private boolean closed = false;
+
+    CountingRowStream(int size, int failAt) {
+      this.size = size;
+      this.failAt = failAt;
+    }
+
+    @Override
+    public Header getHeader() {
+      return HEADER;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+      if (next == failAt) {
+        throw new RowFetchException("backend failure", new RuntimeException());
+      }
+      long key = next++;
+      return new Row(HEADER, key, new Object[] {key * 10});
+    }
+  }
+
+  @Test
+  public void testReadAllRows() throws PhysicalException {
+    CountingRowStream source = new CountingRowStream(1000, -1);
+    // 内存上限很小，强制生产者频繁暂停与恢复
+    RowStream stream = new PrefetchRowStreamWrapper(source, executor, 7, 256, () -> false);
+    assertEquals(HEADER, stream.getHeader());
+    long expected = 0;
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      assertEquals(expected, row.getKey());
+      assertEquals(expected * 10, row.getValue(0));
+      expected++;
+    }
+    assertEquals(1000, expected);
+    assertFalse(stream.hasNext());
+    stream.close();
+    assertTrue(source.closed);
+  }
+
+  @Test
+  public void testPropagateFailure() throws PhysicalException {
+    RowStream stream =
+        new PrefetchRowStreamWrapper(
+            new CountingRowStream(100, 42), executor, 10, Long.MAX_VALUE, () -> false);
+    int count = 0;
+    try {
+      while (stream.hasNext()) {
+        stream.next();
+        count++;
+      }
+      fail("failure of the source should be propagated");
+    } catch (RowFetchException e) {
+      assertEquals(40, count);
+    }
+    stream.close();
+  }
+
+  @Test
+  public void testCancel() throws PhysicalException {
+    AtomicBoolean cancelled = new AtomicBoolean(false);
+    RowStream stream =
+        new PrefetchRowStreamWrapper(
+            new CountingRowStream(Integer.MAX_VALUE, -1), executor, 10, 1024, cancelled::get);
+    assertTrue(stream.hasNext());
+    stream.next();
+    cancelled.set(true);
+    try {
+      while (stream.hasNext()) {
+        stream.next();
+      }
+      fail("prefetch should be cancelled");
+    } catch (PhysicalException e) {
+      // expected
+    }
+    stream.close();
+  }
+
+  @Test
+  public void testCloseReleasesMemory() throws Exception {
+    CountingRowStream source = new CountingRowStream(100000, -1);
+    RowStream stream = new PrefetchRowStreamWrapper(source, executor, 100, 64 * 1024, () -> false);
+    assertTrue(stream.hasNext());
+    stream.close();
+    assertTrue(source.closed);
+    assertEquals(0, ((PrefetchRowStreamWrapper) stream).getBufferedBytes());
+  }
+
+  @Test
+  public void testManyStreamsOnSmallPool() throws PhysicalException {
+    // 后台任务不阻塞等待，因此两个线程可以交替预取多个包装器
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      List<CountingRowStream> sources = new ArrayList<>();
+      List<RowStream> streams = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        CountingRowStream source = new CountingRowStream(100, -1);
+        sources.add(source);
+        streams.add(new PrefetchRowStreamWrapper(() -> source, pool, 7, 2));
+      }
+      for (RowStream stream : streams) {
+        assertEquals(HEADER, stream.getHeader());
+      }
+      // 轮流从各个包装器读取一行
+      for (long expected = 0; expected < 100; expected++) {
+        for (RowStream stream : streams) {
+          assertTrue(stream.hasNext());
+          assertEquals(expected * 10, stream.next().getValue(0));
+        }
+      }
+      for (RowStream stream : streams) {
+        assertFalse(stream.hasNext());
+      }
+      // 读完后立即关闭底层 RowStream
+      for (CountingRowStream source : sources) {
+        assertTrue(source.closed);
+      }
+      for (RowStream stream : streams) {
+        stream.close();
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testOpenFailure() throws PhysicalException {
+    RowStream stream =
+        new PrefetchRowStreamWrapper(
+            () -> {
+              throw new IOException("broken file");
+            },
+            executor,
+            7,
+            2);
+    try {
+      stream.getHeader();
+      fail("failure of opening the source should be propagated");
+    } catch (RowFetchException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    try {
+      stream.hasNext();
+      fail("failure of opening the source should be propagated");
+    } catch (RowFetchException e) {
+      // expected
+    }
+    stream.close();
+  }
+
+  @Test
+  public void testCloseBeforeOpen() throws PhysicalException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      pool.execute(
+          () -> {
+            try {
+              blocked.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+      CountingRowStream source = new CountingRowStream(100, -1);
+      AtomicBoolean opened = new AtomicBoolean(false);
+      RowStream stream =
+          new PrefetchRowStreamWrapper(
+              () -> {
+                opened.set(true);
+                return source;
+              },
+              pool,
+              7,
+              2);
+      stream.close();
+      blocked.countDown();
+      try {
+        stream.getHeader();
+        fail("closed stream should not be opened");
+      } catch (RowFetchException e) {
+        // expected
+      }
+      assertFalse(stream.hasNext());
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+      assertFalse(opened.get());
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.Batch;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class AccumulatorTest {
+
+  private static final List<SetMappingFunction> FUNCTIONS =
+      Arrays.asList(
+          Avg.getInstance(),
+          Count.getInstance(),
+          FirstValue.getInstance(),
+          LastValue.getInstance(),
+          Max.getInstance(),
+          Min.getInstance(),
+          Sum.getInstance());
+
+  private static final FunctionParams PARAMS =
+      new FunctionParams(Collections.singletonList(new BaseExpression("a")));
+
+  private Table generateTable() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(
+                new Field("a.int", DataType.INTEGER),
+                new Field("a.long", DataType.LONG),
+                new Field("a.float", DataType.FLOAT),
+                new Field("a.double", DataType.DOUBLE)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      rows.add(
+          new Row(
+              header,
+              i,
+              new Object[] {
+                i % 3 == 0 ? null : (i * 7) % 11,
+                i % 4 == 0 ? null : (long) ((i * 13) % 17),
+                i % 5 == 0 ? null : i + 0.25f,
+                i % 7 == 0 ? null : i * 0.5
+              }));
+    }
+    return new Table(header, rows);
+  }
+
+  private static void assertSameRow(Row expected, Row actual) {
+    assertEquals(expected.getHeader().getFields(), actual.getHeader().getFields());
+    assertArrayEquals(expected.getValues(), actual.getValues());
+  }
+
+  @Test
+  public void testUpdateByRow() throws Exception {
+    Table table = generateTable();
+    for (SetMappingFunction function : FUNCTIONS) {
+      Accumulator accumulator = function.createAccumulator(table.getHeader(), PARAMS);
+      for (Row row : table.getRows()) {
+        accumulator.update(row);
+      }
+      assertSameRow(function.transform(table, PARAMS), accumulator.finish());
+    }
+  }
+
+  @Test
+  public void testUpdateByBatch() throws Exception {
+    Table table = generateTable();
+    Batch batch = Batch.fromRows(table.getHeader(), table.getRows());
+    for (SetMappingFunction function : FUNCTIONS) {
+      Accumulator accumulator = function.createAccumulator(table.getHeader(), PARAMS);
+      accumulator.update(batch, 0, 11);
+      accumulator.update(batch, 11, batch.getSize());
+      assertSameRow(function.transform(table, PARAMS), accumulator.finish());
+    }
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    Table table = generateTable();
+    List<Row> rows = table.getRows();
+    for (SetMappingFunction function : FUNCTIONS) {
+      Accumulator first = function.createAccumulator(table.getHeader(), PARAMS);
+      Accumulator second = function.createAccumulator(table.getHeader(), PARAMS);
+      for (int i = 0; i < rows.size(); i++) {
+        (i < 13 ? first : second).update(rows.get(i));
+      }
+      first.merge(second);
+      Row actual = first.finish();
+      Row expected = function.transform(table, PARAMS);
+      if (function instanceof Avg || function instanceof Sum) {
+        // 合并后浮点数的求和顺序不同，只比较近似值
+        assertEquals(expected.getHeader().getFields(), actual.getHeader().getFields());
+        for (int i = 0; i < expected.getValues().length; i++) {
+          assertEquals(
+              ((Number) expected.getValues()[i]).doubleValue(),
+              ((Number) actual.getValues()[i]).doubleValue(),
+              1e-9);
+        }
+      } else {
+        assertSameRow(expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyInput() throws Exception {
+    Table table = new Table(generateTable().getHeader(), new ArrayList<>());
+    for (SetMappingFunction function : FUNCTIONS) {
+      Accumulator accumulator = function.createAccumulator(table.getHeader(), PARAMS);
+      assertSameRow(function.transform(table, PARAMS), accumulator.finish());
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * 分片索引查询延迟的微基准，对比索引与顺序扫描在不同分片数下按列名查询的耗时。
+ *
+ * <p>不属于单元测试，需手动运行 main 方法。
+ */
+public class FragmentIndexBenchmark {
+
+  private static final int WARMUP_ROUNDS = 3;
+
+  private static final int QUERY_COUNT = 20000;
+
+  /** 列空间被重新划分的次数，每次划分对应一段 key 区间 */
+  private static final int EPOCH_COUNT = 10;
+
+  private static volatile int sink;
+
+  public static void main(String[] args) {
+    int[] fragmentCounts = {1000, 10000, 50000};
+    System.out.printf("%12s %16s %16s%n", "fragments", "scan (ns/op)", "index (ns/op)");
+    for (int fragmentCount : fragmentCounts) {
+      Random random = new Random(fragmentCount);
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragments =
+          buildFragments(random, fragmentCount);
+      FragmentIndex index = FragmentIndex.build(fragments);
+      String[] queries = new String[QUERY_COUNT];
+      for (int i = 0; i < QUERY_COUNT; i++) {
+        queries[i] = FragmentIndexTest.randomColumn(random, fragmentCount * 2);
+      }
+      long scanCost = 0, indexCost = 0;
+      for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+        scanCost = measureScan(fragments, queries);
+        indexCost = measureIndex(index, queries);
+      }
+      System.out.printf(
+          "%12d %16d %16d%n", fragmentCount, scanCost / QUERY_COUNT, indexCost / QUERY_COUNT);
+    }
+  }
+
+  /** 模拟扩容时的分片布局：每段 key 区间内列空间被随机切分为互不相交的列区间，不同 key 区间的切分点不同，因此各列区间之间相互重叠 */
+  private static List<Pair<ColumnsInterval, List<FragmentMeta>>> buildFragments(
+      Random random, int fragmentCount) {
+    TreeMap<ColumnsInterval, List<FragmentMeta>> fragmentMap = new TreeMap<>();
+    int partitionCount = fragmentCount / EPOCH_COUNT;
+    for (int epoch = 0; epoch < EPOCH_COUNT; epoch++) {
+      TreeSet<String> splits = new TreeSet<>();
+      while (splits.size() < partitionCount - 1) {
+        splits.add(FragmentIndexTest.randomColumn(random, fragmentCount * 2));
+      }
+      long startKey = epoch * 1000L;
+      long endKey = epoch == EPOCH_COUNT - 1 ? Long.MAX_VALUE : startKey + 1000;
+      String start = null;
+      for (String end : splits) {
+        addFragment(fragmentMap, new FragmentMeta(start, end, startKey, endKey));
+        start = end;
+      }
+      addFragment(fragmentMap, new FragmentMeta(start, null, startKey, endKey));
+    }
+    return fragmentMap.entrySet().stream()
+        .map(e -> new Pair<>(e.getKey(), e.getValue()))
+        .collect(Collectors.toList());
+  }
+
+  private static void addFragment(
+      TreeMap<ColumnsInterval, List<FragmentMeta>> fragmentMap, FragmentMeta fragment) {
+    fragmentMap
+        .computeIfAbsent(fragment.getColumnsInterval(), k -> new ArrayList<>())
+        .add(fragment);
+  }
+
+  /** 与原有实现一致的顺序扫描 */
+  private static long measureScan(
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragments, String[] queries) {
+    long begin = System.nanoTime();
+    for (String query : queries) {
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
+      int index = 0;
+      while (index < fragments.size() && !fragments.get(index).k.isAfter(query)) {
+        if (fragments.get(index).k.isContain(query)) {
+          resultList.add(fragments.get(index));
+        }
+        index++;
+      }
+      sink += resultList.size();
+    }
+    return System.nanoTime() - begin;
+  }
+
+  private static long measureIndex(FragmentIndex index, String[] queries) {
+    long begin = System.nanoTime();
+    for (String query : queries) {
+      sink += index.search(query).size();
+    }
+    return System.nanoTime() - begin;
+  }
+}
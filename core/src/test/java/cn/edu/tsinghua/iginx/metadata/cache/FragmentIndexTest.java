@@ -0,0 +1,158 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class FragmentIndexTest {
+
+  private final Random random = new Random(20240101L);
+
+  static String randomColumn(Random random, int columnCount) {
+    return String.format("root.sg%04d.s", random.nextInt(columnCount));
+  }
+
+  /** 随机生成互相重叠的列区间，每个列区间内的分片按 key 首尾相接 */
+  static List<Pair<ColumnsInterval, List<FragmentMeta>>> buildFragments(
+      Random random, int intervalCount, int fragmentsPerInterval) {
+    TreeMap<ColumnsInterval, List<FragmentMeta>> fragmentMap = new TreeMap<>();
+    int columnCount = Math.max(intervalCount * 2, 10);
+    while (fragmentMap.size() < intervalCount) {
+      String start = random.nextInt(20) == 0 ? null : randomColumn(random, columnCount);
+      String end = random.nextInt(20) == 0 ? null : randomColumn(random, columnCount);
+      if (start != null && end != null && start.compareTo(end) >= 0) {
+        continue;
+      }
+      ColumnsInterval columnsInterval = new ColumnsInterval(start, end);
+      if (fragmentMap.containsKey(columnsInterval)) {
+        continue;
+      }
+      List<FragmentMeta> fragments = new ArrayList<>();
+      long key = random.nextInt(1000);
+      for (int i = 0; i < fragmentsPerInterval; i++) {
+        long nextKey =
+            i == fragmentsPerInterval - 1 ? Long.MAX_VALUE : key + 1 + random.nextInt(1000);
+        fragments.add(new FragmentMeta(start, end, key, nextKey));
+        key = nextKey;
+      }
+      fragmentMap.put(columnsInterval, fragments);
+    }
+    return fragmentMap.entrySet().stream()
+        .map(e -> new Pair<>(e.getKey(), e.getValue()))
+        .collect(Collectors.toList());
+  }
+
+  private static List<ColumnsInterval> scan(
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragments, ColumnsInterval query) {
+    List<ColumnsInterval> result = new ArrayList<>();
+    for (Pair<ColumnsInterval, List<FragmentMeta>> pair : fragments) {
+      if (pair.k.isIntersect(query)) {
+        result.add(pair.k);
+      }
+    }
+    return result;
+  }
+
+  private static List<ColumnsInterval> scan(
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragments, String columnName) {
+    List<ColumnsInterval> result = new ArrayList<>();
+    for (Pair<ColumnsInterval, List<FragmentMeta>> pair : fragments) {
+      if (pair.k.isContain(columnName)) {
+        result.add(pair.k);
+      }
+    }
+    return result;
+  }
+
+  private static List<ColumnsInterval> keys(List<Pair<ColumnsInterval, List<FragmentMeta>>> list) {
+    return list.stream().map(e -> e.k).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testSearchByColumnsInterval() {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> fragments = buildFragments(random, 500, 1);
+    FragmentIndex index = FragmentIndex.build(fragments);
+    assertEquals(500, index.size());
+    for (int i = 0; i < 2000; i++) {
+      String start = random.nextInt(10) == 0 ? null : randomColumn(random, 1000);
+      String end = random.nextInt(10) == 0 ? null : randomColumn(random, 1000);
+      if (start != null && end != null && start.compareTo(end) > 0) {
+        String tmp = start;
+        start = end;
+        end = tmp;
+      }
+      ColumnsInterval query = new ColumnsInterval(start, end);
+      assertEquals(scan(fragments, query), keys(index.search(query)));
+    }
+    // 含通配符的查询
+    ColumnsInterval query = new ColumnsInterval("root.sg01*", "root.sg03*");
+    assertEquals(scan(fragments, query), keys(index.search(query)));
+  }
+
+  @Test
+  public void testSearchByColumnName() {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> fragments = buildFragments(random, 500, 1);
+    FragmentIndex index = FragmentIndex.build(fragments);
+    for (int i = 0; i < 2000; i++) {
+      String columnName = randomColumn(random, 1000);
+      assertEquals(scan(fragments, columnName), keys(index.search(columnName)));
+    }
+    assertEquals(scan(fragments, "root.sg00*"), keys(index.search("root.sg00*")));
+  }
+
+  @Test
+  public void testSearchByKeyInterval() {
+    List<FragmentMeta> fragments = buildFragments(random, 1, 100).get(0).v;
+    for (int i = 0; i < 2000; i++) {
+      long start = random.nextInt(100000);
+      long end = start + random.nextInt(5000);
+      KeyInterval keyInterval = new KeyInterval(start, end);
+      List<FragmentMeta> expected =
+          fragments.stream()
+              .filter(f -> f.getKeyInterval().isIntersect(keyInterval))
+              .collect(Collectors.toList());
+      assertEquals(expected, FragmentIndex.searchFragmentList(fragments, keyInterval));
+    }
+  }
+
+  @Test
+  public void testSnapshotIsolation() {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> fragments = buildFragments(random, 10, 2);
+    FragmentIndex index = FragmentIndex.build(fragments);
+    fragments.get(0).v.add(new FragmentMeta(null, null, 0, 1));
+    fragments.remove(1);
+    assertEquals(10, index.size());
+    assertEquals(2, index.getAll().get(0).v.size());
+    assertTrue(FragmentIndex.build(Collections.emptyList()).isEmpty());
+  }
+}
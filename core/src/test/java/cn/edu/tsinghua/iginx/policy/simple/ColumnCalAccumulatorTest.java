@@ -0,0 +1,79 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.policy.simple;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class ColumnCalAccumulatorTest {
+
+  @Test
+  public void testSnapshot() {
+    ColumnCalAccumulator accumulator = new ColumnCalAccumulator("a.b");
+    accumulator.accumulate(100L, 10L, 20L, 5L, 40L);
+    accumulator.accumulate(90L, 5L, 15L, 3L, 24L);
+
+    ColumnCalDO columnCalDO = accumulator.snapshot();
+    assertEquals("a.b", columnCalDO.getColumn());
+    assertEquals(100L, (long) columnCalDO.getRecentKey());
+    assertEquals(5L, (long) columnCalDO.getFirstKey());
+    assertEquals(20L, (long) columnCalDO.getLastKey());
+    assertEquals(8, (int) columnCalDO.getCount());
+    assertEquals(64L, (long) columnCalDO.getTotalByte());
+  }
+
+  @Test
+  public void testConcurrentAccumulate() throws Exception {
+    ColumnCalAccumulator accumulator = new ColumnCalAccumulator("a.b");
+    int threadNum = 8;
+    int loop = 10000;
+    ExecutorService pool = Executors.newFixedThreadPool(threadNum);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threadNum; t++) {
+        long base = t * (long) loop;
+        futures.add(
+            pool.submit(
+                () -> {
+                  for (int i = 0; i < loop; i++) {
+                    accumulator.accumulate(base + i, base + i, base + i, 1L, 8L);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    ColumnCalDO columnCalDO = accumulator.snapshot();
+    assertEquals(0L, (long) columnCalDO.getFirstKey());
+    assertEquals(threadNum * (long) loop - 1, (long) columnCalDO.getLastKey());
+    assertEquals(threadNum * loop, (int) columnCalDO.getCount());
+    assertEquals(threadNum * loop * 8L, (long) columnCalDO.getTotalByte());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.common;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.PrefetchRowStreamWrapper;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+
+/** A bounded I/O pool on which files or units of one storage engine are opened and read. */
+public class ScanPool implements Closeable {
+
+  /** the number of batches prefetched ahead of the consumer of each stream */
+  static final int CAPACITY = 2;
+
+  private final ExecutorService executor;
+  private final int prefetch;
+
+  private ScanPool(String name, int parallelism, int prefetch) {
+    ThreadFactory factory =
+        new ThreadFactoryBuilder().setNameFormat("scan-" + name + "-%d").setDaemon(true).build();
+    this.executor = Executors.newFixedThreadPool(parallelism, factory);
+    this.prefetch = prefetch;
+  }
+
+  /**
+   * Create a scan pool.
+   *
+   * @param name the name of the pool threads
+   * @param parallelism the number of threads, no pool is created if it is not greater than 1
+   * @param prefetch the number of rows in each prefetched batch
+   * @return the pool, or null if scanning should stay sequential
+   */
+  @Nullable
+  public static ScanPool of(String name, int parallelism, int prefetch) {
+    if (parallelism <= 1) {
+      return null;
+    }
+    return new ScanPool(name, parallelism, prefetch);
+  }
+
+  /**
+   * Open the row stream on the pool and prefetch its rows ahead of the consumer.
+   *
+   * @param opener the function to open the row stream, called on a pool thread
+   * @return the row stream reading from the prefetched batches
+   */
+  public RowStream submit(Callable<RowStream> opener) {
+    return new PrefetchRowStreamWrapper(opener, executor, prefetch, CAPACITY);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+}
@@ -22,6 +22,7 @@ package cn.edu.tsinghua.iginx.filesystem.format;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.Range;
 import com.typesafe.config.Config;
 import java.io.Closeable;
 import java.io.IOException;
@@ -43,5 +44,14 @@ public interface FileFormat {
     Map<String, DataType> find(Collection<String> patterns) throws IOException;
 
     RowStream read(List<String> fields, Filter filter) throws IOException;
+
+    /**
+     * Get the range of keys in the file, used to skip the file before reading it.
+     *
+     * @return the range of keys, or {@link Range#all()} if unknown
+     */
+    default Range<Long> keyRange() throws IOException {
+      return Range.all();
+    }
   }
 }
@@ -111,7 +111,7 @@ class FilterUtils {
         .map(FilterUtils::toFilterPredicate)
         .map(Pair::getK)
         .filter(Objects::nonNull)
-        .reduce(FilterApi::and)
+        .reduce(FilterApi::or)
         .map(filterPredicate -> new Pair<FilterPredicate, Boolean>(filterPredicate, null))
         .orElseGet(() -> new Pair<>(null, false));
   }
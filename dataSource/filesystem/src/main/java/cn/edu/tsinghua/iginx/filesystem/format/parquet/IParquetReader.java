@@ -28,6 +28,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import shaded.iginx.org.apache.parquet.ParquetReadOptions;
@@ -199,6 +201,8 @@ public class IParquetReader implements Closeable {
     private boolean skip = false;
     private Set<String> fields;
     private boolean hasKey;
+    private Filter pruneFilter;
+    private Function<String, String> rawNameOf;
 
     public Builder(LocalInputFile localInputFile) {
       this.localInputfile = localInputFile;
@@ -233,13 +237,66 @@ public class IParquetReader implements Closeable {
         return new IParquetReader(null, requestedSchema, footer);
       }
 
-      ParquetFileReader reader = new ParquetFileReader(localInputfile, footer, options);
+      ParquetMetadata selected = footer;
+      if (pruneFilter != null) {
+        List<BlockMetaData> blocks = pruneBlocks(footer, options);
+        if (blocks.isEmpty()) {
+          return new IParquetReader(null, requestedSchema, footer);
+        }
+        selected = new ParquetMetadata(footer.getFileMetaData(), blocks);
+      }
+
+      ParquetFileReader reader = new ParquetFileReader(localInputfile, selected, options);
       reader.setRequestedSchema(requestedSchema);
       ParquetRecordReader<IRecord> internalReader =
           new ParquetRecordReader<>(new IRecordMaterializer(requestedSchema), reader, options);
       return new IParquetReader(internalReader, requestedSchema, footer);
     }
 
+    /**
+     * Select the row groups that may contain rows matching the filter of this builder, without
+     * reading any row.
+     *
+     * @param footer the footer of the file
+     * @return the indexes of the selected row groups in the footer, in ascending order
+     */
+    public List<Integer> selectRowGroups(ParquetMetadata footer) throws IOException {
+      if (skip) {
+        return Collections.emptyList();
+      }
+      List<BlockMetaData> blocks = footer.getBlocks();
+      List<BlockMetaData> selected = blocks;
+      if (pruneFilter != null) {
+        selected = pruneBlocks(footer, optionsBuilder.build());
+      }
+      // selected blocks keep the order of the footer
+      List<Integer> indexes = new ArrayList<>(selected.size());
+      int index = 0;
+      for (BlockMetaData block : selected) {
+        while (blocks.get(index) != block) {
+          index++;
+        }
+        indexes.add(index);
+      }
+      return indexes;
+    }
+
+    private List<BlockMetaData> pruneBlocks(ParquetMetadata footer, ParquetReadOptions options)
+        throws IOException {
+      MessageType schema = footer.getFileMetaData().getSchema();
+      boolean keyInColumn = (fields == null || hasKey) && hasKeyColumn(schema);
+      try (RowGroupPruner pruner =
+          new RowGroupPruner(localInputfile, footer, options, rawNameOf, keyInColumn)) {
+        List<BlockMetaData> blocks = pruner.prune(pruneFilter);
+        LOGGER.debug(
+            "{} of {} row groups remain after pruning by {}",
+            blocks.size(),
+            footer.getBlocks().size(),
+            pruneFilter);
+        return blocks;
+      }
+    }
+
     @Override
     public String toString() {
       return "Builder{"
@@ -264,13 +321,42 @@ public class IParquetReader implements Closeable {
       Pair<FilterPredicate, Boolean> filterPredicate =
           FilterUtils.toFilterPredicate(Objects.requireNonNull(filter));
       if (filterPredicate.k != null) {
-        optionsBuilder.withRecordFilter(FilterCompat.get(filterPredicate.k));
+        optionsBuilder
+            .withRecordFilter(FilterCompat.get(filterPredicate.k))
+            .useStatsFilter(true)
+            .useDictionaryFilter(true)
+            .useColumnIndexFilter(true)
+            .useBloomFilter(true);
       } else {
         skip = !filterPredicate.v;
       }
+      return prune(filter, Function.identity());
+    }
+
+    /**
+     * Skip row groups that cannot contain rows matching the filter, according to footer statistics
+     * and bloom filters. Unlike {@link #filter(Filter)}, rows in the remaining row groups are not
+     * filtered.
+     *
+     * @param filter the filter, only used as a superset of the result, null to read all row groups
+     * @param rawNameOf maps a path in the filter to the column name in the file, null if absent
+     * @return this builder
+     */
+    public Builder prune(@Nullable Filter filter, Function<String, String> rawNameOf) {
+      this.pruneFilter = filter;
+      this.rawNameOf = Objects.requireNonNull(rawNameOf);
       return this;
     }
 
+    private static boolean hasKeyColumn(MessageType schema) {
+      if (!schema.containsField(Constants.KEY_FIELD_NAME)) {
+        return false;
+      }
+      Type type = schema.getType(Constants.KEY_FIELD_NAME);
+      return type.isPrimitive()
+          && type.asPrimitiveType().getPrimitiveTypeName() == PrimitiveType.PrimitiveTypeName.INT64;
+    }
+
     public Builder withCodecFactory(int lz4BufferSize) {
       optionsBuilder.withCodecFactory(
           new CodecFactory(
@@ -28,6 +28,8 @@ import java.io.IOException;
 import java.nio.file.Path;
 import shaded.iginx.org.apache.parquet.ParquetWriteOptions;
 import shaded.iginx.org.apache.parquet.bytes.HeapByteBufferAllocator;
+import shaded.iginx.org.apache.parquet.column.ParquetProperties;
+import shaded.iginx.org.apache.parquet.column.values.bloomfilter.BlockSplitBloomFilter;
 import shaded.iginx.org.apache.parquet.hadoop.CodecFactory;
 import shaded.iginx.org.apache.parquet.hadoop.ParquetFileWriter;
 import shaded.iginx.org.apache.parquet.hadoop.ParquetRecordWriter;
@@ -82,6 +84,8 @@ public class IParquetWriter implements Closeable {
 
     private final MessageType schema;
 
+    private int maxBloomFilterBytes;
+
     public Builder(OutputFile outputFile, MessageType schema) {
       this.outputFile = outputFile;
       this.schema = schema;
@@ -111,6 +115,35 @@ public class IParquetWriter implements Closeable {
       optionsBuilder.withCompressor(new CodecFactory().getCompressor(codecName));
       return this;
     }
+
+    /**
+     * Write a bloom filter for each column chunk of the given column, so that readers can skip row
+     * groups that cannot contain the value of an equality predicate.
+     *
+     * <p>Columns whose names contain dots cannot be configured one by one, so requesting one of
+     * them enables bloom filters for all columns of the file.
+     *
+     * @param column the name of a top-level column
+     * @param ndv the expected number of distinct values per column chunk, used to size the filter
+     * @return this builder
+     */
+    public Builder withBloomFilter(String column, long ndv) {
+      ParquetProperties.Builder propertiesBuilder = optionsBuilder.asParquetPropertiesBuilder();
+      int bytes =
+          BlockSplitBloomFilter.optimalNumOfBits(ndv, ParquetProperties.DEFAULT_BLOOM_FILTER_FPP)
+              / 8;
+      maxBloomFilterBytes = Math.max(maxBloomFilterBytes, bytes);
+      propertiesBuilder.withMaxBloomFilterBytes(maxBloomFilterBytes);
+      if (column.indexOf('.') < 0) {
+        propertiesBuilder.withBloomFilterEnabled(column, true).withBloomFilterNDV(column, ndv);
+      } else {
+        // column properties are keyed by dot-separated paths, which cannot address a top-level
+        // column whose name contains dots, so enable bloom filters for every column instead and
+        // bound their size by the expected number of distinct values
+        propertiesBuilder.withBloomFilterEnabled(true);
+      }
+      return this;
+    }
   }
 
   public static IRecord getRecord(MessageType schema, Long key, Scanner<String, Object> value)
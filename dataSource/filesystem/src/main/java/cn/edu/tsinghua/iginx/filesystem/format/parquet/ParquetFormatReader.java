@@ -27,6 +27,7 @@ import cn.edu.tsinghua.iginx.filesystem.common.Patterns;
 import cn.edu.tsinghua.iginx.filesystem.common.RowStreams;
 import cn.edu.tsinghua.iginx.filesystem.format.FileFormat;
 import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.Range;
 import java.io.IOException;
 import java.util.*;
 import javax.annotation.Nullable;
@@ -87,9 +88,15 @@ public class ParquetFormatReader implements FileFormat.Reader {
       rawFields.add(fieldToRawName.get(field));
     }
 
-    IParquetReader reader = builder.project(rawFields, false).build(footer);
+    IParquetReader reader =
+        builder.project(rawFields, false).prune(filter, fieldToRawName::get).build(footer);
 
     RowStream rowStream = new ParquetFormatRowStream(reader, rawNameToField::get);
     return RowStreams.filtered(rowStream, filter);
   }
+
+  @Override
+  public Range<Long> keyRange() {
+    return Range.closedOpen(0L, IParquetReader.getRowCountOf(footer));
+  }
 }
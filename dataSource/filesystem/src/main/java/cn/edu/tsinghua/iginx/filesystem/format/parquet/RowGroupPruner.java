@@ -0,0 +1,310 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.format.parquet;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Constants;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import shaded.iginx.org.apache.parquet.ParquetReadOptions;
+import shaded.iginx.org.apache.parquet.column.statistics.Statistics;
+import shaded.iginx.org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import shaded.iginx.org.apache.parquet.hadoop.ParquetFileReader;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.BlockMetaData;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import shaded.iginx.org.apache.parquet.io.InputFile;
+import shaded.iginx.org.apache.parquet.io.api.Binary;
+import shaded.iginx.org.apache.parquet.schema.PrimitiveComparator;
+import shaded.iginx.org.apache.parquet.schema.PrimitiveType;
+
+/**
+ * Selects the row groups that may contain rows matching a filter, according to the column
+ * statistics in the footer and the bloom filters written by {@link IParquetWriter}.
+ *
+ * <p>IGinX paths are stored as top-level columns whose names contain dots, which the dot-string
+ * based {@code FilterApi} of parquet cannot address, so value predicates are evaluated here against
+ * the column chunk metadata directly. Pruning is conservative: a row group is only skipped when no
+ * row in it can match.
+ */
+class RowGroupPruner implements Closeable {
+
+  private final InputFile inputFile;
+  private final ParquetMetadata footer;
+  private final ParquetReadOptions options;
+  private final Function<String, String> rawNameOf;
+  private final boolean keyInColumn;
+
+  private ParquetFileReader bloomFilterReader;
+
+  /**
+   * @param inputFile the file to read bloom filters from
+   * @param footer the footer of the file
+   * @param options the options to open the file with
+   * @param rawNameOf maps a path in filters to the column name in the file, null if absent
+   * @param keyInColumn whether keys are stored in the key column, otherwise keys are row indexes
+   */
+  RowGroupPruner(
+      InputFile inputFile,
+      ParquetMetadata footer,
+      ParquetReadOptions options,
+      Function<String, String> rawNameOf,
+      boolean keyInColumn) {
+    this.inputFile = inputFile;
+    this.footer = footer;
+    this.options = options;
+    this.rawNameOf = rawNameOf;
+    this.keyInColumn = keyInColumn;
+  }
+
+  List<BlockMetaData> prune(Filter filter) throws IOException {
+    List<BlockMetaData> blocks = new ArrayList<>();
+    for (BlockMetaData block : footer.getBlocks()) {
+      if (mayMatch(block, filter)) {
+        blocks.add(block);
+      }
+    }
+    return blocks;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (bloomFilterReader != null) {
+      bloomFilterReader.close();
+    }
+  }
+
+  private boolean mayMatch(BlockMetaData block, Filter filter) throws IOException {
+    switch (filter.getType()) {
+      case And:
+        for (Filter child : ((AndFilter) filter).getChildren()) {
+          if (!mayMatch(block, child)) {
+            return false;
+          }
+        }
+        return true;
+      case Or:
+        for (Filter child : ((OrFilter) filter).getChildren()) {
+          if (mayMatch(block, child)) {
+            return true;
+          }
+        }
+        return false;
+      case Key:
+        return mayMatch(block, (KeyFilter) filter);
+      case Value:
+        return mayMatch(block, (ValueFilter) filter);
+      default:
+        return true;
+    }
+  }
+
+  private boolean mayMatch(BlockMetaData block, KeyFilter filter) {
+    long min;
+    long max;
+    if (keyInColumn) {
+      ColumnChunkMetaData column = getColumn(block, Constants.KEY_FIELD_NAME);
+      if (column == null || !hasMinMax(column.getStatistics())) {
+        return true;
+      }
+      min = (Long) column.getStatistics().genericGetMin();
+      max = (Long) column.getStatistics().genericGetMax();
+    } else {
+      if (block.getRowIndexOffset() < 0 || block.getRowCount() == 0) {
+        return true;
+      }
+      min = block.getRowIndexOffset();
+      max = min + block.getRowCount() - 1;
+    }
+    long value = filter.getValue();
+    switch (filter.getOp()) {
+      case GE:
+      case GE_AND:
+        return max >= value;
+      case G:
+      case G_AND:
+        return max > value;
+      case LE:
+      case LE_AND:
+        return min <= value;
+      case L:
+      case L_AND:
+        return min < value;
+      case E:
+      case E_AND:
+        return min <= value && value <= max;
+      case NE:
+      case NE_AND:
+        return min != value || max != value;
+      default:
+        return true;
+    }
+  }
+
+  private boolean mayMatch(BlockMetaData block, ValueFilter filter) throws IOException {
+    if (filter.getPath().contains("*")) {
+      return true;
+    }
+    String rawName = rawNameOf.apply(filter.getPath());
+    if (rawName == null) {
+      return true;
+    }
+    ColumnChunkMetaData column = getColumn(block, rawName);
+    if (column == null) {
+      return true;
+    }
+    Comparable<?> value = toParquetValue(column.getPrimitiveType(), filter.getValue());
+    if (value == null) {
+      return true;
+    }
+    if (!mayMatch(column.getStatistics(), filter.getOp(), value)) {
+      return false;
+    }
+    if ((filter.getOp() == Op.E || filter.getOp() == Op.E_AND)
+        && column.getBloomFilterOffset() >= 0) {
+      BloomFilter bloomFilter = getBloomFilterReader().readBloomFilter(column);
+      return bloomFilter == null || bloomFilter.findHash(bloomFilter.hash(value));
+    }
+    return true;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static boolean mayMatch(Statistics statistics, Op op, Comparable value) {
+    if (!hasMinMax(statistics)) {
+      return true;
+    }
+    PrimitiveComparator comparator = statistics.comparator();
+    int toMin = comparator.compare(value, statistics.genericGetMin());
+    int toMax = comparator.compare(value, statistics.genericGetMax());
+    switch (op) {
+      case GE:
+      case GE_AND:
+        return toMax <= 0;
+      case G:
+      case G_AND:
+        return toMax < 0;
+      case LE:
+      case LE_AND:
+        return toMin >= 0;
+      case L:
+      case L_AND:
+        return toMin > 0;
+      case E:
+      case E_AND:
+        return toMin >= 0 && toMax <= 0;
+      default:
+        return true;
+    }
+  }
+
+  private static boolean hasMinMax(@Nullable Statistics<?> statistics) {
+    return statistics != null && !statistics.isEmpty() && statistics.hasNonNullValue();
+  }
+
+  /**
+   * Convert the value of a predicate to the type of statistics of the column.
+   *
+   * @return the converted value, or null if it can not be compared with the column without loss
+   */
+  @Nullable
+  private static Comparable<?> toParquetValue(PrimitiveType type, Value value) {
+    if (value == null || value.isNull()) {
+      return null;
+    }
+    if (type.getRepetition() == PrimitiveType.Repetition.REPEATED) {
+      return null;
+    }
+    switch (type.getPrimitiveTypeName()) {
+      case INT32:
+        switch (value.getDataType()) {
+          case INTEGER:
+            return value.getIntV();
+          default:
+            return null;
+        }
+      case INT64:
+        switch (value.getDataType()) {
+          case INTEGER:
+            return (long) value.getIntV();
+          case LONG:
+            return value.getLongV();
+          default:
+            return null;
+        }
+      case FLOAT:
+        switch (value.getDataType()) {
+          case FLOAT:
+            return value.getFloatV();
+          default:
+            return null;
+        }
+      case DOUBLE:
+        switch (value.getDataType()) {
+          case INTEGER:
+            return (double) value.getIntV();
+          case LONG:
+            return (double) value.getLongV();
+          case FLOAT:
+            return (double) value.getFloatV();
+          case DOUBLE:
+            return value.getDoubleV();
+          default:
+            return null;
+        }
+      case BINARY:
+        switch (value.getDataType()) {
+          case BINARY:
+            return Binary.fromConstantByteArray(value.getBinaryV());
+          default:
+            return null;
+        }
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  private static ColumnChunkMetaData getColumn(BlockMetaData block, String rawName) {
+    for (ColumnChunkMetaData column : block.getColumns()) {
+      String[] path = column.getPath().toArray();
+      if (path.length == 1 && path[0].equals(rawName)) {
+        return column;
+      }
+    }
+    return null;
+  }
+
+  private ParquetFileReader getBloomFilterReader() throws IOException {
+    if (bloomFilterReader == null) {
+      bloomFilterReader = new ParquetFileReader(inputFile, footer, options);
+    }
+    return bloomFilterReader;
+  }
+}
@@ -28,6 +28,7 @@ import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -36,22 +37,56 @@ import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Reads a file as a sequence of fixed-size pages, the key of each page is its index in the file.
+ *
+ * <p>Pages are copied out of memory mapped windows of the file when possible, so scanning a large
+ * file costs a page fault per OS page instead of a read system call copying each raw page, and the
+ * kernel reads ahead sequentially mapped regions. Windows are only mapped where the requested key
+ * ranges are, so skipped keys are never read. If the file can not be mapped, pages are read by
+ * positioned reads instead.
+ *
+ * <p>The size of the file is checked once when a window is mapped, and the window never extends
+ * beyond it, so a file truncated while reading ends the stream at the next window boundary. The
+ * file must not be truncated within a window that is being read: touching a mapped page beyond the
+ * end of the file raises SIGBUS, which the JVM can not reliably recover from.
+ */
 public class RawFormatRowStream extends FileSystemRowStream {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(RawFormatRowStream.class);
+
   private final Header header;
   private final FileChannel channel;
   private final long pageSize;
+  private final long fileSize;
   private final Queue<Range<Long>> keyRanges;
+  private long mmapWindowSize;
   private long nextFetchKey = 0;
   private boolean eof = false;
   private Row nextRow;
 
-  public RawFormatRowStream(Header header, Path path, long pageSize, RangeSet<Long> keyRanges)
+  @Nullable private MappedByteBuffer window;
+  private long windowPosition;
+
+  /**
+   * @param header the header of rows
+   * @param path the path of the file
+   * @param pageSize the size of each page in bytes
+   * @param mmapWindowSize the size of each memory mapped window in bytes, 0 to disable mmap
+   * @param keyRanges the key ranges to read
+   */
+  public RawFormatRowStream(
+      Header header, Path path, long pageSize, long mmapWindowSize, RangeSet<Long> keyRanges)
       throws IOException {
     this.header = header;
     this.channel = FileChannel.open(path, StandardOpenOption.READ);
     this.pageSize = pageSize;
+    this.fileSize = channel.size();
+    this.mmapWindowSize =
+        mmapWindowSize <= 0 ? 0 : Math.max(mmapWindowSize - mmapWindowSize % pageSize, pageSize);
 
     this.keyRanges = new ArrayDeque<>(keyRanges.asRanges().size());
     for (Range<Long> range : keyRanges.asRanges()) {
@@ -61,7 +96,12 @@ public class RawFormatRowStream extends FileSystemRowStream {
       }
     }
 
-    this.nextRow = fetchNext();
+    try {
+      this.nextRow = fetchNext();
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
   }
 
   @Override
@@ -71,6 +111,7 @@ public class RawFormatRowStream extends FileSystemRowStream {
 
   @Override
   public void close() throws FileSystemException {
+    window = null;
     try {
       channel.close();
     } catch (IOException e) {
@@ -107,6 +148,10 @@ public class RawFormatRowStream extends FileSystemRowStream {
         nextFetchKey = range.lowerEndpoint();
       }
       if (nextFetchKey <= range.upperEndpoint()) {
+        if (nextFetchKey >= (fileSize + pageSize - 1) / pageSize) {
+          eof = true;
+          return false;
+        }
         return true;
       }
       keyRanges.poll();
@@ -120,18 +165,68 @@ public class RawFormatRowStream extends FileSystemRowStream {
       return null;
     }
     long currentKey = nextFetchKey++;
-    byte[] data = new byte[Math.toIntExact(pageSize)];
-    ByteBuffer buffer = ByteBuffer.wrap(data);
-    channel.position(currentKey * pageSize);
-    channel.read(buffer);
-    if (buffer.remaining() > 0) {
+    long position = currentKey * pageSize;
+    byte[] data = new byte[Math.toIntExact(Math.min(pageSize, fileSize - position))];
+    int read = -1;
+    if (mmapWindowSize > 0) {
+      read = readMapped(position, data);
+    }
+    if (read < 0) {
+      read = readChannel(position, data);
+    }
+    if (read < data.length) {
+      // the file is truncated while reading
       eof = true;
-      if (buffer.position() == 0) {
+      if (read == 0) {
         return null;
       }
-      data = Arrays.copyOf(data, buffer.position());
+      data = Arrays.copyOf(data, read);
     }
     Object[] values = new Object[] {data};
     return new Row(header, currentKey, values);
   }
+
+  /**
+   * Copy a page from the memory mapped window containing it, mapping a new window if necessary.
+   *
+   * @return the number of bytes read, less than the size of the page if the file is truncated, or
+   *     -1 if the page should be read from the channel instead
+   */
+  private int readMapped(long position, byte[] dst) throws IOException {
+    if (window == null
+        || position < windowPosition
+        || position + dst.length > windowPosition + window.capacity()) {
+      // the only size check of the window, it never extends beyond the end of the file
+      long currentSize = channel.size();
+      if (position >= currentSize) {
+        window = null;
+        return 0;
+      }
+      long size = Math.min(mmapWindowSize, currentSize - position);
+      try {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        windowPosition = position;
+      } catch (IOException | UnsupportedOperationException e) {
+        LOGGER.debug("failed to map file, fall back to read: ", e);
+        window = null;
+        mmapWindowSize = 0;
+        return -1;
+      }
+    }
+    ByteBuffer page = window.duplicate();
+    page.position(Math.toIntExact(position - windowPosition));
+    int length = Math.min(dst.length, page.remaining());
+    page.get(dst, 0, length);
+    return length;
+  }
+
+  private int readChannel(long position, byte[] dst) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(dst);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        break;
+      }
+    }
+    return buffer.position();
+  }
 }
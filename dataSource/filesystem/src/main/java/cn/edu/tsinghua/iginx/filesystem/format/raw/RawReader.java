@@ -29,8 +29,10 @@ import cn.edu.tsinghua.iginx.filesystem.common.Patterns;
 import cn.edu.tsinghua.iginx.filesystem.common.RowStreams;
 import cn.edu.tsinghua.iginx.filesystem.format.FileFormat;
 import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Predicate;
@@ -79,8 +81,10 @@ public class RawReader implements FileFormat.Reader {
 
     Filter keyRangeFilter = Filters.superSet(filter, removeNonKeyFilter);
     RangeSet<Long> keyRanges = Filters.toRangeSet(keyRangeFilter);
+    long mmapWindowSize = config.isMmap() ? config.getMmapWindowSize().toBytes() : 0;
     RowStream rowStream =
-        new RawFormatRowStream(header, path, config.getPageSize().toBytes(), keyRanges);
+        new RawFormatRowStream(
+            header, path, config.getPageSize().toBytes(), mmapWindowSize, keyRanges);
 
     if (!Filters.match(filter, removeNonKeyFilter)) {
       rowStream = RowStreams.filtered(rowStream, filter);
@@ -89,6 +93,12 @@ public class RawReader implements FileFormat.Reader {
     return rowStream;
   }
 
+  @Override
+  public Range<Long> keyRange() throws IOException {
+    long pageSize = config.getPageSize().toBytes();
+    return Range.closedOpen(0L, (Files.size(path) + pageSize - 1) / pageSize);
+  }
+
   @Override
   public void close() throws IOException {}
 }
@@ -36,6 +36,12 @@ public class RawReaderConfig extends AbstractConfig {
 
   @Optional ConfigMemorySize pageSize = ConfigMemorySize.ofBytes(4096);
 
+  /** whether to read files through memory mapped windows, falls back to reads if mapping fails */
+  @Optional boolean mmap = true;
+
+  /** size of each memory mapped window, rounded down to a multiple of the page size */
+  @Optional ConfigMemorySize mmapWindowSize = ConfigMemorySize.ofBytes(64 * 1024 * 1024);
+
   @Override
   public List<ValidationProblem> validate() {
     return Collections.emptyList();
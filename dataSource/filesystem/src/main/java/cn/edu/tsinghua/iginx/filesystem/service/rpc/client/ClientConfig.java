@@ -23,7 +23,7 @@ import cn.edu.tsinghua.iginx.filesystem.common.AbstractConfig;
 import cn.edu.tsinghua.iginx.filesystem.service.rpc.client.pool.TTransportPoolConfig;
 import com.typesafe.config.Optional;
 import java.time.Duration;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -37,13 +37,17 @@ public class ClientConfig extends AbstractConfig {
   @Optional Duration socketTimeout = Duration.ZERO;
   @Optional Duration connectTimeout = Duration.ZERO;
   @Optional TTransportPoolConfig connectPool = new TTransportPoolConfig();
+  @Optional int fetchSize = 4096;
 
   @Override
   public List<ValidationProblem> validate() {
-    List<ValidationProblem> problems = Collections.emptyList();
+    List<ValidationProblem> problems = new ArrayList<>();
     validateNotNull(problems, Fields.socketTimeout, socketTimeout);
     validateNotNull(problems, Fields.connectTimeout, connectTimeout);
     validateSubConfig(problems, Fields.connectPool, connectPool);
+    if (fetchSize <= 0) {
+      problems.add(new InvalidFieldValidationProblem(Fields.fetchSize, "must be positive"));
+    }
     return problems;
   }
 }
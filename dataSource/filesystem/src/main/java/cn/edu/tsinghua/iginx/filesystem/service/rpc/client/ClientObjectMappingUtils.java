@@ -308,6 +308,35 @@ public class ClientObjectMappingUtils {
     return rowList;
   }
 
+  public static List<Row> constructRows(RawBatch batch, Header header) {
+    int size = batch.getSize();
+    int fieldSize = header.getFieldSize();
+    Object[][] values = new Object[size][fieldSize];
+    for (int i = 0; i < fieldSize; i++) {
+      DataType dataType = header.getField(i).getType();
+      Bitmap bitmap = new Bitmap(size, batch.getBitmapList().get(i).array());
+      ByteBuffer valuesBuffer = batch.getValuesList().get(i).duplicate();
+      for (int j = 0; j < size; j++) {
+        if (bitmap.get(j)) {
+          values[j][i] = ByteUtils.getValueFromByteBufferByDataType(valuesBuffer, dataType);
+        }
+      }
+    }
+
+    List<Row> rowList = new ArrayList<>(size);
+    if (batch.isSetKeys()) {
+      long[] keys = ByteUtils.getLongArrayFromByteArray(batch.getKeys());
+      for (int j = 0; j < size; j++) {
+        rowList.add(new Row(header, keys[j], values[j]));
+      }
+    } else {
+      for (int j = 0; j < size; j++) {
+        rowList.add(new Row(header, values[j]));
+      }
+    }
+    return rowList;
+  }
+
   public static Header constructHeader(RawHeader rawHeader) {
     List<Field> fields = new ArrayList<>();
     for (int i = 0; i < rawHeader.getNamesSize(); i++) {
@@ -0,0 +1,138 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.service.rpc.client;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.filesystem.common.FileSystemException;
+import cn.edu.tsinghua.iginx.filesystem.common.FileSystemRowStream;
+import cn.edu.tsinghua.iginx.filesystem.thrift.RawBatch;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/** Row stream of a remote cursor, which fetches the next batch while the current one is read. */
+class RemoteRowStream extends FileSystemRowStream {
+
+  interface Fetcher {
+    RawBatch fetch(long cursorId, int fetchSize) throws FileSystemException;
+
+    void close(long cursorId) throws FileSystemException;
+  }
+
+  private final Fetcher fetcher;
+  private final long cursorId;
+  private final Header header;
+  private final int fetchSize;
+  private final Executor executor;
+
+  private CompletableFuture<RawBatch> pending;
+  private Iterator<Row> current = Collections.emptyIterator();
+  private boolean exhausted = false;
+  private boolean closed = false;
+
+  RemoteRowStream(Fetcher fetcher, long cursorId, Header header, int fetchSize, Executor executor) {
+    this.fetcher = Objects.requireNonNull(fetcher);
+    this.cursorId = cursorId;
+    this.header = Objects.requireNonNull(header);
+    this.fetchSize = fetchSize;
+    this.executor = Objects.requireNonNull(executor);
+    prefetch();
+  }
+
+  private void prefetch() {
+    pending =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return fetcher.fetch(cursorId, fetchSize);
+              } catch (FileSystemException e) {
+                throw new CompletionException(e);
+              }
+            },
+            executor);
+  }
+
+  private RawBatch takePending() throws FileSystemException {
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FileSystemException("interrupted while fetching from remote cursor", e);
+    } catch (ExecutionException e) {
+      exhausted = true;
+      if (e.getCause() instanceof FileSystemException) {
+        throw (FileSystemException) e.getCause();
+      }
+      throw new RemoteFileSystemException("failed to fetch from remote cursor", e.getCause());
+    } finally {
+      pending = null;
+    }
+  }
+
+  @Override
+  public Header getHeader() {
+    return header;
+  }
+
+  @Override
+  public boolean hasNext() throws FileSystemException {
+    while (!current.hasNext()) {
+      if (closed || pending == null) {
+        return false;
+      }
+      RawBatch batch = takePending();
+      if (batch.isHasMore()) {
+        prefetch();
+      } else {
+        exhausted = true;
+      }
+      current = ClientObjectMappingUtils.constructRows(batch, header).iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public Row next() throws FileSystemException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  @Override
+  public void close() throws FileSystemException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    current = Collections.emptyIterator();
+    pending = null;
+    if (!exhausted) {
+      // the server drops the cursor itself once its last batch is fetched
+      fetcher.close(cursorId);
+    }
+  }
+}
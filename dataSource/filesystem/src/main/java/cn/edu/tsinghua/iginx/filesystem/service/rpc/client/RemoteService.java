@@ -19,6 +19,7 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.service.rpc.client;
 
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.filesystem.common.FileSystemException;
@@ -27,9 +28,13 @@ import cn.edu.tsinghua.iginx.filesystem.service.rpc.client.pool.PooledTTransport
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
 import cn.edu.tsinghua.iginx.filesystem.thrift.*;
 import cn.edu.tsinghua.iginx.thrift.AggregateType;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.net.InetSocketAddress;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.Nullable;
+import org.apache.thrift.TApplicationException;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.transport.TTransport;
 import org.slf4j.Logger;
@@ -41,9 +46,20 @@ public class RemoteService implements Service {
 
   protected final TSocketPool pool;
 
+  private final int fetchSize;
+
+  private final ExecutorService fetchExecutor;
+
   public RemoteService(InetSocketAddress address, ClientConfig config) {
     LOGGER.info("will connect to file store server at {}", address);
     this.pool = new TSocketPool(address, config);
+    this.fetchSize = config.getFetchSize();
+    this.fetchExecutor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setNameFormat("RemoteService(" + address + ")-fetch-%d")
+                .setDaemon(true)
+                .build());
   }
 
   private FileSystemRpc.Client wrapClient(TTransport transport) {
@@ -89,6 +105,50 @@ public class RemoteService implements Service {
       throws FileSystemException {
     RawDataTarget rawTarget = ClientObjectMappingUtils.constructRawDataTarget(target);
     RawAggregate rawAggregate = ClientObjectMappingUtils.constructRawAggregate(aggregate);
+    RawCursor cursor;
+    try (PooledTTransport transport = pool.borrowObject()) {
+      FileSystemRpc.Client client = wrapClient(transport);
+      try {
+        cursor = client.openCursor(unit, rawTarget, rawAggregate);
+      } catch (Exception e) {
+        transport.destroy();
+        throw e;
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (RpcException e) {
+      handleRpcException("query", e);
+      throw new IllegalStateException("unreachable", e);
+    } catch (TApplicationException e) {
+      if (e.getType() != TApplicationException.UNKNOWN_METHOD) {
+        throw new IllegalStateException("failed to query", e);
+      }
+      LOGGER.warn("remote server does not support cursor, fall back to query all at once");
+      return queryAll(unit, rawTarget, rawAggregate);
+    } catch (Exception e) {
+      throw new IllegalStateException("failed to query", e);
+    }
+    Header header = ClientObjectMappingUtils.constructHeader(cursor.getHeader());
+    return new RemoteRowStream(
+        new RemoteRowStream.Fetcher() {
+          @Override
+          public RawBatch fetch(long cursorId, int size) throws FileSystemException {
+            return RemoteService.this.fetch(cursorId, size);
+          }
+
+          @Override
+          public void close(long cursorId) throws FileSystemException {
+            closeCursor(cursorId);
+          }
+        },
+        cursor.getId(),
+        header,
+        fetchSize,
+        fetchExecutor);
+  }
+
+  private RowStream queryAll(DataUnit unit, RawDataTarget rawTarget, RawAggregate rawAggregate)
+      throws FileSystemException {
     try (PooledTTransport transport = pool.borrowObject()) {
       FileSystemRpc.Client client = wrapClient(transport);
       try {
@@ -108,6 +168,44 @@ public class RemoteService implements Service {
     }
   }
 
+  private RawBatch fetch(long cursorId, int size) throws FileSystemException {
+    try (PooledTTransport transport = pool.borrowObject()) {
+      FileSystemRpc.Client client = wrapClient(transport);
+      try {
+        return client.fetch(cursorId, size);
+      } catch (Exception e) {
+        transport.destroy();
+        throw e;
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (RpcException e) {
+      handleRpcException("fetch", e);
+      throw new IllegalStateException("unreachable", e);
+    } catch (Exception e) {
+      throw new RemoteFileSystemException("failed to fetch", e);
+    }
+  }
+
+  private void closeCursor(long cursorId) throws FileSystemException {
+    try (PooledTTransport transport = pool.borrowObject()) {
+      FileSystemRpc.Client client = wrapClient(transport);
+      try {
+        client.closeCursor(cursorId);
+      } catch (Exception e) {
+        transport.destroy();
+        throw e;
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (RpcException e) {
+      handleRpcException("close cursor", e);
+      throw new IllegalStateException("unreachable", e);
+    } catch (Exception e) {
+      throw new RemoteFileSystemException("failed to close cursor", e);
+    }
+  }
+
   @Override
   public void delete(DataUnit dataUnit, DataTarget target) throws FileSystemException {
     RawDataTarget rawTarget = ClientObjectMappingUtils.constructRawDataTarget(target);
@@ -152,6 +250,7 @@ public class RemoteService implements Service {
 
   @Override
   public void close() {
+    fetchExecutor.shutdown();
     pool.close();
   }
 }
@@ -41,11 +41,13 @@ public class Server implements AutoCloseable {
 
   private final TServer server;
 
+  private final ServerWorker worker;
+
   public Server(InetSocketAddress address, Service service)
       throws TTransportException, InterruptedException {
     LOGGER.info("starting thrift server at {}", address);
-    TProcessor processor =
-        new FileSystemRpc.Processor<FileSystemRpc.Iface>(new ServerWorker(service));
+    this.worker = new ServerWorker(service);
+    TProcessor processor = new FileSystemRpc.Processor<FileSystemRpc.Iface>(worker);
     Config config = ConfigDescriptor.getInstance().getConfig();
     ExecutorService executorService =
         new ThreadPoolExecutor(
@@ -87,5 +89,6 @@ public class Server implements AutoCloseable {
   @Override
   public void close() {
     server.stop();
+    worker.closeCursors();
   }
 }
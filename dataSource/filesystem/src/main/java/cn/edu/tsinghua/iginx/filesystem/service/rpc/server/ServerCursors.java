@@ -0,0 +1,160 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.service.rpc.server;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.filesystem.common.FileSystemException;
+import cn.edu.tsinghua.iginx.filesystem.thrift.RawBatch;
+import cn.edu.tsinghua.iginx.filesystem.thrift.RawCursor;
+import cn.edu.tsinghua.iginx.thrift.RawHeader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Row streams opened by remote clients, which fetch them batch by batch until closed. Cursors not
+ * fetched within the timeout are closed by a background task.
+ */
+class ServerCursors implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServerCursors.class);
+
+  private final AtomicLong nextId = new AtomicLong();
+  private final Map<Long, Cursor> cursors = new ConcurrentHashMap<>();
+  private final long timeoutNanos;
+  private final ScheduledExecutorService expireScheduler;
+
+  ServerCursors(Duration timeout) {
+    this.timeoutNanos = timeout.toNanos();
+    ThreadFactory factory =
+        new ThreadFactoryBuilder().setNameFormat("cursor-expire-%d").setDaemon(true).build();
+    this.expireScheduler = Executors.newSingleThreadScheduledExecutor(factory);
+    long period = Math.max(timeoutNanos / 2, 1);
+    expireScheduler.scheduleWithFixedDelay(this::expire, period, period, TimeUnit.NANOSECONDS);
+  }
+
+  private static class Cursor {
+    private final RowStream stream;
+    private final RawHeader header;
+    private volatile long lastAccess = System.nanoTime();
+    private boolean closed = false;
+
+    Cursor(RowStream stream, RawHeader header) {
+      this.stream = stream;
+      this.header = header;
+    }
+
+    synchronized RawBatch fetch(int fetchSize) throws PhysicalException {
+      lastAccess = System.nanoTime();
+      if (closed) {
+        throw new FileSystemException("cursor is closed");
+      }
+      return ServerObjectMappingUtils.constructRawBatch(stream, header, fetchSize);
+    }
+
+    synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        stream.close();
+      } catch (PhysicalException e) {
+        LOGGER.warn("failed to close cursor stream", e);
+      }
+    }
+  }
+
+  RawCursor open(RowStream stream) throws FileSystemException {
+    RawHeader header;
+    try {
+      header = ServerObjectMappingUtils.constructRawHeader(stream.getHeader());
+    } catch (PhysicalException e) {
+      try {
+        stream.close();
+      } catch (PhysicalException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw new FileSystemException(e);
+    }
+    long id = nextId.incrementAndGet();
+    cursors.put(id, new Cursor(stream, header));
+    return new RawCursor(id, header);
+  }
+
+  RawBatch fetch(long id, int fetchSize) throws FileSystemException {
+    Cursor cursor = cursors.get(id);
+    if (cursor == null) {
+      throw new FileSystemException("cursor " + id + " does not exist or has expired");
+    }
+    try {
+      RawBatch batch = cursor.fetch(fetchSize);
+      if (!batch.isHasMore()) {
+        close(id);
+      }
+      return batch;
+    } catch (PhysicalException e) {
+      close(id);
+      throw new FileSystemException(e);
+    }
+  }
+
+  void close(long id) {
+    Cursor cursor = cursors.remove(id);
+    if (cursor != null) {
+      cursor.close();
+    }
+  }
+
+  private void expire() {
+    long now = System.nanoTime();
+    Iterator<Map.Entry<Long, Cursor>> iterator = cursors.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, Cursor> entry = iterator.next();
+      if (now - entry.getValue().lastAccess > timeoutNanos) {
+        LOGGER.warn("cursor {} is not fetched in time, close it", entry.getKey());
+        iterator.remove();
+        try {
+          entry.getValue().close();
+        } catch (RuntimeException e) {
+          // keep the scheduled task alive for other cursors
+          LOGGER.error("failed to close expired cursor {}", entry.getKey(), e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    expireScheduler.shutdownNow();
+    cursors.values().forEach(Cursor::close);
+    cursors.clear();
+  }
+}
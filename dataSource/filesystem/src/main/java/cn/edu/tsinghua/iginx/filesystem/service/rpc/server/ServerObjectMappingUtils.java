@@ -295,6 +295,41 @@ public class ServerObjectMappingUtils {
     return rawRows;
   }
 
+  public static RawBatch constructRawBatch(RowStream rowStream, RawHeader rawHeader, int fetchSize)
+      throws PhysicalException {
+    List<Row> rows = new ArrayList<>();
+    while (rows.size() < fetchSize && rowStream.hasNext()) {
+      rows.add(rowStream.next());
+    }
+    int size = rows.size();
+
+    List<ByteBuffer> valuesList = new ArrayList<>();
+    List<ByteBuffer> bitmapList = new ArrayList<>();
+    List<DataType> types = rawHeader.getTypes();
+    for (int i = 0; i < types.size(); i++) {
+      Object[] values = new Object[size];
+      Bitmap bitmap = new Bitmap(size);
+      for (int j = 0; j < size; j++) {
+        values[j] = rows.get(j).getValue(i);
+        if (values[j] != null) {
+          bitmap.mark(j);
+        }
+      }
+      valuesList.add(ByteUtils.getColumnByteBuffer(values, types.get(i)));
+      bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
+    }
+
+    RawBatch batch = new RawBatch(size, valuesList, bitmapList, rowStream.hasNext());
+    if (rawHeader.isHasKey()) {
+      long[] keys = new long[size];
+      for (int j = 0; j < size; j++) {
+        keys[j] = rows.get(j).getKey();
+      }
+      batch.setKeys(ByteUtils.getByteArrayFromLongArray(keys));
+    }
+    return batch;
+  }
+
   public static DataView resolveRawInserted(RawInserted rawInserted) {
     RawDataType rawDataType =
         ServerObjectMappingUtils.resolveRawDataType(rawInserted.getRawDataType());
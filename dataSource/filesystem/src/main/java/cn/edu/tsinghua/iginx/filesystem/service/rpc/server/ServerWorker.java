@@ -26,6 +26,7 @@ import cn.edu.tsinghua.iginx.filesystem.service.Service;
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
 import cn.edu.tsinghua.iginx.filesystem.thrift.*;
 import cn.edu.tsinghua.iginx.thrift.AggregateType;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -35,8 +36,12 @@ public class ServerWorker implements FileSystemRpc.Iface {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ServerWorker.class);
 
+  private static final Duration CURSOR_TIMEOUT = Duration.ofMinutes(10);
+
   private final Service service;
 
+  private final ServerCursors cursors = new ServerCursors(CURSOR_TIMEOUT);
+
   public ServerWorker(Service service) {
     this.service = service;
   }
@@ -73,6 +78,39 @@ public class ServerWorker implements FileSystemRpc.Iface {
     }
   }
 
+  @Override
+  public RawCursor openCursor(DataUnit unit, RawDataTarget target, RawAggregate aggregate)
+      throws RpcException {
+    DataTarget dataTarget = ServerObjectMappingUtils.resolveRawDataTarget(target);
+    AggregateType aggregateType = ServerObjectMappingUtils.resolveRawAggregate(aggregate);
+    try {
+      RowStream rowStream = service.query(unit, dataTarget, aggregateType);
+      return cursors.open(rowStream);
+    } catch (FileSystemException e) {
+      LOGGER.error("failed to openCursor({}, {}, {})", unit, target, aggregate, e);
+      throw new RpcException(Status.FileSystemException, e.getMessage());
+    }
+  }
+
+  @Override
+  public RawBatch fetch(long cursorId, int fetchSize) throws RpcException {
+    try {
+      return cursors.fetch(cursorId, fetchSize);
+    } catch (FileSystemException e) {
+      LOGGER.error("failed to fetch({}, {})", cursorId, fetchSize, e);
+      throw new RpcException(Status.FileSystemException, e.getMessage());
+    }
+  }
+
+  @Override
+  public void closeCursor(long cursorId) {
+    cursors.close(cursorId);
+  }
+
+  void closeCursors() {
+    cursors.close();
+  }
+
   @Override
   public void delete(DataUnit unit, RawDataTarget target) throws RpcException {
     DataTarget dataTarget = ServerObjectMappingUtils.resolveRawDataTarget(target);
@@ -42,6 +42,14 @@ public class StorageConfig extends AbstractConfig {
   String root;
   String struct;
   @Optional Config config = ConfigFactory.empty();
+  @Optional int parallelism = 1;
+  @Optional int prefetch = 1024;
+
+  public StorageConfig(String root, String struct, Config config) {
+    this.root = root;
+    this.struct = struct;
+    this.config = config;
+  }
 
   @Override
   public List<ValidationProblem> validate() {
@@ -49,6 +57,12 @@ public class StorageConfig extends AbstractConfig {
     validateNotBlanks(problems, Fields.root, root);
     validateNotNull(problems, Fields.struct, struct);
     validateNotNull(problems, Fields.config, config);
+    if (parallelism < 1) {
+      problems.add(new ValidationProblem(Fields.parallelism, "parallelism must be positive"));
+    }
+    if (prefetch < 1) {
+      problems.add(new ValidationProblem(Fields.prefetch, "prefetch must be positive"));
+    }
     FileStructure fileStructure = FileStructureManager.getInstance().getByName(struct);
     if (fileStructure == null) {
       problems.add(new ValidationProblem(Fields.struct, "Unknown file structure: " + struct));
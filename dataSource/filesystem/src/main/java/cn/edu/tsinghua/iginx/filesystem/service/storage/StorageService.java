@@ -23,6 +23,7 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.filesystem.common.DataUnits;
 import cn.edu.tsinghua.iginx.filesystem.common.FileSystemException;
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.service.Service;
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
 import cn.edu.tsinghua.iginx.filesystem.struct.FileManager;
@@ -57,6 +58,8 @@ public class StorageService implements Service {
   private final Closeable dataShared;
   private final Closeable dummyShared;
 
+  private final ScanPool dummyPool;
+
   @GuardedBy("this")
   private final ConcurrentHashMap<DataUnit, FileManager> managers = new ConcurrentHashMap<>();
 
@@ -78,6 +81,10 @@ public class StorageService implements Service {
 
     this.dataShared = getShared(dataConfig, dataStructure);
     this.dummyShared = getShared(dummyConfig, dummyStructure);
+    this.dummyPool =
+        dummyConfig == null
+            ? null
+            : ScanPool.of("units", dummyConfig.getParallelism(), dummyConfig.getPrefetch());
 
     try {
       initManager();
@@ -124,7 +131,7 @@ public class StorageService implements Service {
 
     if (dummyConfig != null) {
       if (dummyStructure.supportWrite()) {
-        FileManager mergedDummyManager = new UnitsMerger(this::getNamedDummyUnits);
+        FileManager mergedDummyManager = new UnitsMerger(this::getNamedDummyUnits, dummyPool);
         managers.put(DataUnits.of(true, null), mergedDummyManager);
       } else {
         getOrCreateManager(DataUnits.of(true, null));
@@ -344,6 +351,9 @@ public class StorageService implements Service {
         exception.addSuppressed(e);
       }
     }
+    if (dummyPool != null) {
+      dummyPool.close();
+    }
     if (exception.getSuppressed().length > 0) {
       throw exception;
     }
@@ -86,6 +86,12 @@ public class LegacyParquet implements FileStructure {
     if (config.hasPath(StorageProperties.Builder.WRITE_BATCH_SIZE)) {
       builder.setWriteBatchSize(config.getBytes(StorageProperties.Builder.WRITE_BATCH_SIZE));
     }
+    if (config.hasPath(StorageProperties.Builder.WAL_ENABLE)) {
+      builder.setWriteAheadLog(config.getBoolean(StorageProperties.Builder.WAL_ENABLE));
+    }
+    if (config.hasPath(StorageProperties.Builder.WAL_SYNC)) {
+      builder.setWriteAheadLogSync(config.getBoolean(StorageProperties.Builder.WAL_SYNC));
+    }
     if (config.hasPath(StorageProperties.Builder.CACHE_CAPACITY)) {
       builder.setCacheCapacity(config.getBytes(StorageProperties.Builder.CACHE_CAPACITY));
     }
@@ -133,7 +139,7 @@ public class LegacyParquet implements FileStructure {
 
   @Override
   public FileManager newReader(Path path, Closeable shared) throws IOException {
-    return new LegacyParquetWrapper(p -> new DataManager((Shared) shared, p), path, true);
+    return new LegacyParquetWrapper(p -> new DataManager((Shared) shared, p, false), path, true);
   }
 
   @Override
@@ -143,6 +149,6 @@ public class LegacyParquet implements FileStructure {
 
   @Override
   public FileManager newWriter(Path path, Closeable shared) throws IOException {
-    return new LegacyParquetWrapper(p -> new DataManager((Shared) shared, p), path, false);
+    return new LegacyParquetWrapper(p -> new DataManager((Shared) shared, p, true), path, false);
   }
 }
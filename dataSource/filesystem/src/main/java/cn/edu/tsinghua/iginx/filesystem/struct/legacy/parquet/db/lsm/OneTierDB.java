@@ -22,14 +22,18 @@ package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.Database;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.ReadWriter;
-import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.DataBuffer;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.MemTableQueue;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.chunk.Chunk;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.compact.Compactor;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.compact.Flusher;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.TableStorage;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.TableStorageMetrics;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.wal.LogRecord;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.wal.WriteAheadLog;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.WriteBatches;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.BatchPlaneScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.RowUnionScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.utils.TagKVUtils;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.NoexceptAutoCloseable;
@@ -40,16 +44,19 @@ import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.Sto
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageRuntimeException;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.TypeConflictedException;
 import cn.edu.tsinghua.iginx.thrift.DataType;
-import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import javax.annotation.WillClose;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.util.AutoCloseables;
@@ -66,15 +73,86 @@ public class OneTierDB implements Database {
   private final BufferAllocator allocator;
   private final TableStorage tableStorage;
   private final MemTableQueue memTableQueue;
+  private final Compactor compactor;
   private final Flusher flusher;
+  @Nullable private final WriteAheadLog wal;
 
-  public OneTierDB(String name, Shared shared, ReadWriter readerWriter) throws IOException {
+  /** @param walDir the directory of write-ahead log, null to disable the log */
+  public OneTierDB(String name, Shared shared, ReadWriter readerWriter, @Nullable Path walDir)
+      throws IOException {
     this.name = name;
     this.shared = shared;
     this.allocator = shared.getAllocator().newChildAllocator(name, 0, Long.MAX_VALUE);
     this.tableStorage = new TableStorage(shared, readerWriter);
-    this.memTableQueue = new MemTableQueue(shared, allocator);
-    this.flusher = new Flusher(name, shared, allocator, memTableQueue, tableStorage);
+    this.wal =
+        walDir == null
+            ? null
+            : new WriteAheadLog(walDir, shared.getStorageProperties().isWriteAheadLogSync());
+    this.memTableQueue = new MemTableQueue(shared, allocator, wal);
+    this.compactor = new Compactor(name, shared, tableStorage, lock.readLock());
+    this.flusher = new Flusher(name, shared, allocator, memTableQueue, tableStorage, compactor);
+    if (wal != null) {
+      recover();
+    }
+    compactor.trigger();
+  }
+
+  /**
+   * replay the write-ahead log left by the previous run into memtables, then flush them into tables
+   * so that the replayed segments can be dropped
+   */
+  private void recover() throws IOException {
+    try {
+      long count = wal.replay(this::redo);
+      if (count > 0) {
+        LOGGER.info("replayed {} records of write-ahead log in {}", count, name);
+        memTableQueue.compact();
+        memTableQueue.flush();
+      }
+    } catch (StorageException e) {
+      throw new IOException("failed to replay write-ahead log of " + name, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while replaying write-ahead log of " + name, e);
+    }
+    wal.truncate();
+  }
+
+  private void redo(byte[] bytes) throws IOException, StorageException, InterruptedException {
+    LogRecord record = LogRecord.parse(bytes);
+    switch (record.getType()) {
+      case UPSERT:
+        try (Scanner<String, Scanner<Long, Object>> columns = record.getColumns()) {
+          Map<String, DataType> schema = record.getSchema();
+          putAll(WriteBatches.recordOfColumns(columns, schema, allocator), schema, false);
+        }
+        break;
+      case DELETE:
+        // tables have persisted the deletion as tombstones, only memtables need to be redone
+        Map<String, DataType> types = tableStorage.schema();
+        memTableQueue.delete(ArrowFields.of(retainDeclared(record.getDeleted(), types), types));
+        break;
+      default:
+        throw new IOException("unexpected write-ahead log record: " + record.getType());
+    }
+  }
+
+  private static AreaSet<Long, String> retainDeclared(
+      AreaSet<Long, String> areas, Map<String, DataType> types) {
+    AreaSet<Long, String> declared = new AreaSet<>();
+    declared.add(areas.getKeys());
+    Set<String> fields = new HashSet<>(areas.getFields());
+    fields.retainAll(types.keySet());
+    declared.add(fields);
+    areas
+        .getSegments()
+        .forEach(
+            (field, ranges) -> {
+              if (types.containsKey(field)) {
+                declared.add(Collections.singleton(field), ranges);
+              }
+            });
+    return declared;
   }
 
   @Override
@@ -88,18 +166,22 @@ public class OneTierDB implements Database {
 
     lock.readLock().lock();
     try {
-      List<Scanner<Long, Scanner<String, Object>>> inMemories =
-          memTableQueue.scan(new ArrayList<>(fields), ranges, allocator);
-      try (AutoCloseable c = AutoCloseables.all(inMemories)) {
-        DataBuffer<Long, String, Object> readBuffer =
-            tableStorage.query(innerFields, ranges, filter);
-        for (Scanner<Long, Scanner<String, Object>> scanner : inMemories) {
-          readBuffer.putRows(scanner);
+      // 按从旧到新的顺序收集各个表与内存表的有序扫描器，逐行归并而不物化全部结果
+      List<Scanner<Long, Scanner<String, Object>>> scanners =
+          new ArrayList<>(tableStorage.query(innerFields, ranges, filter));
+      try {
+        scanners.addAll(memTableQueue.scan(new ArrayList<>(fields), ranges, allocator));
+      } catch (IOException e) {
+        try {
+          AutoCloseables.close(scanners);
+        } catch (Exception ex) {
+          e.addSuppressed(ex);
         }
-        return readBuffer.scanRows(innerFields, Range.all());
-      } catch (Exception e) {
-        throw new IllegalStateException(e);
+        throw e;
       }
+      // RowUnionScanner 中靠前的扫描器优先，同一 key 同一列取最新的值
+      Collections.reverse(scanners);
+      return new RowUnionScanner<>(scanners);
     } finally {
       lock.readLock().unlock();
     }
@@ -142,7 +224,7 @@ public class OneTierDB implements Database {
         new BatchPlaneScanner<>(scanner, shared.getStorageProperties().getWriteBatchSize())) {
       while (batchScanner.iterate()) {
         try (Scanner<Long, Scanner<String, Object>> batch = batchScanner.value()) {
-          putAll(WriteBatches.recordOfRows(batch, schema, allocator), schema);
+          putAll(WriteBatches.recordOfRows(batch, schema, allocator), schema, true);
         }
       }
     }
@@ -156,21 +238,28 @@ public class OneTierDB implements Database {
         new BatchPlaneScanner<>(scanner, shared.getStorageProperties().getWriteBatchSize())) {
       while (batchScanner.iterate()) {
         try (Scanner<String, Scanner<Long, Object>> batch = batchScanner.value()) {
-          putAll(WriteBatches.recordOfColumns(batch, schema, allocator), schema);
+          putAll(WriteBatches.recordOfColumns(batch, schema, allocator), schema, true);
         }
       }
     }
   }
 
-  private void putAll(@WillClose Iterable<Chunk.Snapshot> chunks, Map<String, DataType> schema)
+  private void putAll(
+      @WillClose Iterable<Chunk.Snapshot> chunks, Map<String, DataType> schema, boolean logged)
       throws TypeConflictedException, InterruptedException {
     lock.readLock().lock();
     try (NoexceptAutoCloseable guarder = NoexceptAutoCloseables.all(chunks)) {
       tableStorage.declareFields(schema);
-      memTableQueue.store(chunks);
+      // encode the record outside the memtable locks, only the append itself is serialized
+      byte[] record = wal != null && logged ? LogRecord.upsert(chunks) : null;
+      long lsn = memTableQueue.store(chunks, record);
       if (shared.getStorageProperties().getWriteBufferTimeout().toMillis() <= 0) {
         memTableQueue.flush();
+      } else if (record != null) {
+        wal.sync(lsn);
       }
+    } catch (IOException e) {
+      throw new StorageRuntimeException(e);
     } finally {
       lock.readLock().unlock();
     }
@@ -182,6 +271,9 @@ public class OneTierDB implements Database {
     lock.writeLock().lock();
     try {
       LOGGER.debug("start to delete {} in {}", range, name);
+      if (wal != null) {
+        wal.sync(wal.append(LogRecord.delete(innerAreas)));
+      }
       memTableQueue.delete(range);
       tableStorage.delete(innerAreas);
     } catch (IOException e) {
@@ -197,31 +289,56 @@ public class OneTierDB implements Database {
     try {
       LOGGER.debug("start to clear {}", name);
       flusher.stop();
+      compactor.stop();
       memTableQueue.clear();
       tableStorage.clear();
+      if (wal != null) {
+        wal.truncate();
+      }
       if (allocator.getAllocatedMemory() > 0) {
         throw new IllegalStateException("allocator is not empty: " + allocator.toVerboseString());
       }
       if (LOGGER.isDebugEnabled()) {
         LOGGER.debug("cleared {}, allocator: {}", name, allocator);
       }
+      compactor.start();
       flusher.start();
+    } catch (IOException e) {
+      throw new StorageException(e);
     } finally {
       lock.writeLock().unlock();
     }
   }
 
+  /**
+   * Get the write and read amplification metrics of the flushed tables
+   *
+   * @return the metrics accumulated since the database is opened
+   */
+  public TableStorageMetrics getMetrics() {
+    return tableStorage.getMetrics();
+  }
+
   @Override
   public void close() throws Exception {
     lock.writeLock().lock();
     try {
       if (shared.getStorageProperties().toFlushOnClose()) {
         memTableQueue.flush();
+        if (wal != null) {
+          // all records are in tables now
+          wal.truncate();
+        }
       }
       flusher.close();
+      compactor.close();
       memTableQueue.close();
+      if (wal != null) {
+        wal.close();
+      }
       tableStorage.close();
       allocator.close();
+      LOGGER.info("closed {}, {}", name, tableStorage.getMetrics());
     } finally {
       lock.writeLock().unlock();
     }
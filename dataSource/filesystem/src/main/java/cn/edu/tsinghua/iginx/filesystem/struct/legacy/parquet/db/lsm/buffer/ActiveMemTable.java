@@ -22,12 +22,14 @@ package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.chunk.Chunk;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.conflict.ConflictResolver;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.MemoryTable;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.wal.WriteAheadLog;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Awaitable;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.NoexceptAutoCloseable;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowFields;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageRuntimeException;
 import com.google.common.collect.RangeSet;
 import java.io.IOException;
 import java.util.*;
@@ -35,6 +37,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.util.Preconditions;
 import org.apache.arrow.vector.types.pojo.Field;
@@ -48,15 +51,17 @@ public class ActiveMemTable {
   private final Shared shared;
   private final BufferAllocator allocator;
   private final ConflictResolver resolver;
+  @Nullable private final WriteAheadLog wal;
 
   private long activeId = 0;
   private BufferAllocator activeAllocator = null;
   private MemTable activeTable = null;
   private final NavigableMap<Long, CountDownLatch> awaiting = new TreeMap<>();
 
-  ActiveMemTable(Shared shared, BufferAllocator allocator) {
+  ActiveMemTable(Shared shared, BufferAllocator allocator, @Nullable WriteAheadLog wal) {
     this.shared = Preconditions.checkNotNull(shared);
     this.allocator = Preconditions.checkNotNull(allocator);
+    this.wal = wal;
     this.resolver = shared.getStorageProperties().getWriteBufferConflictResolverType().create();
   }
 
@@ -71,11 +76,26 @@ public class ActiveMemTable {
     }
   }
 
-  public void store(Iterable<Chunk.Snapshot> data) {
+  /**
+   * store data into the active table, the record is appended to the write-ahead log in the same
+   * critical section, so that it always belongs to the segment of the table holding the data
+   *
+   * @param data the data to store
+   * @param record the write-ahead log record of data, null if not to be logged
+   * @return the log sequence number of the record, WriteAheadLog.NO_LSN if not logged
+   */
+  public long store(Iterable<Chunk.Snapshot> data, @Nullable byte[] record) {
     switchTableLock.readLock().lock();
     try {
       createMemtableIfNotExist();
+      long lsn = WriteAheadLog.NO_LSN;
+      if (wal != null && record != null) {
+        lsn = wal.append(record);
+      }
       resolver.append(activeTable, data);
+      return lsn;
+    } catch (IOException e) {
+      throw new StorageRuntimeException(e);
     } finally {
       switchTableLock.readLock().unlock();
     }
@@ -130,16 +150,21 @@ public class ActiveMemTable {
         shared.getMemTablePermits().release();
         return Collections.emptyMap();
       }
+      long walSegment = wal == null ? WriteAheadLog.NO_SEGMENT : wal.rotate();
       Map<Long, ArchivedMemTable> result = new HashMap<>();
       List<NoexceptAutoCloseable> onClose = new ArrayList<>();
       awaiting.values().forEach(latch -> onClose.add(latch::countDown));
       onClose.add(activeAllocator::close);
       onClose.add(() -> shared.getMemTablePermits().release());
-      result.put(activeId++, new ArchivedMemTable(activeTable, onClose));
+      result.put(activeId++, new ArchivedMemTable(activeTable, onClose, walSegment));
       awaiting.clear();
       activeTable = null;
       activeAllocator = null;
       return result;
+    } catch (IOException e) {
+      // the table stays active, the log releases the failed segment with the next archived one
+      shared.getMemTablePermits().release();
+      throw new StorageRuntimeException(e);
     } finally {
       switchTableLock.writeLock().unlock();
       flushLock.writeLock().unlock();
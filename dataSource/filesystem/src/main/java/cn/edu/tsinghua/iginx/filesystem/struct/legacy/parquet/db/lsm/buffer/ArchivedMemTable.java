@@ -35,15 +35,27 @@ import org.apache.arrow.vector.types.pojo.Field;
 public class ArchivedMemTable implements NoexceptAutoCloseable {
   private final MemTable memTable;
   private final Collection<NoexceptAutoCloseable> onClose;
+  private final long walSegment;
   private final AreaSet<Long, Field> deleted = new AreaSet<>();
   private final CountDownLatch latch = new CountDownLatch(1);
   private boolean snapshot = false;
 
   public ArchivedMemTable(
       @WillCloseWhenClosed MemTable memTable,
-      @WillCloseWhenClosed Collection<NoexceptAutoCloseable> onClose) {
+      @WillCloseWhenClosed Collection<NoexceptAutoCloseable> onClose,
+      long walSegment) {
     this.memTable = Preconditions.checkNotNull(memTable);
     this.onClose = new ArrayList<>(onClose);
+    this.walSegment = walSegment;
+  }
+
+  /**
+   * Get the write-ahead log segment holding the records of this table
+   *
+   * @return the segment, or WriteAheadLog.NO_SEGMENT if the log is disabled
+   */
+  public long getWalSegment() {
+    return walSegment;
   }
 
   public synchronized MemoryTable snapshot(BufferAllocator allocator) {
@@ -21,6 +21,7 @@ package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer;
 
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.chunk.Chunk;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.MemoryTable;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.wal.WriteAheadLog;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.AreaFilterScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
@@ -36,6 +37,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import javax.annotation.Nonnegative;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.util.AutoCloseables;
@@ -55,15 +57,25 @@ public class MemTableQueue implements NoexceptAutoCloseable {
   private final NavigableMap<Long, ArchivedMemTable> archives = new TreeMap<>();
   private final BufferAllocator allocator;
   private final ActiveMemTable active;
+  @Nullable private final WriteAheadLog wal;
 
-  public MemTableQueue(Shared shared, BufferAllocator allocator) {
+  public MemTableQueue(Shared shared, BufferAllocator allocator, @Nullable WriteAheadLog wal) {
     String allocatorName =
         String.join("-", allocator.getName(), MemTableQueue.class.getSimpleName());
     this.allocator = allocator.newChildAllocator(allocatorName, 0, Long.MAX_VALUE);
-    this.active = new ActiveMemTable(shared, this.allocator);
+    this.active = new ActiveMemTable(shared, this.allocator, wal);
+    this.wal = wal;
   }
 
-  public void store(Iterable<Chunk.Snapshot> data) throws InterruptedException {
+  /**
+   * store data into the active table
+   *
+   * @param data the data to store
+   * @param record the write-ahead log record of data, null if not to be logged
+   * @return the log sequence number of the record, WriteAheadLog.NO_LSN if not logged
+   */
+  public long store(Iterable<Chunk.Snapshot> data, @Nullable byte[] record)
+      throws InterruptedException {
     checkSizeLock.lock();
     try {
       if (active.isOverloaded()) {
@@ -72,7 +84,7 @@ public class MemTableQueue implements NoexceptAutoCloseable {
     } finally {
       checkSizeLock.unlock();
     }
-    active.store(data);
+    return active.store(data, record);
   }
 
   public void compact() throws InterruptedException {
@@ -175,6 +187,9 @@ public class MemTableQueue implements NoexceptAutoCloseable {
       if (archives.containsKey(id)) {
         try (ArchivedMemTable memTable = archives.remove(id)) {
           commiter.accept(memTable.getDeleted());
+          if (wal != null) {
+            wal.release(memTable.getWalSegment());
+          }
         }
         return;
       }
@@ -37,6 +37,8 @@ public abstract class IndexedChunk extends Chunk {
 
   protected final BufferAllocator allocator;
 
+  private boolean deleted = false;
+
   protected IndexedChunk(@WillCloseWhenClosed Chunk chunk, BufferAllocator allocator) {
     super(chunk.keys, chunk.values);
     this.allocator = allocator;
@@ -45,7 +47,8 @@ public abstract class IndexedChunk extends Chunk {
   @Override
   public synchronized Snapshot snapshot(BufferAllocator allocator) {
     Snapshot snapshot = super.snapshot(allocator);
-    if (ArrowVectors.isSorted(snapshot.keys)) {
+    // deleted values are only filtered out through the index
+    if (!deleted && ArrowVectors.isSorted(snapshot.keys)) {
       return snapshot;
     }
     IntVector indexes = indexOf(snapshot, allocator);
@@ -61,6 +64,7 @@ public abstract class IndexedChunk extends Chunk {
 
   public synchronized void delete(RangeSet<Long> rangeSet) {
     Preconditions.checkNotNull(rangeSet);
+    deleted = true;
     deleteIndex(rangeSet);
   }
 
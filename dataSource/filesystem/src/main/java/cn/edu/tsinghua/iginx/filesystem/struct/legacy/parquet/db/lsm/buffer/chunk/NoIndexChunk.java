@@ -68,7 +68,9 @@ public class NoIndexChunk extends IndexedChunk {
 
   @Override
   protected void deleteIndex(RangeSet<Long> rangeSet) {
-    tombstone.computeIfAbsent(valueCount, k -> TreeRangeSet.create()).addAll(rangeSet);
-    tombstone.values().forEach(r -> r.removeAll(rangeSet));
+    // an index is checked against the first tombstone after it, so every value written so far must
+    // see the deletion
+    tombstone.computeIfAbsent(valueCount, k -> TreeRangeSet.create());
+    tombstone.headMap(valueCount, true).values().forEach(r -> r.addAll(rangeSet));
   }
 }
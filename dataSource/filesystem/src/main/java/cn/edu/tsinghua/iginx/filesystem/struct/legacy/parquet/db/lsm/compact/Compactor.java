@@ -0,0 +1,155 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.compact;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.TableStorage;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.NoexceptAutoCloseable;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.arrow.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size-tiered compactor of flushed tables. Consecutive tables of similar size are merged into one
+ * table in background, and deleted data is dropped during the merge. Compactions share the permits
+ * of flushers, so the total IO of them is bounded by {@code compact.permits}.
+ */
+@NotThreadSafe
+public class Compactor implements NoexceptAutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Compactor.class);
+
+  private final String name;
+  private final Shared shared;
+  private final TableStorage tableStorage;
+  private final Lock readLock;
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+  private ExecutorService executor;
+  private boolean running = false;
+
+  /**
+   * @param readLock the read lock of database, which is held during compaction to exclude
+   *     deletions. Compaction is skipped if the lock is not available.
+   */
+  public Compactor(String name, Shared shared, TableStorage tableStorage, Lock readLock) {
+    this.name = name;
+    this.shared = shared;
+    this.tableStorage = tableStorage;
+    this.readLock = readLock;
+    start();
+  }
+
+  @Override
+  public void close() {
+    stop();
+  }
+
+  public void start() {
+    Preconditions.checkState(!running, "compactor is already running");
+
+    ThreadFactory factory =
+        new ThreadFactoryBuilder().setNameFormat("compactor-" + name + "-%d").build();
+    this.executor = Executors.newSingleThreadExecutor(factory);
+    scheduled.set(false);
+
+    running = true;
+  }
+
+  public void stop() {
+    Preconditions.checkState(running, "compactor is not running");
+
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        throw new IllegalStateException("compactor is not terminated");
+      }
+      running = false;
+    } catch (InterruptedException e) {
+      LOGGER.debug("compactor is interrupted:", e);
+    }
+  }
+
+  /** Schedule compaction in background, do nothing if there is a compaction scheduled already */
+  public void trigger() {
+    if (shared.getStorageProperties().getCompactTableThreshold() < 2) {
+      return;
+    }
+    if (!scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.submit(this::compactAll);
+    } catch (RejectedExecutionException e) {
+      scheduled.set(false);
+      LOGGER.debug("compactor {} is stopped", name, e);
+    }
+  }
+
+  private void compactAll() {
+    scheduled.set(false);
+    try {
+      while (!Thread.currentThread().isInterrupted() && compactOnce()) {
+        LOGGER.debug(
+            "compactor {}: {}, {}", name, tableStorage.getMetrics(), shared.getChunkCache());
+      }
+    } catch (InterruptedException e) {
+      LOGGER.debug("interrupted", e);
+    } catch (Exception e) {
+      LOGGER.error("failed to compact tables of {}", name, e);
+    }
+  }
+
+  private boolean compactOnce() throws InterruptedException, IOException, StorageException {
+    // the database is being modified, compaction will be retried on next flush
+    if (!readLock.tryLock()) {
+      return false;
+    }
+    try {
+      int threshold = shared.getStorageProperties().getCompactTableThreshold();
+      List<String> tables = tableStorage.pickCompaction(threshold);
+      if (tables.isEmpty()) {
+        return false;
+      }
+      shared.getFlusherPermits().acquire();
+      try {
+        LOGGER.debug("compactor {} start to compact tables {}", name, tables);
+        tableStorage.compact(tables);
+      } finally {
+        shared.getFlusherPermits().release();
+      }
+      return true;
+    } finally {
+      readLock.unlock();
+    }
+  }
+}
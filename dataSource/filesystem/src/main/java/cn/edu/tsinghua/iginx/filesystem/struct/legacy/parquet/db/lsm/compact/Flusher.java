@@ -46,6 +46,7 @@ public class Flusher implements NoexceptAutoCloseable {
   private final BufferAllocator allocator;
   private final MemTableQueue memTableQueue;
   private final TableStorage tableStorage;
+  private final Compactor compactor;
 
   private ScheduledExecutorService scheduler;
   private ExecutorService dispatcher;
@@ -58,13 +59,15 @@ public class Flusher implements NoexceptAutoCloseable {
       Shared shared,
       BufferAllocator allocator,
       MemTableQueue memTableQueue,
-      TableStorage tableStorage) {
+      TableStorage tableStorage,
+      Compactor compactor) {
     this.name = name;
     this.shared = shared;
     this.allocator =
         allocator.newChildAllocator(allocator.getName() + "-flusher", 0, Long.MAX_VALUE);
     this.memTableQueue = memTableQueue;
     this.tableStorage = tableStorage;
+    this.compactor = compactor;
     start();
   }
 
@@ -156,6 +159,17 @@ public class Flusher implements NoexceptAutoCloseable {
 
   private void submitAndWaitFlush(@Nonnegative long memtableId, CountDownLatch onSubmit)
       throws InterruptedException, ExecutionException {
+    tableStorage.beginFlush(memtableId);
+    try {
+      flush(memtableId, onSubmit);
+    } finally {
+      tableStorage.endFlush(memtableId);
+    }
+    compactor.trigger();
+  }
+
+  private void flush(@Nonnegative long memtableId, CountDownLatch onSubmit)
+      throws InterruptedException, ExecutionException {
     List<String> tableNames = new ArrayList<>();
 
     LOGGER.debug("start to flush memtable {}", memtableId);
@@ -90,6 +90,19 @@ public class TableIndex {
     return result;
   }
 
+  public Map<String, Set<String>> tables() {
+    Map<String, Set<String>> result = new HashMap<>();
+    lock.readLock().lock();
+    try {
+      for (Map.Entry<String, FieldIndex> entry : indexes.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().find());
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return result;
+  }
+
   public Map<String, Range<Long>> ranges() {
     Map<String, Range<Long>> result = new HashMap<>();
     lock.readLock().lock();
@@ -22,9 +22,9 @@ package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.ReadWriter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.TableMeta;
-import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.DataBuffer;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.ConcatScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.DelegateScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.EmtpyHeadRowScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.RowUnionScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
@@ -36,9 +36,15 @@ import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.google.common.collect.*;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,8 +52,12 @@ import org.slf4j.LoggerFactory;
 public class TableStorage implements AutoCloseable {
   private static final Logger LOGGER = LoggerFactory.getLogger(TableStorage.class);
 
+  private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
   private final TableIndex tableIndex;
   private final ReadWriter readWriter;
+  private final NavigableSet<Long> flushingSeqs = new ConcurrentSkipListSet<>();
+  private final AtomicLong compactionId = new AtomicLong(System.currentTimeMillis());
+  private final TableStorageMetrics metrics = new TableStorageMetrics();
   private long sqnBase;
 
   public TableStorage(Shared shared, ReadWriter readWriter) throws IOException {
@@ -76,6 +86,24 @@ public class TableStorage implements AutoCloseable {
     return String.format("%019d-%s", sqnBase + sqn, suffix);
   }
 
+  public TableStorageMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Mark the memtable of sqn as being flushed. Tables not older than the flushing memtables are not
+   * compacted, since tables of the flushing memtables may be committed later than the newer ones.
+   *
+   * @param sqn the sqn of the memtable
+   */
+  public void beginFlush(long sqn) {
+    flushingSeqs.add(sqnBase + sqn);
+  }
+
+  public void endFlush(long sqn) {
+    flushingSeqs.remove(sqnBase + sqn);
+  }
+
   public List<String> flush(long sqn, String suffix, MemoryTable table)
       throws InterruptedException {
     if (table.isEmpty()) {
@@ -83,17 +111,34 @@ public class TableStorage implements AutoCloseable {
     }
     String name = getTableName(sqn, suffix);
     TableMeta meta = table.getMeta();
+    LongAdder rows = new LongAdder();
     try (Scanner<Long, Scanner<String, Object>> scanner =
-        table.scan(meta.getSchema().keySet(), ImmutableRangeSet.of(Range.all()))) {
+        counting(table.scan(meta.getSchema().keySet(), ImmutableRangeSet.of(Range.all())), rows)) {
       readWriter.flush(name, meta, scanner);
     } catch (IOException | StorageException e) {
       LOGGER.error("flush table {} failed", name, e);
     }
+    metrics.recordFlush(rows.sum());
     return Collections.singletonList(name);
   }
 
+  private static Scanner<Long, Scanner<String, Object>> counting(
+      Scanner<Long, Scanner<String, Object>> scanner, LongAdder counter) {
+    return new DelegateScanner<Long, Scanner<String, Object>>(scanner) {
+      @Override
+      public boolean iterate() throws StorageException {
+        boolean hasNext = super.iterate();
+        if (hasNext) {
+          counter.increment();
+        }
+        return hasNext;
+      }
+    };
+  }
+
   public void commit(String table, AreaSet<Long, Field> tombstone) {
     AreaSet<Long, String> innerTombstone = ArrowFields.toInnerAreas(tombstone);
+    lock.writeLock().lock();
     try {
       if (innerTombstone.isAll()) {
         readWriter.delete(table);
@@ -106,16 +151,126 @@ public class TableStorage implements AutoCloseable {
       tableIndex.addTable(table, meta);
     } catch (IOException e) {
       LOGGER.error("commit table {} failed", table, e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Pick tables to compact. Tables of each field are sorted from old to new, and the first run of
+   * at least {@code threshold} consecutive tables in the same size tier is picked. If there is no
+   * such run, a table with tombstones is picked alone to drop the deleted data.
+   *
+   * @param threshold the min number of tables to compact together
+   * @return the names of tables to compact from old to new, or empty if nothing to compact
+   */
+  public List<String> pickCompaction(int threshold) throws IOException {
+    lock.readLock().lock();
+    try {
+      Long flushing = flushingSeqs.isEmpty() ? null : flushingSeqs.first();
+      List<String> tombstoned = Collections.emptyList();
+      for (Map.Entry<String, Set<String>> entry : tableIndex.tables().entrySet()) {
+        String field = entry.getKey();
+        List<String> sortedTableNames = new ArrayList<>(entry.getValue());
+        sortedTableNames.sort(Comparator.naturalOrder());
+
+        List<String> run = new ArrayList<>();
+        int runTier = -1;
+        for (String tableName : sortedTableNames) {
+          if (flushing != null && getSeq(tableName) >= flushing) {
+            break;
+          }
+          TableMeta meta = readWriter.readMeta(tableName);
+          int tier;
+          if (meta.getSchema().size() != 1 || !meta.getSchema().containsKey(field)) {
+            // tables with several fields are left as they are
+            tier = -1;
+          } else {
+            if (tombstoned.isEmpty() && meta instanceof DeletedTableMeta) {
+              tombstoned = Collections.singletonList(tableName);
+            }
+            tier = getTier(meta.getValueCount(field), threshold);
+          }
+          if (tier != runTier) {
+            if (run.size() >= threshold) {
+              return run;
+            }
+            run = new ArrayList<>();
+            runTier = tier;
+          }
+          if (tier >= 0) {
+            run.add(tableName);
+          }
+        }
+        if (run.size() >= threshold) {
+          return run;
+        }
+      }
+      return tombstoned;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static int getTier(@Nullable Long count, int threshold) {
+    if (count == null || count <= 1) {
+      return 0;
+    }
+    return (int) (Math.log(count) / Math.log(threshold));
+  }
+
+  /**
+   * Merge tables into a new table, in which deleted data is dropped and the newest value wins. The
+   * new table takes the place of the newest one in the order of tables.
+   *
+   * @param sortedTableNames the names of tables to compact from old to new
+   */
+  public void compact(List<String> sortedTableNames) throws IOException, StorageException {
+    String newest = sortedTableNames.get(sortedTableNames.size() - 1);
+    String name = String.format("%019d-c%d", getSeq(newest), compactionId.incrementAndGet());
+
+    Map<String, DataType> schema = new HashMap<>();
+    for (String tableName : sortedTableNames) {
+      schema.putAll(readWriter.readMeta(tableName).getSchema());
+    }
+    TableMeta meta =
+        new MemoryTable.MemoryTableMeta(schema, Collections.emptyMap(), Collections.emptyMap());
+
+    LongAdder rows = new LongAdder();
+    try (Scanner<Long, Scanner<String, Object>> scanner =
+        counting(scan(sortedTableNames, schema.keySet()), rows)) {
+      readWriter.flush(name, meta, scanner);
     }
+
+    lock.writeLock().lock();
+    try {
+      if (rows.sum() > 0) {
+        tableIndex.addTable(name, readWriter.readMeta(name));
+      } else {
+        readWriter.delete(name);
+      }
+      for (String tableName : sortedTableNames) {
+        tableIndex.removeTable(tableName);
+        readWriter.delete(tableName);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    metrics.recordCompaction(rows.sum());
+    LOGGER.debug("compacted tables {} into {} with {} rows", sortedTableNames, name, rows.sum());
   }
 
   public void clear() {
-    sqnBase = 0;
-    tableIndex.clear();
+    lock.writeLock().lock();
     try {
+      sqnBase = 0;
+      flushingSeqs.clear();
+      tableIndex.clear();
       readWriter.clear();
     } catch (IOException e) {
       LOGGER.error("clear failed", e);
+    } finally {
+      lock.writeLock().unlock();
     }
   }
 
@@ -124,10 +279,15 @@ public class TableStorage implements AutoCloseable {
   }
 
   public void delete(AreaSet<Long, String> areas) throws IOException {
-    Set<String> tables = tableIndex.find(areas);
-    tableIndex.delete(areas);
-    for (String tableName : tables) {
-      readWriter.delete(tableName, areas);
+    lock.writeLock().lock();
+    try {
+      Set<String> tables = tableIndex.find(areas);
+      tableIndex.delete(areas);
+      for (String tableName : tables) {
+        readWriter.delete(tableName, areas);
+      }
+    } finally {
+      lock.writeLock().unlock();
     }
   }
 
@@ -146,25 +306,45 @@ public class TableStorage implements AutoCloseable {
     tableIndex.declareFields(schema);
   }
 
-  public DataBuffer<Long, String, Object> query(
+  /**
+   * 按表的新旧顺序（从旧到新）返回各个表上的有序扫描器，由调用者负责合并与关闭
+   *
+   * @param fields 需要读取的列
+   * @param ranges 需要读取的 key 范围
+   * @param filter 过滤条件
+   * @return 各个表的扫描器，越新的表越靠后
+   */
+  public List<Scanner<Long, Scanner<String, Object>>> query(
       Set<String> fields, RangeSet<Long> ranges, Filter filter)
       throws StorageException, IOException {
 
     AreaSet<Long, String> areas = new AreaSet<>();
     areas.add(fields, ranges);
-    DataBuffer<Long, String, Object> buffer = new DataBuffer<>();
 
-    Set<String> tables = tableIndex.find(areas);
-    List<String> sortedTableNames = new ArrayList<>(tables);
-    sortedTableNames.sort(Comparator.naturalOrder());
-
-    for (String tableName : sortedTableNames) {
-      try (Scanner<Long, Scanner<String, Object>> scanner = scan(tableName, fields, ranges)) {
-        buffer.putRows(scanner);
+    List<Scanner<Long, Scanner<String, Object>>> scanners = new ArrayList<>();
+    // compaction removes tables under the write lock, so all tables found are opened before that
+    lock.readLock().lock();
+    try {
+      Set<String> tables = tableIndex.find(areas);
+      List<String> sortedTableNames = new ArrayList<>(tables);
+      sortedTableNames.sort(Comparator.naturalOrder());
+      for (String tableName : sortedTableNames) {
+        scanners.add(scan(tableName, fields, ranges));
+      }
+      metrics.recordQuery(scanners.size());
+    } catch (IOException e) {
+      for (Scanner<Long, Scanner<String, Object>> scanner : scanners) {
+        try {
+          scanner.close();
+        } catch (StorageException ex) {
+          e.addSuppressed(ex);
+        }
       }
+      throw e;
+    } finally {
+      lock.readLock().unlock();
     }
-
-    return buffer;
+    return scanners;
   }
 
   private Scanner<Long, Scanner<String, Object>> scan(
@@ -184,6 +364,15 @@ public class TableStorage implements AutoCloseable {
   }
 
   public long count(String field) throws StorageException, IOException {
+    lock.readLock().lock();
+    try {
+      return doCount(field);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private long doCount(String field) throws StorageException, IOException {
     RangeMap<Long, List<String>> regionTableLists = getTablesGroupByRegion(field);
 
     long totalCount = 0;
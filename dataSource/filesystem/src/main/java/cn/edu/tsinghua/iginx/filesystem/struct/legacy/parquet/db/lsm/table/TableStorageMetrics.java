@@ -0,0 +1,97 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table;
+
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Write and read amplification metrics of a {@link TableStorage} */
+public class TableStorageMetrics {
+
+  private final LongAdder flushedRows = new LongAdder();
+  private final LongAdder compactedRows = new LongAdder();
+  private final LongAdder compactions = new LongAdder();
+  private final LongAdder queries = new LongAdder();
+  private final LongAdder scannedTables = new LongAdder();
+
+  void recordFlush(long rows) {
+    flushedRows.add(rows);
+  }
+
+  void recordCompaction(long rows) {
+    compactions.increment();
+    compactedRows.add(rows);
+  }
+
+  void recordQuery(int tables) {
+    queries.increment();
+    scannedTables.add(tables);
+  }
+
+  public long getFlushedRows() {
+    return flushedRows.sum();
+  }
+
+  public long getCompactedRows() {
+    return compactedRows.sum();
+  }
+
+  public long getCompactions() {
+    return compactions.sum();
+  }
+
+  /**
+   * Get the write amplification, which is the number of rows written to tables, including rewritten
+   * by compaction, divided by the number of rows flushed from memtables
+   *
+   * @return the write amplification, 1 if nothing is flushed
+   */
+  public double getWriteAmplification() {
+    long flushed = flushedRows.sum();
+    if (flushed == 0) {
+      return 1;
+    }
+    return (double) (flushed + compactedRows.sum()) / flushed;
+  }
+
+  /**
+   * Get the read amplification, which is the average number of tables scanned by a query
+   *
+   * @return the read amplification, 0 if nothing is queried
+   */
+  public double getReadAmplification() {
+    long queryCount = queries.sum();
+    if (queryCount == 0) {
+      return 0;
+    }
+    return (double) scannedTables.sum() / queryCount;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", TableStorageMetrics.class.getSimpleName() + "[", "]")
+        .add("flushedRows=" + flushedRows.sum())
+        .add("compactedRows=" + compactedRows.sum())
+        .add("compactions=" + compactions.sum())
+        .add("writeAmplification=" + getWriteAmplification())
+        .add("readAmplification=" + getReadAmplification())
+        .toString();
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.wal;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.chunk.Chunk;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.IteratorScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowFields;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowTypes;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageRuntimeException;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.arrow.vector.types.pojo.Field;
+
+/** A record of the write-ahead log, which is either an upsert of columns or a deletion. */
+public class LogRecord {
+
+  public enum Type {
+    UPSERT,
+    DELETE
+  }
+
+  private final Type type;
+  private final Map<String, DataType> schema;
+  private final Map<String, List<Map.Entry<Long, Object>>> columns;
+  private final AreaSet<Long, String> deleted;
+
+  private LogRecord(
+      Type type,
+      Map<String, DataType> schema,
+      Map<String, List<Map.Entry<Long, Object>>> columns,
+      AreaSet<Long, String> deleted) {
+    this.type = type;
+    this.schema = schema;
+    this.columns = columns;
+    this.deleted = deleted;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public Map<String, DataType> getSchema() {
+    return schema;
+  }
+
+  /**
+   * Get the upserted columns
+   *
+   * @return a scanner of columns, which can be passed to WriteBatches.recordOfColumns
+   */
+  public Scanner<String, Scanner<Long, Object>> getColumns() {
+    Iterator<Map.Entry<String, List<Map.Entry<Long, Object>>>> iterator =
+        columns.entrySet().iterator();
+    return new IteratorScanner<>(
+        new Iterator<Map.Entry<String, Scanner<Long, Object>>>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, Scanner<Long, Object>> next() {
+            Map.Entry<String, List<Map.Entry<Long, Object>>> entry = iterator.next();
+            return new AbstractMap.SimpleImmutableEntry<>(
+                entry.getKey(), new IteratorScanner<>(entry.getValue().iterator()));
+          }
+        });
+  }
+
+  public AreaSet<Long, String> getDeleted() {
+    return deleted;
+  }
+
+  public static byte[] upsert(Iterable<Chunk.Snapshot> chunks) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeByte(Type.UPSERT.ordinal());
+      List<Chunk.Snapshot> nonEmpty = new ArrayList<>();
+      chunks.forEach(
+          chunk -> {
+            if (chunk.getValueCount() > 0) {
+              nonEmpty.add(chunk);
+            }
+          });
+      output.writeInt(nonEmpty.size());
+      for (Chunk.Snapshot chunk : nonEmpty) {
+        Field field = chunk.getField();
+        DataType type = ArrowTypes.toIginxType(field.getType());
+        output.writeUTF(ArrowFields.toFullName(field));
+        output.writeInt(type.getValue());
+        output.writeInt(chunk.getValueCount());
+        for (Map.Entry<Long, Object> entry : chunk) {
+          output.writeLong(entry.getKey());
+          writeValue(output, type, entry.getValue());
+        }
+      }
+    } catch (IOException e) {
+      throw new StorageRuntimeException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static byte[] delete(AreaSet<Long, String> areas) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeByte(Type.DELETE.ordinal());
+      writeRangeSet(output, areas.getKeys());
+      output.writeInt(areas.getFields().size());
+      for (String field : areas.getFields()) {
+        output.writeUTF(field);
+      }
+      output.writeInt(areas.getSegments().size());
+      for (Map.Entry<String, RangeSet<Long>> entry : areas.getSegments().entrySet()) {
+        output.writeUTF(entry.getKey());
+        writeRangeSet(output, entry.getValue());
+      }
+    } catch (IOException e) {
+      throw new StorageRuntimeException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static LogRecord parse(byte[] record) throws IOException {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(record))) {
+      Type type = Type.values()[input.readByte()];
+      switch (type) {
+        case UPSERT:
+          return parseUpsert(input);
+        case DELETE:
+          return parseDelete(input);
+        default:
+          throw new IOException("unknown type of write-ahead log record: " + type);
+      }
+    }
+  }
+
+  private static LogRecord parseUpsert(DataInputStream input) throws IOException {
+    Map<String, DataType> schema = new LinkedHashMap<>();
+    Map<String, List<Map.Entry<Long, Object>>> columns = new LinkedHashMap<>();
+    int columnCount = input.readInt();
+    for (int i = 0; i < columnCount; i++) {
+      String name = input.readUTF();
+      DataType type = DataType.findByValue(input.readInt());
+      if (type == null) {
+        throw new IOException("unknown data type in write-ahead log record of " + name);
+      }
+      int valueCount = input.readInt();
+      List<Map.Entry<Long, Object>> column = new ArrayList<>(valueCount);
+      for (int j = 0; j < valueCount; j++) {
+        long key = input.readLong();
+        Object value = readValue(input, type);
+        column.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+      }
+      schema.put(name, type);
+      columns.merge(
+          name,
+          column,
+          (older, newer) -> {
+            older.addAll(newer);
+            return older;
+          });
+    }
+    return new LogRecord(Type.UPSERT, schema, columns, new AreaSet<>());
+  }
+
+  private static LogRecord parseDelete(DataInputStream input) throws IOException {
+    AreaSet<Long, String> areas = new AreaSet<>();
+    areas.add(readRangeSet(input));
+    int fieldCount = input.readInt();
+    Set<String> fields = new HashSet<>();
+    for (int i = 0; i < fieldCount; i++) {
+      fields.add(input.readUTF());
+    }
+    areas.add(fields);
+    int segmentCount = input.readInt();
+    for (int i = 0; i < segmentCount; i++) {
+      String field = input.readUTF();
+      areas.add(Collections.singleton(field), readRangeSet(input));
+    }
+    return new LogRecord(Type.DELETE, Collections.emptyMap(), Collections.emptyMap(), areas);
+  }
+
+  private static void writeValue(DataOutputStream output, DataType type, Object value)
+      throws IOException {
+    switch (type) {
+      case BOOLEAN:
+        output.writeBoolean((Boolean) value);
+        break;
+      case INTEGER:
+        output.writeInt((Integer) value);
+        break;
+      case LONG:
+        output.writeLong((Long) value);
+        break;
+      case FLOAT:
+        output.writeFloat((Float) value);
+        break;
+      case DOUBLE:
+        output.writeDouble((Double) value);
+        break;
+      case BINARY:
+        byte[] bytes = (byte[]) value;
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported data type: " + type);
+    }
+  }
+
+  private static Object readValue(DataInputStream input, DataType type) throws IOException {
+    switch (type) {
+      case BOOLEAN:
+        return input.readBoolean();
+      case INTEGER:
+        return input.readInt();
+      case LONG:
+        return input.readLong();
+      case FLOAT:
+        return input.readFloat();
+      case DOUBLE:
+        return input.readDouble();
+      case BINARY:
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return bytes;
+      default:
+        throw new IllegalArgumentException("Unsupported data type: " + type);
+    }
+  }
+
+  private static void writeRangeSet(DataOutputStream output, RangeSet<Long> rangeSet)
+      throws IOException {
+    Set<Range<Long>> ranges = rangeSet.asRanges();
+    output.writeInt(ranges.size());
+    for (Range<Long> range : ranges) {
+      output.writeBoolean(range.hasLowerBound());
+      if (range.hasLowerBound()) {
+        output.writeLong(range.lowerEndpoint());
+        output.writeBoolean(range.lowerBoundType() == BoundType.CLOSED);
+      }
+      output.writeBoolean(range.hasUpperBound());
+      if (range.hasUpperBound()) {
+        output.writeLong(range.upperEndpoint());
+        output.writeBoolean(range.upperBoundType() == BoundType.CLOSED);
+      }
+    }
+  }
+
+  private static RangeSet<Long> readRangeSet(DataInputStream input) throws IOException {
+    RangeSet<Long> rangeSet = TreeRangeSet.create();
+    int rangeCount = input.readInt();
+    for (int i = 0; i < rangeCount; i++) {
+      Range<Long> range = Range.all();
+      if (input.readBoolean()) {
+        long lower = input.readLong();
+        BoundType type = input.readBoolean() ? BoundType.CLOSED : BoundType.OPEN;
+        range = range.intersection(Range.downTo(lower, type));
+      }
+      if (input.readBoolean()) {
+        long upper = input.readLong();
+        BoundType type = input.readBoolean() ? BoundType.CLOSED : BoundType.OPEN;
+        range = range.intersection(Range.upTo(upper, type));
+      }
+      rangeSet.add(range);
+    }
+    return rangeSet;
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.wal;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Constants;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only write-ahead log split into segments. Each segment holds the records of one active
+ * memtable, and is rotated when the memtable is archived.
+ *
+ * <p>Records are appended under a short lock and become durable by {@link #sync(long)}: the first
+ * writer that finds its record unsynced forces the channel for every record appended so far, so
+ * concurrent writers share a single {@link FileChannel#force(boolean)}.
+ *
+ * <p>Segments are deleted only in the order they were created, so a crash never leaves a newer
+ * segment without the older ones it depends on.
+ */
+@ThreadSafe
+public class WriteAheadLog implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+  public static final long NO_LSN = 0;
+  public static final long NO_SEGMENT = -1;
+
+  private static final int ENTRY_HEADER_SIZE = Integer.BYTES * 2;
+
+  /** the handler of records replayed from the log */
+  public interface Replayer {
+    void replay(byte[] record) throws IOException, StorageException, InterruptedException;
+  }
+
+  private final Path dir;
+  private final boolean sync;
+
+  private final ReentrantLock appendLock = new ReentrantLock(true);
+  private final Object syncMonitor = new Object();
+
+  @GuardedBy("appendLock")
+  private final TreeSet<Long> live = new TreeSet<>();
+
+  @GuardedBy("appendLock")
+  private final Set<Long> released = new HashSet<>();
+
+  /** segments whose rotation failed, their records belong to the table archived by a later one */
+  @GuardedBy("appendLock")
+  private final TreeSet<Long> orphaned = new TreeSet<>();
+
+  @GuardedBy("appendLock")
+  private long nextSegment;
+
+  @GuardedBy("appendLock")
+  private long currentSegment = NO_SEGMENT;
+
+  @GuardedBy("appendLock")
+  @Nullable
+  private FileChannel channel;
+
+  @GuardedBy("appendLock")
+  private long appendedLsn = NO_LSN;
+
+  private volatile long syncedLsn = NO_LSN;
+
+  /**
+   * Open the log in the given directory. Segments left by the previous run are kept until {@link
+   * #truncate()} so that they can be replayed.
+   *
+   * @param dir the directory of segments
+   * @param sync whether to force records to the disk in {@link #sync(long)}
+   */
+  public WriteAheadLog(Path dir, boolean sync) throws IOException {
+    this.dir = dir;
+    this.sync = sync;
+    Files.createDirectories(dir);
+    live.addAll(listSegments());
+    this.nextSegment = live.isEmpty() ? 0 : live.last() + 1;
+  }
+
+  private Set<Long> listSegments() throws IOException {
+    Set<Long> segments = new TreeSet<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(dir, "*" + Constants.SUFFIX_FILE_WAL)) {
+      for (Path path : stream) {
+        String fileName = path.getFileName().toString();
+        String id = fileName.substring(0, fileName.length() - Constants.SUFFIX_FILE_WAL.length());
+        try {
+          segments.add(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+          LOGGER.warn("ignore unknown file {} in write-ahead log", path);
+        }
+      }
+    }
+    return segments;
+  }
+
+  private Path getPath(long segment) {
+    return dir.resolve(String.format("%019d", segment) + Constants.SUFFIX_FILE_WAL);
+  }
+
+  /**
+   * Replay all records left by the previous run, from the oldest to the newest. A torn entry at the
+   * end of a segment, which was being written when the process stopped, is ignored.
+   *
+   * @param replayer the handler of records
+   * @return the number of replayed records
+   */
+  public long replay(Replayer replayer) throws IOException, StorageException, InterruptedException {
+    Set<Long> segments;
+    appendLock.lock();
+    try {
+      segments = new TreeSet<>(live);
+      segments.remove(currentSegment);
+    } finally {
+      appendLock.unlock();
+    }
+    long count = 0;
+    for (long segment : segments) {
+      Path path = getPath(segment);
+      long remaining = Files.size(path);
+      try (InputStream in = new BufferedInputStream(Files.newInputStream(path));
+          DataInputStream input = new DataInputStream(in)) {
+        byte[] record;
+        while ((record = readEntry(input, remaining)) != null) {
+          remaining -= ENTRY_HEADER_SIZE + record.length;
+          replayer.replay(record);
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Read the next entry of a segment.
+   *
+   * @param input the input of the segment
+   * @param remaining the number of bytes left in the segment
+   * @return the record, or null at the end of the segment or at a torn entry
+   */
+  @Nullable
+  private static byte[] readEntry(DataInputStream input, long remaining) throws IOException {
+    try {
+      int length = input.readInt();
+      int checksum = input.readInt();
+      if (length < 0 || length > remaining - ENTRY_HEADER_SIZE) {
+        // a torn header may hold any length, never allocate more than the segment holds
+        LOGGER.warn("ignore torn tail of write-ahead log");
+        return null;
+      }
+      byte[] record = new byte[length];
+      input.readFully(record);
+      if (checksumOf(record) != checksum) {
+        LOGGER.warn("ignore corrupted tail of write-ahead log");
+        return null;
+      }
+      return record;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private static int checksumOf(byte[] record) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(record, 0, record.length);
+    return (int) crc32.getValue();
+  }
+
+  /**
+   * Append a record to the current segment. The record is not durable until {@link #sync(long)}.
+   *
+   * @param record the record to append
+   * @return the log sequence number of the record
+   */
+  public long append(byte[] record) throws IOException {
+    ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + record.length);
+    entry.putInt(record.length);
+    entry.putInt(checksumOf(record));
+    entry.put(record);
+    entry.flip();
+
+    appendLock.lock();
+    try {
+      if (channel == null) {
+        currentSegment = nextSegment++;
+        channel =
+            FileChannel.open(
+                getPath(currentSegment),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        live.add(currentSegment);
+      }
+      while (entry.hasRemaining()) {
+        channel.write(entry);
+      }
+      return ++appendedLsn;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * Wait until the record of the given log sequence number is durable. Writers arriving while
+   * another writer is forcing the channel wait for it, and are usually covered by it.
+   *
+   * @param lsn the log sequence number returned by {@link #append(byte[])}
+   */
+  public void sync(long lsn) throws IOException {
+    if (lsn <= syncedLsn) {
+      return;
+    }
+    synchronized (syncMonitor) {
+      if (lsn <= syncedLsn) {
+        return;
+      }
+      FileChannel target;
+      long targetLsn;
+      appendLock.lock();
+      try {
+        target = channel;
+        targetLsn = appendedLsn;
+      } finally {
+        appendLock.unlock();
+      }
+      if (sync && target != null) {
+        target.force(false);
+      }
+      syncedLsn = targetLsn;
+    }
+  }
+
+  /**
+   * Close the current segment, so that following records are appended to a new one.
+   *
+   * @return the closed segment, or {@link #NO_SEGMENT} if nothing was appended since last rotation
+   */
+  public long rotate() throws IOException {
+    synchronized (syncMonitor) {
+      appendLock.lock();
+      try {
+        if (channel == null) {
+          return NO_SEGMENT;
+        }
+        long segment = currentSegment;
+        try {
+          closeChannel();
+        } catch (IOException e) {
+          // the table keeps its records in memory and is archived later with another segment,
+          // which releases this one as well
+          orphaned.add(segment);
+          throw e;
+        } finally {
+          currentSegment = NO_SEGMENT;
+        }
+        return segment;
+      } finally {
+        appendLock.unlock();
+      }
+    }
+  }
+
+  @GuardedBy("appendLock")
+  private void closeChannel() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    try {
+      if (sync) {
+        channel.force(false);
+      }
+    } finally {
+      channel.close();
+      channel = null;
+      syncedLsn = appendedLsn;
+    }
+  }
+
+  /**
+   * Mark a rotated segment as no longer needed, since its records have been committed to tables.
+   * Older segments whose rotation failed are released with it, since their records belong to the
+   * same table. The segment is deleted once all older segments are released.
+   *
+   * @param segment the segment returned by {@link #rotate()}
+   */
+  public void release(long segment) {
+    if (segment == NO_SEGMENT) {
+      return;
+    }
+    appendLock.lock();
+    try {
+      released.add(segment);
+      SortedSet<Long> orphans = orphaned.headSet(segment);
+      released.addAll(orphans);
+      orphans.clear();
+      while (!live.isEmpty() && released.remove(live.first())) {
+        Files.deleteIfExists(getPath(live.pollFirst()));
+      }
+    } catch (IOException e) {
+      LOGGER.warn("failed to delete segment of write-ahead log in {}", dir, e);
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /** Delete all segments, including the current one. */
+  public void truncate() throws IOException {
+    synchronized (syncMonitor) {
+      appendLock.lock();
+      try {
+        try {
+          closeChannel();
+        } finally {
+          currentSegment = NO_SEGMENT;
+        }
+        for (long segment : live) {
+          Files.deleteIfExists(getPath(segment));
+        }
+        live.clear();
+        released.clear();
+        orphaned.clear();
+      } finally {
+        appendLock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (syncMonitor) {
+      appendLock.lock();
+      try {
+        closeChannel();
+      } finally {
+        currentSegment = NO_SEGMENT;
+        appendLock.unlock();
+      }
+    }
+  }
+}
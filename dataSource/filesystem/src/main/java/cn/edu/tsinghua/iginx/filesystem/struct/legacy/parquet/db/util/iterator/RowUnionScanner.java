@@ -21,7 +21,13 @@ package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator;
 
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
 import java.util.*;
+import javax.annotation.Nullable;
 
+/**
+ * 将多个按 key 有序的行扫描器归并为一个按 key 有序的行扫描器。
+ *
+ * <p>同一 key 的同一列出现在多个扫描器中时，取靠前的扫描器中的值。扫描器在耗尽后即被关闭，任一扫描器出错时关闭全部扫描器。
+ */
 public class RowUnionScanner<K extends Comparable<K>, F, V> implements Scanner<K, Scanner<F, V>> {
 
   private final PriorityQueue<Map.Entry<Scanner<K, Scanner<F, V>>, Long>> queue;
@@ -34,26 +40,39 @@ public class RowUnionScanner<K extends Comparable<K>, F, V> implements Scanner<K
     StorageException exception = null;
     long i = 0;
     for (Scanner<K, Scanner<F, V>> scanner : scanners) {
-      if (scanner.iterate()) {
-        queue.add(new AbstractMap.SimpleImmutableEntry<>(scanner, i));
-        i++;
-      } else {
-        try {
-          scanner.close();
-        } catch (StorageException e) {
-          if (exception == null) {
-            exception = e;
-          } else {
-            exception.addSuppressed(e);
-          }
+      try {
+        if (exception == null && scanner.iterate()) {
+          queue.add(new AbstractMap.SimpleImmutableEntry<>(scanner, i));
+          i++;
+          continue;
         }
+      } catch (StorageException e) {
+        exception = e;
       }
+      exception = closeQuietly(scanner, exception);
     }
     if (exception != null) {
+      for (Map.Entry<Scanner<K, Scanner<F, V>>, Long> entry : queue) {
+        exception = closeQuietly(entry.getKey(), exception);
+      }
+      queue.clear();
       throw exception;
     }
   }
 
+  private static StorageException closeQuietly(
+      Scanner<?, ?> scanner, @Nullable StorageException exception) {
+    try {
+      scanner.close();
+    } catch (StorageException e) {
+      if (exception == null) {
+        return e;
+      }
+      exception.addSuppressed(e);
+    }
+    return exception;
+  }
+
   private Scanner<F, V> currentRow = null;
 
   private K currentKey = null;
@@ -78,21 +97,38 @@ public class RowUnionScanner<K extends Comparable<K>, F, V> implements Scanner<K
   @Override
   public boolean iterate() throws StorageException {
     Map<F, V> row = new HashMap<>();
-    if (queue.isEmpty()) {
-      currentRow = null;
-      currentKey = null;
-      return false;
-    }
-    currentKey = queue.peek().getKey().key();
-    while (!queue.isEmpty() && currentKey.compareTo(queue.peek().getKey().key()) == 0) {
-      Map.Entry<Scanner<K, Scanner<F, V>>, Long> entry = queue.poll();
-      assert entry != null;
-      Scanner<F, V> scanner = entry.getKey().value();
-      while (scanner.iterate()) {
-        row.putIfAbsent(scanner.key(), scanner.value());
+    // skip keys of which all fields are filtered out, such as the heads of lazy scanners
+    while (row.isEmpty()) {
+      if (queue.isEmpty()) {
+        currentRow = null;
+        currentKey = null;
+        return false;
       }
-      if (entry.getKey().iterate()) {
-        queue.add(entry);
+      currentKey = queue.peek().getKey().key();
+      while (!queue.isEmpty() && currentKey.compareTo(queue.peek().getKey().key()) == 0) {
+        Map.Entry<Scanner<K, Scanner<F, V>>, Long> entry = queue.poll();
+        assert entry != null;
+        boolean hasNext;
+        try {
+          Scanner<F, V> scanner = entry.getKey().value();
+          while (scanner.iterate()) {
+            row.putIfAbsent(scanner.key(), scanner.value());
+          }
+          hasNext = entry.getKey().iterate();
+        } catch (StorageException e) {
+          // the polled scanner is no longer in the queue, close it here with the others
+          StorageException exception = closeQuietly(entry.getKey(), e);
+          for (Map.Entry<Scanner<K, Scanner<F, V>>, Long> other : queue) {
+            exception = closeQuietly(other.getKey(), exception);
+          }
+          queue.clear();
+          throw exception;
+        }
+        if (hasNext) {
+          queue.add(entry);
+        } else {
+          entry.getKey().close();
+        }
       }
     }
     currentRow =
@@ -142,16 +178,9 @@ public class RowUnionScanner<K extends Comparable<K>, F, V> implements Scanner<K
   public void close() throws StorageException {
     StorageException exception = null;
     for (Map.Entry<Scanner<K, Scanner<F, V>>, Long> entry : queue) {
-      try {
-        entry.getKey().close();
-      } catch (StorageException e) {
-        if (exception == null) {
-          exception = e;
-        } else {
-          exception.addSuppressed(e);
-        }
-      }
+      exception = closeQuietly(entry.getKey(), exception);
     }
+    queue.clear();
     if (exception != null) {
       throw exception;
     }
@@ -59,11 +59,19 @@ public class DataManager implements Manager {
 
   private final Shared shared;
 
-  public DataManager(Shared shared, Path dir) throws IOException {
+  /**
+   * @param writable whether the data is written through this manager, the write-ahead log is only
+   *     opened and replayed by writers
+   */
+  public DataManager(Shared shared, Path dir, boolean writable) throws IOException {
     this.shared = shared;
     Path dataDir = dir.resolve(Constants.DIR_NAME_TABLE);
     ReadWriter readWriter = new ParquetReadWriter(shared, dataDir);
-    this.db = new OneTierDB(dir.toString(), shared, readWriter);
+    Path walDir = null;
+    if (writable && shared.getStorageProperties().isWriteAheadLog()) {
+      walDir = dir.resolve(Constants.DIR_NAME_WAL);
+    }
+    this.db = new OneTierDB(dir.toString(), shared, readWriter, walDir);
   }
 
   @Override
@@ -19,6 +19,7 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.data;
 
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.filesystem.format.parquet.IParquetReader;
@@ -29,10 +30,14 @@ import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.TableMe
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.DeletedTableMeta;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.AreaFilterScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.ColumnUnionRowScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.ConcatScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.IteratorScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.dummy.Storer;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.CachePool;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.ColumnChunk;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.ColumnChunkCache;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Constants;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
@@ -46,6 +51,8 @@ import java.util.*;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.BlockMetaData;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import shaded.iginx.org.apache.parquet.hadoop.metadata.ColumnPath;
 import shaded.iginx.org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import shaded.iginx.org.apache.parquet.schema.MessageType;
@@ -103,6 +110,14 @@ public class ParquetReadWriter implements ReadWriter {
     builder.withRowGroupSize(shared.getStorageProperties().getParquetRowGroupSize());
     builder.withPageSize((int) shared.getStorageProperties().getParquetPageSize());
     builder.withCompressionCodec(shared.getStorageProperties().getParquetCompression());
+    if (shared.getStorageProperties().isParquetBloomFilter()) {
+      long ndv = shared.getStorageProperties().getParquetBloomFilterNdv();
+      for (Map.Entry<String, DataType> entry : meta.getSchema().entrySet()) {
+        if (entry.getValue() == DataType.BINARY) {
+          builder.withBloomFilter(entry.getKey(), ndv);
+        }
+      }
+    }
 
     try (IParquetWriter writer = builder.build()) {
       while (scanner.iterate()) {
@@ -176,29 +191,176 @@ public class ParquetReadWriter implements ReadWriter {
       String name, Set<String> fields, RangeSet<Long> ranges, Filter predicate) throws IOException {
     Path path = getPath(name);
 
-    Filter rangeFilter = FilterRangeUtils.filterOf(ranges);
+    Scanner<Long, Scanner<String, Object>> scanner = null;
+    // a query with value predicates only needs a few rows, which are better read from the file
+    // with the predicate pushed down than decoded into the cache with every other row of the column
+    if (shared.getChunkCache().isEnabled() && !hasValueFilter(predicate)) {
+      scanner = scanCachedChunks(path, fields, ranges, predicate);
+    }
+    if (scanner == null) {
+      scanner = scanFile(path, fields, ranges, predicate);
+    }
+
+    AreaSet<Long, String> tombstone = tombstoneStorage.get(name);
+    if (tombstone == null || tombstone.isEmpty()) {
+      return scanner;
+    }
+    return new AreaFilterScanner<>(scanner, tombstone);
+  }
+
+  private static boolean hasValueFilter(@Nullable Filter predicate) {
+    return predicate != null && !FilterUtils.getAllPathsFromFilter(predicate).isEmpty();
+  }
 
-    Filter unionFilter;
+  private static Filter unionFilterOf(RangeSet<Long> ranges, @Nullable Filter predicate) {
+    Filter rangeFilter = FilterRangeUtils.filterOf(ranges);
     if (predicate == null) {
-      unionFilter = rangeFilter;
-    } else {
-      unionFilter = new AndFilter(Arrays.asList(rangeFilter, predicate));
+      return rangeFilter;
     }
+    return new AndFilter(Arrays.asList(rangeFilter, predicate));
+  }
 
+  private Scanner<Long, Scanner<String, Object>> scanFile(
+      Path path, Set<String> fields, RangeSet<Long> ranges, @Nullable Filter predicate)
+      throws IOException {
     IParquetReader.Builder builder = IParquetReader.builder(path);
     builder.project(fields);
-    builder.filter(unionFilter);
+    builder.filter(unionFilterOf(ranges, predicate));
 
     ParquetTableMeta parquetTableMeta = getParquetTableMeta(path.toString());
     IParquetReader reader = builder.build(parquetTableMeta.getMeta());
 
-    Scanner<Long, Scanner<String, Object>> scanner = new ParquetScanner(reader);
+    return new ParquetScanner(reader);
+  }
 
-    AreaSet<Long, String> tombstone = tombstoneStorage.get(name);
-    if (tombstone == null || tombstone.isEmpty()) {
-      return scanner;
+  /**
+   * Scan the row groups that overlap the ranges and survive pruning from the chunk cache, reading
+   * and caching the missing chunks
+   *
+   * @return null if the chunks to scan cannot be held by the cache at the same time
+   */
+  @Nullable
+  private Scanner<Long, Scanner<String, Object>> scanCachedChunks(
+      Path path, Set<String> fields, RangeSet<Long> ranges, @Nullable Filter predicate)
+      throws IOException {
+    ParquetTableMeta parquetTableMeta = getParquetTableMeta(path.toString());
+    ParquetMetadata footer = parquetTableMeta.getMeta();
+
+    IParquetReader.Builder builder = IParquetReader.builder(path);
+    builder.filter(unionFilterOf(ranges, predicate));
+    List<Integer> rowGroups = builder.selectRowGroups(footer);
+
+    List<String> columns = new ArrayList<>();
+    long weight = 0;
+    for (String field : fields) {
+      if (!parquetTableMeta.getSchema().containsKey(field)) {
+        continue;
+      }
+      columns.add(field);
+      for (int rowGroup : rowGroups) {
+        weight += estimateChunkWeight(footer.getBlocks().get(rowGroup), field);
+      }
     }
-    return new AreaFilterScanner<>(scanner, tombstone);
+    if (!shared.getChunkCache().canHold(weight)) {
+      LOGGER.debug("{} bytes of chunks in {} exceed the chunk cache", weight, path);
+      return null;
+    }
+
+    Map<String, Scanner<Long, Object>> columnScanners = new HashMap<>();
+    for (String column : columns) {
+      List<Scanner<Long, Object>> chunkScanners = new ArrayList<>();
+      for (ColumnChunk chunk : getColumnChunks(path, footer, rowGroups, column)) {
+        chunkScanners.add(chunk.scan(ranges));
+      }
+      columnScanners.put(column, new ConcatScanner<>(chunkScanners.iterator()));
+    }
+    return new ColumnUnionRowScanner<>(columnScanners);
+  }
+
+  private static long estimateChunkWeight(BlockMetaData block, String field) {
+    for (ColumnChunkMetaData column : block.getColumns()) {
+      if (column.getPath().equals(ColumnPath.get(field))) {
+        return ColumnChunk.estimateWeight(block.getRowCount(), column.getTotalUncompressedSize());
+      }
+    }
+    return 0;
+  }
+
+  private List<ColumnChunk> getColumnChunks(
+      Path path, ParquetMetadata footer, List<Integer> rowGroups, String field) throws IOException {
+    ColumnChunkCache chunkCache = shared.getChunkCache();
+    String fileName = path.toString();
+    ColumnChunk[] chunks = new ColumnChunk[rowGroups.size()];
+    List<Integer> missing = new ArrayList<>();
+    for (int i = 0; i < rowGroups.size(); i++) {
+      chunks[i] = chunkCache.get(fileName, rowGroups.get(i), field);
+      if (chunks[i] == null) {
+        missing.add(i);
+      }
+    }
+    if (missing.isEmpty()) {
+      return Arrays.asList(chunks);
+    }
+
+    List<BlockMetaData> blocks = new ArrayList<>(missing.size());
+    for (int i : missing) {
+      blocks.add(footer.getBlocks().get(rowGroups.get(i)));
+    }
+    List<ColumnChunk> read = readColumnChunks(path, footer, blocks, field);
+    for (int j = 0; j < missing.size(); j++) {
+      int i = missing.get(j);
+      chunks[i] = read.get(j);
+      chunkCache.put(fileName, rowGroups.get(i), field, chunks[i]);
+    }
+    return Arrays.asList(chunks);
+  }
+
+  private static List<ColumnChunk> readColumnChunks(
+      Path path, ParquetMetadata footer, List<BlockMetaData> blocks, String field)
+      throws IOException {
+    List<ColumnChunk.Builder> builders = new ArrayList<>(blocks.size());
+    long[] rowGroupEnds = new long[blocks.size()];
+    long rowCount = 0;
+    for (int i = 0; i < blocks.size(); i++) {
+      builders.add(ColumnChunk.builder());
+      rowCount += blocks.get(i).getRowCount();
+      rowGroupEnds[i] = rowCount;
+    }
+
+    IParquetReader.Builder builder = IParquetReader.builder(path);
+    builder.project(Collections.singleton(field));
+    ParquetMetadata selected = new ParquetMetadata(footer.getFileMetaData(), blocks);
+    try (IParquetReader reader = builder.build(selected)) {
+      int keyIndex = reader.getSchema().getFieldIndex(Constants.KEY_FIELD_NAME);
+      int rowGroup = 0;
+      // records are not filtered, so every row of the selected row groups is read in order
+      long rowIndex = 0;
+      IRecord record;
+      while ((record = reader.read()) != null) {
+        while (rowGroup < rowGroupEnds.length - 1 && rowIndex >= rowGroupEnds[rowGroup]) {
+          rowGroup++;
+        }
+        rowIndex++;
+        Long key = null;
+        Object value = null;
+        for (Map.Entry<Integer, Object> entry : record) {
+          if (entry.getKey() == keyIndex) {
+            key = (Long) entry.getValue();
+          } else {
+            value = entry.getValue();
+          }
+        }
+        if (key != null && value != null) {
+          builders.get(rowGroup).add(key, value);
+        }
+      }
+    }
+
+    List<ColumnChunk> chunks = new ArrayList<>(builders.size());
+    for (ColumnChunk.Builder chunkBuilder : builders) {
+      chunks.add(chunkBuilder.build());
+    }
+    return chunks;
   }
 
   @Override
@@ -212,6 +374,7 @@ public class ParquetReadWriter implements ReadWriter {
     try {
       Files.deleteIfExists(path);
       shared.getCachePool().asMap().remove(path.toString());
+      shared.getChunkCache().invalidate(path.toString());
       tombstoneStorage.removeTable(name);
     } catch (IOException e) {
       throw new StorageRuntimeException(e);
@@ -225,6 +388,7 @@ public class ParquetReadWriter implements ReadWriter {
         Files.newDirectoryStream(dir, "*" + Constants.SUFFIX_FILE_PARQUET)) {
       for (Path path : stream) {
         shared.getCachePool().asMap().remove(path.toString());
+        shared.getChunkCache().invalidate(path.toString());
         String fileName = path.getFileName().toString();
         String tableName = getTableName(fileName);
         names.add(tableName);
@@ -255,6 +419,7 @@ public class ParquetReadWriter implements ReadWriter {
           Files.deleteIfExists(path);
           String fileName = path.toString();
           shared.getCachePool().asMap().remove(fileName);
+          shared.getChunkCache().invalidate(fileName);
         }
       }
       try (DirectoryStream<Path> stream =
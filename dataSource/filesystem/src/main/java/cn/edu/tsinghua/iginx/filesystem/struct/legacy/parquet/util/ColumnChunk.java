@@ -0,0 +1,181 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** Decoded non-null values of a column in a row group, sorted by key */
+public class ColumnChunk {
+
+  private static final int OBJECT_OVERHEAD = 16;
+  private static final int REFERENCE_SIZE = 8;
+
+  private final long[] keys;
+  private final Object[] values;
+  private final int size;
+  private final int weight;
+
+  private ColumnChunk(long[] keys, Object[] values, int size, long valuesWeight) {
+    this.keys = keys;
+    this.values = values;
+    this.size = size;
+    long total =
+        OBJECT_OVERHEAD * 3L + (long) keys.length * Long.BYTES + values.length * 8L + valuesWeight;
+    this.weight = (int) Math.min(total, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Estimate the weight of a decoded chunk before reading it
+   *
+   * @param rowCount the number of rows in the row group
+   * @param uncompressedSize the uncompressed size of the column chunk in the file, bytes
+   * @return the estimated weight, bytes
+   */
+  public static long estimateWeight(long rowCount, long uncompressedSize) {
+    return OBJECT_OVERHEAD * 3L
+        + rowCount * (Long.BYTES + REFERENCE_SIZE + OBJECT_OVERHEAD)
+        + uncompressedSize;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getWeight() {
+    return weight;
+  }
+
+  /**
+   * Scan values whose keys are in the given ranges
+   *
+   * @param ranges the ranges of keys
+   * @return a scanner of keys and values in ascending order of keys
+   */
+  public Scanner<Long, Object> scan(RangeSet<Long> ranges) {
+    return new ChunkScanner(ranges.asRanges().iterator());
+  }
+
+  private int lowerBound(long key) {
+    int index = Arrays.binarySearch(keys, 0, size, key);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private class ChunkScanner implements Scanner<Long, Object> {
+
+    private final Iterator<Range<Long>> ranges;
+    private Range<Long> range;
+    private int index = -1;
+    private int current = -1;
+
+    private ChunkScanner(Iterator<Range<Long>> ranges) {
+      this.ranges = ranges;
+    }
+
+    @Override
+    public Long key() {
+      if (current < 0) {
+        throw new NoSuchElementException();
+      }
+      return keys[current];
+    }
+
+    @Override
+    public Object value() {
+      if (current < 0) {
+        throw new NoSuchElementException();
+      }
+      return values[current];
+    }
+
+    @Override
+    public boolean iterate() {
+      while (true) {
+        if (range != null && index < size && range.contains(keys[index])) {
+          current = index++;
+          return true;
+        }
+        if (!ranges.hasNext()) {
+          current = -1;
+          return false;
+        }
+        range = ranges.next();
+        if (range.hasLowerBound()) {
+          long lower = range.lowerEndpoint();
+          if (range.lowerBoundType() == BoundType.OPEN && lower != Long.MAX_VALUE) {
+            lower++;
+          }
+          index = Math.max(index, lowerBound(lower));
+        } else {
+          index = Math.max(index, 0);
+        }
+      }
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /** Collect values of a row group in ascending order of keys */
+  public static class Builder {
+
+    private long[] keys = new long[16];
+    private Object[] values = new Object[16];
+    private int size = 0;
+    private long valuesWeight = 0;
+
+    private Builder() {}
+
+    public Builder add(long key, Object value) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      keys[size] = key;
+      values[size] = value;
+      size++;
+      valuesWeight += weightOf(value);
+      return this;
+    }
+
+    private static long weightOf(Object value) {
+      if (value instanceof byte[]) {
+        return OBJECT_OVERHEAD + ((byte[]) value).length;
+      } else if (value instanceof Boolean) {
+        return 0;
+      }
+      return OBJECT_OVERHEAD + REFERENCE_SIZE;
+    }
+
+    public ColumnChunk build() {
+      return new ColumnChunk(
+          Arrays.copyOf(keys, size), Arrays.copyOf(values, size), size, valuesWeight);
+    }
+  }
+}
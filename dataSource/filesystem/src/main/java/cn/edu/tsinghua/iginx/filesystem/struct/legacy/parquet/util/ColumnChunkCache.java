@@ -0,0 +1,154 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.util.Objects;
+import java.util.StringJoiner;
+import javax.annotation.Nullable;
+
+/**
+ * A weighted cache of decoded column chunks, keyed by file, row group and column. Data files are
+ * immutable once written, so entries are only invalidated when the files are deleted.
+ */
+public class ColumnChunkCache {
+
+  @Nullable private final Cache<Key, ColumnChunk> cache;
+
+  private final long capacity;
+
+  public ColumnChunkCache(StorageProperties prop) {
+    this.capacity = prop.getChunkCacheCapacity();
+    if (capacity <= 0) {
+      this.cache = null;
+      return;
+    }
+    Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder();
+    cacheBuilder.weigher((Key key, ColumnChunk chunk) -> chunk.getWeight());
+    cacheBuilder.maximumWeight(capacity);
+    prop.getCacheTimeout().ifPresent(cacheBuilder::expireAfterAccess);
+    cacheBuilder.recordStats();
+    this.cache = cacheBuilder.build();
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Whether chunks of the given total weight can be cached at the same time
+   *
+   * @param weight the total weight of chunks, bytes
+   * @return true if the cache is enabled and its capacity is not less than the weight
+   */
+  public boolean canHold(long weight) {
+    return cache != null && weight <= capacity;
+  }
+
+  @Nullable
+  public ColumnChunk get(String file, int rowGroup, String column) {
+    if (cache == null) {
+      return null;
+    }
+    return cache.getIfPresent(new Key(file, rowGroup, column));
+  }
+
+  public void put(String file, int rowGroup, String column, ColumnChunk chunk) {
+    if (cache != null) {
+      cache.put(new Key(file, rowGroup, column), chunk);
+    }
+  }
+
+  public void invalidate(String file) {
+    if (cache != null) {
+      cache.asMap().keySet().removeIf(key -> key.file.equals(file));
+    }
+  }
+
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Get the statistics of cache, such as hit count and miss count
+   *
+   * @return the statistics of cache, empty if cache is disabled
+   */
+  public CacheStats getStats() {
+    if (cache == null) {
+      return CacheStats.empty();
+    }
+    return cache.stats();
+  }
+
+  @Override
+  public String toString() {
+    CacheStats stats = getStats();
+    return new StringJoiner(", ", ColumnChunkCache.class.getSimpleName() + "[", "]")
+        .add("capacity=" + capacity)
+        .add("hitCount=" + stats.hitCount())
+        .add("missCount=" + stats.missCount())
+        .add("hitRate=" + stats.hitRate())
+        .add("evictionCount=" + stats.evictionCount())
+        .toString();
+  }
+
+  private static class Key {
+    private final String file;
+    private final int rowGroup;
+    private final String column;
+
+    private Key(String file, int rowGroup, String column) {
+      this.file = file;
+      this.rowGroup = rowGroup;
+      this.column = column;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return rowGroup == key.rowGroup && file.equals(key.file) && column.equals(key.column);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, rowGroup, column);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Key.class.getSimpleName() + "[", "]")
+          .add("file='" + file + "'")
+          .add("rowGroup=" + rowGroup)
+          .add("column='" + column + "'")
+          .toString();
+    }
+  }
+}
@@ -31,6 +31,8 @@ public final class Constants {
 
   public static final String SUFFIX_FILE_TEMP = ".tmp";
 
+  public static final String SUFFIX_FILE_WAL = ".wal";
+
   public static final String CMD_DELETE = "DELETE";
 
   public static final int MAX_MEM_SIZE = 1024 * 1024 /* BYTE */;
@@ -53,6 +55,7 @@ public final class Constants {
   public static final String STORAGE_UNIT_NAME = "storageUnit";
   public static final String DIR_NAME_TOMBSTONE = "tombstones";
   public static final String DIR_NAME_TABLE = "tables";
+  public static final String DIR_NAME_WAL = "wal";
   public static final String LOCK_FILE_NAME = "LOCK";
   public static final String INDICES_VECTOR_NAME = "indices";
 }
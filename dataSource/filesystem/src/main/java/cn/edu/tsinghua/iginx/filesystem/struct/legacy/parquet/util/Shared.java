@@ -24,8 +24,12 @@ import java.io.IOException;
 import java.util.concurrent.Semaphore;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Shared implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(Shared.class);
+
   private final StorageProperties storageProperties;
 
   private final Semaphore flusherPermits;
@@ -34,6 +38,8 @@ public class Shared implements Closeable {
 
   private final CachePool cachePool;
 
+  private final ColumnChunkCache chunkCache;
+
   private final BufferAllocator allocator;
 
   public Shared(
@@ -41,11 +47,13 @@ public class Shared implements Closeable {
       Semaphore flusherPermits,
       Semaphore memTablePermits,
       CachePool cachePool,
+      ColumnChunkCache chunkCache,
       BufferAllocator allocator) {
     this.storageProperties = storageProperties;
     this.flusherPermits = flusherPermits;
     this.memTablePermits = memTablePermits;
     this.cachePool = cachePool;
+    this.chunkCache = chunkCache;
     this.allocator = allocator;
   }
 
@@ -53,8 +61,10 @@ public class Shared implements Closeable {
     Semaphore flusherPermits = new Semaphore(storageProperties.getCompactPermits(), true);
     Semaphore memTablePermits = new Semaphore(storageProperties.getWriteBufferPermits(), true);
     CachePool cachePool = new CachePool(storageProperties);
+    ColumnChunkCache chunkCache = new ColumnChunkCache(storageProperties);
     BufferAllocator allocator = new RootAllocator();
-    return new Shared(storageProperties, flusherPermits, memTablePermits, cachePool, allocator);
+    return new Shared(
+        storageProperties, flusherPermits, memTablePermits, cachePool, chunkCache, allocator);
   }
 
   public StorageProperties getStorageProperties() {
@@ -73,13 +83,21 @@ public class Shared implements Closeable {
     return cachePool;
   }
 
+  public ColumnChunkCache getChunkCache() {
+    return chunkCache;
+  }
+
   public BufferAllocator getAllocator() {
     return allocator;
   }
 
   @Override
   public void close() throws IOException {
+    if (chunkCache.isEnabled()) {
+      LOGGER.info("close shared storage, chunk cache: {}", chunkCache);
+    }
     cachePool.asMap().clear();
+    chunkCache.invalidateAll();
     allocator.close();
   }
 }
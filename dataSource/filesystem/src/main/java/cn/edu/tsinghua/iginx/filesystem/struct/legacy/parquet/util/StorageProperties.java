@@ -37,16 +37,22 @@ public class StorageProperties {
   private final ConflictResolverType writeBufferConflictResolverType;
   private final IndexedChunkType writeBufferChunkType;
   private final Duration writeBufferTimeout;
+  private final boolean writeAheadLog;
+  private final boolean writeAheadLogSync;
   private final long writeBatchSize;
   private final int compactPermits;
+  private final int compactTableThreshold;
   private final int writeBufferPermits;
   private final long cacheCapacity;
+  private final long chunkCacheCapacity;
   private final Duration cacheTimeout;
   private final boolean cacheSoftValues;
   private final long parquetRowGroupSize;
   private final long parquetPageSize;
   private final int parquetOutputBufferMaxSize;
   private final String parquetCompression;
+  private final boolean parquetBloomFilter;
+  private final long parquetBloomFilterNdv;
   private final int zstdLevel;
   private final int zstdWorkers;
   private final int parquetLz4BufferSize;
@@ -60,15 +66,21 @@ public class StorageProperties {
       ConflictResolverType writeBufferConflictResolverType,
       IndexedChunkType writeBufferChunkType,
       Duration writeBufferTimeout,
+      boolean writeAheadLog,
+      boolean writeAheadLogSync,
       long writeBatchSize,
       int compactPermits,
+      int compactTableThreshold,
       long cacheCapacity,
+      long chunkCacheCapacity,
       Duration cacheTimeout,
       boolean cacheSoftValues,
       long parquetRowGroupSize,
       long parquetPageSize,
       int parquetOutputBufferMaxSize,
       String parquetCompression,
+      boolean parquetBloomFilter,
+      long parquetBloomFilterNdv,
       int zstdLevel,
       int zstdWorkers,
       int parquetLz4BufferSize) {
@@ -79,16 +91,22 @@ public class StorageProperties {
     this.writeBufferConflictResolverType = writeBufferConflictResolverType;
     this.writeBufferChunkType = writeBufferChunkType;
     this.writeBufferTimeout = writeBufferTimeout;
+    this.writeAheadLog = writeAheadLog;
+    this.writeAheadLogSync = writeAheadLogSync;
     this.writeBatchSize = writeBatchSize;
     this.compactPermits = compactPermits;
+    this.compactTableThreshold = compactTableThreshold;
     this.writeBufferPermits = writeBufferPermits;
     this.cacheCapacity = cacheCapacity;
+    this.chunkCacheCapacity = chunkCacheCapacity;
     this.cacheTimeout = cacheTimeout;
     this.cacheSoftValues = cacheSoftValues;
     this.parquetRowGroupSize = parquetRowGroupSize;
     this.parquetPageSize = parquetPageSize;
     this.parquetOutputBufferMaxSize = parquetOutputBufferMaxSize;
     this.parquetCompression = parquetCompression;
+    this.parquetBloomFilter = parquetBloomFilter;
+    this.parquetBloomFilterNdv = parquetBloomFilterNdv;
     this.zstdLevel = zstdLevel;
     this.zstdWorkers = zstdWorkers;
     this.parquetLz4BufferSize = parquetLz4BufferSize;
@@ -167,6 +185,24 @@ public class StorageProperties {
     return writeBufferTimeout;
   }
 
+  /**
+   * Get whether to log writes into write-ahead log before they are flushed
+   *
+   * @return whether to enable write-ahead log
+   */
+  public boolean isWriteAheadLog() {
+    return writeAheadLog;
+  }
+
+  /**
+   * Get whether to force write-ahead log to the disk before writes return
+   *
+   * @return whether to sync write-ahead log
+   */
+  public boolean isWriteAheadLogSync() {
+    return writeAheadLogSync;
+  }
+
   /**
    * Get the size of write batch in bytes
    *
@@ -185,6 +221,15 @@ public class StorageProperties {
     return compactPermits;
   }
 
+  /**
+   * Get the number of consecutive tables of similar size to trigger a compaction
+   *
+   * @return the number of tables to trigger a compaction, less than 2 means compaction is disabled
+   */
+  public int getCompactTableThreshold() {
+    return compactTableThreshold;
+  }
+
   /**
    * Get the capacity of cache in bytes
    *
@@ -194,6 +239,15 @@ public class StorageProperties {
     return cacheCapacity;
   }
 
+  /**
+   * Get the capacity of decoded column chunk cache in bytes
+   *
+   * @return the capacity of decoded column chunk cache, bytes, 0 means disabled
+   */
+  public long getChunkCacheCapacity() {
+    return chunkCacheCapacity;
+  }
+
   /**
    * Get the expiry timeout of cache
    *
@@ -243,6 +297,24 @@ public class StorageProperties {
     return parquetCompression;
   }
 
+  /**
+   * Get whether to write parquet bloom filters for binary columns
+   *
+   * @return whether to write parquet bloom filters for binary columns
+   */
+  public boolean isParquetBloomFilter() {
+    return parquetBloomFilter;
+  }
+
+  /**
+   * Get the expected number of distinct values per column chunk, used to size bloom filters
+   *
+   * @return the expected number of distinct values per column chunk
+   */
+  public long getParquetBloomFilterNdv() {
+    return parquetBloomFilterNdv;
+  }
+
   /**
    * Get the zstd level
    *
@@ -289,15 +361,21 @@ public class StorageProperties {
         .add("writeBufferChunkValuesMin=" + writeBufferChunkValuesMin)
         .add("writeBufferChunkType=" + writeBufferChunkType)
         .add("writeBufferTimeout=" + writeBufferTimeout)
+        .add("writeAheadLog=" + writeAheadLog)
+        .add("writeAheadLogSync=" + writeAheadLogSync)
         .add("writeBatchSize=" + writeBatchSize)
         .add("compactPermits=" + compactPermits)
+        .add("compactTableThreshold=" + compactTableThreshold)
         .add("cacheCapacity=" + cacheCapacity)
+        .add("chunkCacheCapacity=" + chunkCacheCapacity)
         .add("cacheTimeout=" + cacheTimeout)
         .add("cacheSoftValues=" + cacheSoftValues)
         .add("parquetRowGroupSize=" + parquetRowGroupSize)
         .add("parquetPageSize=" + parquetPageSize)
         .add("parquetOutputBufferMaxSize=" + parquetOutputBufferMaxSize)
         .add("parquetCompression='" + parquetCompression + "'")
+        .add("parquetBloomFilter=" + parquetBloomFilter)
+        .add("parquetBloomFilterNdv=" + parquetBloomFilterNdv)
         .add("zstdLevel=" + zstdLevel)
         .add("zstdWorkers=" + zstdWorkers)
         .add("parquetLz4BufferSize=" + parquetLz4BufferSize)
@@ -315,14 +393,20 @@ public class StorageProperties {
     public static final String WRITE_BUFFER_CHUNK_INDEX = "write.buffer.chunk.index";
     public static final String WRITE_BUFFER_TIMEOUT = "write.buffer.timeout";
     public static final String WRITE_BATCH_SIZE = "write.batch.size";
+    public static final String WAL_ENABLE = "wal.enable";
+    public static final String WAL_SYNC = "wal.sync";
     public static final String COMPACT_PERMITS = "compact.permits";
+    public static final String COMPACT_TABLE_THRESHOLD = "compact.table.threshold";
     public static final String CACHE_CAPACITY = "cache.capacity";
+    public static final String CACHE_CHUNK_CAPACITY = "cache.chunk.capacity";
     public static final String CACHE_TIMEOUT = "cache.timeout";
     public static final String CACHE_VALUE_SOFT = "cache.value.soft";
     public static final String PARQUET_BLOCK_SIZE = "parquet.block.size";
     public static final String PARQUET_PAGE_SIZE = "parquet.page.size";
     public static final String PARQUET_OUTPUT_BUFFER_SIZE = "parquet.output.buffer.size";
     public static final String PARQUET_COMPRESSOR = "parquet.compression";
+    public static final String PARQUET_BLOOM_FILTER = "parquet.bloom.filter";
+    public static final String PARQUET_BLOOM_FILTER_NDV = "parquet.bloom.filter.ndv";
     public static final String ZSTD_LEVEL = "zstd.level";
     public static final String ZSTD_WORKERS = "zstd.workers";
     public static final String PARQUET_LZ4_BUFFER_SIZE = "parquet.lz4.buffer.size";
@@ -335,15 +419,21 @@ public class StorageProperties {
     private ConflictResolverType writeBufferConflictResolverType = ConflictResolverType.NONE;
     private IndexedChunkType writeBufferChunkIndex = IndexedChunkType.NONE;
     private Duration writeBufferTimeout = Duration.ofSeconds(0);
+    private boolean writeAheadLog = false;
+    private boolean writeAheadLogSync = true;
     private long writeBatchSize = 1024 * 1024; // BYTE
     private long cacheCapacity = 16 * 1024 * 1024; // BYTE
+    private long chunkCacheCapacity = 64 * 1024 * 1024; // BYTE
     private Duration cacheTimeout = null;
     private boolean cacheSoftValues = false;
     private int compactPermits = 2;
+    private int compactTableThreshold = 4;
     private long parquetRowGroupSize = 128 * 1024 * 1024; // BYTE
     private long parquetPageSize = 8 * 1024; // BYTE
     private int parquetOutputBufferMaxSize = 256 * 1024; // BYTE
     private String parquetCompression = "UNCOMPRESSED";
+    private boolean parquetBloomFilter = false;
+    private long parquetBloomFilterNdv = 10000;
     private int zstdLevel = 3;
     private int zstdWorkers = 0;
     private int parquetLz4BufferSize = 256 * 1024; // BYTE
@@ -444,6 +534,30 @@ public class StorageProperties {
       return this;
     }
 
+    /**
+     * Set whether to log writes into write-ahead log before they are flushed. With the log enabled,
+     * unflushed writes survive a crash, so a larger write buffer and timeout are safe.
+     *
+     * @param writeAheadLog whether to enable write-ahead log
+     * @return this builder
+     */
+    public Builder setWriteAheadLog(boolean writeAheadLog) {
+      this.writeAheadLog = writeAheadLog;
+      return this;
+    }
+
+    /**
+     * Set whether to force write-ahead log to the disk before writes return. Concurrent writes
+     * share a single force.
+     *
+     * @param writeAheadLogSync whether to sync write-ahead log
+     * @return this builder
+     */
+    public Builder setWriteAheadLogSync(boolean writeAheadLogSync) {
+      this.writeAheadLogSync = writeAheadLogSync;
+      return this;
+    }
+
     /**
      * Set the size of write batch in bytes
      *
@@ -468,6 +582,18 @@ public class StorageProperties {
       return this;
     }
 
+    /**
+     * Set the capacity of decoded column chunk cache in bytes
+     *
+     * @param chunkCacheCapacity the capacity of decoded column chunk cache, bytes, 0 to disable
+     * @return this builder
+     */
+    public Builder setChunkCacheCapacity(long chunkCacheCapacity) {
+      ParseUtils.checkNonNegative(chunkCacheCapacity);
+      this.chunkCacheCapacity = chunkCacheCapacity;
+      return this;
+    }
+
     /**
      * Set the expiry timeout of cache
      *
@@ -503,6 +629,18 @@ public class StorageProperties {
       return this;
     }
 
+    /**
+     * Set the number of consecutive tables of similar size to trigger a compaction
+     *
+     * @param compactTableThreshold the number of tables, less than 2 to disable compaction
+     * @return this builder
+     */
+    public Builder setCompactTableThreshold(int compactTableThreshold) {
+      ParseUtils.checkNonNegative(compactTableThreshold);
+      this.compactTableThreshold = compactTableThreshold;
+      return this;
+    }
+
     /**
      * Set the size of parquet row group in bytes
      *
@@ -552,6 +690,30 @@ public class StorageProperties {
       return this;
     }
 
+    /**
+     * Set whether to write parquet bloom filters for binary columns
+     *
+     * @param parquetBloomFilter whether to write bloom filters, which are used to skip row groups
+     *     for equality predicates on tag-like columns
+     * @return this builder
+     */
+    public Builder setParquetBloomFilter(boolean parquetBloomFilter) {
+      this.parquetBloomFilter = parquetBloomFilter;
+      return this;
+    }
+
+    /**
+     * Set the expected number of distinct values per column chunk, used to size bloom filters
+     *
+     * @param ndv the expected number of distinct values per column chunk
+     * @return this builder
+     */
+    public Builder setParquetBloomFilterNdv(long ndv) {
+      ParseUtils.checkPositive(ndv);
+      this.parquetBloomFilterNdv = ndv;
+      return this;
+    }
+
     /**
      * Set the zstd level
      *
@@ -610,9 +772,15 @@ public class StorageProperties {
       ParseUtils.getOptionalDuration(properties, WRITE_BUFFER_TIMEOUT)
           .ifPresent(this::setWriteBufferTimeout);
       ParseUtils.getOptionalLong(properties, WRITE_BATCH_SIZE).ifPresent(this::setWriteBatchSize);
+      ParseUtils.getOptionalBoolean(properties, WAL_ENABLE).ifPresent(this::setWriteAheadLog);
+      ParseUtils.getOptionalBoolean(properties, WAL_SYNC).ifPresent(this::setWriteAheadLogSync);
       ParseUtils.getOptionalInteger(properties, COMPACT_PERMITS)
           .ifPresent(this::setCompactorPermits);
+      ParseUtils.getOptionalInteger(properties, COMPACT_TABLE_THRESHOLD)
+          .ifPresent(this::setCompactTableThreshold);
       ParseUtils.getOptionalLong(properties, CACHE_CAPACITY).ifPresent(this::setCacheCapacity);
+      ParseUtils.getOptionalLong(properties, CACHE_CHUNK_CAPACITY)
+          .ifPresent(this::setChunkCacheCapacity);
       ParseUtils.getOptionalDuration(properties, CACHE_TIMEOUT).ifPresent(this::setCacheTimeout);
       ParseUtils.getOptionalBoolean(properties, CACHE_VALUE_SOFT)
           .ifPresent(this::setCacheSoftValues);
@@ -623,6 +791,10 @@ public class StorageProperties {
           .ifPresent(this::setParquetOutputBufferMaxSize);
       ParseUtils.getOptionalString(properties, PARQUET_COMPRESSOR)
           .ifPresent(this::setParquetCompression);
+      ParseUtils.getOptionalBoolean(properties, PARQUET_BLOOM_FILTER)
+          .ifPresent(this::setParquetBloomFilter);
+      ParseUtils.getOptionalLong(properties, PARQUET_BLOOM_FILTER_NDV)
+          .ifPresent(this::setParquetBloomFilterNdv);
       ParseUtils.getOptionalInteger(properties, ZSTD_LEVEL).ifPresent(this::setZstdLevel);
       ParseUtils.getOptionalInteger(properties, ZSTD_WORKERS).ifPresent(this::setZstdWorkers);
       ParseUtils.getOptionalInteger(properties, PARQUET_LZ4_BUFFER_SIZE)
@@ -645,15 +817,21 @@ public class StorageProperties {
           writeBufferConflictResolverType,
           writeBufferChunkIndex,
           writeBufferTimeout,
+          writeAheadLog,
+          writeAheadLogSync,
           writeBatchSize,
           compactPermits,
+          compactTableThreshold,
           cacheCapacity,
+          chunkCacheCapacity,
           cacheTimeout,
           cacheSoftValues,
           parquetRowGroupSize,
           parquetPageSize,
           parquetOutputBufferMaxSize,
           parquetCompression,
+          parquetBloomFilter,
+          parquetBloomFilterNdv,
           zstdLevel,
           zstdWorkers,
           parquetLz4BufferSize);
@@ -19,6 +19,7 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.struct.tree;
 
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.struct.FileManager;
 import cn.edu.tsinghua.iginx.filesystem.struct.FileStructure;
 import com.google.auto.service.AutoService;
@@ -26,6 +27,7 @@ import com.typesafe.config.Config;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import javax.annotation.Nullable;
 import lombok.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,8 +49,14 @@ public class FileTree implements FileStructure {
 
     FileTreeConfig config;
 
+    @Nullable ScanPool pool;
+
     @Override
-    public void close() throws IOException {}
+    public void close() throws IOException {
+      if (pool != null) {
+        pool.close();
+      }
+    }
   }
 
   @Override
@@ -60,13 +68,16 @@ public class FileTree implements FileStructure {
   public Closeable newShared(Config config) throws IOException {
     LOGGER.debug("Create shared instance with config: {}", config);
     FileTreeConfig fileTreeConfig = FileTreeConfig.of(config);
-    return new Shared(fileTreeConfig);
+    ScanPool pool =
+        ScanPool.of(NAME, fileTreeConfig.getParallelism(), fileTreeConfig.getPrefetch());
+    return new Shared(fileTreeConfig, pool);
   }
 
   @Override
   public FileManager newReader(Path path, Closeable shared) throws IOException {
     LOGGER.debug("Create reader with path: {}", path);
-    return new FileTreeManager(path, ((Shared) shared).getConfig());
+    Shared fileTreeShared = (Shared) shared;
+    return new FileTreeManager(path, fileTreeShared.getConfig(), fileTreeShared.getPool());
   }
 
   @Override
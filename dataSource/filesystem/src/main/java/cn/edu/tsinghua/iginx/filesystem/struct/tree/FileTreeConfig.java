@@ -40,6 +40,12 @@ public class FileTreeConfig extends AbstractConfig {
 
   @Optional Map<String, Config> formats = Collections.emptyMap();
 
+  @Optional boolean cache = true;
+
+  @Optional int parallelism = 1;
+
+  @Optional int prefetch = 1024;
+
   @Override
   public List<ValidationProblem> validate() {
     List<ValidationProblem> problems = new ArrayList<>();
@@ -48,6 +54,13 @@ public class FileTreeConfig extends AbstractConfig {
         problems.add(new InvalidFieldValidationProblem(Fields.dot, "dot cannot contain '.'"));
       }
     }
+    if (parallelism < 1) {
+      problems.add(
+          new InvalidFieldValidationProblem(Fields.parallelism, "parallelism must be positive"));
+    }
+    if (prefetch < 1) {
+      problems.add(new InvalidFieldValidationProblem(Fields.prefetch, "prefetch must be positive"));
+    }
     return problems;
   }
 
@@ -0,0 +1,268 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.tree;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.Range;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches directory listings, and the schemas and key ranges of files in a file tree, so that
+ * planning a query does not list unchanged directories or open unchanged files again.
+ *
+ * <p>Directories are registered to a {@link WatchService} when listed, and cached entries in a
+ * directory are evicted when the watch service reports changes in it. Listings of directories that
+ * can not be watched are validated by the modification time of the directory. Cached file entries
+ * are always validated by the modification time and size of the file.
+ */
+public class FileTreeIndex implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileTreeIndex.class);
+
+  private final boolean enabled;
+  private final ConcurrentMap<Path, Listing> listings = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Path, FileEntry> files = new ConcurrentHashMap<>();
+  private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
+  private final AtomicLong generation = new AtomicLong();
+  @Nullable private final WatchService watchService;
+
+  /**
+   * @param root the root of the file tree
+   * @param enabled whether to cache, if false, every call reads the file system
+   */
+  public FileTreeIndex(Path root, boolean enabled) {
+    this.enabled = enabled;
+    this.watchService = enabled ? newWatchService(root) : null;
+    if (watchService != null) {
+      Thread watcher = new Thread(this::processEvents, "file-tree-watcher-" + root);
+      watcher.setDaemon(true);
+      watcher.start();
+    }
+  }
+
+  @Nullable
+  private static WatchService newWatchService(Path root) {
+    try {
+      return root.getFileSystem().newWatchService();
+    } catch (IOException | UnsupportedOperationException e) {
+      LOGGER.warn("failed to watch {}, fall back to modification time checks", root, e);
+      return null;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+    }
+    listings.clear();
+    files.clear();
+    watchedDirs.clear();
+  }
+
+  /**
+   * Get the attributes of a file or directory
+   *
+   * @param path the path of the file or directory
+   * @return the attributes, or null if the path does not exist
+   */
+  @Nullable
+  public BasicFileAttributes attributes(Path path) throws IOException {
+    Path parent = path.getParent();
+    if (parent != null) {
+      Listing listing = listings.get(parent);
+      if (listing != null && listing.isWatched()) {
+        return listing.getChildren().get(path);
+      }
+    }
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * List the children of a directory
+   *
+   * @param dir the path of the directory
+   * @return the paths of the children
+   */
+  public Collection<Path> list(Path dir) throws IOException {
+    Listing listing = listings.get(dir);
+    if (listing != null && isValid(dir, listing)) {
+      return listing.getChildren().keySet();
+    }
+
+    long startGeneration = generation.get();
+    boolean watched = enabled && watch(dir);
+    FileTime lastModified = Files.getLastModifiedTime(dir);
+    Map<Path, BasicFileAttributes> children = new LinkedHashMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path child : stream) {
+        try {
+          children.put(child, Files.readAttributes(child, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+          LOGGER.debug("{} is removed while listing", child);
+        }
+      }
+    }
+    listing = new Listing(lastModified, watched, Collections.unmodifiableMap(children));
+    // changes reported while listing may be missing in the listing, so it is not cached
+    if (enabled && generation.get() == startGeneration) {
+      listings.put(dir, listing);
+    }
+    return listing.getChildren().keySet();
+  }
+
+  private boolean isValid(Path dir, Listing listing) throws IOException {
+    if (listing.isWatched()) {
+      return true;
+    }
+    try {
+      if (listing.getLastModified().equals(Files.getLastModifiedTime(dir))) {
+        return true;
+      }
+    } catch (NoSuchFileException e) {
+      LOGGER.debug("{} is removed", dir);
+    }
+    listings.remove(dir);
+    return false;
+  }
+
+  /**
+   * Get the cached entry of a file
+   *
+   * @param file the path of the file
+   * @param attributes the current attributes of the file
+   * @return the cached entry, or null if it is not cached or the file has changed since
+   */
+  @Nullable
+  public FileEntry getFile(Path file, BasicFileAttributes attributes) {
+    FileEntry entry = files.get(file);
+    if (entry == null || !entry.matches(attributes)) {
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Cache the schema and key range of a file
+   *
+   * @param file the path of the file
+   * @param attributes the attributes of the file read before opening it
+   * @param schema the schema of the file
+   * @param keyRange the range of keys in the file
+   */
+  public void putFile(
+      Path file,
+      BasicFileAttributes attributes,
+      Map<String, DataType> schema,
+      Range<Long> keyRange) {
+    if (!enabled) {
+      return;
+    }
+    files.put(
+        file,
+        new FileEntry(
+            attributes.lastModifiedTime(),
+            attributes.size(),
+            Collections.unmodifiableMap(new HashMap<>(schema)),
+            keyRange));
+  }
+
+  private boolean watch(Path dir) {
+    if (watchService == null) {
+      return false;
+    }
+    if (watchedDirs.contains(dir)) {
+      return true;
+    }
+    try {
+      dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+      watchedDirs.add(dir);
+      return true;
+    } catch (IOException | UnsupportedOperationException e) {
+      LOGGER.debug("failed to watch {}, fall back to modification time checks", dir, e);
+      return false;
+    }
+  }
+
+  private void processEvents() {
+    while (true) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+      Path dir = (Path) key.watchable();
+      generation.incrementAndGet();
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW) {
+          LOGGER.debug("events of {} overflow, evict all files in it", dir);
+          files.keySet().removeIf(file -> dir.equals(file.getParent()));
+        } else {
+          Path child = dir.resolve((Path) event.context());
+          files.remove(child);
+          listings.remove(child);
+        }
+      }
+      listings.remove(dir);
+      if (!key.reset()) {
+        watchedDirs.remove(dir);
+      }
+    }
+  }
+
+  @Value
+  private static class Listing {
+    FileTime lastModified;
+    boolean watched;
+    Map<Path, BasicFileAttributes> children;
+  }
+
+  /** The cached schema and key range of a file */
+  @Value
+  public static class FileEntry {
+    FileTime lastModified;
+    long size;
+    Map<String, DataType> schema;
+    Range<Long> keyRange;
+
+    boolean matches(BasicFileAttributes attributes) {
+      return lastModified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+    }
+  }
+}
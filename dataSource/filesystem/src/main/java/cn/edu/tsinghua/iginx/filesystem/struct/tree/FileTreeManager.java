@@ -24,6 +24,7 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.filesystem.common.IginxPaths;
 import cn.edu.tsinghua.iginx.filesystem.common.RowStreams;
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
 import cn.edu.tsinghua.iginx.filesystem.struct.FileManager;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier;
@@ -38,7 +39,6 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,13 +49,21 @@ public class FileTreeManager implements FileManager {
 
   private final Path path;
   private final FileTreeConfig config;
+  private final FileTreeIndex index;
   private final Querier.Builder builder;
 
-  public FileTreeManager(Path path, FileTreeConfig config) throws IOException {
+  public FileTreeManager(Path path, FileTreeConfig config, @Nullable ScanPool pool)
+      throws IOException {
     LOGGER.debug("Create Manager in {} with {}", path, config);
     this.path = Objects.requireNonNull(path).normalize();
     this.config = config;
-    this.builder = new UnionFormatTree().create(config.getPrefix(), path, config);
+    this.index = new FileTreeIndex(this.path, config.isCache());
+    try {
+      this.builder = new UnionFormatTree(index, pool).create(config.getPrefix(), path, config);
+    } catch (IOException | RuntimeException e) {
+      index.close();
+      throw e;
+    }
   }
 
   @Override
@@ -119,16 +127,16 @@ public class FileTreeManager implements FileManager {
       return new AbstractMap.SimpleImmutableEntry<>(null, null);
     }
 
-    try (Stream<Path> childStreamForMin = Files.list(path);
-        Stream<Path> childStreamForMax = Files.list(path)) {
+    try {
+      Collection<Path> children = index.list(path);
       String minChild =
-          childStreamForMin
+          children.stream()
               .map(Path::getFileName)
               .map(p -> IginxPaths.get(p, config.getDot()))
               .min(Comparator.naturalOrder())
               .orElse(null);
       String maxChild =
-          childStreamForMax
+          children.stream()
               .map(Path::getFileName)
               .map(p -> IginxPaths.get(p, config.getDot()))
               .max(Comparator.naturalOrder())
@@ -166,7 +174,11 @@ public class FileTreeManager implements FileManager {
 
   @Override
   public void close() throws IOException {
-    builder.close();
+    try {
+      builder.close();
+    } finally {
+      index.close();
+    }
   }
 
   @Override
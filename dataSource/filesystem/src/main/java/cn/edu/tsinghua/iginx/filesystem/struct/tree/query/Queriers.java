@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.filesystem.struct.tree.query;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.filesystem.common.Closeables;
@@ -56,6 +57,31 @@ public class Queriers {
     return EMPTY_QUERIER;
   }
 
+  static class HeaderOnlyQuerier extends AbstractQuerier {
+    private final Header header;
+
+    HeaderOnlyQuerier(Header header) {
+      this.header = Objects.requireNonNull(header);
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public String toString() {
+      return "HeaderOnlyQuerier{header=" + header + "}";
+    }
+
+    @Override
+    public List<RowStream> query() throws IOException {
+      return Collections.singletonList(RowStreams.empty(header));
+    }
+  }
+
+  public static Querier empty(Header header) {
+    return new HeaderOnlyQuerier(header);
+  }
+
   static class FilteredQuerier extends AbstractQuerier {
     private final Querier querier;
     private final Filter filter;
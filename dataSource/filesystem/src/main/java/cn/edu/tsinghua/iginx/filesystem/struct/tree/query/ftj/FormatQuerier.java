@@ -27,6 +27,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.filesystem.common.Filters;
 import cn.edu.tsinghua.iginx.filesystem.common.Patterns;
 import cn.edu.tsinghua.iginx.filesystem.common.RowStreams;
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.common.Strings;
 import cn.edu.tsinghua.iginx.filesystem.format.FileFormat;
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
@@ -39,30 +40,53 @@ import javax.annotation.Nullable;
 
 class FormatQuerier extends AbstractQuerier {
 
-  private final FileFormat.Reader reader;
+  interface ReaderOpener {
+    FileFormat.Reader open() throws IOException;
+  }
+
+  private final ReaderOpener opener;
+  @Nullable private final ScanPool pool;
   private final List<String> patterns;
   private final Filter filter;
+  private FileFormat.Reader reader;
 
-  FormatQuerier(Path path, String prefix, DataTarget target, FileFormat.Reader reader) {
+  FormatQuerier(
+      Path path, String prefix, DataTarget target, ReaderOpener opener, @Nullable ScanPool pool) {
     super(path, prefix, target);
-    this.reader = Objects.requireNonNull(reader);
+    this.opener = Objects.requireNonNull(opener);
+    this.pool = pool;
     this.patterns = Patterns.nonNull(target.getPatterns());
     this.filter = Filters.isTrue(target.getFilter()) ? new BoolFilter(true) : target.getFilter();
   }
 
   @Override
   public void close() throws IOException {
-    reader.close();
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
   }
 
   @Override
   public String toString() {
-    return super.toString() + "&reader=" + Strings.shiftWithNewline(reader.toString());
+    String readerString = reader == null ? "(unopened)" : reader.toString();
+    return super.toString()
+        + "&prefetch="
+        + (pool != null)
+        + "&reader="
+        + Strings.shiftWithNewline(readerString);
   }
 
   @Override
   public List<RowStream> query() throws IOException {
-    RowStream rowStream = doQuery();
+    if (pool != null) {
+      // the file is opened and read on the pool, the stream closes its own reader
+      return Collections.singletonList(pool.submit(this::openAndQuery));
+    }
+    if (reader == null) {
+      reader = opener.open();
+    }
+    RowStream rowStream = doQuery(reader);
     if (rowStream == null) {
       return Collections.emptyList();
     } else {
@@ -70,8 +94,15 @@ class FormatQuerier extends AbstractQuerier {
     }
   }
 
+  private RowStream openAndQuery() throws IOException {
+    try (FileFormat.Reader opened = opener.open()) {
+      RowStream rowStream = doQuery(opened);
+      return rowStream == null ? RowStreams.empty() : rowStream;
+    }
+  }
+
   @Nullable
-  private RowStream doQuery() throws IOException {
+  private RowStream doQuery(FileFormat.Reader reader) throws IOException {
     Map<String, DataType> schema = reader.find(patterns);
     if (schema.isEmpty()) {
       return null;
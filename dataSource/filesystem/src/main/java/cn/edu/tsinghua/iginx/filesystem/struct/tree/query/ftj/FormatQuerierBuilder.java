@@ -19,27 +19,52 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.struct.tree.query.ftj;
 
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.filesystem.common.Filters;
+import cn.edu.tsinghua.iginx.filesystem.common.Patterns;
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.format.FileFormat;
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
+import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeIndex;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder;
+import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Queriers;
+import com.google.common.collect.RangeSet;
 import com.typesafe.config.Config;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class FormatQuerierBuilder implements Builder {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(FormatQuerierBuilder.class);
+
   private final String prefix;
   private final Path path;
   private final FileFormat format;
   private final Config config;
+  private final FileTreeIndex index;
+  @Nullable private final ScanPool pool;
 
-  FormatQuerierBuilder(@Nullable String prefix, Path path, FileFormat format, Config config) {
+  FormatQuerierBuilder(
+      @Nullable String prefix,
+      Path path,
+      FileFormat format,
+      Config config,
+      FileTreeIndex index,
+      @Nullable ScanPool pool) {
     this.format = format;
     this.prefix = prefix;
     this.path = path;
     this.config = config;
+    this.index = index;
+    this.pool = pool;
   }
 
   @Override
@@ -47,7 +72,56 @@ class FormatQuerierBuilder implements Builder {
 
   @Override
   public Querier build(DataTarget subTarget) throws IOException {
+    BasicFileAttributes attributes = index.attributes(path);
+    FileTreeIndex.FileEntry entry = attributes == null ? null : index.getFile(path, attributes);
+    if (entry != null) {
+      Querier pruned = prune(entry, subTarget);
+      if (pruned != null) {
+        LOGGER.debug("skip {} for {} by cached schema and key range", path, subTarget);
+        return pruned;
+      }
+    }
+
+    return new FormatQuerier(
+        path, prefix, subTarget, () -> openReader(attributes, entry == null), pool);
+  }
+
+  private FileFormat.Reader openReader(@Nullable BasicFileAttributes attributes, boolean uncached)
+      throws IOException {
     FileFormat.Reader reader = format.newReader(prefix, path, config);
-    return new FormatQuerier(path, prefix, subTarget, reader);
+    if (uncached && attributes != null) {
+      try {
+        index.putFile(path, attributes, reader.find(Patterns.all()), reader.keyRange());
+      } catch (IOException | RuntimeException e) {
+        reader.close();
+        throw e;
+      }
+    }
+    return reader;
+  }
+
+  /** Build a querier without opening the file if the file can not contain the target. */
+  @Nullable
+  private static Querier prune(FileTreeIndex.FileEntry entry, DataTarget target) {
+    List<String> patterns = Patterns.nonNull(target.getPatterns());
+    List<Field> fields = new ArrayList<>();
+    entry
+        .getSchema()
+        .forEach(
+            (name, type) -> {
+              if (Patterns.match(patterns, name)) {
+                fields.add(new Field(name, type));
+              }
+            });
+    if (fields.isEmpty()) {
+      return Queriers.empty();
+    }
+
+    RangeSet<Long> keyRanges =
+        Filters.toRangeSet(Filters.superSet(target.getFilter(), Filters.nonKeyFilter()));
+    if (keyRanges.subRangeSet(entry.getKeyRange()).isEmpty()) {
+      return Queriers.empty(new Header(Field.KEY, fields));
+    }
+    return null;
   }
 }
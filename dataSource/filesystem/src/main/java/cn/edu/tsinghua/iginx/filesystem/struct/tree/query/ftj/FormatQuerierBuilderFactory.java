@@ -19,15 +19,18 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.struct.tree.query.ftj;
 
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.format.FileFormat;
 import cn.edu.tsinghua.iginx.filesystem.format.FileFormatManager;
 import cn.edu.tsinghua.iginx.filesystem.format.raw.RawFormat;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeConfig;
+import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeIndex;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder.Factory;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import java.nio.file.Path;
+import java.util.Objects;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +39,14 @@ public class FormatQuerierBuilderFactory implements Factory {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FormatQuerierBuilderFactory.class);
 
+  private final FileTreeIndex index;
+  @Nullable private final ScanPool pool;
+
+  public FormatQuerierBuilderFactory(FileTreeIndex index, @Nullable ScanPool pool) {
+    this.index = Objects.requireNonNull(index);
+    this.pool = pool;
+  }
+
   @Override
   public Builder create(@Nullable String prefix, Path path, FileTreeConfig config) {
     String extension = getExtension(path);
@@ -45,7 +56,7 @@ public class FormatQuerierBuilderFactory implements Factory {
         config.getFormats().getOrDefault(format.getName(), ConfigFactory.empty());
     LOGGER.debug(
         "create {} querier for {} at '{}' with {}, ", format, path, prefix, configForFormat);
-    return new FormatQuerierBuilder(prefix, path, format, configForFormat);
+    return new FormatQuerierBuilder(prefix, path, format, configForFormat, index, pool);
   }
 
   @Nullable
@@ -26,12 +26,11 @@ import cn.edu.tsinghua.iginx.filesystem.common.IginxPaths;
 import cn.edu.tsinghua.iginx.filesystem.common.Patterns;
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeConfig;
+import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeIndex;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Queriers;
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import javax.annotation.Nullable;
@@ -46,13 +45,19 @@ class UnionDirectoryQuerierBuilder implements Builder {
   private final Path path;
   private final Factory factory;
   private final FileTreeConfig config;
+  private final FileTreeIndex index;
 
   UnionDirectoryQuerierBuilder(
-      @Nullable String prefix, Path path, Factory factory, FileTreeConfig config) {
+      @Nullable String prefix,
+      Path path,
+      Factory factory,
+      FileTreeConfig config,
+      FileTreeIndex index) {
     this.prefix = prefix;
     this.path = path;
     this.factory = factory;
     this.config = config;
+    this.index = index;
   }
 
   @Override
@@ -139,7 +144,7 @@ class UnionDirectoryQuerierBuilder implements Builder {
       Path relativePath =
           IginxPaths.toFilePath(nextPatternNode, config.getDot(), path.getFileSystem());
       Path subpath = path.resolve(relativePath);
-      if (!Files.exists(subpath)) {
+      if (index.attributes(subpath) == null) {
         continue;
       }
 
@@ -151,11 +156,9 @@ class UnionDirectoryQuerierBuilder implements Builder {
 
   private Map<String, Path> allChildren() throws IOException {
     HashMap<String, Path> matchedChildren = new LinkedHashMap<>();
-    try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
-      for (Path child : children) {
-        String subPrefix = subPrefix(prefix, child);
-        matchedChildren.put(subPrefix, child);
-      }
+    for (Path child : index.list(path)) {
+      String subPrefix = subPrefix(prefix, child);
+      matchedChildren.put(subPrefix, child);
     }
     return matchedChildren;
   }
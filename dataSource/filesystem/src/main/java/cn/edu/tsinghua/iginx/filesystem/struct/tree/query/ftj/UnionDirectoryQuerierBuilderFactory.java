@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.filesystem.struct.tree.query.ftj;
 
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeConfig;
+import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeIndex;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder.Factory;
 import java.nio.file.Path;
@@ -34,9 +35,11 @@ public class UnionDirectoryQuerierBuilderFactory implements Factory {
       LoggerFactory.getLogger(UnionDirectoryQuerierBuilderFactory.class);
 
   private final Factory factory;
+  private final FileTreeIndex index;
 
-  public UnionDirectoryQuerierBuilderFactory(Factory factory) {
+  public UnionDirectoryQuerierBuilderFactory(Factory factory, FileTreeIndex index) {
     this.factory = Objects.requireNonNull(factory);
+    this.index = Objects.requireNonNull(index);
     if (factory == this) {
       throw new IllegalArgumentException("Factory cannot be itself");
     }
@@ -45,6 +48,6 @@ public class UnionDirectoryQuerierBuilderFactory implements Factory {
   @Override
   public Builder create(@Nullable String prefix, Path path, FileTreeConfig config) {
     LOGGER.debug("create tree join querier for {} at '{}' with {}", path, prefix, config);
-    return new UnionDirectoryQuerierBuilder(prefix, path, factory, config);
+    return new UnionDirectoryQuerierBuilder(prefix, path, factory, config, index);
   }
 }
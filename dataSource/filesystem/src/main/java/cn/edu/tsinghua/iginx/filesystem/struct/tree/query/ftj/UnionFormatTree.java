@@ -19,28 +19,39 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.struct.tree.query.ftj;
 
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeConfig;
+import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeIndex;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder;
 import cn.edu.tsinghua.iginx.filesystem.struct.tree.query.Querier.Builder.Factory;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
 import javax.annotation.Nullable;
 
 public class UnionFormatTree implements Factory {
 
-  private final Factory forRegularFile = new FormatQuerierBuilderFactory();
-  private final Factory forDirectory = new UnionDirectoryQuerierBuilderFactory(this);
+  private final FileTreeIndex index;
+  private final Factory forRegularFile;
+  private final Factory forDirectory;
+
+  public UnionFormatTree(FileTreeIndex index, @Nullable ScanPool pool) {
+    this.index = Objects.requireNonNull(index);
+    this.forRegularFile = new FormatQuerierBuilderFactory(index, pool);
+    this.forDirectory = new UnionDirectoryQuerierBuilderFactory(this, index);
+  }
 
   @Override
   public Builder create(@Nullable String prefix, Path path, FileTreeConfig config)
       throws IOException {
-    if (Files.isDirectory(path)) {
+    BasicFileAttributes attributes = index.attributes(path);
+    if (attributes == null) {
+      throw new IOException("file does not exist: " + path);
+    } else if (attributes.isDirectory()) {
       return forDirectory.create(prefix, path, config);
-    } else if (Files.isRegularFile(path)) {
+    } else if (attributes.isRegularFile()) {
       return forRegularFile.create(prefix, path, config);
-    } else if (!Files.exists(path)) {
-      throw new IOException("file does not exist: " + path);
     } else {
       throw new IllegalArgumentException("Unsupported file type: " + path);
     }
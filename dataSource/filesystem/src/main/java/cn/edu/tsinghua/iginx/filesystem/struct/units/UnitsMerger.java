@@ -23,6 +23,8 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.MergeFieldRowStreamWrapper;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
+import cn.edu.tsinghua.iginx.filesystem.common.RowStreams;
+import cn.edu.tsinghua.iginx.filesystem.common.ScanPool;
 import cn.edu.tsinghua.iginx.filesystem.struct.DataTarget;
 import cn.edu.tsinghua.iginx.filesystem.struct.FileManager;
 import cn.edu.tsinghua.iginx.filesystem.struct.exception.NoSuchUnitException;
@@ -48,9 +50,15 @@ public class UnitsMerger implements FileManager {
   }
 
   private final UnitListSupplier supplier;
+  @Nullable private final ScanPool pool;
 
   public UnitsMerger(UnitListSupplier supplier) throws IOException {
+    this(supplier, null);
+  }
+
+  public UnitsMerger(UnitListSupplier supplier, @Nullable ScanPool pool) throws IOException {
     this.supplier = Objects.requireNonNull(supplier);
+    this.pool = pool;
   }
 
   @Override
@@ -104,6 +112,10 @@ public class UnitsMerger implements FileManager {
     List<RowStream> streams = new ArrayList<>();
     try {
       for (Map.Entry<DataUnit, FileManager> entry : supplier.getUnits().entrySet()) {
+        if (pool != null) {
+          streams.add(pool.submit(() -> queryUnit(entry.getKey(), entry.getValue(), target)));
+          continue;
+        }
         try {
           streams.add(entry.getValue().query(target, null));
         } catch (NoSuchUnitException e) {
@@ -118,6 +130,16 @@ public class UnitsMerger implements FileManager {
     }
   }
 
+  private static RowStream queryUnit(DataUnit unit, FileManager manager, DataTarget target)
+      throws IOException {
+    try {
+      return manager.query(target, null);
+    } catch (NoSuchUnitException e) {
+      LOGGER.warn("Unit {} is not found", unit);
+      return RowStreams.empty();
+    }
+  }
+
   @Override
   public void delete(DataTarget target) throws IOException {
     throw new UnsupportedOperationException("delete is not supported in UnitsMerger");
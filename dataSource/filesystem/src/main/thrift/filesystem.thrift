@@ -55,6 +55,19 @@ struct RawDataSet {
     2: required list<core.RawRow> rows
 }
 
+struct RawCursor {
+    1: required i64 id
+    2: required core.RawHeader header
+}
+
+struct RawBatch {
+    1: required i32 size
+    2: optional binary keys
+    3: required list<binary> valuesList
+    4: required list<binary> bitmapList
+    5: required bool hasMore
+}
+
 struct RawPrefix {
     1: optional string prefix
 }
@@ -78,6 +91,12 @@ service FileSystemRpc {
 
     RawDataSet query(1: DataUnit unit, 2: RawDataTarget target, 3: RawAggregate aggregate) throws (1: RpcException e);
 
+    RawCursor openCursor(1: DataUnit unit, 2: RawDataTarget target, 3: RawAggregate aggregate) throws (1: RpcException e);
+
+    RawBatch fetch(1: i64 cursorId, 2: i32 fetchSize) throws (1: RpcException e);
+
+    void closeCursor(1: i64 cursorId) throws (1: RpcException e);
+
     void delete(1: DataUnit unit, 2: RawDataTarget target) throws (1: RpcException e);
 
     void insert(1: DataUnit unit, 2: RawInserted data) throws (1: RpcException e);
@@ -0,0 +1,311 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.format.parquet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shaded.iginx.org.apache.parquet.ParquetReadOptions;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.BlockMetaData;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import shaded.iginx.org.apache.parquet.io.LocalInputFile;
+import shaded.iginx.org.apache.parquet.schema.MessageType;
+
+class RowGroupPrunerTest {
+
+  private static final int ROW_COUNT = 1000;
+
+  private static final String VALUE = "us.d1.v";
+
+  private static final String TAG = "us.d1.tag";
+
+  private static final Header HEADER =
+      new Header(
+          Field.KEY,
+          Arrays.asList(new Field(VALUE, DataType.LONG), new Field(TAG, DataType.BINARY)));
+
+  @TempDir Path root;
+
+  /** Key k has value 2k and tag "t" followed by 2k in four digits, so odd tags never exist. */
+  private static Row row(long key) {
+    return new Row(HEADER, key, new Object[] {key * 2, String.format("t%04d", key * 2).getBytes()});
+  }
+
+  /** Writes rows in key order with a tiny row group size, so that every row group is small. */
+  private Path createFile(String name, boolean bloomFilter) throws IOException {
+    Path path = root.resolve(name);
+    MessageType schema = ProjectUtils.toMessageType(HEADER);
+    IParquetWriter.Builder builder = IParquetWriter.builder(path, schema).withRowGroupSize(1);
+    if (bloomFilter) {
+      builder.withBloomFilter(TAG, ROW_COUNT);
+    }
+    try (IParquetWriter writer = builder.build()) {
+      for (long key = 0; key < ROW_COUNT; key++) {
+        writer.write(ProjectUtils.toRecord(row(key)));
+      }
+    }
+    return path;
+  }
+
+  private static ParquetMetadata footerOf(Path path) throws IOException {
+    try (IParquetReader reader = IParquetReader.builder(path).build()) {
+      return reader.getMeta();
+    }
+  }
+
+  private static List<Row> read(IParquetReader reader) throws IOException {
+    MessageType schema = reader.getSchema();
+    List<Row> rows = new ArrayList<>();
+    IRecord record;
+    while ((record = reader.read()) != null) {
+      long key = 0;
+      Object[] values = new Object[HEADER.getFieldSize()];
+      for (Map.Entry<Integer, Object> entry : record) {
+        String name = schema.getFieldName(entry.getKey());
+        if (name.equals(IParquetWriter.KEY_FIELD_NAME)) {
+          key = (Long) entry.getValue();
+        } else {
+          values[HEADER.indexOf(name)] = entry.getValue();
+        }
+      }
+      rows.add(new Row(HEADER, key, values));
+    }
+    return rows;
+  }
+
+  /** Indexes of the row groups that actually contain a row matching the filter. */
+  private static List<Integer> matchingGroups(ParquetMetadata footer, Filter filter)
+      throws PhysicalException {
+    List<Integer> groups = new ArrayList<>();
+    long key = 0;
+    for (int i = 0; i < footer.getBlocks().size(); i++) {
+      long end = key + footer.getBlocks().get(i).getRowCount();
+      for (; key < end; key++) {
+        if (FilterUtils.validate(filter, row(key))) {
+          groups.add(i);
+          key = end;
+        }
+      }
+    }
+    return groups;
+  }
+
+  private static List<Integer> prunedGroups(Path path, ParquetMetadata footer, Filter filter)
+      throws IOException {
+    List<Integer> groups = new ArrayList<>();
+    try (RowGroupPruner pruner =
+        new RowGroupPruner(
+            new LocalInputFile(path),
+            footer,
+            ParquetReadOptions.builder().build(),
+            Function.identity(),
+            true)) {
+      for (BlockMetaData block : pruner.prune(filter)) {
+        groups.add(footer.getBlocks().indexOf(block));
+      }
+    }
+    return groups;
+  }
+
+  private static List<Row> filter(List<Row> rows, Filter filter) throws PhysicalException {
+    List<Row> result = new ArrayList<>();
+    for (Row row : rows) {
+      if (FilterUtils.validate(filter, row)) {
+        result.add(row);
+      }
+    }
+    return result;
+  }
+
+  private static String toString(List<Row> rows) {
+    StringBuilder builder = new StringBuilder();
+    for (Row row : rows) {
+      builder.append(row.getKey()).append(':').append(row.getValue(0)).append(':');
+      builder.append(new String((byte[]) row.getValue(1))).append('\n');
+    }
+    return builder.toString();
+  }
+
+  private void assertPruned(Path path, Filter filter, List<Integer> expectedGroups)
+      throws IOException, PhysicalException {
+    ParquetMetadata footer = footerOf(path);
+    assertEquals(expectedGroups, prunedGroups(path, footer, filter), filter.toString());
+
+    List<Row> all;
+    try (IParquetReader reader = IParquetReader.builder(path).build()) {
+      all = read(reader);
+    }
+    List<Row> pruned;
+    try (IParquetReader reader =
+        IParquetReader.builder(path).prune(filter, Function.identity()).build()) {
+      pruned = read(reader);
+    }
+    assertEquals(toString(filter(all, filter)), toString(filter(pruned, filter)));
+  }
+
+  private void assertPrunedToMatching(Path path, Filter filter)
+      throws IOException, PhysicalException {
+    ParquetMetadata footer = footerOf(path);
+    List<Integer> expected = matchingGroups(footer, filter);
+    assertTrue(expected.size() < footer.getBlocks().size(), "nothing to prune by " + filter);
+    assertPruned(path, filter, expected);
+  }
+
+  @Test
+  void testMultipleRowGroups() throws IOException {
+    ParquetMetadata footer = footerOf(createFile("data.parquet", false));
+    assertTrue(footer.getBlocks().size() > 3, "row groups: " + footer.getBlocks().size());
+  }
+
+  @Test
+  void testKeyFilter() throws IOException, PhysicalException {
+    Path path = createFile("data.parquet", false);
+    assertPrunedToMatching(path, new KeyFilter(Op.GE, 950));
+    assertPrunedToMatching(path, new KeyFilter(Op.L, 30));
+    assertPrunedToMatching(path, new KeyFilter(Op.E, 500));
+    assertPrunedToMatching(
+        path, new AndFilter(Arrays.asList(new KeyFilter(Op.GE, 300), new KeyFilter(Op.LE, 420))));
+    assertPruned(path, new KeyFilter(Op.G, ROW_COUNT), new ArrayList<>());
+  }
+
+  @Test
+  void testValueFilter() throws IOException, PhysicalException {
+    Path path = createFile("data.parquet", false);
+    assertPrunedToMatching(path, new ValueFilter(VALUE, Op.G, new Value(1900L)));
+    assertPrunedToMatching(path, new ValueFilter(VALUE, Op.LE, new Value(100)));
+    assertPrunedToMatching(path, new ValueFilter(VALUE, Op.E, new Value(1000L)));
+    assertPrunedToMatching(path, new ValueFilter(TAG, Op.L, new Value("t0100".getBytes())));
+    assertPrunedToMatching(
+        path,
+        new AndFilter(
+            Arrays.asList(
+                new KeyFilter(Op.GE, 100), new ValueFilter(VALUE, Op.L, new Value(300L)))));
+
+    // 不支持的比较不会跳过任何行组
+    ParquetMetadata footer = footerOf(path);
+    int groupCount = footer.getBlocks().size();
+    assertEquals(
+        groupCount,
+        prunedGroups(path, footer, new ValueFilter(VALUE, Op.NE, new Value(0L))).size());
+    assertEquals(
+        groupCount,
+        prunedGroups(path, footer, new ValueFilter(VALUE, Op.E, new Value("0".getBytes()))).size());
+    assertEquals(
+        groupCount,
+        prunedGroups(path, footer, new ValueFilter("us.d1.absent", Op.E, new Value(0L))).size());
+  }
+
+  @Test
+  void testOrFilter() throws IOException, PhysicalException {
+    Path path = createFile("data.parquet", false);
+    Filter keyOr = new OrFilter(Arrays.asList(new KeyFilter(Op.L, 50), new KeyFilter(Op.GE, 950)));
+    assertPrunedToMatching(path, keyOr);
+    ParquetMetadata footer = footerOf(path);
+    List<Integer> groups = prunedGroups(path, footer, keyOr);
+    assertEquals(0, groups.get(0));
+    assertEquals(footer.getBlocks().size() - 1, groups.get(groups.size() - 1));
+
+    assertPrunedToMatching(
+        path,
+        new OrFilter(
+            Arrays.asList(
+                new KeyFilter(Op.E, 10), new ValueFilter(VALUE, Op.E, new Value(1500L)))));
+
+    // OR 的任一分支无法判断时不跳过行组
+    assertEquals(
+        footer.getBlocks().size(),
+        prunedGroups(
+                path,
+                footer,
+                new OrFilter(
+                    Arrays.asList(
+                        new KeyFilter(Op.E, 10), new ValueFilter(VALUE, Op.NE, new Value(0L)))))
+            .size());
+  }
+
+  @Test
+  void testEqualityWithBloomFilter() throws IOException, PhysicalException {
+    Path withBloom = createFile("bloom.parquet", true);
+    Path withoutBloom = createFile("plain.parquet", false);
+
+    // 存在的标签只保留所在的行组
+    Filter present = new ValueFilter(TAG, Op.E, new Value("t0100".getBytes()));
+    assertPrunedToMatching(withBloom, present);
+    assertPrunedToMatching(withoutBloom, present);
+
+    // 不存在的标签落在某个行组的 min/max 之间，只有 bloom filter 能跳过
+    Filter absent = new ValueFilter(TAG, Op.E, new Value("t0101".getBytes()));
+    assertEquals(1, prunedGroups(withoutBloom, footerOf(withoutBloom), absent).size());
+    assertPruned(withBloom, absent, new ArrayList<>());
+
+    // bloom filter 只用于等值比较
+    Filter range = new ValueFilter(TAG, Op.GE, new Value("t1990".getBytes()));
+    assertPrunedToMatching(withBloom, range);
+  }
+
+  @Test
+  void testRowIndexKey() throws IOException {
+    Path path = createFile("data.parquet", false);
+    ParquetMetadata footer = footerOf(path);
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < footer.getBlocks().size(); i++) {
+      BlockMetaData block = footer.getBlocks().get(i);
+      if (block.getRowIndexOffset() + block.getRowCount() > 990) {
+        expected.add(i);
+      }
+    }
+    List<Integer> groups = new ArrayList<>();
+    try (RowGroupPruner pruner =
+        new RowGroupPruner(
+            new LocalInputFile(path),
+            footer,
+            ParquetReadOptions.builder().build(),
+            Function.identity(),
+            false)) {
+      for (BlockMetaData block : pruner.prune(new KeyFilter(Op.G, 990))) {
+        groups.add(footer.getBlocks().indexOf(block));
+      }
+    }
+    assertEquals(expected, groups);
+    assertTrue(expected.size() < footer.getBlocks().size());
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.format.raw;
+
+import static org.junit.Assert.*;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RawFormatRowStreamTest {
+
+  private static final Header HEADER =
+      new Header(Field.KEY, Collections.singletonList(new Field("raw", DataType.BINARY)));
+
+  private static final int PAGE_SIZE = 4;
+
+  private Path file;
+
+  private byte[] content;
+
+  @Before
+  public void setUp() throws Exception {
+    file = Files.createTempFile("raw", ".bin");
+    content = new byte[PAGE_SIZE * 10 + 2];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Files.write(file, content);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(file);
+  }
+
+  private List<Row> readAll(long mmapWindowSize, RangeSet<Long> keyRanges) throws Exception {
+    List<Row> rows = new ArrayList<>();
+    RawFormatRowStream stream =
+        new RawFormatRowStream(HEADER, file, PAGE_SIZE, mmapWindowSize, keyRanges);
+    try {
+      while (stream.hasNext()) {
+        rows.add(stream.next());
+      }
+    } finally {
+      stream.close();
+    }
+    return rows;
+  }
+
+  private void assertPages(List<Row> rows, long... keys) {
+    assertEquals(keys.length, rows.size());
+    for (int i = 0; i < keys.length; i++) {
+      Row row = rows.get(i);
+      assertEquals(keys[i], row.getKey());
+      int from = Math.toIntExact(keys[i] * PAGE_SIZE);
+      int to = Math.min(from + PAGE_SIZE, content.length);
+      assertArrayEquals(Arrays.copyOfRange(content, from, to), (byte[]) row.getValues()[0]);
+    }
+  }
+
+  @Test
+  public void testReadAll() throws Exception {
+    RangeSet<Long> all = ImmutableRangeSet.of(Range.all());
+    long[] keys = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    // disabled, one page per window, windows across pages, one window for the whole file
+    for (long windowSize : new long[] {0, PAGE_SIZE, PAGE_SIZE * 3 + 1, 1024}) {
+      assertPages(readAll(windowSize, all), keys);
+    }
+  }
+
+  @Test
+  public void testSkipKeyRanges() throws Exception {
+    RangeSet<Long> ranges = TreeRangeSet.create();
+    ranges.add(Range.closed(1L, 2L));
+    ranges.add(Range.closedOpen(6L, 8L));
+    ranges.add(Range.atLeast(10L));
+    for (long windowSize : new long[] {0, PAGE_SIZE * 2, 1024}) {
+      assertPages(readAll(windowSize, ranges), 1, 2, 6, 7, 10);
+    }
+
+    RangeSet<Long> beyond = ImmutableRangeSet.of(Range.closed(11L, 100L));
+    assertTrue(readAll(1024, beyond).isEmpty());
+  }
+
+  @Test
+  public void testTruncatedWhileReading() throws Exception {
+    // pages span whole OS pages, so mapped pages beyond the new end of file would raise SIGBUS;
+    // the truncation is noticed when the next window is mapped, so the file is only truncated
+    // beyond the window containing the first page
+    int pageSize = 8192;
+    byte[] large = new byte[pageSize * 4];
+    Arrays.fill(large, (byte) 1);
+    for (long windowSize : new long[] {0, pageSize}) {
+      Files.write(file, large);
+      RawFormatRowStream stream =
+          new RawFormatRowStream(
+              HEADER, file, pageSize, windowSize, ImmutableRangeSet.of(Range.all()));
+      try {
+        // the first page has been read when the stream is opened
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+          channel.truncate(pageSize + 10);
+        }
+        List<Row> rows = new ArrayList<>();
+        while (stream.hasNext()) {
+          rows.add(stream.next());
+        }
+        assertEquals(2, rows.size());
+        assertEquals(pageSize, ((byte[]) rows.get(0).getValues()[0]).length);
+        assertEquals(1L, rows.get(1).getKey());
+        assertEquals(10, ((byte[]) rows.get(1).getValues()[0]).length);
+      } finally {
+        stream.close();
+      }
+    }
+  }
+}
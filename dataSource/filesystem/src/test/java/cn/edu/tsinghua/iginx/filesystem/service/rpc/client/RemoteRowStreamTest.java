@@ -0,0 +1,128 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.service.rpc.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.filesystem.common.FileSystemException;
+import cn.edu.tsinghua.iginx.filesystem.service.rpc.server.ServerObjectMappingUtils;
+import cn.edu.tsinghua.iginx.filesystem.thrift.RawBatch;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.thrift.RawHeader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RemoteRowStreamTest {
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdown();
+  }
+
+  private static final Header HEADER =
+      new Header(
+          Field.KEY,
+          Arrays.asList(
+              new Field("a", DataType.LONG),
+              new Field("b", DataType.BINARY),
+              new Field("c", DataType.BOOLEAN)));
+
+  private static List<Row> rows(int size) {
+    List<Row> rows = new ArrayList<>();
+    for (long key = 0; key < size; key++) {
+      Object[] values = {
+        key % 3 == 0 ? null : key, ("v" + key).getBytes(), key % 2 == 0 ? null : key % 4 == 1
+      };
+      rows.add(new Row(HEADER, key, values));
+    }
+    return rows;
+  }
+
+  private static class TableFetcher implements RemoteRowStream.Fetcher {
+    private final RowStream stream;
+    private final RawHeader header;
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    TableFetcher(List<Row> rows) {
+      this.stream = new Table(HEADER, rows);
+      this.header = ServerObjectMappingUtils.constructRawHeader(HEADER);
+    }
+
+    @Override
+    public RawBatch fetch(long cursorId, int fetchSize) throws FileSystemException {
+      fetched.incrementAndGet();
+      try {
+        return ServerObjectMappingUtils.constructRawBatch(stream, header, fetchSize);
+      } catch (PhysicalException e) {
+        throw new FileSystemException(e);
+      }
+    }
+
+    @Override
+    public void close(long cursorId) {
+      closed.incrementAndGet();
+    }
+  }
+
+  @Test
+  void testFetchAll() throws PhysicalException {
+    List<Row> expected = rows(10);
+    TableFetcher fetcher = new TableFetcher(expected);
+    List<Row> actual = new ArrayList<>();
+    try (RowStream stream = new RemoteRowStream(fetcher, 1, HEADER, 4, executor)) {
+      while (stream.hasNext()) {
+        actual.add(stream.next());
+      }
+    }
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+      assertArrayEquals(expected.get(i).getValues(), actual.get(i).getValues());
+    }
+    assertEquals(3, fetcher.fetched.get());
+    assertEquals(0, fetcher.closed.get());
+  }
+
+  @Test
+  void testCloseEarly() throws PhysicalException {
+    TableFetcher fetcher = new TableFetcher(rows(10));
+    RowStream stream = new RemoteRowStream(fetcher, 1, HEADER, 4, executor);
+    assertTrue(stream.hasNext());
+    stream.next();
+    stream.close();
+    assertFalse(stream.hasNext());
+    assertEquals(1, fetcher.closed.get());
+  }
+}
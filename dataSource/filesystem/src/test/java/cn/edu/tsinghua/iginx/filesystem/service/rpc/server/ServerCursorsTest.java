@@ -0,0 +1,100 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.service.rpc.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.filesystem.common.FileSystemException;
+import cn.edu.tsinghua.iginx.filesystem.thrift.RawBatch;
+import cn.edu.tsinghua.iginx.filesystem.thrift.RawCursor;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ServerCursorsTest {
+
+  private static final Header HEADER =
+      new Header(Field.KEY, Collections.singletonList(new Field("a", DataType.LONG)));
+
+  private static class ClosableTable extends Table {
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    ClosableTable(int size) {
+      super(HEADER, rows(size));
+    }
+
+    private static List<Row> rows(int size) {
+      List<Row> rows = new ArrayList<>();
+      for (long key = 0; key < size; key++) {
+        rows.add(new Row(HEADER, key, new Object[] {key}));
+      }
+      return rows;
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+  }
+
+  @Test
+  void testFetchAndClose() throws Exception {
+    try (ServerCursors cursors = new ServerCursors(Duration.ofMinutes(10))) {
+      ClosableTable table = new ClosableTable(5);
+      RawCursor cursor = cursors.open(table);
+      RawBatch batch = cursors.fetch(cursor.getId(), 3);
+      assertTrue(batch.isHasMore());
+      batch = cursors.fetch(cursor.getId(), 3);
+      assertFalse(batch.isHasMore());
+      assertTrue(table.closed.await(0, TimeUnit.SECONDS));
+      assertThrows(FileSystemException.class, () -> cursors.fetch(cursor.getId(), 3));
+    }
+  }
+
+  @Test
+  void testExpireIdleCursors() throws Exception {
+    try (ServerCursors cursors = new ServerCursors(Duration.ofMillis(50))) {
+      ClosableTable table = new ClosableTable(5);
+      RawCursor cursor = cursors.open(table);
+      // no other cursor is opened, the idle cursor is still released in the background
+      assertTrue(table.closed.await(10, TimeUnit.SECONDS));
+      assertThrows(FileSystemException.class, () -> cursors.fetch(cursor.getId(), 3));
+    }
+  }
+
+  @Test
+  void testCloseAll() throws PhysicalException {
+    ClosableTable table = new ClosableTable(5);
+    ServerCursors cursors = new ServerCursors(Duration.ofMinutes(10));
+    cursors.open(table);
+    cursors.close();
+    assertEquals(0, table.closed.getCount());
+  }
+}
@@ -56,10 +56,14 @@ public class FileTreeDummyTest extends AbstractDummyTest {
   protected static final String DIR_NAME = "home";
 
   public FileTreeDummyTest() {
-    super(FileTree.NAME, getConfig(), DIR_NAME);
+    this(getConfig());
   }
 
-  private static Config getConfig() {
+  protected FileTreeDummyTest(Config config) {
+    super(FileTree.NAME, config, DIR_NAME);
+  }
+
+  protected static Config getConfig() {
     Map<String, Object> map = new HashMap<>();
     Configs.put(
         map, 8, FileTreeConfig.Fields.formats, RawFormat.NAME, RawReaderConfig.Fields.pageSize);
@@ -0,0 +1,37 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.service.storage;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.tree.FileTreeConfig;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueFactory;
+
+public class ParallelFileTreeDummyTest extends FileTreeDummyTest {
+
+  public ParallelFileTreeDummyTest() {
+    super(getParallelConfig());
+  }
+
+  private static Config getParallelConfig() {
+    return getConfig()
+        .withValue(FileTreeConfig.Fields.parallelism, ConfigValueFactory.fromAnyRef(4))
+        .withValue(FileTreeConfig.Fields.prefetch, ConfigValueFactory.fromAnyRef(3));
+  }
+}
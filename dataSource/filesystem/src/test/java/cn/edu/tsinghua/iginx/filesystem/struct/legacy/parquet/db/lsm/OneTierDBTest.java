@@ -0,0 +1,187 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm;
+
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.IteratorScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.data.ParquetReadWriter;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Constants;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.StorageProperties;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowFields;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OneTierDBTest {
+
+  private static final String FIELD = "us.d1.v";
+
+  private static final Map<String, DataType> SCHEMA =
+      Collections.singletonMap(FIELD, DataType.LONG);
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Shared shared;
+
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    // keep all writes in memtables, only the write-ahead log holds them across a restart
+    StorageProperties prop =
+        StorageProperties.builder()
+            .setWriteAheadLog(true)
+            .setWriteBufferTimeout(Duration.ofHours(1))
+            .setFlushOnClose(false)
+            .build();
+    shared = Shared.of(prop);
+    dir = folder.newFolder().toPath();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    shared.close();
+  }
+
+  private OneTierDB open() throws IOException {
+    return new OneTierDB(
+        dir.toString(),
+        shared,
+        new ParquetReadWriter(shared, dir.resolve(Constants.DIR_NAME_TABLE)),
+        dir.resolve(Constants.DIR_NAME_WAL));
+  }
+
+  @Test
+  public void testReplayWithoutFlush() throws Exception {
+    try (OneTierDB db = open()) {
+      upsert(db, 0, 10, 1);
+      AreaSet<Long, String> deleted = new AreaSet<>();
+      deleted.add(Collections.singleton(FIELD), ImmutableRangeSet.of(Range.closedOpen(0L, 5L)));
+      db.delete(ArrowFields.of(deleted, SCHEMA));
+      upsert(db, 2, 3, 2);
+      upsert(db, 8, 12, 3);
+    }
+    Map<Long, Object> expected = new TreeMap<>();
+    expected.put(2L, 2L);
+    for (long key = 5; key < 8; key++) {
+      expected.put(key, 1L);
+    }
+    for (long key = 8; key < 12; key++) {
+      expected.put(key, 3L);
+    }
+
+    try (OneTierDB db = open()) {
+      assertEquals(expected, readAll(db));
+    }
+    // the replayed records have been flushed into tables and the log has been dropped
+    assertEquals(0, countSegments(dir.resolve(Constants.DIR_NAME_WAL)));
+    try (OneTierDB db = open()) {
+      assertEquals(expected, readAll(db));
+    }
+  }
+
+  @Test
+  public void testMergeMemTablesWithTables() throws Exception {
+    try (OneTierDB db = open()) {
+      upsert(db, 0, 10, 1);
+    }
+    // the replayed records are flushed into a table, later writes stay in memtables
+    try (OneTierDB db = open()) {
+      upsert(db, 5, 15, 2);
+      AreaSet<Long, String> deleted = new AreaSet<>();
+      deleted.add(Collections.singleton(FIELD), ImmutableRangeSet.of(Range.closedOpen(3L, 7L)));
+      db.delete(ArrowFields.of(deleted, SCHEMA));
+      upsert(db, 20, 22, 3);
+
+      Map<Long, Object> expected = new TreeMap<>();
+      for (long key = 0; key < 3; key++) {
+        expected.put(key, 1L);
+      }
+      for (long key = 7; key < 15; key++) {
+        expected.put(key, 2L);
+      }
+      for (long key = 20; key < 22; key++) {
+        expected.put(key, 3L);
+      }
+      assertEquals(expected, readAll(db));
+    }
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    try (OneTierDB db = open()) {
+      upsert(db, 0, 10, 1);
+    }
+    try (OneTierDB db = open()) {
+      assertEquals(10, db.getMetrics().getFlushedRows());
+      assertEquals(1, db.getMetrics().getWriteAmplification(), 0);
+
+      readAll(db);
+      assertEquals(1, db.getMetrics().getReadAmplification(), 0);
+    }
+  }
+
+  private static void upsert(OneTierDB db, long from, long to, long value) throws Exception {
+    Map<Long, Scanner<String, Object>> rows = new TreeMap<>();
+    for (long key = from; key < to; key++) {
+      Map<String, Object> row = Collections.singletonMap(FIELD, value);
+      rows.put(key, new IteratorScanner<>(row.entrySet().iterator()));
+    }
+    db.upsertRows(new IteratorScanner<>(rows.entrySet().iterator()), SCHEMA);
+  }
+
+  private static Map<Long, Object> readAll(OneTierDB db) throws Exception {
+    Map<Long, Object> result = new TreeMap<>();
+    try (Scanner<Long, Scanner<String, Object>> scanner =
+        db.query(ArrowFields.of(SCHEMA), ImmutableRangeSet.of(Range.all()), null)) {
+      while (scanner.iterate()) {
+        Scanner<String, Object> row = scanner.value();
+        while (row.iterate()) {
+          result.put(scanner.key(), row.value());
+        }
+      }
+    }
+    return result;
+  }
+
+  private static long countSegments(Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return 0;
+    }
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(p -> p.toString().endsWith(Constants.SUFFIX_FILE_WAL)).count();
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.ReadWriter;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.TableMeta;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.AreaFilterScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.IteratorScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.RowUnionScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.StorageProperties;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import java.io.IOException;
+import java.util.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableStorageTest {
+
+  private static final String FIELD = "a";
+
+  private Shared shared;
+
+  private MemoryReadWriter readWriter;
+
+  @Before
+  public void setUp() {
+    shared = Shared.of(StorageProperties.builder().build());
+    readWriter = new MemoryReadWriter();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    shared.close();
+  }
+
+  @Test
+  public void testCompactKeepsNewestValues() throws Exception {
+    for (long seq = 1; seq <= 4; seq++) {
+      TreeMap<Long, Object> rows = new TreeMap<>();
+      for (long key = seq; key < seq + 10; key++) {
+        rows.put(key, seq);
+      }
+      readWriter.put(String.format("%019d-0", seq), rows);
+    }
+    TableStorage storage = new TableStorage(shared, readWriter);
+    Map<Long, Object> expected = readAll(storage);
+
+    List<String> tables = storage.pickCompaction(4);
+    assertEquals(4, tables.size());
+    storage.compact(tables);
+
+    assertEquals(1, readWriter.tables.size());
+    assertEquals(expected, readAll(storage));
+    assertEquals(expected.size(), storage.getMetrics().getCompactedRows());
+    assertTrue(storage.pickCompaction(4).isEmpty());
+  }
+
+  @Test
+  public void testCompactDropsDeletedData() throws Exception {
+    TreeMap<Long, Object> rows = new TreeMap<>();
+    for (long key = 0; key < 10; key++) {
+      rows.put(key, key);
+    }
+    readWriter.put(String.format("%019d-0", 1), rows);
+    TableStorage storage = new TableStorage(shared, readWriter);
+    assertTrue(storage.pickCompaction(4).isEmpty());
+
+    AreaSet<Long, String> deleted = new AreaSet<>();
+    deleted.add(ImmutableRangeSet.of(Range.closedOpen(0L, 5L)));
+    storage.delete(deleted);
+    Map<Long, Object> expected = readAll(storage);
+    assertEquals(5, expected.size());
+
+    List<String> tables = storage.pickCompaction(4);
+    assertEquals(1, tables.size());
+    storage.compact(tables);
+
+    assertEquals(1, readWriter.tables.size());
+    assertTrue(readWriter.tombstones.isEmpty());
+    assertEquals(5, readWriter.tables.values().iterator().next().size());
+    assertEquals(expected, readAll(storage));
+  }
+
+  @Test
+  public void testQueryNewestTableWins() throws Exception {
+    TreeMap<Long, Object> older = new TreeMap<>();
+    TreeMap<Long, Object> newer = new TreeMap<>();
+    for (long key = 0; key < 10; key++) {
+      older.put(key, 1L);
+    }
+    for (long key = 5; key < 15; key++) {
+      newer.put(key, 2L);
+    }
+    readWriter.put(String.format("%019d-0", 1), older);
+    readWriter.put(String.format("%019d-0", 2), newer);
+    TableStorage storage = new TableStorage(shared, readWriter);
+
+    Map<Long, Object> expected = new TreeMap<>();
+    for (long key = 0; key < 15; key++) {
+      expected.put(key, key < 5 ? 1L : 2L);
+    }
+    assertEquals(expected, readAll(storage));
+  }
+
+  @Test
+  public void testTombstonesApplyToEveryTable() throws Exception {
+    TreeMap<Long, Object> older = new TreeMap<>();
+    TreeMap<Long, Object> newer = new TreeMap<>();
+    for (long key = 0; key < 10; key++) {
+      older.put(key, 1L);
+      newer.put(key + 10, 2L);
+    }
+    readWriter.put(String.format("%019d-0", 1), older);
+    readWriter.put(String.format("%019d-0", 2), newer);
+    TableStorage storage = new TableStorage(shared, readWriter);
+
+    AreaSet<Long, String> deleted = new AreaSet<>();
+    deleted.add(Collections.singleton(FIELD), ImmutableRangeSet.of(Range.closedOpen(5L, 15L)));
+    storage.delete(deleted);
+
+    Map<Long, Object> expected = new TreeMap<>();
+    for (long key = 0; key < 5; key++) {
+      expected.put(key, 1L);
+    }
+    for (long key = 15; key < 20; key++) {
+      expected.put(key, 2L);
+    }
+    assertEquals(expected, readAll(storage));
+  }
+
+  private static Map<Long, Object> readAll(TableStorage storage) throws Exception {
+    List<Scanner<Long, Scanner<String, Object>>> scanners =
+        new ArrayList<>(
+            storage.query(Collections.singleton(FIELD), ImmutableRangeSet.of(Range.all()), null));
+    Collections.reverse(scanners);
+    Map<Long, Object> result = new TreeMap<>();
+    try (Scanner<Long, Scanner<String, Object>> scanner = new RowUnionScanner<>(scanners)) {
+      while (scanner.iterate()) {
+        Scanner<String, Object> row = scanner.value();
+        while (row.iterate()) {
+          result.put(scanner.key(), row.value());
+        }
+      }
+    }
+    return result;
+  }
+
+  /** A ReadWriter keeping tables of one field in memory */
+  private static class MemoryReadWriter implements ReadWriter {
+
+    private final Map<String, TreeMap<Long, Object>> tables = new HashMap<>();
+
+    private final Map<String, AreaSet<Long, String>> tombstones = new HashMap<>();
+
+    void put(String name, TreeMap<Long, Object> rows) {
+      tables.put(name, rows);
+    }
+
+    @Override
+    public String getName() {
+      return "memory";
+    }
+
+    @Override
+    public void flush(String name, TableMeta meta, Scanner<Long, Scanner<String, Object>> scanner)
+        throws IOException {
+      TreeMap<Long, Object> rows = new TreeMap<>();
+      try {
+        while (scanner.iterate()) {
+          Scanner<String, Object> row = scanner.value();
+          while (row.iterate()) {
+            rows.put(scanner.key(), row.value());
+          }
+        }
+      } catch (StorageException e) {
+        throw new IOException(e);
+      }
+      tables.put(name, rows);
+    }
+
+    @Override
+    public TableMeta readMeta(String name) {
+      TreeMap<Long, Object> rows = tables.get(name);
+      TableMeta meta =
+          new MemoryTable.MemoryTableMeta(
+              Collections.singletonMap(FIELD, DataType.LONG),
+              Collections.singletonMap(
+                  FIELD,
+                  rows.isEmpty()
+                      ? Range.closedOpen(0L, 0L)
+                      : Range.closed(rows.firstKey(), rows.lastKey())),
+              Collections.singletonMap(FIELD, (long) rows.size()));
+      AreaSet<Long, String> tombstone = tombstones.get(name);
+      if (tombstone == null || tombstone.isEmpty()) {
+        return meta;
+      }
+      return new DeletedTableMeta(meta, tombstone);
+    }
+
+    @Override
+    public Scanner<Long, Scanner<String, Object>> scanData(
+        String name, Set<String> fields, RangeSet<Long> ranges, Filter predicate) {
+      Map<Long, Scanner<String, Object>> rows = new TreeMap<>();
+      for (Map.Entry<Long, Object> entry : tables.get(name).entrySet()) {
+        if (ranges.contains(entry.getKey())) {
+          Map<String, Object> row = Collections.singletonMap(FIELD, entry.getValue());
+          rows.put(entry.getKey(), new IteratorScanner<>(row.entrySet().iterator()));
+        }
+      }
+      Scanner<Long, Scanner<String, Object>> scanner =
+          new IteratorScanner<>(rows.entrySet().iterator());
+      AreaSet<Long, String> tombstone = tombstones.get(name);
+      if (tombstone == null || tombstone.isEmpty()) {
+        return scanner;
+      }
+      return new AreaFilterScanner<>(scanner, tombstone);
+    }
+
+    @Override
+    public void delete(String name, AreaSet<Long, String> areas) {
+      tombstones.computeIfAbsent(name, k -> new AreaSet<>()).addAll(areas);
+    }
+
+    @Override
+    public void delete(String name) {
+      tables.remove(name);
+      tombstones.remove(name);
+    }
+
+    @Override
+    public Iterable<String> reload() {
+      return new ArrayList<>(tables.keySet());
+    }
+
+    @Override
+    public void clear() {
+      tables.clear();
+      tombstones.clear();
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.wal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.chunk.Chunk;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.WriteBatches;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.IteratorScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Constants;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteAheadLogTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static byte[] bytesOf(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> replayAll(WriteAheadLog wal) throws Exception {
+    List<String> records = new ArrayList<>();
+    wal.replay(record -> records.add(new String(record, StandardCharsets.UTF_8)));
+    return records;
+  }
+
+  private static long countSegments(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(p -> p.toString().endsWith(Constants.SUFFIX_FILE_WAL)).count();
+    }
+  }
+
+  @Test
+  public void testReplayAfterReopen() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      wal.sync(wal.append(bytesOf("a")));
+      wal.rotate();
+      wal.sync(wal.append(bytesOf("b")));
+      wal.sync(wal.append(bytesOf("c")));
+    }
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      assertEquals(Arrays.asList("a", "b", "c"), replayAll(wal));
+      wal.truncate();
+      assertEquals(0, countSegments(dir));
+    }
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      assertTrue(replayAll(wal).isEmpty());
+    }
+  }
+
+  @Test
+  public void testIgnoreTornTail() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      wal.sync(wal.append(bytesOf("a")));
+      wal.sync(wal.append(bytesOf("b")));
+    }
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.findFirst().orElseThrow(IllegalStateException::new);
+    }
+    ByteBuffer torn = ByteBuffer.allocate(12);
+    torn.putInt(100).putInt(0).putInt(42).flip();
+    Files.write(segment, torn.array(), StandardOpenOption.APPEND);
+
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      assertEquals(Arrays.asList("a", "b"), replayAll(wal));
+    }
+  }
+
+  @Test
+  public void testIgnoreTornLength() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      wal.sync(wal.append(bytesOf("a")));
+    }
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.findFirst().orElseThrow(IllegalStateException::new);
+    }
+    // a garbage length must not be allocated
+    ByteBuffer torn = ByteBuffer.allocate(8);
+    torn.putInt(Integer.MAX_VALUE).putInt(0).flip();
+    Files.write(segment, torn.array(), StandardOpenOption.APPEND);
+
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      assertEquals(Collections.singletonList("a"), replayAll(wal));
+    }
+  }
+
+  @Test
+  public void testReleaseInOrder() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      wal.append(bytesOf("a"));
+      long first = wal.rotate();
+      wal.append(bytesOf("b"));
+      long second = wal.rotate();
+      wal.append(bytesOf("c"));
+      assertEquals(3, countSegments(dir));
+
+      // the newer segment is kept until the older one is released
+      wal.release(second);
+      assertEquals(3, countSegments(dir));
+      wal.release(first);
+      assertEquals(1, countSegments(dir));
+    }
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      assertEquals(Collections.singletonList("c"), replayAll(wal));
+    }
+  }
+
+  @Test
+  public void testConcurrentSync() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    int writers = 8;
+    int records = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < writers; i++) {
+        int writer = i;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < records; j++) {
+                    wal.sync(wal.append(bytesOf(writer + "-" + j)));
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    try (WriteAheadLog wal = new WriteAheadLog(dir, true)) {
+      List<String> replayed = replayAll(wal);
+      assertEquals(writers * records, replayed.size());
+      for (int i = 0; i < writers; i++) {
+        String prefix = i + "-";
+        List<String> ofWriter =
+            replayed.stream().filter(s -> s.startsWith(prefix)).collect(Collectors.toList());
+        for (int j = 0; j < records; j++) {
+          assertEquals(prefix + j, ofWriter.get(j));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUpsertRecord() throws Exception {
+    Map<String, DataType> schema = new HashMap<>();
+    schema.put("a.b", DataType.LONG);
+    schema.put("a.c", DataType.BINARY);
+    Map<String, Map<Long, Object>> columns = new TreeMap<>();
+    columns.put("a.b", new TreeMap<>(Collections.singletonMap(1L, 10L)));
+    Map<Long, Object> binaries = new TreeMap<>();
+    binaries.put(1L, bytesOf("x"));
+    binaries.put(2L, bytesOf("y"));
+    columns.put("a.c", binaries);
+
+    try (BufferAllocator allocator = new RootAllocator()) {
+      byte[] bytes;
+      Iterable<Chunk.Snapshot> chunks =
+          WriteBatches.recordOfColumns(scannerOf(columns), schema, allocator);
+      try {
+        bytes = LogRecord.upsert(chunks);
+      } finally {
+        chunks.forEach(Chunk.Snapshot::close);
+      }
+
+      LogRecord record = LogRecord.parse(bytes);
+      assertEquals(LogRecord.Type.UPSERT, record.getType());
+      assertEquals(schema, record.getSchema());
+      Map<String, Map<Long, Object>> parsed = new TreeMap<>();
+      try (Scanner<String, Scanner<Long, Object>> scanner = record.getColumns()) {
+        while (scanner.iterate()) {
+          Map<Long, Object> column = new TreeMap<>();
+          Scanner<Long, Object> values = scanner.value();
+          while (values.iterate()) {
+            column.put(values.key(), values.value());
+          }
+          parsed.put(scanner.key(), column);
+        }
+      }
+      assertEquals(columns.keySet(), parsed.keySet());
+      assertEquals(10L, parsed.get("a.b").get(1L));
+      assertArrayEquals(bytesOf("x"), (byte[]) parsed.get("a.c").get(1L));
+      assertArrayEquals(bytesOf("y"), (byte[]) parsed.get("a.c").get(2L));
+    }
+  }
+
+  @Test
+  public void testDeleteRecord() throws Exception {
+    AreaSet<Long, String> areas = new AreaSet<>();
+    areas.add(ImmutableRangeSet.of(Range.closed(1L, 5L)));
+    areas.add(Collections.singleton("a.b"));
+    areas.add(Collections.singleton("a.c"), ImmutableRangeSet.of(Range.atLeast(10L)));
+    areas.add(Collections.singleton("a.d"), ImmutableRangeSet.of(Range.lessThan(0L)));
+
+    LogRecord record = LogRecord.parse(LogRecord.delete(areas));
+    assertEquals(LogRecord.Type.DELETE, record.getType());
+    assertEquals(areas, record.getDeleted());
+  }
+
+  private static Scanner<String, Scanner<Long, Object>> scannerOf(
+      Map<String, Map<Long, Object>> columns) {
+    Iterator<Map.Entry<String, Map<Long, Object>>> iterator = columns.entrySet().iterator();
+    return new IteratorScanner<>(
+        new Iterator<Map.Entry<String, Scanner<Long, Object>>>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, Scanner<Long, Object>> next() {
+            Map.Entry<String, Map<Long, Object>> entry = iterator.next();
+            return new AbstractMap.SimpleImmutableEntry<>(
+                entry.getKey(), new IteratorScanner<>(entry.getValue().entrySet().iterator()));
+          }
+        });
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
+import java.util.*;
+import org.junit.Test;
+
+public class RowUnionScannerTest {
+
+  private static Map<String, Object> row(String field, Object value) {
+    return Collections.singletonMap(field, value);
+  }
+
+  private static TrackedScanner scannerOf(long[] keys, String field, Object value) {
+    TreeMap<Long, Map<String, Object>> rows = new TreeMap<>();
+    for (long key : keys) {
+      rows.put(key, row(field, value));
+    }
+    return new TrackedScanner(rows, -1);
+  }
+
+  private static Map<Long, Map<String, Object>> readAll(
+      Scanner<Long, Scanner<String, Object>> union) throws StorageException {
+    Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+    while (union.iterate()) {
+      Map<String, Object> row = new TreeMap<>();
+      Scanner<String, Object> fields = union.value();
+      while (fields.iterate()) {
+        row.put(fields.key(), fields.value());
+      }
+      result.put(union.key(), row);
+    }
+    return result;
+  }
+
+  @Test
+  public void testFormerScannerWins() throws StorageException {
+    TreeMap<Long, Map<String, Object>> newer = new TreeMap<>();
+    newer.put(1L, row("a", "new"));
+    TreeMap<Long, Map<String, Object>> older = new TreeMap<>();
+    Map<String, Object> olderRow = new HashMap<>();
+    olderRow.put("a", "old");
+    olderRow.put("b", "old");
+    older.put(1L, olderRow);
+    older.put(2L, row("a", "old"));
+
+    Map<Long, Map<String, Object>> result;
+    try (RowUnionScanner<Long, String, Object> union =
+        new RowUnionScanner<>(
+            Arrays.asList(new TrackedScanner(newer, -1), new TrackedScanner(older, -1)))) {
+      result = readAll(union);
+    }
+    Map<String, Object> merged = new TreeMap<>();
+    merged.put("a", "new");
+    merged.put("b", "old");
+    assertEquals(merged, result.get(1L));
+    assertEquals(row("a", "old"), result.get(2L));
+  }
+
+  @Test
+  public void testInterleaveNonOverlapping() throws StorageException {
+    TrackedScanner odd = scannerOf(new long[] {1, 3, 5}, "a", 1);
+    TrackedScanner even = scannerOf(new long[] {2, 4, 6}, "a", 2);
+    TrackedScanner far = scannerOf(new long[] {100, 101}, "b", 3);
+
+    List<Long> keys;
+    try (RowUnionScanner<Long, String, Object> union =
+        new RowUnionScanner<>(Arrays.asList(far, odd, even))) {
+      keys = new ArrayList<>(readAll(union).keySet());
+    }
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 100L, 101L), keys);
+    assertTrue(odd.closed && even.closed && far.closed);
+  }
+
+  @Test
+  public void testCloseAllOnFailure() throws StorageException {
+    TreeMap<Long, Map<String, Object>> rows = new TreeMap<>();
+    for (long key = 0; key < 10; key++) {
+      rows.put(key, row("a", key));
+    }
+    TrackedScanner failing = new TrackedScanner(rows, 3);
+    TrackedScanner other = scannerOf(new long[] {0, 5, 20}, "b", 0);
+
+    RowUnionScanner<Long, String, Object> union =
+        new RowUnionScanner<>(Arrays.asList(failing, other));
+    try {
+      readAll(union);
+      fail();
+    } catch (StorageException e) {
+      assertSame(failing.failure, e);
+    }
+    assertTrue(failing.closed);
+    assertTrue(other.closed);
+    union.close();
+  }
+
+  /** A row scanner recording whether it is closed, optionally failing before the given key */
+  private static class TrackedScanner implements Scanner<Long, Scanner<String, Object>> {
+
+    private final Iterator<Map.Entry<Long, Map<String, Object>>> iterator;
+
+    private final long failAt;
+
+    private final StorageException failure = new StorageException("injected");
+
+    private Map.Entry<Long, Map<String, Object>> current;
+
+    private boolean closed;
+
+    TrackedScanner(TreeMap<Long, Map<String, Object>> rows, long failAt) {
+      this.iterator = rows.entrySet().iterator();
+      this.failAt = failAt;
+    }
+
+    @Override
+    public Long key() {
+      return current.getKey();
+    }
+
+    @Override
+    public Scanner<String, Object> value() {
+      return new IteratorScanner<>(current.getValue().entrySet().iterator());
+    }
+
+    @Override
+    public boolean iterate() throws StorageException {
+      if (!iterator.hasNext()) {
+        current = null;
+        return false;
+      }
+      current = iterator.next();
+      if (current.getKey() == failAt) {
+        throw failure;
+      }
+      return true;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
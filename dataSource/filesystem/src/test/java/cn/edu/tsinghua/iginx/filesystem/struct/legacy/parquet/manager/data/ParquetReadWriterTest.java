@@ -0,0 +1,194 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.data;
+
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.TableMeta;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.IteratorScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.ColumnChunkCache;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Constants;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.StorageProperties;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import javax.annotation.Nullable;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParquetReadWriterTest {
+
+  private static final String TABLE = "table";
+
+  private static final String FIELD = "us.d1.v";
+
+  // the writer checks the row group size every 100 rows at least
+  private static final int ROW_GROUP_ROWS = 100;
+
+  private static final int ROW_COUNT = 1000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Shared shared;
+
+  private Path dir;
+
+  @After
+  public void tearDown() throws IOException {
+    if (shared != null) {
+      shared.close();
+    }
+  }
+
+  private ParquetReadWriter createTable(long chunkCacheCapacity) throws IOException {
+    StorageProperties prop =
+        StorageProperties.builder()
+            .setChunkCacheCapacity(chunkCacheCapacity)
+            .setParquetRowGroupSize(1)
+            .build();
+    shared = Shared.of(prop);
+    dir = folder.newFolder().toPath();
+    ParquetReadWriter readWriter = new ParquetReadWriter(shared, dir);
+
+    Map<Long, Scanner<String, Object>> rows = new TreeMap<>();
+    for (long key = 0; key < ROW_COUNT; key++) {
+      Map<String, Object> row = Collections.singletonMap(FIELD, key * 2);
+      rows.put(key, new IteratorScanner<>(row.entrySet().iterator()));
+    }
+    readWriter.flush(
+        TABLE, new SingleFieldMeta(), new IteratorScanner<>(rows.entrySet().iterator()));
+    return readWriter;
+  }
+
+  private static Map<Long, Object> scan(
+      ParquetReadWriter readWriter, RangeSet<Long> ranges, @Nullable Filter predicate)
+      throws Exception {
+    Map<Long, Object> result = new TreeMap<>();
+    try (Scanner<Long, Scanner<String, Object>> scanner =
+        readWriter.scanData(TABLE, Collections.singleton(FIELD), ranges, predicate)) {
+      while (scanner.iterate()) {
+        Scanner<String, Object> row = scanner.value();
+        while (row.iterate()) {
+          result.put(scanner.key(), row.value());
+        }
+      }
+    }
+    return result;
+  }
+
+  private static Map<Long, Object> expected(Range<Long> range) {
+    Map<Long, Object> result = new TreeMap<>();
+    for (long key = 0; key < ROW_COUNT; key++) {
+      if (range.contains(key)) {
+        result.put(key, key * 2);
+      }
+    }
+    return result;
+  }
+
+  private List<Integer> cachedRowGroups() {
+    ColumnChunkCache cache = shared.getChunkCache();
+    String file = dir.resolve(TABLE + Constants.SUFFIX_FILE_PARQUET).toString();
+    List<Integer> rowGroups = new ArrayList<>();
+    for (int rowGroup = 0; rowGroup < ROW_COUNT / ROW_GROUP_ROWS; rowGroup++) {
+      if (cache.get(file, rowGroup, FIELD) != null) {
+        rowGroups.add(rowGroup);
+      }
+    }
+    return rowGroups;
+  }
+
+  @Test
+  public void testCacheOverlappingRowGroups() throws Exception {
+    ParquetReadWriter readWriter = createTable(64 * 1024 * 1024);
+    Range<Long> range = Range.closedOpen(150L, 250L);
+
+    assertEquals(expected(range), scan(readWriter, ImmutableRangeSet.of(range), null));
+    assertEquals(Arrays.asList(1, 2), cachedRowGroups());
+
+    // cached chunks are reused and only the missing row groups are read
+    Range<Long> wider = Range.closedOpen(150L, 350L);
+    CacheStats before = shared.getChunkCache().getStats();
+    assertEquals(expected(wider), scan(readWriter, ImmutableRangeSet.of(wider), null));
+    CacheStats stats = shared.getChunkCache().getStats().minus(before);
+    assertEquals(2, stats.hitCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(Arrays.asList(1, 2, 3), cachedRowGroups());
+
+    assertEquals(expected(Range.all()), scan(readWriter, ImmutableRangeSet.of(Range.all()), null));
+    assertEquals(10, cachedRowGroups().size());
+  }
+
+  @Test
+  public void testValueFilterReadsFile() throws Exception {
+    ParquetReadWriter readWriter = createTable(64 * 1024 * 1024);
+    Filter predicate = new ValueFilter(FIELD, Op.GE, new Value(1900L));
+
+    // predicate is only a superset of the result
+    Map<Long, Object> result = scan(readWriter, ImmutableRangeSet.of(Range.all()), predicate);
+    result.values().removeIf(value -> (Long) value < 1900L);
+    assertEquals(expected(Range.atLeast(950L)), result);
+    assertEquals(Collections.emptyList(), cachedRowGroups());
+  }
+
+  @Test
+  public void testChunksExceedingCacheReadFile() throws Exception {
+    ParquetReadWriter readWriter = createTable(16 * 1024);
+
+    assertEquals(expected(Range.all()), scan(readWriter, ImmutableRangeSet.of(Range.all()), null));
+    assertEquals(Collections.emptyList(), cachedRowGroups());
+
+    // a narrow range fits the cache
+    Range<Long> range = Range.closedOpen(0L, 10L);
+    assertEquals(expected(range), scan(readWriter, ImmutableRangeSet.of(range), null));
+    assertEquals(Collections.singletonList(0), cachedRowGroups());
+  }
+
+  private static class SingleFieldMeta implements TableMeta {
+
+    @Override
+    public Map<String, DataType> getSchema() {
+      return Collections.singletonMap(FIELD, DataType.LONG);
+    }
+
+    @Override
+    public Range<Long> getRange(String field) {
+      return Range.closed(0L, (long) ROW_COUNT - 1);
+    }
+
+    @Override
+    public Long getValueCount(String field) {
+      return (long) ROW_COUNT;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util;
+
+import static org.junit.Assert.*;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ColumnChunkCacheTest {
+
+  private static ColumnChunk chunkOf(long... keys) {
+    ColumnChunk.Builder builder = ColumnChunk.builder();
+    for (long key : keys) {
+      builder.add(key, key * 10);
+    }
+    return builder.build();
+  }
+
+  private static List<Long> keysOf(ColumnChunk chunk, RangeSet<Long> ranges) throws Exception {
+    List<Long> keys = new ArrayList<>();
+    try (Scanner<Long, Object> scanner = chunk.scan(ranges)) {
+      while (scanner.iterate()) {
+        assertEquals(scanner.key() * 10, scanner.value());
+        keys.add(scanner.key());
+      }
+    }
+    return keys;
+  }
+
+  @Test
+  public void testScanRanges() throws Exception {
+    ColumnChunk chunk = chunkOf(1, 3, 5, 7, 9, 11);
+    assertEquals(6, chunk.size());
+
+    assertEquals(
+        Arrays.asList(1L, 3L, 5L, 7L, 9L, 11L), keysOf(chunk, ImmutableRangeSet.of(Range.all())));
+    assertEquals(
+        Arrays.asList(5L, 7L), keysOf(chunk, ImmutableRangeSet.of(Range.openClosed(3L, 7L))));
+
+    RangeSet<Long> ranges = TreeRangeSet.create();
+    ranges.add(Range.lessThan(3L));
+    ranges.add(Range.closed(6L, 9L));
+    ranges.add(Range.greaterThan(10L));
+    assertEquals(Arrays.asList(1L, 7L, 9L, 11L), keysOf(chunk, ranges));
+
+    assertTrue(keysOf(chunk, ImmutableRangeSet.of(Range.closed(12L, 20L))).isEmpty());
+    assertTrue(keysOf(chunk, ImmutableRangeSet.of()).isEmpty());
+  }
+
+  @Test
+  public void testCache() {
+    StorageProperties prop = StorageProperties.builder().setChunkCacheCapacity(1024 * 1024).build();
+    ColumnChunkCache cache = new ColumnChunkCache(prop);
+    assertTrue(cache.isEnabled());
+
+    assertNull(cache.get("f1", 0, "a"));
+    cache.put("f1", 0, "a", chunkOf(1, 2, 3));
+    cache.put("f1", 1, "a", chunkOf(4, 5));
+    cache.put("f2", 0, "a", chunkOf(6));
+    assertEquals(3, cache.get("f1", 0, "a").size());
+    assertEquals(2, cache.get("f1", 1, "a").size());
+    assertNull(cache.get("f1", 0, "b"));
+    assertEquals(2, cache.getStats().hitCount());
+    assertEquals(2, cache.getStats().missCount());
+    assertTrue(cache.toString().contains("hitCount=2"));
+
+    cache.invalidate("f1");
+    assertNull(cache.get("f1", 0, "a"));
+    assertNotNull(cache.get("f2", 0, "a"));
+  }
+
+  @Test
+  public void testDisabled() {
+    StorageProperties prop = StorageProperties.builder().setChunkCacheCapacity(0).build();
+    ColumnChunkCache cache = new ColumnChunkCache(prop);
+    assertFalse(cache.isEnabled());
+    cache.put("f1", 0, "a", chunkOf(1));
+    assertNull(cache.get("f1", 0, "a"));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.tree;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.Range;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileTreeIndexTest {
+
+  @TempDir Path root;
+
+  private static boolean eventually(IoCondition condition) throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+    while (System.nanoTime() < deadline) {
+      if (condition.test()) {
+        return true;
+      }
+      Thread.sleep(50);
+    }
+    return condition.test();
+  }
+
+  private interface IoCondition {
+    boolean test() throws Exception;
+  }
+
+  @Test
+  public void testListingFollowsChanges() throws Exception {
+    Path a = Files.createFile(root.resolve("a"));
+    try (FileTreeIndex index = new FileTreeIndex(root, true)) {
+      assertEquals(Collections.singleton(a), new HashSet<>(index.list(root)));
+      assertNotNull(index.attributes(a));
+
+      Path b = Files.createDirectory(root.resolve("b"));
+      assertTrue(eventually(() -> index.list(root).contains(b)));
+      assertTrue(index.attributes(b).isDirectory());
+
+      Files.delete(a);
+      assertTrue(eventually(() -> !index.list(root).contains(a)));
+      assertNull(index.attributes(a));
+    }
+  }
+
+  @Test
+  public void testFileEntryValidatedByAttributes() throws Exception {
+    Path file = root.resolve("file");
+    Files.write(file, new byte[] {1, 2, 3});
+    try (FileTreeIndex index = new FileTreeIndex(root, true)) {
+      BasicFileAttributes attributes = index.attributes(file);
+      assertNull(index.getFile(file, attributes));
+
+      index.putFile(
+          file,
+          attributes,
+          Collections.singletonMap("file", DataType.BINARY),
+          Range.closed(0L, 2L));
+      FileTreeIndex.FileEntry entry = index.getFile(file, attributes);
+      assertNotNull(entry);
+      assertEquals(Collections.singletonMap("file", DataType.BINARY), entry.getSchema());
+      assertEquals(Range.closed(0L, 2L), entry.getKeyRange());
+
+      Files.write(file, new byte[] {1, 2, 3, 4});
+      BasicFileAttributes changed = Files.readAttributes(file, BasicFileAttributes.class);
+      assertNull(index.getFile(file, changed));
+    }
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    try (FileTreeIndex index = new FileTreeIndex(root, false)) {
+      assertTrue(index.list(root).isEmpty());
+      Path file = Files.createFile(root.resolve("file"));
+      Collection<Path> children = index.list(root);
+      assertEquals(Collections.singleton(file), new HashSet<>(children));
+
+      BasicFileAttributes attributes = index.attributes(file);
+      index.putFile(file, attributes, Collections.emptyMap(), Range.all());
+      assertNull(index.getFile(file, attributes));
+    }
+  }
+}
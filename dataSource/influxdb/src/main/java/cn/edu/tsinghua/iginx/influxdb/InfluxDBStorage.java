@@ -45,10 +45,14 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilterType;
 import cn.edu.tsinghua.iginx.influxdb.exception.InfluxDBException;
 import cn.edu.tsinghua.iginx.influxdb.exception.InfluxDBTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.influxdb.query.entity.FluxResponseCursor;
+import cn.edu.tsinghua.iginx.influxdb.query.entity.FluxSeries;
+import cn.edu.tsinghua.iginx.influxdb.query.entity.FluxSeriesReader;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBHistoryQueryRowStream;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBQueryRowStream;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBSchema;
 import cn.edu.tsinghua.iginx.influxdb.tools.FilterTransformer;
+import cn.edu.tsinghua.iginx.influxdb.tools.LineProtocolBuilder;
 import cn.edu.tsinghua.iginx.influxdb.tools.SchemaTransformer;
 import cn.edu.tsinghua.iginx.influxdb.tools.TagFilterUtils;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
@@ -64,7 +68,7 @@ import com.influxdb.client.InfluxDBClientOptions;
 import com.influxdb.client.domain.Bucket;
 import com.influxdb.client.domain.Organization;
 import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.client.write.Point;
+import com.influxdb.client.service.QueryService;
 import com.influxdb.query.FluxColumn;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
@@ -102,6 +106,13 @@ public class InfluxDBStorage implements IStorage {
   private static final String QUERY_DATA_ALL =
       "from(bucket:\"%s\") |> range(start: time(v: %s), stop: time(v: %s)) |> filter(fn: (r) => (r._measurement =%s and r._field =%s))";
 
+  // 每个序列只取一条记录，用于确定表头
+  private static final String QUERY_SCHEMA_SUFFIX = " |> first()";
+
+  // 所有序列合并为一张按时间排序的表，值统一转为字符串以免合并时类型冲突
+  private static final String QUERY_SORTED_SUFFIX =
+      " |> toString() |> group() |> sort(columns: [\"_time\"])";
+
   private static final String DELETE_DATA = "_measurement=\"%s\" AND _field=\"%s\"";
 
   private static final String SHOW_TIME_SERIES =
@@ -110,6 +121,8 @@ public class InfluxDBStorage implements IStorage {
   private static final String SHOW_TIME_SERIES_BY_PATTERN =
       "from(bucket:\"%s\") |> range(start: time(v: 0), stop: time(v: 9223372036854775807)) |> filter(fn: (r) => (r._measurement =~ /%s/ and r._field =~ /%s/)) |> first()";
 
+  private static final String DEFAULT_WRITE_BATCH_SIZE = "10000";
+
   private final StorageEngineMeta meta;
 
   private final InfluxDBClient client;
@@ -118,6 +131,10 @@ public class InfluxDBStorage implements IStorage {
 
   private final Organization organization;
 
+  private final QueryService queryService;
+
+  private final int writeBatchSize;
+
   private final Map<String, Bucket> bucketMap = new ConcurrentHashMap<>();
 
   private final Map<String, Bucket> historyBucketMap = new ConcurrentHashMap<>();
@@ -141,6 +158,9 @@ public class InfluxDBStorage implements IStorage {
             .okHttpClient(builder)
             .build();
     client = InfluxDBClientFactory.create(options);
+    queryService = client.getService(QueryService.class);
+    writeBatchSize =
+        Integer.parseInt(extraParams.getOrDefault("write_batch_size", DEFAULT_WRITE_BATCH_SIZE));
     organizationName = extraParams.get("organization");
     organization =
         client.getOrganizationsApi().findOrganizations().stream()
@@ -422,7 +442,7 @@ public class InfluxDBStorage implements IStorage {
           new InfluxDBQueryRowStream(Collections.emptyList(), project, filter));
     }
 
-    String statement =
+    Pair<String, Boolean> statement =
         generateQueryStatement(
             storageUnit,
             project.getPatterns(),
@@ -431,8 +451,9 @@ public class InfluxDBStorage implements IStorage {
             keyInterval.getStartKey(),
             keyInterval.getEndKey());
 
-    List<FluxTable> tables = client.getQueryApi().query(statement, organization.getId());
-    InfluxDBQueryRowStream rowStream = new InfluxDBQueryRowStream(tables, project, filter);
+    Pair<List<FluxSeries>, FluxResponseCursor> result = query(statement.k, statement.v);
+    InfluxDBQueryRowStream rowStream =
+        new InfluxDBQueryRowStream(result.k, result.v, project, filter);
     return new TaskExecuteResult(rowStream);
   }
 
@@ -445,23 +466,35 @@ public class InfluxDBStorage implements IStorage {
     Filter filter = select.getFilter();
     getBucketQueriesForExecuteDummy(project, bucketQueries, tagFilter);
 
-    Map<String, List<FluxTable>> bucketQueryResults = new HashMap<>();
-    for (String bucket : bucketQueries.keySet()) {
-      String statement =
-          generateQueryStatement(
-              bucket,
-              project.getPatterns(),
-              project.getTagFilter(),
-              filter,
-              keyInterval.getStartKey(),
-              keyInterval.getEndKey());
-
-      LOGGER.info("execute query: {}", statement);
-      bucketQueryResults.put(bucket, client.getQueryApi().query(statement, organization.getId()));
+    Map<String, List<FluxSeries>> bucketQueryResults = new HashMap<>();
+    Map<String, FluxResponseCursor> bucketRecords = new HashMap<>();
+    try {
+      for (String bucket : bucketQueries.keySet()) {
+        Pair<String, Boolean> statement =
+            generateQueryStatement(
+                bucket,
+                project.getPatterns(),
+                project.getTagFilter(),
+                filter,
+                keyInterval.getStartKey(),
+                keyInterval.getEndKey());
+
+        LOGGER.info("execute query: {}", statement.k);
+        Pair<List<FluxSeries>, FluxResponseCursor> result = query(statement.k, statement.v);
+        bucketQueryResults.put(bucket, result.k);
+        if (result.v != null) {
+          bucketRecords.put(bucket, result.v);
+        }
+      }
+    } catch (RuntimeException e) {
+      // 已经打开的查询结果不会再交给 row stream，需要在这里关闭
+      FluxResponseCursor.closeAll(bucketRecords.values(), e);
+      throw e;
     }
 
     InfluxDBHistoryQueryRowStream rowStream =
-        new InfluxDBHistoryQueryRowStream(bucketQueryResults, project.getPatterns(), filter);
+        new InfluxDBHistoryQueryRowStream(
+            bucketQueryResults, bucketRecords, project.getPatterns(), filter);
     return new TaskExecuteResult(rowStream);
   }
 
@@ -476,7 +509,7 @@ public class InfluxDBStorage implements IStorage {
           new InfluxDBQueryRowStream(Collections.emptyList(), project, null));
     }
 
-    String statement =
+    Pair<String, Boolean> statement =
         generateQueryStatement(
             storageUnit,
             project.getPatterns(),
@@ -485,8 +518,9 @@ public class InfluxDBStorage implements IStorage {
             keyInterval.getStartKey(),
             keyInterval.getEndKey());
 
-    List<FluxTable> tables = client.getQueryApi().query(statement, organization.getId());
-    InfluxDBQueryRowStream rowStream = new InfluxDBQueryRowStream(tables, project, null);
+    Pair<List<FluxSeries>, FluxResponseCursor> result = query(statement.k, statement.v);
+    InfluxDBQueryRowStream rowStream =
+        new InfluxDBQueryRowStream(result.k, result.v, project, null);
     return new TaskExecuteResult(rowStream);
   }
 
@@ -500,21 +534,33 @@ public class InfluxDBStorage implements IStorage {
     long startKey = keyInterval.getStartKey();
     long endKey = keyInterval.getEndKey();
 
-    Map<String, List<FluxTable>> bucketQueryResults = new HashMap<>();
-    for (String bucket : bucketQueries.keySet()) {
-      String statement =
-          String.format(
-              "from(bucket:\"%s\") |> range(start: time(v: %s), stop: time(v: %s))",
-              bucket, startKey, endKey);
-      if (!bucketQueries.get(bucket).equals("()")) {
-        statement += String.format(" |> filter(fn: (r) => %s)", bucketQueries.get(bucket));
+    Map<String, List<FluxSeries>> bucketQueryResults = new HashMap<>();
+    Map<String, FluxResponseCursor> bucketRecords = new HashMap<>();
+    try {
+      for (String bucket : bucketQueries.keySet()) {
+        String statement =
+            String.format(
+                "from(bucket:\"%s\") |> range(start: time(v: %s), stop: time(v: %s))",
+                bucket, startKey, endKey);
+        if (!bucketQueries.get(bucket).equals("()")) {
+          statement += String.format(" |> filter(fn: (r) => %s)", bucketQueries.get(bucket));
+        }
+        LOGGER.info("execute query: {}", statement);
+        Pair<List<FluxSeries>, FluxResponseCursor> result = query(statement, false);
+        bucketQueryResults.put(bucket, result.k);
+        if (result.v != null) {
+          bucketRecords.put(bucket, result.v);
+        }
       }
-      LOGGER.info("execute query: {}", statement);
-      bucketQueryResults.put(bucket, client.getQueryApi().query(statement, organization.getId()));
+    } catch (RuntimeException e) {
+      // 已经打开的查询结果不会再交给 row stream，需要在这里关闭
+      FluxResponseCursor.closeAll(bucketRecords.values(), e);
+      throw e;
     }
 
     InfluxDBHistoryQueryRowStream rowStream =
-        new InfluxDBHistoryQueryRowStream(bucketQueryResults, project.getPatterns(), null);
+        new InfluxDBHistoryQueryRowStream(
+            bucketQueryResults, bucketRecords, project.getPatterns(), null);
     return new TaskExecuteResult(rowStream);
   }
 
@@ -553,7 +599,29 @@ public class InfluxDBStorage implements IStorage {
     }
   }
 
-  private String generateQueryStatement(
+  /**
+   * 执行查询。pivot 后的查询结果全部读入内存；其余查询先查出每个序列的第一条记录以确定表头，再返回按时间排序的数据，由 row stream 逐行读取。
+   *
+   * @return 查询结果中的序列与按时间排序的数据，后者为 null 时数据全部在前者中
+   */
+  private Pair<List<FluxSeries>, FluxResponseCursor> query(String statement, boolean pivot) {
+    if (pivot) {
+      return new Pair<>(
+          FluxSeriesReader.query(queryService, organization.getId(), statement), null);
+    }
+    List<FluxSeries> seriesList =
+        FluxSeriesReader.query(queryService, organization.getId(), statement + QUERY_SCHEMA_SUFFIX);
+    if (seriesList.isEmpty()) {
+      return new Pair<>(seriesList, null);
+    }
+    FluxResponseCursor records =
+        FluxResponseCursor.query(
+            queryService, organization.getId(), statement + QUERY_SORTED_SUFFIX);
+    return new Pair<>(seriesList, records);
+  }
+
+  /** @return 查询语句，以及查询结果是否经过 pivot */
+  private Pair<String, Boolean> generateQueryStatement(
       String bucketName,
       List<String> paths,
       TagFilter tagFilter,
@@ -630,7 +698,8 @@ public class InfluxDBStorage implements IStorage {
     List<Column> columns = getColumns(new HashSet<>(filterPaths), tagFilter);
     boolean hasMultiTags = hasMultiTags(columns);
 
-    if (filter != null && !hasMultiTags) {
+    boolean pivot = filter != null && !hasMultiTags;
+    if (pivot) {
       boolean patternHasMeasurementWildCards = false;
       for (String path : paths) {
         if (path.startsWith("*")) {
@@ -691,7 +760,7 @@ public class InfluxDBStorage implements IStorage {
     }
 
     LOGGER.info("generate query: {}", statement);
-    return statement;
+    return new Pair<>(statement, pivot);
   }
 
   private boolean hasMultiTags(List<Column> columns) {
@@ -1131,65 +1200,29 @@ public class InfluxDBStorage implements IStorage {
       schemas.add(new InfluxDBSchema(data.getPath(i), data.getTags(i)));
     }
 
-    List<Point> points = new ArrayList<>();
-    for (int i = 0; i < data.getKeySize(); i++) {
-      BitmapView bitmapView = data.getBitmapView(i);
-      int index = 0;
-      for (int j = 0; j < data.getPathNum(); j++) {
-        if (bitmapView.get(j)) {
-          InfluxDBSchema schema = schemas.get(j);
-          switch (data.getDataType(j)) {
-            case BOOLEAN:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (boolean) data.getValue(i, index))
-                      .time(data.getKey(i), WRITE_PRECISION));
-              break;
-            case INTEGER:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (int) data.getValue(i, index))
-                      .time(data.getKey(i), WRITE_PRECISION));
-              break;
-            case LONG:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (long) data.getValue(i, index))
-                      .time(data.getKey(i), WRITE_PRECISION));
-              break;
-            case FLOAT:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (float) data.getValue(i, index))
-                      .time(data.getKey(i), WRITE_PRECISION));
-              break;
-            case DOUBLE:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (double) data.getValue(i, index))
-                      .time(data.getKey(i), WRITE_PRECISION));
-              break;
-            case BINARY:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), new String((byte[]) data.getValue(i, index)))
-                      .time(data.getKey(i), WRITE_PRECISION));
-              break;
-          }
-
-          index++;
-        }
-      }
+    String[] prefixes = new String[data.getPathNum()];
+    for (int i = 0; i < data.getPathNum(); i++) {
+      prefixes[i] = LineProtocolBuilder.prefix(schemas.get(i));
     }
+
+    LineProtocolBuilder builder = new LineProtocolBuilder();
     try {
       LOGGER.info("开始数据写入");
-      client.getWriteApiBlocking().writePoints(bucket.getId(), organization.getId(), points);
+      for (int i = 0; i < data.getKeySize(); i++) {
+        BitmapView bitmapView = data.getBitmapView(i);
+        int index = 0;
+        for (int j = 0; j < data.getPathNum(); j++) {
+          if (bitmapView.get(j)) {
+            builder.append(
+                prefixes[j], data.getDataType(j), data.getValue(i, index), data.getKey(i));
+            if (builder.size() >= writeBatchSize) {
+              writeRecords(bucket, builder);
+            }
+            index++;
+          }
+        }
+      }
+      writeRecords(bucket, builder);
     } catch (Exception e) {
       return new InfluxDBTaskExecuteFailureException(
           "encounter error when write points to influxdb: ", e);
@@ -1222,65 +1255,25 @@ public class InfluxDBStorage implements IStorage {
       return new InfluxDBTaskExecuteFailureException("create bucket failure!");
     }
 
-    List<Point> points = new ArrayList<>();
-    for (int i = 0; i < data.getPathNum(); i++) {
-      InfluxDBSchema schema = new InfluxDBSchema(data.getPath(i), data.getTags(i));
-      BitmapView bitmapView = data.getBitmapView(i);
-      int index = 0;
-      for (int j = 0; j < data.getKeySize(); j++) {
-        if (bitmapView.get(j)) {
-          switch (data.getDataType(i)) {
-            case BOOLEAN:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (boolean) data.getValue(i, index))
-                      .time(data.getKey(j), WRITE_PRECISION));
-              break;
-            case INTEGER:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (int) data.getValue(i, index))
-                      .time(data.getKey(j), WRITE_PRECISION));
-              break;
-            case LONG:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (long) data.getValue(i, index))
-                      .time(data.getKey(j), WRITE_PRECISION));
-              break;
-            case FLOAT:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (float) data.getValue(i, index))
-                      .time(data.getKey(j), WRITE_PRECISION));
-              break;
-            case DOUBLE:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), (Number) (double) data.getValue(i, index))
-                      .time(data.getKey(j), WRITE_PRECISION));
-              break;
-            case BINARY:
-              points.add(
-                  Point.measurement(schema.getMeasurement())
-                      .addTags(schema.getTags())
-                      .addField(schema.getField(), new String((byte[]) data.getValue(i, index)))
-                      .time(data.getKey(j), WRITE_PRECISION));
-              break;
+    LineProtocolBuilder builder = new LineProtocolBuilder();
+    try {
+      LOGGER.info("开始数据写入");
+      for (int i = 0; i < data.getPathNum(); i++) {
+        String prefix =
+            LineProtocolBuilder.prefix(new InfluxDBSchema(data.getPath(i), data.getTags(i)));
+        BitmapView bitmapView = data.getBitmapView(i);
+        int index = 0;
+        for (int j = 0; j < data.getKeySize(); j++) {
+          if (bitmapView.get(j)) {
+            builder.append(prefix, data.getDataType(i), data.getValue(i, index), data.getKey(j));
+            if (builder.size() >= writeBatchSize) {
+              writeRecords(bucket, builder);
+            }
+            index++;
           }
-          index++;
         }
       }
-    }
-
-    try {
-      LOGGER.info("开始数据写入");
-      client.getWriteApiBlocking().writePoints(bucket.getId(), organization.getId(), points);
+      writeRecords(bucket, builder);
     } catch (Exception e) {
       return new InfluxDBTaskExecuteFailureException(
           "encounter error when write points to influxdb: ", e);
@@ -1291,6 +1284,15 @@ public class InfluxDBStorage implements IStorage {
     return null;
   }
 
+  private void writeRecords(Bucket bucket, LineProtocolBuilder builder) {
+    if (builder.isEmpty()) {
+      return;
+    }
+    client
+        .getWriteApiBlocking()
+        .writeRecord(bucket.getId(), organization.getId(), WRITE_PRECISION, builder.flush());
+  }
+
   @Override
   public TaskExecuteResult executeDelete(Delete delete, DataArea dataArea) {
     String storageUnit = dataArea.getStorageUnit();
@@ -0,0 +1,145 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.query.entity;
+
+import com.influxdb.client.domain.Dialect;
+import com.influxdb.client.domain.Query;
+import com.influxdb.client.service.QueryService;
+import com.influxdb.exceptions.InfluxException;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import com.influxdb.query.internal.FluxCsvParser;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import retrofit2.Response;
+
+/**
+ * 按需逐条读取 Flux 查询返回的 annotated CSV。
+ *
+ * <p>客户端的公开接口只能一次性返回全部结果或以回调的方式推送记录，这里借助其内部的 FluxCsvParser 逐行解析。本类是模块中唯一使用客户端内部 API
+ * 的地方，升级客户端时只需调整本类。
+ */
+public class FluxResponseCursor implements Closeable {
+
+  // 与客户端默认的查询方言相同
+  private static final Dialect DIALECT =
+      new Dialect()
+          .header(true)
+          .delimiter(",")
+          .commentPrefix("#")
+          .addAnnotationsItem(Dialect.AnnotationsEnum.DATATYPE)
+          .addAnnotationsItem(Dialect.AnnotationsEnum.GROUP)
+          .addAnnotationsItem(Dialect.AnnotationsEnum.DEFAULT);
+
+  private final Closeable source;
+
+  private final CSVParser csvParser;
+
+  private final Iterator<CSVRecord> csvRecords;
+
+  private final FluxCsvParser parser = new FluxCsvParser();
+
+  private final FluxCsvParser.FluxCsvState state = new FluxCsvParser.FluxCsvState();
+
+  private FluxTable table;
+
+  private FluxResponseCursor(Closeable source, BufferedSource content) throws IOException {
+    this.source = source;
+    this.csvParser =
+        new CSVParser(
+            new InputStreamReader(content.inputStream(), StandardCharsets.UTF_8),
+            CSVFormat.DEFAULT);
+    this.csvRecords = csvParser.iterator();
+  }
+
+  public static FluxResponseCursor query(QueryService service, String orgId, String statement) {
+    Query query = new Query().query(statement).dialect(DIALECT);
+    try {
+      Response<ResponseBody> response =
+          service
+              .postQueryResponseBody(null, null, "application/json", null, orgId, query)
+              .execute();
+      if (!response.isSuccessful()) {
+        throw new InfluxException(response);
+      }
+      ResponseBody body = response.body();
+      return new FluxResponseCursor(body, body.source());
+    } catch (IOException e) {
+      throw new InfluxException(e);
+    }
+  }
+
+  public static FluxResponseCursor of(BufferedSource source) throws IOException {
+    return new FluxResponseCursor(source, source);
+  }
+
+  /** 关闭已经打开的查询结果，用于后续步骤失败时释放连接，关闭时的异常附加到 cause 上 */
+  public static void closeAll(Iterable<FluxResponseCursor> cursors, Throwable cause) {
+    for (FluxResponseCursor cursor : cursors) {
+      try {
+        cursor.close();
+      } catch (IOException | RuntimeException e) {
+        cause.addSuppressed(e);
+      }
+    }
+  }
+
+  /** 读取下一条记录，读完时返回 null */
+  public FluxRecord next() throws IOException {
+    try {
+      while (csvRecords.hasNext()) {
+        state.csvRecord = csvRecords.next();
+        FluxCsvParser.FluxRecordOrTable result = parser.parseNextResponse(state);
+        if (result.table != null) {
+          table = result.table;
+        }
+        if (result.record != null) {
+          return result.record;
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return null;
+  }
+
+  /** 最近读取的记录所在的表，表中不包含记录 */
+  public FluxTable getTable() {
+    return table;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      csvParser.close();
+    } finally {
+      source.close();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.query.entity;
+
+import static cn.edu.tsinghua.iginx.influxdb.tools.DataTypeTransformer.fromInfluxDB;
+import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.influxdb.query.FluxColumn;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** FluxTable 的紧凑表示：只保留表结构和第一条记录（用于获取 measurement 与 tag），其余记录只按行存放时间戳和值，不再保留每条记录的 FluxRecord。 */
+public class FluxSeries {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final FluxTable table;
+
+  private FluxRecord firstRecord;
+
+  private boolean pivot;
+
+  // 值在 FluxRecord 中的列下标，非 pivot 表只有 _value 一列
+  private int[] valueColumns;
+
+  private boolean[] binaryColumns;
+
+  private long[] keys = new long[INITIAL_CAPACITY];
+
+  private Object[] values;
+
+  private int size = 0;
+
+  /** @param table 只包含列信息的 FluxTable，解析器在读到第一条记录前会补全列信息 */
+  public FluxSeries(FluxTable table) {
+    this.table = table;
+  }
+
+  public static boolean isPivotFluxTable(FluxTable table) {
+    return !(table.getColumns().get(5).getLabel().equals("_value")
+        && !table.getColumns().get(5).isGroup()
+        && table.getColumns().get(6).getLabel().equals("_field")
+        && table.getColumns().get(6).isGroup());
+  }
+
+  public void add(FluxRecord record) {
+    if (firstRecord == null) {
+      init(record);
+    }
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      values = Arrays.copyOf(values, size * 2 * valueColumns.length);
+    }
+    keys[size] = instantToNs(record.getTime());
+    int offset = size * valueColumns.length;
+    for (int i = 0; i < valueColumns.length; i++) {
+      Object value = record.getValueByIndex(valueColumns[i]);
+      if (value != null && binaryColumns[i]) {
+        value = ((String) value).getBytes();
+      }
+      values[offset + i] = value;
+    }
+    size++;
+  }
+
+  private void init(FluxRecord record) {
+    this.firstRecord = record;
+    this.pivot = isPivotFluxTable(table);
+    List<FluxColumn> columns = table.getColumns();
+    List<Integer> indices = new ArrayList<>();
+    if (pivot) {
+      // pivot连接后的表中，仅取column，column的isGroup为false，tag的isGroup为true
+      for (int i = 6; i < columns.size(); i++) {
+        if (!columns.get(i).isGroup()) {
+          indices.add(i);
+        }
+      }
+    } else {
+      for (int i = 0; i < columns.size(); i++) {
+        if (columns.get(i).getLabel().equals("_value")) {
+          indices.add(i);
+          break;
+        }
+      }
+    }
+    this.valueColumns = indices.stream().mapToInt(Integer::intValue).toArray();
+    this.binaryColumns = new boolean[valueColumns.length];
+    for (int i = 0; i < valueColumns.length; i++) {
+      binaryColumns[i] =
+          fromInfluxDB(columns.get(valueColumns[i]).getDataType()) == DataType.BINARY;
+    }
+    this.values = new Object[keys.length * valueColumns.length];
+  }
+
+  public FluxTable getTable() {
+    return table;
+  }
+
+  public FluxRecord getFirstRecord() {
+    return firstRecord;
+  }
+
+  public boolean isPivot() {
+    return pivot;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getKey(int index) {
+    return keys[index];
+  }
+
+  /** 非 pivot 表的值 */
+  public Object getValue(int index) {
+    return values[index * valueColumns.length];
+  }
+
+  /** pivot 表中第 column 个值列的值 */
+  public Object getValue(int index, int column) {
+    return values[index * valueColumns.length + column];
+  }
+}
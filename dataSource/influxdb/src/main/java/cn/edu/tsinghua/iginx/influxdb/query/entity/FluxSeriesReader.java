@@ -0,0 +1,71 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.query.entity;
+
+import com.influxdb.client.service.QueryService;
+import com.influxdb.exceptions.InfluxException;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import okio.BufferedSource;
+
+/**
+ * 读取 Flux 查询的全部结果。
+ *
+ * <p>响应体边读边解析，每条记录解析后立即写入对应的 FluxSeries，不再像 QueryApi#query 那样先构造完整的 List&lt;FluxTable&gt;
+ * 并为每条记录保留一个 FluxRecord。
+ */
+public class FluxSeriesReader {
+
+  private FluxSeriesReader() {}
+
+  public static List<FluxSeries> query(QueryService service, String orgId, String statement) {
+    try (FluxResponseCursor cursor = FluxResponseCursor.query(service, orgId, statement)) {
+      return read(cursor);
+    } catch (IOException e) {
+      throw new InfluxException(e);
+    }
+  }
+
+  public static List<FluxSeries> read(BufferedSource source) throws IOException {
+    try (FluxResponseCursor cursor = FluxResponseCursor.of(source)) {
+      return read(cursor);
+    }
+  }
+
+  /** 只返回有数据的表 */
+  private static List<FluxSeries> read(FluxResponseCursor cursor) throws IOException {
+    List<FluxSeries> seriesList = new ArrayList<>();
+    FluxTable table = null;
+    FluxSeries current = null;
+    FluxRecord record;
+    while ((record = cursor.next()) != null) {
+      if (cursor.getTable() != table) {
+        table = cursor.getTable();
+        current = new FluxSeries(table);
+        seriesList.add(current);
+      }
+      current.add(record);
+    }
+    return seriesList;
+  }
+}
@@ -19,11 +19,10 @@
  */
 package cn.edu.tsinghua.iginx.influxdb.query.entity;
 
-import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
-
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -31,20 +30,16 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.influxdb.tools.SchemaTransformer;
 import cn.edu.tsinghua.iginx.thrift.DataType;
-import com.influxdb.query.FluxRecord;
-import com.influxdb.query.FluxTable;
-import java.sql.SQLException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class InfluxDBHistoryQueryRowStream implements RowStream {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(InfluxDBQueryRowStream.class);
-
-  private final List<Map.Entry<String, List<FluxTable>>> bucketQueryResults;
+  private final List<Map.Entry<String, List<FluxSeries>>> bucketQueryResults;
 
   private final List<int[]> indexList;
 
@@ -58,26 +53,71 @@ public class InfluxDBHistoryQueryRowStream implements RowStream {
 
   private Row cachedRow = null;
 
-  private Filter filter = null;
+  private final RowPredicate predicate;
+
+  // 每个 bucket 按时间排序的查询结果，为 null 时从 bucketQueryResults 中读取数据
+  private final SortedFluxRows[] rowsList;
+
+  // rowsList 中已读出但尚未输出的行
+  private final boolean[] rowsReady;
+
+  private final boolean[] rowsDone;
 
   public InfluxDBHistoryQueryRowStream(
-      Map<String, List<FluxTable>> bucketQueryResults, List<String> patterns, Filter filter) {
-    this.bucketQueryResults = new ArrayList<>(bucketQueryResults.entrySet());
-    this.filter = filter;
-    this.indexList = new ArrayList<>();
-    List<Field> fields = new ArrayList<>();
-    for (int i = 0; i < bucketQueryResults.size(); i++) {
-      String bucket = this.bucketQueryResults.get(i).getKey();
-      List<FluxTable> tables = this.bucketQueryResults.get(i).getValue();
-      this.indexList.add(new int[tables.size()]);
-      for (FluxTable table : tables) {
-        fields.add(SchemaTransformer.toField(bucket, table));
-        this.hasMoreRecords++;
-        this.size++;
+      Map<String, List<FluxSeries>> bucketQueryResults, List<String> patterns, Filter filter) {
+    this(bucketQueryResults, Collections.emptyMap(), patterns, filter);
+  }
+
+  /**
+   * @param bucketQueryResults 各 bucket 查询结果中的序列，bucketRecords 中有该 bucket 时只用于确定表头
+   * @param bucketRecords 各 bucket 按时间排序的非 pivot 查询结果，见 {@link SortedFluxRows}
+   */
+  public InfluxDBHistoryQueryRowStream(
+      Map<String, List<FluxSeries>> bucketQueryResults,
+      Map<String, FluxResponseCursor> bucketRecords,
+      List<String> patterns,
+      Filter filter) {
+    try {
+      this.bucketQueryResults = new ArrayList<>(bucketQueryResults.entrySet());
+      this.indexList = new ArrayList<>();
+      this.rowsList = new SortedFluxRows[this.bucketQueryResults.size()];
+      this.rowsReady = new boolean[this.bucketQueryResults.size()];
+      this.rowsDone = new boolean[this.bucketQueryResults.size()];
+      List<Field> fields = new ArrayList<>();
+      List<Map<String, Integer>> fieldIndexOfList = new ArrayList<>();
+      for (int i = 0; i < bucketQueryResults.size(); i++) {
+        String bucket = this.bucketQueryResults.get(i).getKey();
+        List<FluxSeries> seriesList = this.bucketQueryResults.get(i).getValue();
+        boolean sorted = bucketRecords.containsKey(bucket);
+        this.indexList.add(new int[seriesList.size()]);
+        Map<String, Integer> fieldIndexOf = new HashMap<>();
+        for (FluxSeries series : seriesList) {
+          fieldIndexOf.put(SortedFluxRows.seriesKeyOf(series.getFirstRecord()), fields.size());
+          fields.add(SchemaTransformer.toField(bucket, series));
+          this.size++;
+        }
+        fieldIndexOfList.add(fieldIndexOf);
+        // 同一 bucket 的序列共用一个数据源，读完即没有更多数据
+        this.hasMoreRecords += sorted ? Math.min(seriesList.size(), 1) : seriesList.size();
       }
-    }
 
-    header = new Header(Field.KEY, fields);
+      header = new Header(Field.KEY, fields);
+      this.predicate = filter == null ? null : FilterCompiler.compile(filter, header);
+
+      DataType[] types = new DataType[size];
+      for (int i = 0; i < size; i++) {
+        types[i] = header.getField(i).getType();
+      }
+      for (int i = 0; i < rowsList.length; i++) {
+        FluxResponseCursor records = bucketRecords.get(this.bucketQueryResults.get(i).getKey());
+        if (records != null) {
+          rowsList[i] = new SortedFluxRows(records, fieldIndexOfList.get(i), types, size);
+        }
+      }
+    } catch (RuntimeException e) {
+      FluxResponseCursor.closeAll(bucketRecords.values(), e);
+      throw e;
+    }
   }
 
   @Override
@@ -87,7 +127,15 @@ public class InfluxDBHistoryQueryRowStream implements RowStream {
 
   @Override
   public void close() throws PhysicalException {
-    // need to do nothing
+    try {
+      for (SortedFluxRows rows : rowsList) {
+        if (rows != null) {
+          rows.close();
+        }
+      }
+    } catch (IOException e) {
+      throw new RowFetchException(e);
+    }
   }
 
   @Override
@@ -100,62 +148,88 @@ public class InfluxDBHistoryQueryRowStream implements RowStream {
       if (!hasCachedRow) {
         cacheOneRow();
       }
-    } catch (SQLException | PhysicalException e) {
+    } catch (PhysicalException e) {
       throw new RowFetchException(e);
     }
 
     return cachedRow != null;
   }
 
-  private void cacheOneRow() throws SQLException, PhysicalException {
-    if (this.hasMoreRecords == 0) {
-      cachedRow = null;
-      hasCachedRow = false;
-      return;
+  private void cacheOneRow() throws PhysicalException {
+    while (this.hasMoreRecords != 0) {
+      Row row = nextRow();
+      if (row == null) {
+        break;
+      }
+      if (predicate == null || predicate.test(row)) {
+        cachedRow = row;
+        hasCachedRow = true;
+        return;
+      }
     }
+    cachedRow = null;
+    hasCachedRow = false;
+  }
 
+  private Row nextRow() throws PhysicalException {
     long timestamp = Long.MAX_VALUE;
+    for (int i = 0; i < rowsList.length; i++) {
+      SortedFluxRows rows = rowsList[i];
+      if (rows == null || rowsDone[i]) {
+        continue;
+      }
+      if (!rowsReady[i]) {
+        try {
+          rowsReady[i] = rows.next();
+        } catch (IOException e) {
+          throw new RowFetchException(e);
+        }
+        if (!rowsReady[i]) {
+          rowsDone[i] = true;
+          hasMoreRecords--;
+          continue;
+        }
+      }
+      timestamp = Math.min(rows.key(), timestamp);
+    }
     for (int i = 0; i < this.bucketQueryResults.size(); i++) {
+      if (rowsList[i] != null) {
+        continue;
+      }
       int[] indices = indexList.get(i);
-      List<FluxTable> tables = bucketQueryResults.get(i).getValue();
-      for (int j = 0; j < tables.size(); j++) {
+      List<FluxSeries> seriesList = bucketQueryResults.get(i).getValue();
+      for (int j = 0; j < seriesList.size(); j++) {
         int index = indices[j];
-        FluxTable table = tables.get(j);
-        List<FluxRecord> records = table.getRecords();
-        if (index == records.size()) { // 数据已经消费完毕了
+        FluxSeries series = seriesList.get(j);
+        if (index == series.size()) { // 数据已经消费完毕了
           continue;
         }
-        FluxRecord record = records.get(index);
-        timestamp = Math.min(instantToNs(record.getTime()), timestamp);
+        timestamp = Math.min(series.getKey(index), timestamp);
       }
     }
     if (timestamp == Long.MAX_VALUE) {
-      cachedRow = null;
-      hasCachedRow = false;
+      return null;
     }
     Object[] values = new Object[size];
     int ptr = 0;
     for (int i = 0; i < this.bucketQueryResults.size(); i++) {
+      List<FluxSeries> seriesList = bucketQueryResults.get(i).getValue();
+      if (rowsList[i] != null) {
+        ptr += seriesList.size();
+        continue;
+      }
       int[] indices = indexList.get(i);
-      List<FluxTable> tables = bucketQueryResults.get(i).getValue();
-      for (int j = 0; j < tables.size(); j++) {
+      for (int j = 0; j < seriesList.size(); j++) {
         int index = indices[j];
-        FluxTable table = tables.get(j);
-        List<FluxRecord> records = table.getRecords();
-        if (index == records.size()) { // 数据已经消费完毕了
+        FluxSeries series = seriesList.get(j);
+        if (index == series.size()) { // 数据已经消费完毕了
           values[ptr++] = null;
           continue;
         }
-        FluxRecord record = records.get(index);
-        if (instantToNs(record.getTime()) == timestamp) {
-          DataType dataType = header.getField(ptr).getType();
-          Object value = record.getValue();
-          if (dataType == DataType.BINARY) {
-            value = ((String) value).getBytes();
-          }
-          values[ptr++] = value;
+        if (series.getKey(index) == timestamp) {
+          values[ptr++] = series.getValue(index);
           indices[j]++;
-          if (indices[j] == records.size()) {
+          if (indices[j] == series.size()) {
             hasMoreRecords--;
           }
         } else {
@@ -163,13 +237,19 @@ public class InfluxDBHistoryQueryRowStream implements RowStream {
         }
       }
     }
-    Row row = new Row(header, timestamp, values);
-    if (filter == null || FilterUtils.validate(filter, row)) {
-      cachedRow = row;
-      hasCachedRow = true;
-    } else {
-      cacheOneRow();
+    for (int i = 0; i < rowsList.length; i++) {
+      SortedFluxRows rows = rowsList[i];
+      if (rowsReady[i] && rows.key() == timestamp) {
+        Object[] rowValues = rows.values();
+        for (int j = 0; j < size; j++) {
+          if (rowValues[j] != null) {
+            values[j] = rowValues[j];
+          }
+        }
+        rowsReady[i] = false;
+      }
     }
+    return new Row(header, timestamp, values);
   }
 
   @Override
@@ -183,7 +263,7 @@ public class InfluxDBHistoryQueryRowStream implements RowStream {
       hasCachedRow = false;
       cachedRow = null;
       return row;
-    } catch (SQLException | PhysicalException e) {
+    } catch (PhysicalException e) {
       throw new RowFetchException(e);
     }
   }
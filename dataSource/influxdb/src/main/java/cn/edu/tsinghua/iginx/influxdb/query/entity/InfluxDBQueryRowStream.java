@@ -20,11 +20,11 @@
 package cn.edu.tsinghua.iginx.influxdb.query.entity;
 
 import static cn.edu.tsinghua.iginx.influxdb.tools.DataTypeTransformer.fromInfluxDB;
-import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
-import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowPredicate;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -35,22 +35,19 @@ import cn.edu.tsinghua.iginx.influxdb.tools.TagFilterUtils;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
-import java.sql.SQLException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class InfluxDBQueryRowStream implements RowStream {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(InfluxDBQueryRowStream.class);
-
   private final Header header;
 
-  private final List<FluxTable> tables;
+  private final List<FluxSeries> seriesList;
 
   private final int[] indices;
 
@@ -62,61 +59,96 @@ public class InfluxDBQueryRowStream implements RowStream {
 
   private List<Integer> tableFieldIndex; // 每个table在header中的起始位置
 
-  private Filter filter;
+  private List<Integer> tableFieldCount; // 每个table在header中的列数
+
+  private final RowPredicate predicate;
 
   private boolean hasCachedRow = false;
 
   private Row cachedRow = null;
 
-  public InfluxDBQueryRowStream(List<FluxTable> tables, Project project, Filter filter) {
-    List<Boolean> filterList = new ArrayList<>();
-    this.filterByTags = project.getTagFilter() != null;
-    this.tables =
-        tables.stream()
-            .filter(e -> e.getRecords().size() > 0)
-            .collect(Collectors.toList()); // 只保留还有数据的二维表
-
-    this.tableFieldIndex = new ArrayList<>();
-    List<Field> fields = new ArrayList<>();
-    for (FluxTable table : this.tables) {
-      this.tableFieldIndex.add(fields.size());
-      if (!isPivotFluxTable(table)) {
-        getDataFromFluxTable(project, filterList, fields, table);
-      } else {
-        getDataFromPivotFluxTable(project, filterList, fields, table);
+  // 按时间排序的查询结果，为 null 时从 seriesList 中读取数据
+  private final SortedFluxRows rows;
+
+  public InfluxDBQueryRowStream(List<FluxSeries> seriesList, Project project, Filter filter) {
+    this(seriesList, null, project, filter);
+  }
+
+  /**
+   * @param seriesList 查询结果中的序列，records 不为 null 时只用于确定表头
+   * @param records 按时间排序的非 pivot 查询结果，见 {@link SortedFluxRows}
+   */
+  public InfluxDBQueryRowStream(
+      List<FluxSeries> seriesList, FluxResponseCursor records, Project project, Filter filter) {
+    try {
+      List<Boolean> filterList = new ArrayList<>();
+      this.filterByTags = project.getTagFilter() != null;
+      this.seriesList =
+          seriesList.stream().filter(e -> e.size() > 0).collect(Collectors.toList()); // 只保留还有数据的二维表
+
+      this.tableFieldIndex = new ArrayList<>();
+      this.tableFieldCount = new ArrayList<>();
+      List<Field> fields = new ArrayList<>();
+      for (FluxSeries series : this.seriesList) {
+        int start = fields.size();
+        this.tableFieldIndex.add(start);
+        if (!series.isPivot()) {
+          getDataFromFluxTable(project, filterList, fields, series);
+        } else {
+          getDataFromPivotFluxTable(project, filterList, fields, series);
+        }
+        this.tableFieldCount.add(fields.size() - start);
       }
+      filterMap = filterList;
+      this.header = new Header(Field.KEY, fields);
+      this.indices = new int[this.seriesList.size()];
+      this.rows = records == null ? null : sortedRows(records);
+      // 这里filter如果是null, 则不过滤
+      this.predicate = filter == null ? null : FilterCompiler.compile(filter, header);
+    } catch (RuntimeException e) {
+      if (records != null) {
+        FluxResponseCursor.closeAll(Collections.singletonList(records), e);
+      }
+      throw e;
     }
-    filterMap = filterList;
-    this.header = new Header(Field.KEY, fields);
-    this.indices = new int[this.tables.size()];
-    this.filter = filter;
   }
 
-  private static boolean isPivotFluxTable(FluxTable table) {
-    return !(table.getColumns().get(5).getLabel().equals("_value")
-        && !table.getColumns().get(5).isGroup()
-        && table.getColumns().get(6).getLabel().equals("_field")
-        && table.getColumns().get(6).isGroup());
+  private SortedFluxRows sortedRows(FluxResponseCursor records) {
+    Map<String, Integer> fieldIndexOf = new HashMap<>();
+    for (int i = 0; i < seriesList.size(); i++) {
+      if (!filterMap.get(i)) {
+        fieldIndexOf.put(
+            SortedFluxRows.seriesKeyOf(seriesList.get(i).getFirstRecord()), tableFieldIndex.get(i));
+      }
+    }
+    DataType[] types = new DataType[header.getFieldSize()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = header.getField(i).getType();
+    }
+    // 所有序列共用一个数据源，读完即没有更多数据
+    this.hasMoreRecords = this.hasMoreRecords == 0 ? 0 : 1;
+    return new SortedFluxRows(records, fieldIndexOf, types, types.length);
   }
 
   private void getDataFromFluxTable(
-      Project project, List<Boolean> filterList, List<Field> fields, FluxTable table) {
+      Project project, List<Boolean> filterList, List<Field> fields, FluxSeries series) {
+    FluxTable table = series.getTable();
+    FluxRecord record = series.getFirstRecord();
     Map<String, String> tags = new HashMap<>();
     String path;
-    if (table.getRecords().get(0).getValueByKey("t") == null) {
-      path =
-          table.getRecords().get(0).getMeasurement() + "." + table.getRecords().get(0).getField();
+    if (record.getValueByKey("t") == null) {
+      path = record.getMeasurement() + "." + record.getField();
     } else {
       path =
-          table.getRecords().get(0).getMeasurement()
+          record.getMeasurement()
               + "."
-              + table.getRecords().get(0).getValueByKey(InfluxDBSchema.TAG)
+              + record.getValueByKey(InfluxDBSchema.TAG)
               + "."
-              + table.getRecords().get(0).getField();
+              + record.getField();
     }
     for (int i = 8; i < table.getColumns().size(); i++) {
       String key = table.getColumns().get(i).getLabel();
-      String val = (String) table.getRecords().get(0).getValueByKey(key);
+      String val = (String) record.getValueByKey(key);
       tags.put(key, val);
     }
     if (this.filterByTags && !TagFilterUtils.match(tags, project.getTagFilter())) {
@@ -137,14 +169,16 @@ public class InfluxDBQueryRowStream implements RowStream {
   }
 
   private void getDataFromPivotFluxTable(
-      Project project, List<Boolean> filterList, List<Field> fields, FluxTable table) {
+      Project project, List<Boolean> filterList, List<Field> fields, FluxSeries series) {
+    FluxTable table = series.getTable();
+    FluxRecord record = series.getFirstRecord();
     Map<String, String> tags = new HashMap<>();
     // 获取tag
     // pivot连接后的表中，tag和column会并列排放，且顺序无规律，唯一的区别在于tag的isGroup为true，而column的isGroup为false
     for (int i = 6; i < table.getColumns().size(); i++) {
       if (table.getColumns().get(i).isGroup()) {
         String key = table.getColumns().get(i).getLabel();
-        String val = (String) table.getRecords().get(0).getValueByKey(key);
+        String val = (String) record.getValueByKey(key);
         tags.put(key, val);
       }
     }
@@ -163,16 +197,13 @@ public class InfluxDBQueryRowStream implements RowStream {
       if (!table.getColumns().get(i).isGroup()) {
         // 获取path
         String path;
-        if (table.getRecords().get(0).getValueByKey("t") == null) {
-          path =
-              table.getRecords().get(0).getMeasurement()
-                  + "."
-                  + table.getColumns().get(i).getLabel();
+        if (record.getValueByKey("t") == null) {
+          path = record.getMeasurement() + "." + table.getColumns().get(i).getLabel();
         } else {
           path =
-              table.getRecords().get(0).getMeasurement()
+              record.getMeasurement()
                   + "."
-                  + table.getRecords().get(0).getValueByKey(InfluxDBSchema.TAG)
+                  + record.getValueByKey(InfluxDBSchema.TAG)
                   + "."
                   + table.getColumns().get(i).getLabel();
         }
@@ -192,7 +223,14 @@ public class InfluxDBQueryRowStream implements RowStream {
 
   @Override
   public void close() throws PhysicalException {
-    // need to do nothing
+    if (rows == null) {
+      return;
+    }
+    try {
+      rows.close();
+    } catch (IOException e) {
+      throw new RowFetchException(e);
+    }
   }
 
   @Override
@@ -205,91 +243,89 @@ public class InfluxDBQueryRowStream implements RowStream {
       if (!hasCachedRow) {
         cacheOneRow();
       }
-    } catch (SQLException | PhysicalException e) {
+    } catch (PhysicalException e) {
       throw new RowFetchException(e);
     }
 
     return cachedRow != null;
   }
 
-  private void cacheOneRow() throws SQLException, PhysicalException {
-    if (this.hasMoreRecords == 0) {
-      cachedRow = null;
-      hasCachedRow = false;
-      return;
+  private void cacheOneRow() throws PhysicalException {
+    // 不满足过滤条件时继续缓存下一行，直到满足过滤条件或数据消费完毕
+    while (this.hasMoreRecords != 0) {
+      Row row = nextRow();
+      if (row == null) {
+        break;
+      }
+      if (predicate == null || predicate.test(row)) {
+        cachedRow = row;
+        hasCachedRow = true;
+        return;
+      }
     }
+    cachedRow = null;
+    hasCachedRow = false;
+  }
 
+  private Row nextRow() throws PhysicalException {
+    if (rows != null) {
+      return nextSortedRow();
+    }
     long timestamp = Long.MAX_VALUE;
-    for (int i = 0; i < this.tables.size(); i++) {
+    for (int i = 0; i < this.seriesList.size(); i++) {
       if (filterMap.get(i)) {
         continue;
       }
       int index = indices[i];
-      FluxTable table = this.tables.get(i);
-      List<FluxRecord> records = table.getRecords();
-      if (index == records.size()) { // 数据已经消费完毕了
+      FluxSeries series = this.seriesList.get(i);
+      if (index == series.size()) { // 数据已经消费完毕了
         continue;
       }
-      FluxRecord record = records.get(index);
-      timestamp = Math.min(instantToNs(record.getTime()), timestamp);
+      timestamp = Math.min(series.getKey(index), timestamp);
     }
     if (timestamp == Long.MAX_VALUE) {
-      cachedRow = null;
-      hasCachedRow = false;
-      return;
+      return null;
     }
     Object[] values = new Object[this.header.getFieldSize()];
-    for (int i = 0; i < this.tables.size(); i++) {
+    for (int i = 0; i < this.seriesList.size(); i++) {
       if (filterMap.get(i)) {
         continue;
       }
       int index = indices[i];
-      FluxTable table = this.tables.get(i);
-      List<FluxRecord> records = table.getRecords();
-      if (index == records.size()) { // 数据已经消费完毕了
+      FluxSeries series = this.seriesList.get(i);
+      if (index == series.size()) { // 数据已经消费完毕了
         continue;
       }
-      FluxRecord record = records.get(index);
-
-      if (instantToNs(record.getTime()) == timestamp) {
-        if (!isPivotFluxTable(this.tables.get(i))) {
-          DataType dataType = header.getField(i).getType();
-          Object value = record.getValue();
-          if (dataType == DataType.BINARY) {
-            value = ((String) value).getBytes();
-          }
-          values[this.tableFieldIndex.get(i)] = value;
+
+      if (series.getKey(index) == timestamp) {
+        int start = this.tableFieldIndex.get(i);
+        if (!series.isPivot()) {
+          values[start] = series.getValue(index);
         } else {
-          int tableFieldIndex = this.tableFieldIndex.get(i);
-          for (int j = 6; j < table.getColumns().size(); j++) {
-            // 仅取column，column的isGroup为false，tag的isGroup为true。
-            if (!table.getColumns().get(j).isGroup()) {
-              DataType dataType = fromInfluxDB(table.getColumns().get(j).getDataType());
-              Object value = record.getValueByIndex(j);
-              if (value != null && dataType == DataType.BINARY) {
-                value = ((String) value).getBytes();
-              }
-              values[tableFieldIndex] = value;
-              tableFieldIndex++;
-            }
+          int count = this.tableFieldCount.get(i);
+          for (int j = 0; j < count; j++) {
+            values[start + j] = series.getValue(index, j);
           }
         }
         indices[i]++;
-        if (indices[i] == records.size()) {
+        if (indices[i] == series.size()) {
           hasMoreRecords--;
         }
       }
     }
-    Row row = new Row(header, timestamp, values);
-    // 这里filter如果是null, 则不过滤，直接返回。
-    if (filter == null || FilterUtils.validate(filter, row)) {
-      cachedRow = row;
-      hasCachedRow = true;
-    } else {
-      // 如果不满足过滤条件，继续缓存下一行，直到满足过滤条件。
-      // 如果一直不满足，则会在最后一次调用时，因为hasMoreRecords为0，而返回null。
-      cacheOneRow();
+    return new Row(header, timestamp, values);
+  }
+
+  private Row nextSortedRow() throws PhysicalException {
+    try {
+      if (rows.next()) {
+        return new Row(header, rows.key(), rows.values());
+      }
+    } catch (IOException e) {
+      throw new RowFetchException(e);
     }
+    hasMoreRecords = 0;
+    return null;
   }
 
   @Override
@@ -303,7 +339,7 @@ public class InfluxDBQueryRowStream implements RowStream {
       hasCachedRow = false;
       cachedRow = null;
       return row;
-    } catch (SQLException | PhysicalException e) {
+    } catch (PhysicalException e) {
       throw new RowFetchException(e);
     }
   }
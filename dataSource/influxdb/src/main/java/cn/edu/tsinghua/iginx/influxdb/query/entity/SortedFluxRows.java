@@ -0,0 +1,158 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.query.entity;
+
+import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.influxdb.query.FluxRecord;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 按时间顺序逐行读取 Flux 查询结果。
+ *
+ * <p>查询需要以 toString() |> group() |> sort(columns: ["_time"]) 结尾，使所有序列的记录合并为一张按 _time
+ * 排序的表，时间相同的连续记录合并为一行。每条记录按 measurement、field 和 tag 找到其在表头中的位置，值由字符串转换回表头中的类型。
+ */
+class SortedFluxRows implements Closeable {
+
+  private static final Set<String> RESERVED_COLUMNS =
+      new HashSet<>(
+          Arrays.asList(
+              "result", "table", "_start", "_stop", "_time", "_value", "_field", "_measurement"));
+
+  private final FluxResponseCursor cursor;
+
+  private final Map<String, Integer> fieldIndexOf;
+
+  private final DataType[] types;
+
+  private final int fieldSize;
+
+  private FluxRecord pending;
+
+  private long key;
+
+  private Object[] values;
+
+  /**
+   * @param fieldIndexOf 序列标识（见 {@link #seriesKeyOf}）到行中下标的映射，不在其中的序列被忽略
+   * @param types 行中各列的类型
+   */
+  SortedFluxRows(
+      FluxResponseCursor cursor,
+      Map<String, Integer> fieldIndexOf,
+      DataType[] types,
+      int fieldSize) {
+    this.cursor = cursor;
+    this.fieldIndexOf = fieldIndexOf;
+    this.types = types;
+    this.fieldSize = fieldSize;
+  }
+
+  /** 序列的标识：measurement、field 以及按 key 排序的 tag */
+  static String seriesKeyOf(FluxRecord record) {
+    Map<String, Object> tags = new TreeMap<>();
+    for (Map.Entry<String, Object> entry : record.getValues().entrySet()) {
+      if (entry.getValue() != null && !RESERVED_COLUMNS.contains(entry.getKey())) {
+        tags.put(entry.getKey(), entry.getValue());
+      }
+    }
+    StringBuilder builder = new StringBuilder();
+    builder.append(record.getMeasurement()).append('\0').append(record.getField());
+    for (Map.Entry<String, Object> tag : tags.entrySet()) {
+      builder.append('\0').append(tag.getKey()).append('=').append(tag.getValue());
+    }
+    return builder.toString();
+  }
+
+  /** 读取下一行，读完时返回 false */
+  boolean next() throws IOException {
+    while (true) {
+      if (pending == null) {
+        pending = cursor.next();
+        if (pending == null) {
+          return false;
+        }
+      }
+      long timestamp = instantToNs(pending.getTime());
+      Object[] row = new Object[fieldSize];
+      boolean empty = true;
+      while (pending != null && instantToNs(pending.getTime()) == timestamp) {
+        Integer index = fieldIndexOf.get(seriesKeyOf(pending));
+        Object value = pending.getValue();
+        if (index != null && value != null) {
+          row[index] = parseValue(value, types[index]);
+          empty = false;
+        }
+        pending = cursor.next();
+      }
+      // 只包含被过滤掉的序列的行直接跳过
+      if (!empty) {
+        key = timestamp;
+        values = row;
+        return true;
+      }
+    }
+  }
+
+  long key() {
+    return key;
+  }
+
+  Object[] values() {
+    return values;
+  }
+
+  private static Object parseValue(Object value, DataType type) {
+    if (!(value instanceof String)) {
+      return value;
+    }
+    String str = (String) value;
+    switch (type) {
+      case BOOLEAN:
+        return Boolean.parseBoolean(str);
+      case LONG:
+        return Long.parseLong(str);
+      case DOUBLE:
+        switch (str) {
+          case "+Inf":
+            return Double.POSITIVE_INFINITY;
+          case "-Inf":
+            return Double.NEGATIVE_INFINITY;
+          default:
+            return Double.parseDouble(str);
+        }
+      default:
+        return str.getBytes();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    cursor.close();
+  }
+}
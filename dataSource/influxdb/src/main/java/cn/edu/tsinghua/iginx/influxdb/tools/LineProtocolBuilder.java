@@ -0,0 +1,166 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.tools;
+
+import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBSchema;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 直接拼接 InfluxDB line protocol，不再为每个数据点构造 Point 对象。
+ *
+ * <p>每条序列的 "measurement,tags field=" 前缀只计算一次，格式与 Point#toLineProtocol 保持一致：tag 按 key 排序，空的 tag
+ * 被忽略，非有限的浮点数被跳过。
+ */
+public class LineProtocolBuilder {
+
+  private final StringBuilder builder = new StringBuilder();
+
+  private int size = 0;
+
+  /** 构造 "measurement,tags field=" 前缀 */
+  public static String prefix(InfluxDBSchema schema) {
+    StringBuilder sb = new StringBuilder();
+    escapeKey(sb, schema.getMeasurement(), false);
+    Map<String, String> tags = new TreeMap<>();
+    if (schema.getTags() != null) {
+      tags.putAll(schema.getTags());
+    }
+    for (Map.Entry<String, String> tag : tags.entrySet()) {
+      String key = tag.getKey();
+      String value = tag.getValue();
+      if (key == null || key.isEmpty() || value == null || value.isEmpty()) {
+        continue;
+      }
+      sb.append(',');
+      escapeKey(sb, key, true);
+      sb.append('=');
+      escapeKey(sb, value, true);
+    }
+    sb.append(' ');
+    escapeKey(sb, schema.getField(), true);
+    sb.append('=');
+    return sb.toString();
+  }
+
+  /**
+   * 追加一个数据点
+   *
+   * @return 是否写入，非有限的浮点数不会被写入
+   */
+  public boolean append(String prefix, DataType dataType, Object value, long key) {
+    int start = builder.length();
+    builder.append(prefix);
+    switch (dataType) {
+      case BOOLEAN:
+        builder.append((boolean) value);
+        break;
+      case INTEGER:
+      case LONG:
+        builder.append(((Number) value).longValue()).append('i');
+        break;
+      case FLOAT:
+      case DOUBLE:
+        double d = ((Number) value).doubleValue();
+        if (!Double.isFinite(d)) {
+          builder.setLength(start);
+          return false;
+        }
+        appendDouble(d);
+        break;
+      case BINARY:
+        builder.append('"');
+        escapeString(builder, new String((byte[]) value));
+        builder.append('"');
+        break;
+      default:
+        builder.setLength(start);
+        return false;
+    }
+    builder.append(' ').append(key).append('\n');
+    size++;
+    return true;
+  }
+
+  private void appendDouble(double d) {
+    String s = BigDecimal.valueOf(d).stripTrailingZeros().toPlainString();
+    builder.append(s);
+    if (s.indexOf('.') < 0) {
+      builder.append(".0");
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** 取出已拼接的内容并清空 */
+  public String flush() {
+    // 去掉最后一个换行符
+    String records = builder.substring(0, builder.length() - 1);
+    builder.setLength(0);
+    size = 0;
+    return records;
+  }
+
+  private static void escapeKey(StringBuilder sb, String key, boolean escapeEqual) {
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      switch (c) {
+        case '\n':
+          sb.append("\\n");
+          continue;
+        case '\r':
+          sb.append("\\r");
+          continue;
+        case '\t':
+          sb.append("\\t");
+          continue;
+        case ' ':
+        case ',':
+          sb.append('\\');
+          break;
+        case '=':
+          if (escapeEqual) {
+            sb.append('\\');
+          }
+          break;
+        default:
+      }
+      sb.append(c);
+    }
+  }
+
+  private static void escapeString(StringBuilder sb, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == '"') {
+        sb.append('\\');
+      }
+      sb.append(c);
+    }
+  }
+}
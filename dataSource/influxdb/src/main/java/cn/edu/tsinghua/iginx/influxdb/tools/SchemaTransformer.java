@@ -23,6 +23,7 @@ import static cn.edu.tsinghua.iginx.influxdb.tools.DataTypeTransformer.fromInflu
 
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
+import cn.edu.tsinghua.iginx.influxdb.query.entity.FluxSeries;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBSchema;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
@@ -34,8 +35,9 @@ import java.util.stream.Collectors;
 
 public class SchemaTransformer {
 
-  public static Field toField(String bucket, FluxTable table) {
-    FluxRecord record = table.getRecords().get(0);
+  public static Field toField(String bucket, FluxSeries series) {
+    FluxTable table = series.getTable();
+    FluxRecord record = series.getFirstRecord();
     String measurement = record.getMeasurement();
     String field = record.getField();
     List<FluxColumn> columns = table.getColumns();
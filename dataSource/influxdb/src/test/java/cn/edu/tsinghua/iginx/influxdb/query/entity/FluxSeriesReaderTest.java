@@ -0,0 +1,265 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.query.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.influxdb.query.FluxRecord;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import okio.Buffer;
+import org.junit.Test;
+
+public class FluxSeriesReaderTest {
+
+  // 模拟 InfluxDB 返回的 annotated CSV，包含两张表和一张空表
+  private static final String RESPONSE =
+      "#datatype,string,long,dateTime:RFC3339,dateTime:RFC3339,dateTime:RFC3339,double,string,string\n"
+          + "#group,false,false,true,true,false,false,true,true\n"
+          + "#default,_result,,,,,,,\n"
+          + ",result,table,_start,_stop,_time,_value,_field,_measurement\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000001Z,1.5,f,m\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000003Z,2.5,f,m\n"
+          + "\n"
+          + "#datatype,string,long,dateTime:RFC3339,dateTime:RFC3339,dateTime:RFC3339,string,string,string\n"
+          + "#group,false,false,true,true,false,false,true,true\n"
+          + "#default,_result,,,,,,,\n"
+          + ",result,table,_start,_stop,_time,_value,_field,_measurement\n"
+          + ",,1,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000002Z,x,g,m\n"
+          + ",,1,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000003Z,y,g,m\n"
+          + "\n"
+          + "#datatype,string,long,dateTime:RFC3339,dateTime:RFC3339,dateTime:RFC3339,long,string,string\n"
+          + "#group,false,false,true,true,false,false,true,true\n"
+          + "#default,_result,,,,,,,\n"
+          + ",result,table,_start,_stop,_time,_value,_field,_measurement\n";
+
+  // 每个序列的第一条记录，其中 m.f 有一个带 tag 的序列
+  private static final String SCHEMA_RESPONSE =
+      RESPONSE
+          + "\n"
+          + "#datatype,string,long,dateTime:RFC3339,dateTime:RFC3339,dateTime:RFC3339,double,string,string,string\n"
+          + "#group,false,false,true,true,false,false,true,true,true\n"
+          + "#default,_result,,,,,,,,\n"
+          + ",result,table,_start,_stop,_time,_value,_field,_measurement,t\n"
+          + ",,3,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000002Z,1,f,m,a\n";
+
+  // 合并为一张表并按时间排序的数据，值都已转为字符串，m.h 不在表头中
+  private static final String SORTED_RESPONSE =
+      "#datatype,string,long,dateTime:RFC3339,dateTime:RFC3339,dateTime:RFC3339,string,string,string,string\n"
+          + "#group,false,false,false,false,false,false,false,false,false\n"
+          + "#default,_result,,,,,,,,\n"
+          + ",result,table,_start,_stop,_time,_value,_field,_measurement,t\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000001Z,1.5,f,m,\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000002Z,x,g,m,\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000002Z,+Inf,f,m,a\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000003Z,z,h,m,\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000004Z,2.5,f,m,\n"
+          + ",,0,1970-01-01T00:00:00Z,1970-01-01T00:00:01Z,1970-01-01T00:00:00.000000004Z,y,g,m,\n";
+
+  private static List<FluxSeries> read() throws IOException {
+    return FluxSeriesReader.read(new Buffer().writeUtf8(RESPONSE));
+  }
+
+  private static List<FluxSeries> readSchema() throws IOException {
+    return FluxSeriesReader.read(new Buffer().writeUtf8(SCHEMA_RESPONSE));
+  }
+
+  private static FluxResponseCursor sorted() throws IOException {
+    return FluxResponseCursor.of(new Buffer().writeUtf8(SORTED_RESPONSE));
+  }
+
+  private static Project project() {
+    return new Project(EmptySource.EMPTY_SOURCE, Collections.singletonList("m.*"), null);
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    List<FluxSeries> seriesList = read();
+    assertEquals(2, seriesList.size());
+
+    FluxSeries first = seriesList.get(0);
+    assertFalse(first.isPivot());
+    assertEquals("m", first.getFirstRecord().getMeasurement());
+    assertEquals(2, first.size());
+    assertEquals(1L, first.getKey(0));
+    assertEquals(3L, first.getKey(1));
+    assertEquals(2.5, first.getValue(1));
+
+    FluxSeries second = seriesList.get(1);
+    assertEquals(2L, second.getKey(0));
+    assertArrayEquals("x".getBytes(), (byte[]) second.getValue(0));
+  }
+
+  @Test
+  public void testRowStream() throws IOException, PhysicalException {
+    InfluxDBQueryRowStream stream = new InfluxDBQueryRowStream(read(), project(), null);
+    Header header = stream.getHeader();
+    assertEquals(2, header.getFieldSize());
+    assertEquals("m.f", header.getField(0).getName());
+    assertEquals(DataType.DOUBLE, header.getField(0).getType());
+    assertEquals(DataType.BINARY, header.getField(1).getType());
+
+    assertTrue(stream.hasNext());
+    Row row = stream.next();
+    assertEquals(1L, row.getKey());
+    assertEquals(1.5, row.getValue(0));
+    assertNull(row.getValue(1));
+
+    row = stream.next();
+    assertEquals(2L, row.getKey());
+    assertNull(row.getValue(0));
+    assertArrayEquals("x".getBytes(), (byte[]) row.getValue(1));
+
+    row = stream.next();
+    assertEquals(3L, row.getKey());
+    assertEquals(2.5, row.getValue(0));
+    assertArrayEquals("y".getBytes(), (byte[]) row.getValue(1));
+
+    assertFalse(stream.hasNext());
+  }
+
+  @Test
+  public void testRowStreamWithFilter() throws IOException, PhysicalException {
+    InfluxDBQueryRowStream stream =
+        new InfluxDBQueryRowStream(read(), project(), new KeyFilter(Op.GE, 3));
+    assertTrue(stream.hasNext());
+    assertEquals(3L, stream.next().getKey());
+    assertFalse(stream.hasNext());
+
+    InfluxDBHistoryQueryRowStream history =
+        new InfluxDBHistoryQueryRowStream(
+            Collections.singletonMap("bucket", read()),
+            Collections.singletonList("*"),
+            new KeyFilter(Op.L, 3));
+    assertEquals("bucket.m.g", history.getHeader().getField(1).getName());
+    assertEquals(1L, history.next().getKey());
+    assertEquals(2L, history.next().getKey());
+    assertFalse(history.hasNext());
+  }
+
+  @Test
+  public void testCursor() throws IOException {
+    try (FluxResponseCursor cursor = sorted()) {
+      FluxRecord record = cursor.next();
+      assertEquals("1.5", record.getValue());
+      assertNull(record.getValueByKey(InfluxDBSchema.TAG));
+      assertEquals(9, cursor.getTable().getColumns().size());
+      for (int i = 0; i < 5; i++) {
+        assertNotNull(cursor.next());
+      }
+      assertNull(cursor.next());
+      assertNull(cursor.next());
+    }
+  }
+
+  @Test
+  public void testSortedRowStream() throws IOException, PhysicalException {
+    InfluxDBQueryRowStream stream =
+        new InfluxDBQueryRowStream(readSchema(), sorted(), project(), null);
+    Header header = stream.getHeader();
+    assertEquals(3, header.getFieldSize());
+    assertEquals("m.a.f", header.getField(2).getName());
+    assertEquals(DataType.DOUBLE, header.getField(2).getType());
+
+    Row row = stream.next();
+    assertEquals(1L, row.getKey());
+    assertEquals(1.5, row.getValue(0));
+    assertNull(row.getValue(1));
+    assertNull(row.getValue(2));
+
+    row = stream.next();
+    assertEquals(2L, row.getKey());
+    assertNull(row.getValue(0));
+    assertArrayEquals("x".getBytes(), (byte[]) row.getValue(1));
+    assertEquals(Double.POSITIVE_INFINITY, row.getValue(2));
+
+    // 时间戳 3 只有不在表头中的 m.h，整行被跳过
+    row = stream.next();
+    assertEquals(4L, row.getKey());
+    assertEquals(2.5, row.getValue(0));
+    assertArrayEquals("y".getBytes(), (byte[]) row.getValue(1));
+
+    assertFalse(stream.hasNext());
+    assertFalse(stream.hasNext());
+    stream.close();
+  }
+
+  @Test
+  public void testSortedRowStreamWithFilter() throws IOException, PhysicalException {
+    InfluxDBQueryRowStream stream =
+        new InfluxDBQueryRowStream(readSchema(), sorted(), project(), new KeyFilter(Op.GE, 2));
+    assertEquals(2L, stream.next().getKey());
+    assertEquals(4L, stream.next().getKey());
+    assertFalse(stream.hasNext());
+    stream.close();
+  }
+
+  @Test
+  public void testSortedHistoryRowStream() throws IOException, PhysicalException {
+    Map<String, List<FluxSeries>> bucketQueryResults = new LinkedHashMap<>();
+    bucketQueryResults.put("buffered", read());
+    bucketQueryResults.put("sorted", readSchema());
+    InfluxDBHistoryQueryRowStream history =
+        new InfluxDBHistoryQueryRowStream(
+            bucketQueryResults,
+            Collections.singletonMap("sorted", sorted()),
+            Collections.singletonList("*"),
+            null);
+    Header header = history.getHeader();
+    assertEquals(5, header.getFieldSize());
+    assertEquals("sorted.m.f", header.getField(2).getName());
+
+    long[] keys = {1, 2, 3, 4};
+    for (long key : keys) {
+      assertTrue(history.hasNext());
+      Row row = history.next();
+      assertEquals(key, row.getKey());
+      if (key == 2) {
+        assertArrayEquals("x".getBytes(), (byte[]) row.getValue(1));
+        assertArrayEquals("x".getBytes(), (byte[]) row.getValue(3));
+        assertEquals(Double.POSITIVE_INFINITY, row.getValue(4));
+      } else if (key == 3) {
+        assertEquals(2.5, row.getValue(0));
+        assertNull(row.getValue(2));
+      } else if (key == 4) {
+        assertNull(row.getValue(0));
+        assertEquals(2.5, row.getValue(2));
+      }
+    }
+    assertFalse(history.hasNext());
+    history.close();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBSchema;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class LineProtocolBuilderTest {
+
+  private static String toLineProtocol(InfluxDBSchema schema, DataType type, Object value) {
+    LineProtocolBuilder builder = new LineProtocolBuilder();
+    builder.append(LineProtocolBuilder.prefix(schema), type, value, 42L);
+    return builder.flush();
+  }
+
+  private static Point point(InfluxDBSchema schema) {
+    return Point.measurement(schema.getMeasurement()).addTags(schema.getTags());
+  }
+
+  @Test
+  public void testSameAsPoint() {
+    Map<String, String> tags = new HashMap<>();
+    tags.put("b k", "v,=1");
+    tags.put("a", "x");
+    tags.put("empty", "");
+    InfluxDBSchema schema = new InfluxDBSchema("m e,a.f=1 ,", tags);
+
+    assertEquals(
+        point(schema)
+            .addField(schema.getField(), true)
+            .time(42L, WritePrecision.NS)
+            .toLineProtocol(),
+        toLineProtocol(schema, DataType.BOOLEAN, true));
+    assertEquals(
+        point(schema)
+            .addField(schema.getField(), (Number) 7)
+            .time(42L, WritePrecision.NS)
+            .toLineProtocol(),
+        toLineProtocol(schema, DataType.INTEGER, 7));
+    assertEquals(
+        point(schema)
+            .addField(schema.getField(), (Number) Long.MIN_VALUE)
+            .time(42L, WritePrecision.NS)
+            .toLineProtocol(),
+        toLineProtocol(schema, DataType.LONG, Long.MIN_VALUE));
+    assertEquals(
+        point(schema)
+            .addField(schema.getField(), (Number) 1.1f)
+            .time(42L, WritePrecision.NS)
+            .toLineProtocol(),
+        toLineProtocol(schema, DataType.FLOAT, 1.1f));
+    for (double d : new double[] {0.0, -2.5, 1e20, 1e-7, 123456.789, Double.MIN_VALUE}) {
+      assertEquals(
+          point(schema)
+              .addField(schema.getField(), (Number) d)
+              .time(42L, WritePrecision.NS)
+              .toLineProtocol(),
+          toLineProtocol(schema, DataType.DOUBLE, d));
+    }
+    assertEquals(
+        point(schema)
+            .addField(schema.getField(), "a\"b\\c d")
+            .time(42L, WritePrecision.NS)
+            .toLineProtocol(),
+        toLineProtocol(schema, DataType.BINARY, "a\"b\\c d".getBytes()));
+  }
+
+  @Test
+  public void testBatch() {
+    InfluxDBSchema schema = new InfluxDBSchema("m.f");
+    String prefix = LineProtocolBuilder.prefix(schema);
+    LineProtocolBuilder builder = new LineProtocolBuilder();
+    assertTrue(builder.isEmpty());
+    assertTrue(builder.append(prefix, DataType.LONG, 1L, 1L));
+    assertFalse(builder.append(prefix, DataType.DOUBLE, Double.NaN, 2L));
+    assertTrue(builder.append(prefix, DataType.LONG, 3L, 3L));
+    assertEquals(2, builder.size());
+    assertEquals("m f=1i 1\nm f=3i 3", builder.flush());
+    assertTrue(builder.isEmpty());
+  }
+}
@@ -19,32 +19,50 @@
  */
 package cn.edu.tsinghua.iginx.iotdb;
 
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
+import static cn.edu.tsinghua.iginx.iotdb.tools.DataTypeTransformer.strFromIoTDB;
 import static cn.edu.tsinghua.iginx.iotdb.tools.DataTypeTransformer.toIoTDB;
 import static cn.edu.tsinghua.iginx.thrift.DataType.BINARY;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.EmptyRowStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.AggregatePushDownUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.PartialAggregateUtils;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.ClearEmptyRowStreamWrapper;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.iotdb.exception.IoTDBException;
 import cn.edu.tsinghua.iginx.iotdb.exception.IoTDBTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.iotdb.query.entity.IoTDBQueryRowStream;
+import cn.edu.tsinghua.iginx.iotdb.tools.AggregateTransformer;
 import cn.edu.tsinghua.iginx.iotdb.tools.DataViewWrapper;
 import cn.edu.tsinghua.iginx.iotdb.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.iotdb.tools.TagKVUtils;
@@ -95,6 +113,10 @@ public class IoTDBStorage implements IStorage {
 
   private static final String DEFAULT_SESSION_POOL_SIZE = "100";
 
+  private static final String TIMESTAMP_PRECISION = "timestampPrecision";
+
+  private static final String DEFAULT_TIMESTAMP_PRECISION = "ms";
+
   private static final String PREFIX = "root.";
 
   private static final String QUERY_DATA = "SELECT %s FROM " + PREFIX + "%s";
@@ -103,6 +125,14 @@ public class IoTDBStorage implements IStorage {
 
   private static final String QUERY_WHERE = " WHERE %s";
 
+  private static final String KEY_RANGE = "time >= %d and time < %d";
+
+  private static final String MIN_TIME = "min_time";
+
+  private static final String MAX_TIME = "max_time";
+
+  private static final long MAX_DOWNSAMPLE_WINDOWS = 1000000L;
+
   private static final String DELETE_STORAGE_GROUP_CLAUSE = "DELETE STORAGE GROUP " + PREFIX + "%s";
 
   private static final String DELETE_TIMESERIES_CLAUSE = "DELETE TIMESERIES %s";
@@ -121,6 +151,9 @@ public class IoTDBStorage implements IStorage {
 
   private final StorageEngineMeta meta;
 
+  // IoTDB 的时间精度，降采样下推时作为 GROUP BY 窗口长度的单位
+  private final String timestampPrecision;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(IoTDBStorage.class);
 
   public IoTDBStorage(StorageEngineMeta meta) throws StorageInitializationException {
@@ -132,6 +165,8 @@ public class IoTDBStorage implements IStorage {
       throw new StorageInitializationException("cannot connect to " + meta);
     }
     sessionPool = createSessionPool();
+    timestampPrecision =
+        meta.getExtraParams().getOrDefault(TIMESTAMP_PRECISION, DEFAULT_TIMESTAMP_PRECISION);
   }
 
   @Override
@@ -331,6 +366,272 @@ public class IoTDBStorage implements IStorage {
     return executeProjectWithFilter(project, filter, storageUnit);
   }
 
+  @Override
+  public boolean isSupportProjectWithSetTransform(SetTransform setTransform, DataArea dataArea) {
+    return AggregatePushDownUtils.isSupportPushDown(
+        setTransform.getFunctionCallList(), AggregateTransformer.getSupportedFunctions());
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithSetTransform(
+      Project project, SetTransform setTransform, DataArea dataArea) {
+    return executeProjectWithAggregate(project, setTransform, dataArea);
+  }
+
+  @Override
+  public boolean isSupportProjectWithDownsample(Downsample downsample, DataArea dataArea) {
+    return downsample.getPrecision() == downsample.getSlideDistance()
+        && AggregatePushDownUtils.isSupportPushDown(
+            downsample.getFunctionCallList(), AggregateTransformer.getSupportedFunctions());
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithDownsample(
+      Project project, Downsample downsample, DataArea dataArea) {
+    return executeProjectWithAggregate(project, downsample, dataArea);
+  }
+
+  /**
+   * 将 SetTransform 或窗口长度与滑动距离相等的 Downsample 翻译为 IoTDB 的聚合查询。降采样先查询数据的 key 范围，再以 key - (key - bias)
+   * % precision 对齐后的起点执行 GROUP BY，没有数据的窗口被丢弃。
+   */
+  private TaskExecuteResult executeProjectWithAggregate(
+      Project project, UnaryOperator operator, DataArea dataArea) {
+    boolean isDownsample = operator.getType() == OperatorType.Downsample;
+    List<FunctionCall> functionCallList =
+        isDownsample
+            ? ((Downsample) operator).getFunctionCallList()
+            : ((SetTransform) operator).getFunctionCallList();
+    String storageUnit = dataArea.getStorageUnit();
+    KeyInterval keyInterval = dataArea.getKeyInterval();
+    try {
+      // 构造与 executeProject 结果相同的表头，用于匹配聚合函数的参数
+      List<String> seriesPaths = new ArrayList<>();
+      List<Field> fields = new ArrayList<>();
+      getProjectSeries(project, storageUnit, seriesPaths, fields);
+      Header header = new Header(Field.KEY, fields);
+
+      List<Field> targetFields = new ArrayList<>();
+      List<String> targetFunctions = new ArrayList<>();
+      List<String> targetPaths = new ArrayList<>();
+      for (FunctionCall functionCall : functionCallList) {
+        String identifier = functionCall.getFunction().getIdentifier();
+        Pair<List<Field>, List<Integer>> pair =
+            FunctionUtils.getFieldAndIndices(
+                header, functionCall.getParams(), (SetMappingFunction) functionCall.getFunction());
+        for (int i = 0; i < pair.k.size(); i++) {
+          int index = pair.v.get(i);
+          if (!AggregatePushDownUtils.isSupportPushDown(identifier, fields.get(index).getType())) {
+            return AggregatePushDownUtils.executeInMemory(
+                operator, executeProject(project, dataArea));
+          }
+          targetFields.add(pair.k.get(i));
+          targetFunctions.add(identifier);
+          targetPaths.add(seriesPaths.get(index));
+        }
+      }
+
+      String where =
+          String.format(
+              QUERY_WHERE,
+              String.format(KEY_RANGE, keyInterval.getStartKey(), keyInterval.getEndKey()));
+
+      if (!isDownsample) {
+        Object[] values = new Object[targetFields.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] =
+              PartialAggregateUtils.getEmptyResult(
+                  targetFunctions.get(i), targetFields.get(i).getType());
+        }
+        if (!targetFields.isEmpty()) {
+          String statement =
+              String.format(
+                      QUERY_DATA,
+                      AggregateTransformer.toSelectClause(targetFunctions, targetPaths),
+                      storageUnit)
+                  + where;
+          LOGGER.info("[Query] execute query: {}", statement);
+          SessionDataSetWrapper dataSet = sessionPool.executeQueryStatement(statement);
+          try {
+            if (dataSet.hasNext()) {
+              RowRecord record = dataSet.next();
+              for (int i = 0; i < values.length; i++) {
+                values[i] =
+                    AggregateTransformer.toAggregateValue(
+                        record.getFields().get(i),
+                        targetFunctions.get(i),
+                        targetFields.get(i).getType());
+              }
+            }
+          } finally {
+            dataSet.close();
+          }
+        }
+        Row row = new Row(new Header(targetFields), values);
+        return new TaskExecuteResult(new Table(row.getHeader(), Collections.singletonList(row)));
+      }
+
+      Downsample downsample = (Downsample) operator;
+      long precision = downsample.getPrecision();
+      List<Field> windowFields = new ArrayList<>();
+      windowFields.add(new Field(WINDOW_START_COL, DataType.LONG));
+      windowFields.add(new Field(WINDOW_END_COL, DataType.LONG));
+      windowFields.addAll(targetFields);
+      Header windowHeader = new Header(Field.KEY, windowFields);
+      if (seriesPaths.isEmpty()) {
+        return new TaskExecuteResult(new Table(windowHeader, new ArrayList<>()));
+      }
+
+      // 查询分片内数据的 key 范围，未指定区间时窗口的起点为第一个有数据的 key
+      List<String> boundFunctions = new ArrayList<>();
+      List<String> boundPaths = new ArrayList<>();
+      for (String path : seriesPaths) {
+        boundFunctions.add(MIN_TIME);
+        boundPaths.add(path);
+        boundFunctions.add(MAX_TIME);
+        boundPaths.add(path);
+      }
+      String boundStatement =
+          String.format(
+                  QUERY_DATA,
+                  AggregateTransformer.toSelectClause(boundFunctions, boundPaths),
+                  storageUnit)
+              + where;
+      LOGGER.info("[Query] execute query: {}", boundStatement);
+      Long minKey = null;
+      Long maxKey = null;
+      SessionDataSetWrapper boundDataSet = sessionPool.executeQueryStatement(boundStatement);
+      try {
+        if (boundDataSet.hasNext()) {
+          RowRecord record = boundDataSet.next();
+          for (int i = 0; i < record.getFields().size(); i += 2) {
+            Long min = AggregateTransformer.toLong(record.getFields().get(i));
+            Long max = AggregateTransformer.toLong(record.getFields().get(i + 1));
+            if (min != null) {
+              minKey = minKey == null ? min : Math.min(minKey, min);
+            }
+            if (max != null) {
+              maxKey = maxKey == null ? max : Math.max(maxKey, max);
+            }
+          }
+        }
+      } finally {
+        boundDataSet.close();
+      }
+      if (minKey == null || maxKey == null) {
+        return new TaskExecuteResult(new Table(windowHeader, new ArrayList<>()));
+      }
+
+      long bias =
+          downsample.notSetInterval() ? minKey : downsample.getKeyRange().getActualBeginKey();
+      long start;
+      long end;
+      try {
+        if (Math.subtractExact(minKey, bias) < 0) {
+          return AggregatePushDownUtils.executeInMemory(
+              operator, executeProject(project, dataArea));
+        }
+        start = minKey - (minKey - bias) % precision;
+        end = Math.addExact(maxKey, 1);
+        if (Math.subtractExact(end, start) / precision >= MAX_DOWNSAMPLE_WINDOWS) {
+          // 数据稀疏时 IoTDB 会返回大量空窗口，此时在内存中计算
+          return AggregatePushDownUtils.executeInMemory(
+              operator, executeProject(project, dataArea));
+        }
+      } catch (ArithmeticException e) {
+        return AggregatePushDownUtils.executeInMemory(operator, executeProject(project, dataArea));
+      }
+
+      // 在聚合目标后追加所有序列的 count，用于判断窗口中是否有数据
+      List<String> functions = new ArrayList<>(targetFunctions);
+      List<String> paths = new ArrayList<>(targetPaths);
+      for (String path : seriesPaths) {
+        functions.add(Count.COUNT);
+        paths.add(path);
+      }
+      String statement =
+          String.format(
+                  QUERY_DATA, AggregateTransformer.toSelectClause(functions, paths), storageUnit)
+              + where
+              + AggregateTransformer.toGroupByClause(start, end, precision, timestampPrecision);
+      LOGGER.info("[Query] execute query: {}", statement);
+      List<Row> rows = new ArrayList<>();
+      SessionDataSetWrapper dataSet = sessionPool.executeQueryStatement(statement);
+      try {
+        while (dataSet.hasNext()) {
+          RowRecord record = dataSet.next();
+          boolean hasData = false;
+          for (int i = targetFields.size(); i < record.getFields().size(); i++) {
+            Long count = AggregateTransformer.toLong(record.getFields().get(i));
+            if (count != null && count > 0) {
+              hasData = true;
+              break;
+            }
+          }
+          if (!hasData) {
+            continue;
+          }
+          long windowStart = record.getTimestamp();
+          Object[] values = new Object[windowFields.size()];
+          values[0] = windowStart;
+          values[1] = windowStart + precision - 1;
+          for (int i = 0; i < targetFields.size(); i++) {
+            values[i + 2] =
+                AggregateTransformer.toAggregateValue(
+                    record.getFields().get(i),
+                    targetFunctions.get(i),
+                    targetFields.get(i).getType());
+          }
+          rows.add(new Row(windowHeader, windowStart, values));
+        }
+      } finally {
+        dataSet.close();
+      }
+      return new TaskExecuteResult(new Table(windowHeader, rows));
+    } catch (IoTDBConnectionException | StatementExecutionException e) {
+      return new TaskExecuteResult(
+          new IoTDBTaskExecuteFailureException(
+              "execute project task with aggregate in iotdb12 failure", e));
+    }
+  }
+
+  /** 获取分片中与 project 匹配的序列，seriesPaths 为去掉 root.unit 前缀后的 IoTDB 路径，fields 与 executeProject 结果的列一致 */
+  private void getProjectSeries(
+      Project project, String storageUnit, List<String> seriesPaths, List<Field> fields)
+      throws IoTDBConnectionException, StatementExecutionException {
+    String unitPrefix = PREFIX + storageUnit + ".";
+    TagFilter tagFilter = project.getTagFilter();
+    SessionDataSetWrapper dataSet =
+        sessionPool.executeQueryStatement(String.format(SHOW_TIMESERIES_DUMMY, storageUnit));
+    try {
+      while (dataSet.hasNext()) {
+        RowRecord record = dataSet.next();
+        if (record == null || record.getFields().size() < 4) {
+          continue;
+        }
+        String path = record.getFields().get(0).getStringValue();
+        if (!path.startsWith(unitPrefix)) {
+          continue;
+        }
+        path = path.substring(unitPrefix.length());
+        Pair<String, Map<String, String>> pair = TagKVUtils.splitFullName(path);
+        if (tagFilter != null && !TagKVUtils.match(pair.v, tagFilter)) {
+          continue;
+        }
+        for (String pattern : project.getPatterns()) {
+          if (match(pair.k, pattern)) {
+            DataType dataType = strFromIoTDB(record.getFields().get(3).getStringValue());
+            seriesPaths.add(path);
+            fields.add(new Field(pair.k, dataType, pair.v));
+            break;
+          }
+        }
+      }
+    } finally {
+      dataSet.close();
+    }
+  }
+
   private boolean isContainWildcard(List<String> paths) {
     for (String path : paths) {
       if (path.contains("*")) {
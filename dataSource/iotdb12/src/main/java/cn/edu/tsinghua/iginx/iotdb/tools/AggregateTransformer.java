@@ -0,0 +1,106 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.iotdb.tools;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.AggregatePushDownUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.PartialAggregateUtils;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.Field;
+
+/** IGinX 系统聚合函数与 IoTDB 聚合查询之间的转换 */
+public class AggregateTransformer {
+
+  // IGinX 聚合函数 -> IoTDB 聚合函数
+  private static final Map<String, String> aggregateFunctionMap = new HashMap<>();
+
+  static {
+    aggregateFunctionMap.put(Count.COUNT, "count");
+    aggregateFunctionMap.put(Sum.SUM, "sum");
+    aggregateFunctionMap.put(Avg.AVG, "avg");
+    aggregateFunctionMap.put(Max.MAX, "max_value");
+    aggregateFunctionMap.put(Min.MIN, "min_value");
+    aggregateFunctionMap.put(FirstValue.FIRST_VALUE, "first_value");
+    aggregateFunctionMap.put(LastValue.LAST_VALUE, "last_value");
+  }
+
+  /** IoTDB 能够计算的 IGinX 聚合函数 */
+  public static Set<String> getSupportedFunctions() {
+    return aggregateFunctionMap.keySet();
+  }
+
+  /**
+   * 构造聚合查询的 select 子句
+   *
+   * @param functions IGinX 聚合函数
+   * @param paths 去掉 root.unit 前缀后的序列路径，与 functions 一一对应
+   */
+  public static String toSelectClause(List<String> functions, List<String> paths) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < functions.size(); i++) {
+      if (i != 0) {
+        builder.append(", ");
+      }
+      builder
+          .append(aggregateFunctionMap.getOrDefault(functions.get(i), functions.get(i)))
+          .append('(')
+          .append(paths.get(i))
+          .append(')');
+    }
+    return builder.toString();
+  }
+
+  /** 构造 [start, end) 区间上以 precision 为窗口的 group by 子句，unit 为 IoTDB 的时间精度 */
+  public static String toGroupByClause(long start, long end, long precision, String unit) {
+    return String.format(" GROUP BY ([%d, %d), %d%s)", start, end, precision, unit);
+  }
+
+  /** 将 IoTDB 返回的聚合结果转换为与内存中计算相同的类型，空输入时 IoTDB 返回 null，需转换为内存中计算的结果 */
+  public static Object toAggregateValue(Field field, String identifier, DataType dataType) {
+    if (field == null || field.getDataType() == null) {
+      return PartialAggregateUtils.getEmptyResult(identifier, dataType);
+    }
+    if (field.getDataType() == TSDataType.TEXT) {
+      return field.getBinaryV().getValues();
+    }
+    return AggregatePushDownUtils.toAggregateValue(
+        field.getObjectValue(field.getDataType()), identifier, dataType);
+  }
+
+  /** 读取 count 或 min_time、max_time 等返回 INT64 的聚合结果，空输入时返回 null */
+  public static Long toLong(Field field) {
+    if (field == null || field.getDataType() == null) {
+      return null;
+    }
+    Object value = field.getObjectValue(field.getDataType());
+    return value == null ? null : ((Number) value).longValue();
+  }
+}
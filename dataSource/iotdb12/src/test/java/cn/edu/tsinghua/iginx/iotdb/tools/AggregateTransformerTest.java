@@ -0,0 +1,78 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.iotdb.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.Field;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.junit.Test;
+
+public class AggregateTransformerTest {
+
+  @Test
+  public void testSupportedFunctions() {
+    assertTrue(AggregateTransformer.getSupportedFunctions().contains("max"));
+    assertFalse(AggregateTransformer.getSupportedFunctions().contains("first"));
+  }
+
+  @Test
+  public void testStatement() {
+    assertEquals(
+        "count(a.b), max_value(a.c), min_time(a.b)",
+        AggregateTransformer.toSelectClause(
+            Arrays.asList("count", "max", "min_time"), Arrays.asList("a.b", "a.c", "a.b")));
+    assertEquals(
+        " GROUP BY ([5, 100), 10ms)", AggregateTransformer.toGroupByClause(5, 100, 10, "ms"));
+  }
+
+  @Test
+  public void testToAggregateValue() {
+    Field sum = new Field(TSDataType.DOUBLE);
+    sum.setDoubleV(6.0);
+    assertEquals(6L, AggregateTransformer.toAggregateValue(sum, "sum", DataType.LONG));
+
+    Field max = new Field(TSDataType.INT32);
+    max.setIntV(3);
+    assertEquals(3, AggregateTransformer.toAggregateValue(max, "max", DataType.INTEGER));
+
+    Field first = new Field(TSDataType.TEXT);
+    first.setBinaryV(new Binary("v"));
+    assertArrayEquals(
+        "v".getBytes(),
+        (byte[]) AggregateTransformer.toAggregateValue(first, "first_value", DataType.BINARY));
+
+    // 空输入
+    Field empty = new Field(null);
+    assertEquals(0.0, AggregateTransformer.toAggregateValue(empty, "sum", DataType.DOUBLE));
+    assertEquals(Double.NaN, AggregateTransformer.toAggregateValue(null, "avg", DataType.DOUBLE));
+    assertEquals(null, AggregateTransformer.toLong(empty));
+
+    Field count = new Field(TSDataType.INT64);
+    count.setLongV(4L);
+    assertEquals(Long.valueOf(4L), AggregateTransformer.toLong(count));
+  }
+}
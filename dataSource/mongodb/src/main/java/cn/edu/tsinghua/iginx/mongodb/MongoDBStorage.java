@@ -74,6 +74,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.bson.BsonDocument;
@@ -97,11 +99,19 @@ public class MongoDBStorage implements IStorage {
   public static final String QUERY_SAMPLE_SIZE = "dummy.sample.size";
   public static final String SCHEMA_SAMPLE_SIZE_DEFAULT = "1000";
   public static final String QUERY_SAMPLE_SIZE_DEFAULT = "0";
+  public static final String QUERY_BATCH_SIZE = "query.batch.size";
+  public static final String QUERY_BATCH_SIZE_DEFAULT = "1000";
+  public static final String QUERY_THREAD_NUM = "query.thread.num";
+  public static final String QUERY_THREAD_NUM_DEFAULT = "8";
 
   private final MongoClient client;
 
   private final int schemaSampleSize;
   private final int querySampleSize;
+  private final int queryBatchSize;
+
+  // 预取各列游标的线程池
+  private final ExecutorService queryExecutor;
 
   public MongoDBStorage(StorageEngineMeta meta) throws StorageInitializationException {
     if (!meta.getStorageEngine().equals(StorageEngineType.mongodb)) {
@@ -120,6 +130,14 @@ public class MongoDBStorage implements IStorage {
         meta.getExtraParams().getOrDefault(QUERY_SAMPLE_SIZE, QUERY_SAMPLE_SIZE_DEFAULT);
     this.querySampleSize = Integer.parseInt(querySampleSize);
 
+    String queryBatchSize =
+        meta.getExtraParams().getOrDefault(QUERY_BATCH_SIZE, QUERY_BATCH_SIZE_DEFAULT);
+    this.queryBatchSize = Integer.parseInt(queryBatchSize);
+
+    String queryThreadNum =
+        meta.getExtraParams().getOrDefault(QUERY_THREAD_NUM, QUERY_THREAD_NUM_DEFAULT);
+    int queryThreads = Integer.parseInt(queryThreadNum);
+
     try {
       this.client = connect(connectionString);
     } catch (Exception e) {
@@ -127,6 +145,16 @@ public class MongoDBStorage implements IStorage {
       LOGGER.error(message, e);
       throw new StorageInitializationException(message);
     }
+
+    // 连接成功后再创建线程池，避免初始化失败时泄漏线程
+    this.queryExecutor =
+        Executors.newFixedThreadPool(
+            queryThreads,
+            runnable -> {
+              Thread thread = new Thread(runnable, "mongodb-query");
+              thread.setDaemon(true);
+              return thread;
+            });
   }
 
   private MongoClient connect(String connectionString) {
@@ -227,7 +255,7 @@ public class MongoDBStorage implements IStorage {
 
       RowStream result;
       if (filter == null) {
-        result = new ColumnQuery(db).query(fieldList, range);
+        result = new ColumnQuery(db, queryExecutor, queryBatchSize).query(fieldList, range);
       } else {
         Filter unionFilter = rangeUnionWithFilter(range, filter);
         result = new JoinQuery(db).query(fieldList, unionFilter);
@@ -452,6 +480,7 @@ public class MongoDBStorage implements IStorage {
 
   @Override
   public void release() {
+    queryExecutor.shutdownNow();
     client.close();
   }
 }
@@ -19,6 +19,7 @@
  */
 package cn.edu.tsinghua.iginx.mongodb.entity;
 
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -28,45 +29,107 @@ import cn.edu.tsinghua.iginx.mongodb.MongoDBStorage;
 import cn.edu.tsinghua.iginx.mongodb.tools.FilterUtils;
 import cn.edu.tsinghua.iginx.mongodb.tools.NameUtils;
 import cn.edu.tsinghua.iginx.mongodb.tools.TypeUtils;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Sorts;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import org.bson.BsonDocument;
 import org.bson.conversions.Bson;
 
+/**
+ * 每一列对应一个 collection，为每个 collection 打开按 _id 排序的游标，按 key 做多路归并，逐行输出。
+ *
+ * <p>每个游标在后台线程池上预取下一批文档，每列最多缓存两批数据。
+ */
 public class ColumnQuery {
   private final MongoDatabase database;
 
-  public ColumnQuery(MongoDatabase database) {
+  private final Executor executor;
+
+  private final int batchSize;
+
+  public ColumnQuery(MongoDatabase database, Executor executor, int batchSize) {
     this.database = database;
+    this.executor = executor;
+    this.batchSize = batchSize;
   }
 
   public RowStream query(List<Field> fieldList, KeyInterval range) {
     Bson columnFilter = FilterUtils.interval(range);
-    QueryRowStream.Builder builder = QueryRowStream.builder(fieldList.size());
+    List<ColumnSource> sources = new ArrayList<>(fieldList.size());
     for (Field field : fieldList) {
-      builder.add(field);
       String collName = NameUtils.getCollectionName(field);
       MongoCollection<BsonDocument> coll =
           this.database.getCollection(collName, BsonDocument.class);
-      for (BsonDocument document : coll.find(columnFilter)) {
-        long key = document.get("_id").asInt64().getValue();
-        Object value = TypeUtils.toObject(document.get(MongoDBStorage.VALUE_FIELD));
-        builder.put(key, value);
+      FindIterable<BsonDocument> find =
+          coll.find(columnFilter).sort(Sorts.ascending("_id")).batchSize(batchSize);
+      sources.add(new CollectionSource(find));
+    }
+    Header header = new Header(Field.KEY, new ArrayList<>(fieldList));
+    return new QueryRowStream(header, sources, executor, batchSize);
+  }
+
+  /** 一列的数据源，按 _id 升序返回文档，每个文档的 _id 为 int64，值保存在 {@link MongoDBStorage#VALUE_FIELD} 中 */
+  public interface ColumnSource {
+
+    /** 读取至多 limit 个文档，返回的文档数小于 limit 表示没有更多数据。在线程池上调用，同一数据源不会被并发调用 */
+    List<BsonDocument> fetch(int limit);
+
+    /** 在最后一次 fetch 结束后调用 */
+    void close();
+  }
+
+  private static class CollectionSource implements ColumnSource {
+
+    private final FindIterable<BsonDocument> find;
+
+    private MongoCursor<BsonDocument> cursor;
+
+    private CollectionSource(FindIterable<BsonDocument> find) {
+      this.find = find;
+    }
+
+    @Override
+    public List<BsonDocument> fetch(int limit) {
+      // 打开游标同样在线程池上进行，多列之间相互重叠
+      if (cursor == null) {
+        cursor = find.iterator();
+      }
+      List<BsonDocument> documents = new ArrayList<>(limit);
+      while (documents.size() < limit && cursor.hasNext()) {
+        documents.add(cursor.next());
+      }
+      return documents;
+    }
+
+    @Override
+    public void close() {
+      if (cursor != null) {
+        cursor.close();
       }
     }
-    return builder.build();
   }
 
   public static class QueryRowStream implements RowStream {
 
     private final Header header;
 
-    private final Iterator<Map.Entry<Long, Object[]>> rowItr;
+    private final List<ColumnCursor> cursors;
+
+    private PriorityQueue<ColumnCursor> heap;
 
-    public QueryRowStream(Header header, Iterator<Map.Entry<Long, Object[]>> rowItr) {
+    public QueryRowStream(
+        Header header, List<ColumnSource> sources, Executor executor, int batchSize) {
       this.header = header;
-      this.rowItr = rowItr;
+      this.cursors = new ArrayList<>(sources.size());
+      for (int i = 0; i < sources.size(); i++) {
+        cursors.add(new ColumnCursor(i, sources.get(i), executor, batchSize));
+      }
     }
 
     @Override
@@ -76,53 +139,110 @@ public class ColumnQuery {
 
     @Override
     public void close() {
-      while (this.rowItr.hasNext()) {
-        this.rowItr.next();
+      for (ColumnCursor cursor : cursors) {
+        cursor.close();
       }
     }
 
     @Override
-    public boolean hasNext() {
-      return this.rowItr.hasNext();
+    public boolean hasNext() throws PhysicalException {
+      if (heap == null) {
+        heap =
+            new PriorityQueue<>(
+                Math.max(1, cursors.size()),
+                Comparator.comparingLong((ColumnCursor c) -> c.key).thenComparingInt(c -> c.index));
+        for (ColumnCursor cursor : cursors) {
+          if (cursor.next()) {
+            heap.add(cursor);
+          }
+        }
+      }
+      return !heap.isEmpty();
     }
 
     @Override
-    public Row next() {
-      Map.Entry<Long, Object[]> rowData = this.rowItr.next();
-      return new Row(this.header, rowData.getKey(), rowData.getValue());
+    public Row next() throws PhysicalException {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      long key = heap.peek().key;
+      Object[] values = new Object[header.getFieldSize()];
+      while (!heap.isEmpty() && heap.peek().key == key) {
+        ColumnCursor cursor = heap.poll();
+        values[cursor.index] = cursor.value;
+        if (cursor.next()) {
+          heap.add(cursor);
+        }
+      }
+      return new Row(this.header, key, values);
     }
+  }
 
-    public static Builder builder(int columnNum) {
-      return new Builder(columnNum);
-    }
+  private static class ColumnCursor {
 
-    public static class Builder {
+    private final int index;
 
-      private final int columnNum;
+    private final ColumnSource source;
 
-      private final List<Field> fieldList;
+    private final Executor executor;
 
-      private final SortedMap<Long, Object[]> rows;
+    private final int batchSize;
 
-      private Builder(int columnNum) {
-        this.columnNum = columnNum;
-        this.fieldList = new ArrayList<>(columnNum);
-        this.rows = new TreeMap<>();
-      }
+    private CompletableFuture<List<BsonDocument>> prefetch;
 
-      public void add(Field field) {
-        this.fieldList.add(field);
-      }
+    private List<BsonDocument> batch = Collections.emptyList();
+
+    private int offset = 0;
+
+    private boolean exhausted = false;
+
+    private long key;
+
+    private Object value;
 
-      public void put(Long key, Object value) {
-        int idx = fieldList.size() - 1;
-        Object[] row = rows.computeIfAbsent(key, k -> new Object[this.columnNum]);
-        row[idx] = value;
+    private ColumnCursor(int index, ColumnSource source, Executor executor, int batchSize) {
+      this.index = index;
+      this.source = source;
+      this.executor = executor;
+      this.batchSize = batchSize;
+      this.prefetch = fetchAsync();
+    }
+
+    private CompletableFuture<List<BsonDocument>> fetchAsync() {
+      return CompletableFuture.supplyAsync(() -> source.fetch(batchSize), executor);
+    }
+
+    /** 移动到下一个文档，没有更多数据时返回 false */
+    private boolean next() throws PhysicalException {
+      while (offset >= batch.size()) {
+        if (exhausted) {
+          return false;
+        }
+        try {
+          batch = prefetch.join();
+        } catch (CompletionException e) {
+          throw new PhysicalException("failed to fetch column", e.getCause());
+        }
+        offset = 0;
+        if (batch.size() < batchSize) {
+          exhausted = true;
+        } else {
+          prefetch = fetchAsync();
+        }
       }
+      BsonDocument document = batch.get(offset++);
+      key = document.get("_id").asInt64().getValue();
+      value = TypeUtils.toObject(document.get(MongoDBStorage.VALUE_FIELD));
+      return true;
+    }
 
-      public QueryRowStream build() {
-        Header header = new Header(Field.KEY, new ArrayList<>(this.fieldList));
-        return new QueryRowStream(header, rows.entrySet().iterator());
+    private void close() {
+      exhausted = true;
+      batch = Collections.emptyList();
+      if (prefetch != null) {
+        // 等待正在进行的预取结束后再关闭数据源，失败的预取同样会关闭
+        prefetch.whenComplete((documents, throwable) -> source.close());
+        prefetch = null;
       }
     }
   }
@@ -0,0 +1,225 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.mongodb.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.mongodb.MongoDBStorage;
+import cn.edu.tsinghua.iginx.mongodb.entity.ColumnQuery.ColumnSource;
+import cn.edu.tsinghua.iginx.mongodb.entity.ColumnQuery.QueryRowStream;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.junit.After;
+import org.junit.Test;
+
+public class ColumnQueryTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /** 内存中按 key 排序的一列，key 为 keys[i] 的文档的值为 keys[i] * 10 + column */
+  private static class SortedSource implements ColumnSource {
+
+    private final List<BsonDocument> documents = new ArrayList<>();
+
+    private final AtomicInteger fetchCount = new AtomicInteger();
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    private int offset = 0;
+
+    private int failAt = -1;
+
+    private SortedSource(int column, long... keys) {
+      for (long key : keys) {
+        BsonDocument document = new BsonDocument("_id", new BsonInt64(key));
+        document.put(MongoDBStorage.VALUE_FIELD, new BsonInt64(key * 10 + column));
+        documents.add(document);
+      }
+    }
+
+    @Override
+    public List<BsonDocument> fetch(int limit) {
+      if (fetchCount.getAndIncrement() == failAt) {
+        throw new IllegalStateException("fetch failed");
+      }
+      int end = Math.min(offset + limit, documents.size());
+      List<BsonDocument> batch = new ArrayList<>(documents.subList(offset, end));
+      offset = end;
+      return batch;
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+
+    private boolean isClosed() {
+      return closed.getCount() == 0;
+    }
+
+    /** 正在进行的预取结束后才会关闭，因此需要等待 */
+    private boolean awaitClosed() throws InterruptedException {
+      return closed.await(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private static Header header(int columnCount) {
+    List<Field> fields = new ArrayList<>();
+    for (int i = 0; i < columnCount; i++) {
+      fields.add(new Field("us.d1.s" + i, DataType.LONG));
+    }
+    return new Header(Field.KEY, fields);
+  }
+
+  private QueryRowStream stream(int batchSize, ColumnSource... sources) {
+    return new QueryRowStream(header(sources.length), Arrays.asList(sources), executor, batchSize);
+  }
+
+  private static List<Row> readAll(QueryRowStream stream) throws PhysicalException {
+    List<Row> rows = new ArrayList<>();
+    while (stream.hasNext()) {
+      rows.add(stream.next());
+    }
+    stream.close();
+    return rows;
+  }
+
+  private static void assertRow(Row row, long key, Object... values) {
+    assertEquals(key, row.getKey());
+    assertArrayEquals(values, row.getValues());
+  }
+
+  @Test
+  public void testMergeDuplicateKeys() throws PhysicalException {
+    SortedSource s0 = new SortedSource(0, 1, 2, 4, 7);
+    SortedSource s1 = new SortedSource(1, 2, 3, 4);
+    SortedSource s2 = new SortedSource(2, 4);
+    List<Row> rows = readAll(stream(2, s0, s1, s2));
+
+    assertEquals(5, rows.size());
+    assertRow(rows.get(0), 1, 10L, null, null);
+    assertRow(rows.get(1), 2, 20L, 21L, null);
+    assertRow(rows.get(2), 3, null, 31L, null);
+    assertRow(rows.get(3), 4, 40L, 41L, 42L);
+    assertRow(rows.get(4), 7, 70L, null, null);
+    assertTrue(s0.isClosed() && s1.isClosed() && s2.isClosed());
+  }
+
+  @Test
+  public void testEmptyColumns() throws PhysicalException {
+    SortedSource empty1 = new SortedSource(0);
+    SortedSource empty2 = new SortedSource(1);
+    assertTrue(readAll(stream(3, empty1, empty2)).isEmpty());
+    assertTrue(empty1.isClosed() && empty2.isClosed());
+
+    SortedSource empty = new SortedSource(0);
+    SortedSource s1 = new SortedSource(1, 5, 6);
+    List<Row> rows = readAll(stream(3, empty, s1));
+    assertEquals(2, rows.size());
+    assertRow(rows.get(0), 5, null, 51L);
+    assertRow(rows.get(1), 6, null, 61L);
+    assertEquals(1, empty.fetchCount.get());
+
+    assertTrue(readAll(stream(3)).isEmpty());
+  }
+
+  @Test
+  public void testBatchSizeDividesRowCount() throws PhysicalException {
+    SortedSource source = new SortedSource(0, 1, 2, 3, 4, 5, 6);
+    List<Row> rows = readAll(stream(3, source));
+    assertEquals(6, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertRow(rows.get(i), i + 1, (i + 1) * 10L);
+    }
+    // 两个满批之后还需一次空的读取才能确定没有更多数据
+    assertEquals(3, source.fetchCount.get());
+  }
+
+  @Test
+  public void testFetchFailure() throws PhysicalException, InterruptedException {
+    SortedSource source = new SortedSource(0, 1, 2, 3, 4, 5);
+    source.failAt = 1;
+    SortedSource other = new SortedSource(1, 1, 2, 3, 4, 5);
+    QueryRowStream stream = stream(2, source, other);
+    List<Row> rows = new ArrayList<>();
+    try {
+      while (stream.hasNext()) {
+        rows.add(stream.next());
+      }
+      fail("expect PhysicalException");
+    } catch (PhysicalException e) {
+      assertEquals("fetch failed", e.getCause().getMessage());
+    }
+    // 第一批的两行可以正常输出，读到第二批时失败
+    assertTrue(rows.size() <= 2);
+    stream.close();
+    assertTrue(source.awaitClosed() && other.awaitClosed());
+  }
+
+  @Test
+  public void testCloseWhileFetchPending() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    SortedSource blocking =
+        new SortedSource(0, 1, 2) {
+          @Override
+          public List<BsonDocument> fetch(int limit) {
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return super.fetch(limit);
+          }
+        };
+    QueryRowStream stream = stream(2, blocking);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    stream.close();
+    // 数据源在预取结束之前不能被关闭
+    assertFalse(blocking.isClosed());
+    release.countDown();
+    assertTrue(blocking.awaitClosed());
+    assertEquals(1, blocking.fetchCount.get());
+  }
+}
@@ -20,6 +20,8 @@
 package cn.edu.tsinghua.iginx.relational;
 
 import static cn.edu.tsinghua.iginx.constant.GlobalConstant.SEPARATOR;
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
 import static cn.edu.tsinghua.iginx.relational.tools.Constants.*;
 import static cn.edu.tsinghua.iginx.relational.tools.TagKVUtils.splitFullName;
 import static cn.edu.tsinghua.iginx.relational.tools.TagKVUtils.toFullName;
@@ -27,6 +29,9 @@ import static cn.edu.tsinghua.iginx.relational.tools.TagKVUtils.toFullName;
 import cn.edu.tsinghua.iginx.engine.logical.utils.LogicalFilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.AggregatePushDownUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.PartialAggregateUtils;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
@@ -34,17 +39,27 @@ import cn.edu.tsinghua.iginx.engine.physical.storage.utils.TagKVUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.ClearEmptyRowStreamWrapper;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
 import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
 import cn.edu.tsinghua.iginx.metadata.entity.StorageEngineMeta;
@@ -53,9 +68,11 @@ import cn.edu.tsinghua.iginx.relational.exception.RelationalTaskExecuteFailureEx
 import cn.edu.tsinghua.iginx.relational.meta.AbstractRelationalMeta;
 import cn.edu.tsinghua.iginx.relational.meta.JDBCMeta;
 import cn.edu.tsinghua.iginx.relational.query.entity.RelationQueryRowStream;
+import cn.edu.tsinghua.iginx.relational.tools.BatchInserter;
 import cn.edu.tsinghua.iginx.relational.tools.ColumnField;
 import cn.edu.tsinghua.iginx.relational.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.relational.tools.RelationSchema;
+import cn.edu.tsinghua.iginx.relational.tools.TableBatch;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import cn.edu.tsinghua.iginx.utils.StringUtils;
@@ -64,7 +81,6 @@ import com.zaxxer.hikari.HikariDataSource;
 import com.zaxxer.hikari.pool.HikariPool;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -515,6 +531,290 @@ public class RelationalStorage implements IStorage {
     return executeProjectWithFilter(project, select.getFilter(), dataArea);
   }
 
+  @Override
+  public boolean isSupportProjectWithSetTransform(SetTransform setTransform, DataArea dataArea) {
+    return AggregatePushDownUtils.isSupportPushDown(
+        setTransform.getFunctionCallList(), aggregateFunctionMap.keySet());
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithSetTransform(
+      Project project, SetTransform setTransform, DataArea dataArea) {
+    return executeProjectWithAggregate(project, setTransform, dataArea);
+  }
+
+  @Override
+  public boolean isSupportProjectWithDownsample(Downsample downsample, DataArea dataArea) {
+    return downsample.getPrecision() == downsample.getSlideDistance()
+        && AggregatePushDownUtils.isSupportPushDown(
+            downsample.getFunctionCallList(), aggregateFunctionMap.keySet());
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithDownsample(
+      Project project, Downsample downsample, DataArea dataArea) {
+    return executeProjectWithAggregate(project, downsample, dataArea);
+  }
+
+  /**
+   * 将 SetTransform 或窗口长度与滑动距离相等的 Downsample 翻译为带聚合函数的 SQL，降采样的窗口通过 key - (key - bias) % precision
+   * 分组计算。每张表单独查询，结果按窗口合并，表中没有数据的窗口使用空输入时的聚合结果。
+   */
+  private TaskExecuteResult executeProjectWithAggregate(
+      Project project, UnaryOperator operator, DataArea dataArea) {
+    boolean isDownsample = operator.getType() == OperatorType.Downsample;
+    List<FunctionCall> functionCallList =
+        isDownsample
+            ? ((Downsample) operator).getFunctionCallList()
+            : ((SetTransform) operator).getFunctionCallList();
+    String databaseName = dataArea.getStorageUnit();
+    KeyInterval keyInterval = dataArea.getKeyInterval();
+    if (project.getTagFilter() != null) {
+      return AggregatePushDownUtils.executeInMemory(operator, executeProject(project, dataArea));
+    }
+
+    try {
+      Map<String, String> tableNameToColumnNames =
+          splitAndMergeQueryPatterns(databaseName, project.getPatterns());
+
+      // 构造与 executeProject 结果相同的表头，用于匹配聚合函数的参数
+      List<Field> fields = new ArrayList<>();
+      List<String> fieldTables = new ArrayList<>();
+      List<String> fieldColumns = new ArrayList<>();
+      for (Map.Entry<String, String> entry : tableNameToColumnNames.entrySet()) {
+        String tableName = entry.getKey();
+        Map<String, String> columnTypes = new HashMap<>();
+        String tablePattern =
+            relationalMeta.jdbcSupportSpecialChar() ? reformatForJDBC(tableName) : "%";
+        for (ColumnField columnField : getColumns(databaseName, tablePattern, "%")) {
+          if (columnField.tableName.equals(tableName)) {
+            columnTypes.put(columnField.columnName, columnField.columnType);
+          }
+        }
+        for (String columnName : entry.getValue().split(", ")) {
+          Pair<String, Map<String, String>> namesAndTags = splitFullName(columnName);
+          fields.add(
+              new Field(
+                  tableName + SEPARATOR + namesAndTags.k,
+                  relationalMeta
+                      .getDataTypeTransformer()
+                      .fromEngineType(columnTypes.get(columnName)),
+                  namesAndTags.v));
+          fieldTables.add(tableName);
+          fieldColumns.add(columnName);
+        }
+      }
+      Header header = new Header(Field.KEY, fields);
+
+      List<Field> targetFields = new ArrayList<>();
+      List<String> targetFunctions = new ArrayList<>();
+      List<Integer> targetIndices = new ArrayList<>();
+      for (FunctionCall functionCall : functionCallList) {
+        String identifier = functionCall.getFunction().getIdentifier();
+        Pair<List<Field>, List<Integer>> pair =
+            FunctionUtils.getFieldAndIndices(
+                header, functionCall.getParams(), (SetMappingFunction) functionCall.getFunction());
+        for (int i = 0; i < pair.k.size(); i++) {
+          int index = pair.v.get(i);
+          if (!AggregatePushDownUtils.isSupportPushDown(identifier, fields.get(index).getType())) {
+            return AggregatePushDownUtils.executeInMemory(
+                operator, executeProject(project, dataArea));
+          }
+          targetFields.add(pair.k.get(i));
+          targetFunctions.add(identifier);
+          targetIndices.add(index);
+        }
+      }
+
+      String quotKeyName = getQuotName(KEY_NAME);
+      String keyFilter =
+          String.format(
+              "%s >= %d AND %s < %d",
+              quotKeyName, keyInterval.getStartKey(), quotKeyName, keyInterval.getEndKey());
+
+      Connection conn = getConnection(databaseName);
+      if (conn == null) {
+        return new TaskExecuteResult(
+            new RelationalTaskExecuteFailureException(
+                String.format("cannot connect to database %s", databaseName)));
+      }
+      try {
+        if (!isDownsample) {
+          Object[] values = new Object[targetFields.size()];
+          for (int i = 0; i < values.length; i++) {
+            values[i] =
+                PartialAggregateUtils.getEmptyResult(
+                    targetFunctions.get(i), targetFields.get(i).getType());
+          }
+          for (String tableName : tableNameToColumnNames.keySet()) {
+            List<Integer> targets = getTableTargets(tableName, fieldTables, targetIndices);
+            if (targets.isEmpty()) {
+              continue;
+            }
+            String statement =
+                String.format(
+                    "SELECT %s FROM %s WHERE %s;",
+                    buildAggregateColumns(targets, targetFunctions, targetIndices, fieldColumns),
+                    getQuotName(tableName),
+                    keyFilter);
+            LOGGER.info("[Query] execute query: {}", statement);
+            try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(statement)) {
+              if (rs.next()) {
+                for (int i = 0; i < targets.size(); i++) {
+                  int target = targets.get(i);
+                  values[target] =
+                      AggregatePushDownUtils.toAggregateValue(
+                          rs.getObject(i + 1),
+                          targetFunctions.get(target),
+                          targetFields.get(target).getType());
+                }
+              }
+            }
+          }
+          Row row = new Row(new Header(targetFields), values);
+          return new TaskExecuteResult(new Table(row.getHeader(), Collections.singletonList(row)));
+        }
+
+        Downsample downsample = (Downsample) operator;
+        long precision = downsample.getPrecision();
+        Map<String, String> notNullFilters = new HashMap<>();
+        for (Map.Entry<String, String> entry : tableNameToColumnNames.entrySet()) {
+          List<String> conditions = new ArrayList<>();
+          for (String columnName : entry.getValue().split(", ")) {
+            conditions.add(getQuotName(columnName) + " IS NOT NULL");
+          }
+          notNullFilters.put(
+              entry.getKey(), keyFilter + " AND (" + String.join(" OR ", conditions) + ")");
+        }
+
+        // 未指定区间时窗口的起点为第一个有数据的 key
+        Long bias = null;
+        if (downsample.notSetInterval()) {
+          for (Map.Entry<String, String> entry : notNullFilters.entrySet()) {
+            String statement =
+                String.format(
+                    "SELECT MIN(%s) FROM %s WHERE %s;",
+                    quotKeyName, getQuotName(entry.getKey()), entry.getValue());
+            LOGGER.info("[Query] execute query: {}", statement);
+            try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(statement)) {
+              if (rs.next() && rs.getObject(1) != null) {
+                long minKey = ((Number) rs.getObject(1)).longValue();
+                bias = bias == null ? minKey : Math.min(bias, minKey);
+              }
+            }
+          }
+        } else {
+          bias = downsample.getKeyRange().getActualBeginKey();
+        }
+
+        List<Field> windowFields = new ArrayList<>();
+        windowFields.add(new Field(WINDOW_START_COL, DataType.LONG));
+        windowFields.add(new Field(WINDOW_END_COL, DataType.LONG));
+        windowFields.addAll(targetFields);
+        Header windowHeader = new Header(Field.KEY, windowFields);
+        if (bias == null) {
+          return new TaskExecuteResult(new Table(windowHeader, new ArrayList<>()));
+        }
+        try {
+          Math.subtractExact(keyInterval.getStartKey(), bias);
+          Math.subtractExact(keyInterval.getEndKey() - 1, bias);
+        } catch (ArithmeticException e) {
+          return AggregatePushDownUtils.executeInMemory(
+              operator, executeProject(project, dataArea));
+        }
+
+        String windowStart =
+            String.format("(%s - (%s - %d) %% %d)", quotKeyName, quotKeyName, bias, precision);
+        Map<Long, Object[]> windows = new TreeMap<>();
+        for (Map.Entry<String, String> entry : notNullFilters.entrySet()) {
+          List<Integer> targets = getTableTargets(entry.getKey(), fieldTables, targetIndices);
+          StringBuilder columns = new StringBuilder(windowStart);
+          if (!targets.isEmpty()) {
+            columns
+                .append(", ")
+                .append(
+                    buildAggregateColumns(targets, targetFunctions, targetIndices, fieldColumns));
+          }
+          String statement =
+              String.format(
+                  "SELECT %s FROM %s WHERE %s GROUP BY %s ORDER BY %s;",
+                  columns, getQuotName(entry.getKey()), entry.getValue(), windowStart, windowStart);
+          LOGGER.info("[Query] execute query: {}", statement);
+          try (Statement stmt = conn.createStatement();
+              ResultSet rs = stmt.executeQuery(statement)) {
+            while (rs.next()) {
+              long start = ((Number) rs.getObject(1)).longValue();
+              Object[] values =
+                  windows.computeIfAbsent(
+                      start,
+                      k -> {
+                        Object[] window = new Object[windowFields.size()];
+                        window[0] = k;
+                        window[1] = k + precision - 1;
+                        for (int i = 0; i < targetFields.size(); i++) {
+                          window[i + 2] =
+                              PartialAggregateUtils.getEmptyResult(
+                                  targetFunctions.get(i), targetFields.get(i).getType());
+                        }
+                        return window;
+                      });
+              for (int i = 0; i < targets.size(); i++) {
+                int target = targets.get(i);
+                values[target + 2] =
+                    AggregatePushDownUtils.toAggregateValue(
+                        rs.getObject(i + 2),
+                        targetFunctions.get(target),
+                        targetFields.get(target).getType());
+              }
+            }
+          }
+        }
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<Long, Object[]> entry : windows.entrySet()) {
+          rows.add(new Row(windowHeader, entry.getKey(), entry.getValue()));
+        }
+        return new TaskExecuteResult(new Table(windowHeader, rows));
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOGGER.error("unexpected error: ", e);
+      return new TaskExecuteResult(
+          new RelationalTaskExecuteFailureException(
+              String.format("execute project task with aggregate in %s failure", engineName), e));
+    }
+  }
+
+  /** 返回聚合目标中属于给定表的下标 */
+  private List<Integer> getTableTargets(
+      String tableName, List<String> fieldTables, List<Integer> targetIndices) {
+    List<Integer> targets = new ArrayList<>();
+    for (int i = 0; i < targetIndices.size(); i++) {
+      if (fieldTables.get(targetIndices.get(i)).equals(tableName)) {
+        targets.add(i);
+      }
+    }
+    return targets;
+  }
+
+  private String buildAggregateColumns(
+      List<Integer> targets,
+      List<String> targetFunctions,
+      List<Integer> targetIndices,
+      List<String> fieldColumns) {
+    List<String> columns = new ArrayList<>();
+    for (int target : targets) {
+      columns.add(
+          String.format(
+              "%s(%s)",
+              aggregateFunctionMap.get(targetFunctions.get(target)),
+              getQuotName(fieldColumns.get(targetIndices.get(target)))));
+    }
+    return String.join(", ", columns);
+  }
+
   private TaskExecuteResult executeProjectWithFilter(
       Project project, Filter filter, DataArea dataArea) {
     try {
@@ -1731,101 +2031,38 @@ public class RelationalStorage implements IStorage {
   private Exception insertNonAlignedRowRecords(
       Connection conn, String databaseName, RowDataView data) {
     int batchSize = Math.min(data.getKeySize(), BATCH_SIZE);
-    try {
-      Statement stmt = conn.createStatement();
-
+    try (BatchInserter inserter = new BatchInserter(relationalMeta, conn)) {
       // 创建表
       createOrAlterTables(
           conn, databaseName, data.getPaths(), data.getTagsList(), data.getDataTypeList());
 
+      // 每条路径对应的表与列
+      Map<String, TableBatch> tableBatches = new LinkedHashMap<>();
+      TableBatch[] pathTables = new TableBatch[data.getPathNum()];
+      int[] pathColumns = new int[data.getPathNum()];
+      registerColumns(data, tableBatches, pathTables, pathColumns);
+
       // 插入数据
-      Map<String, Pair<String, List<String>>> tableToColumnEntries =
-          new HashMap<>(); // <表名, <列名，值列表>>
       int cnt = 0;
-      boolean firstRound = true;
       while (cnt < data.getKeySize()) {
         int size = Math.min(data.getKeySize() - cnt, batchSize);
-        Map<String, boolean[]> tableHasData = new HashMap<>(); // 记录每一张表的每一行是否有数据点
+        for (TableBatch tableBatch : tableBatches.values()) {
+          tableBatch.reset(size);
+        }
         for (int i = cnt; i < cnt + size; i++) {
           BitmapView bitmapView = data.getBitmapView(i);
+          long key = data.getKey(i);
           int index = 0;
           for (int j = 0; j < data.getPathNum(); j++) {
-            String path = data.getPath(j);
-            DataType dataType = data.getDataType(j);
-            RelationSchema schema = new RelationSchema(path, relationalMeta.getQuote());
-            String tableName = schema.getTableName();
-            String columnName = schema.getColumnName();
-            Map<String, String> tags = data.getTags(j);
-
-            StringBuilder columnKeys = new StringBuilder();
-            List<String> columnValues = new ArrayList<>();
-            if (tableToColumnEntries.containsKey(tableName)) {
-              columnKeys = new StringBuilder(tableToColumnEntries.get(tableName).k);
-              columnValues = tableToColumnEntries.get(tableName).v;
-            }
-
-            String value = "null";
             if (bitmapView.get(j)) {
-              if (dataType == DataType.BINARY) {
-                value =
-                    "'"
-                        + new String((byte[]) data.getValue(i, index), StandardCharsets.UTF_8)
-                        + "'";
-              } else {
-                value = data.getValue(i, index).toString();
-              }
+              pathTables[j].put(i - cnt, key, pathColumns[j], data.getValue(i, index));
               index++;
-              if (tableHasData.containsKey(tableName)) {
-                tableHasData.get(tableName)[i - cnt] = true;
-              } else {
-                boolean[] hasData = new boolean[size];
-                hasData[i - cnt] = true;
-                tableHasData.put(tableName, hasData);
-              }
-            }
-
-            if (firstRound) {
-              columnKeys.append(toFullName(columnName, tags)).append(", ");
-            }
-
-            if (i - cnt < columnValues.size()) {
-              columnValues.set(i - cnt, columnValues.get(i - cnt) + value + ", ");
-            } else {
-              columnValues.add(data.getKey(i) + ", " + value + ", "); // 添加 key 列
-            }
-
-            tableToColumnEntries.put(tableName, new Pair<>(columnKeys.toString(), columnValues));
-          }
-
-          firstRound = false;
-        }
-
-        for (Map.Entry<String, boolean[]> entry : tableHasData.entrySet()) {
-          String tableName = entry.getKey();
-          boolean[] hasData = entry.getValue();
-          String columnKeys = tableToColumnEntries.get(tableName).k;
-          List<String> columnValues = tableToColumnEntries.get(tableName).v;
-          boolean needToInsert = false;
-          for (int i = hasData.length - 1; i >= 0; i--) {
-            if (!hasData[i]) {
-              columnValues.remove(i);
-            } else {
-              needToInsert = true;
             }
           }
-          if (needToInsert) {
-            tableToColumnEntries.put(tableName, new Pair<>(columnKeys, columnValues));
-          }
         }
-
-        executeBatchInsert(stmt, tableToColumnEntries);
-        for (Pair<String, List<String>> columnEntries : tableToColumnEntries.values()) {
-          columnEntries.v.clear();
-        }
-
+        inserter.insert(tableBatches.values());
         cnt += size;
       }
-      stmt.close();
     } catch (SQLException e) {
       LOGGER.error("unexpected error: ", e);
       return e;
@@ -1837,106 +2074,39 @@ public class RelationalStorage implements IStorage {
   private Exception insertNonAlignedColumnRecords(
       Connection conn, String databaseName, ColumnDataView data) {
     int batchSize = Math.min(data.getKeySize(), BATCH_SIZE);
-    try {
-      Statement stmt = conn.createStatement();
-
+    try (BatchInserter inserter = new BatchInserter(relationalMeta, conn)) {
       // 创建表
       createOrAlterTables(
           conn, databaseName, data.getPaths(), data.getTagsList(), data.getDataTypeList());
 
+      // 每条路径对应的表与列
+      Map<String, TableBatch> tableBatches = new LinkedHashMap<>();
+      TableBatch[] pathTables = new TableBatch[data.getPathNum()];
+      int[] pathColumns = new int[data.getPathNum()];
+      registerColumns(data, tableBatches, pathTables, pathColumns);
+
       // 插入数据
-      Map<String, Pair<String, List<String>>> tableToColumnEntries =
-          new HashMap<>(); // <表名, <列名，值列表>>
-      Map<Integer, Integer> pathIndexToBitmapIndex = new HashMap<>();
+      int[] pathIndexToBitmapIndex = new int[data.getPathNum()];
       int cnt = 0;
-      boolean firstRound = true;
       while (cnt < data.getKeySize()) {
         int size = Math.min(data.getKeySize() - cnt, batchSize);
-        Map<String, boolean[]> tableHasData = new HashMap<>(); // 记录每一张表的每一行是否有数据点
+        for (TableBatch tableBatch : tableBatches.values()) {
+          tableBatch.reset(size);
+        }
         for (int i = 0; i < data.getPathNum(); i++) {
-          String path = data.getPath(i);
-          DataType dataType = data.getDataType(i);
-          RelationSchema schema = new RelationSchema(path, relationalMeta.getQuote());
-          String tableName = schema.getTableName();
-          String columnName = schema.getColumnName();
-          Map<String, String> tags = data.getTags(i);
           BitmapView bitmapView = data.getBitmapView(i);
-
-          StringBuilder columnKeys = new StringBuilder();
-          List<String> columnValues = new ArrayList<>();
-          if (tableToColumnEntries.containsKey(tableName)) {
-            columnKeys = new StringBuilder(tableToColumnEntries.get(tableName).k);
-            columnValues = tableToColumnEntries.get(tableName).v;
-          }
-
-          int index = 0;
-          if (pathIndexToBitmapIndex.containsKey(i)) {
-            index = pathIndexToBitmapIndex.get(i);
-          }
+          int index = pathIndexToBitmapIndex[i];
           for (int j = cnt; j < cnt + size; j++) {
-            String value = "null";
             if (bitmapView.get(j)) {
-              if (dataType == DataType.BINARY) {
-                value =
-                    "'"
-                        + new String((byte[]) data.getValue(i, index), StandardCharsets.UTF_8)
-                        + "'";
-              } else {
-                value = data.getValue(i, index).toString();
-              }
+              pathTables[i].put(j - cnt, data.getKey(j), pathColumns[i], data.getValue(i, index));
               index++;
-              if (tableHasData.containsKey(tableName)) {
-                tableHasData.get(tableName)[j - cnt] = true;
-              } else {
-                boolean[] hasData = new boolean[size];
-                hasData[j - cnt] = true;
-                tableHasData.put(tableName, hasData);
-              }
-            }
-
-            if (j - cnt < columnValues.size()) {
-              columnValues.set(j - cnt, columnValues.get(j - cnt) + value + ", ");
-            } else {
-              columnValues.add(data.getKey(j) + ", " + value + ", "); // 添加 key 列
-            }
-          }
-          pathIndexToBitmapIndex.put(i, index);
-
-          if (firstRound) {
-            columnKeys.append(toFullName(columnName, tags)).append(", ");
-          }
-
-          tableToColumnEntries.put(tableName, new Pair<>(columnKeys.toString(), columnValues));
-        }
-
-        for (Map.Entry<String, boolean[]> entry : tableHasData.entrySet()) {
-          String tableName = entry.getKey();
-          boolean[] hasData = entry.getValue();
-          String columnKeys = tableToColumnEntries.get(tableName).k;
-          List<String> columnValues = tableToColumnEntries.get(tableName).v;
-          boolean needToInsert = false;
-          for (int i = hasData.length - 1; i >= 0; i--) {
-            if (!hasData[i]) {
-              columnValues.remove(i);
-            } else {
-              needToInsert = true;
             }
           }
-          if (needToInsert) {
-            tableToColumnEntries.put(tableName, new Pair<>(columnKeys, columnValues));
-          }
-        }
-
-        executeBatchInsert(stmt, tableToColumnEntries);
-        for (Map.Entry<String, Pair<String, List<String>>> entry :
-            tableToColumnEntries.entrySet()) {
-          entry.getValue().v.clear();
+          pathIndexToBitmapIndex[i] = index;
         }
-
-        firstRound = false;
+        inserter.insert(tableBatches.values());
         cnt += size;
       }
-      stmt.close();
     } catch (SQLException e) {
       LOGGER.error("unexpected error: ", e);
       return e;
@@ -1945,55 +2115,19 @@ public class RelationalStorage implements IStorage {
     return null;
   }
 
-  private void executeBatchInsert(
-      Statement stmt, Map<String, Pair<String, List<String>>> tableToColumnEntries)
-      throws SQLException {
-    for (Map.Entry<String, Pair<String, List<String>>> entry : tableToColumnEntries.entrySet()) {
-      String tableName = entry.getKey();
-      String columnNames = entry.getValue().k.substring(0, entry.getValue().k.length() - 2);
-      List<String> values = entry.getValue().v;
-      String[] parts = columnNames.split(", ");
-      boolean hasMultipleRows = parts.length != 1;
-
-      // INSERT INTO XXX ("key", XXX, ...) VALUES (XXX, XXX, ...), (XXX, XXX, ...), ...,
-      // (XXX,
-      // XXX, ...) ON CONFLICT ("key") DO UPDATE SET (XXX, ...) = (excluded.XXX, ...);
-      StringBuilder statement = new StringBuilder();
-      statement.append("INSERT INTO ");
-      statement.append(getQuotName(tableName));
-      statement.append(" (");
-      statement.append(getQuotName(KEY_NAME));
-      statement.append(", ");
-      String fullColumnNames = getQuotColumnNames(columnNames);
-      statement.append(fullColumnNames);
-
-      statement.append(") VALUES ");
-      for (String value : values) {
-        statement.append("(");
-        statement.append(value, 0, value.length() - 2);
-        statement.append("), ");
-      }
-      statement.delete(statement.length() - 2, statement.length());
-
-      statement.append(relationalMeta.getUpsertStatement());
-
-      for (String part : parts) {
-        if (part.equals(KEY_NAME)) {
-          continue;
-        }
-        statement.append(
-            String.format(
-                relationalMeta.getUpsertConflictStatement(), getQuotName(part), getQuotName(part)));
-        statement.append(", ");
-      }
-
-      statement.delete(statement.length() - 2, statement.length());
-
-      statement.append(";");
-
-      stmt.addBatch(statement.toString());
+  private void registerColumns(
+      DataView data,
+      Map<String, TableBatch> tableBatches,
+      TableBatch[] pathTables,
+      int[] pathColumns) {
+    for (int i = 0; i < data.getPathNum(); i++) {
+      RelationSchema schema = new RelationSchema(data.getPath(i), relationalMeta.getQuote());
+      TableBatch tableBatch = tableBatches.computeIfAbsent(schema.getTableName(), TableBatch::new);
+      pathTables[i] = tableBatch;
+      pathColumns[i] =
+          tableBatch.addColumn(
+              toFullName(schema.getColumnName(), data.getTags(i)), data.getDataType(i));
     }
-    stmt.executeBatch();
   }
 
   private List<Pair<String, String>> determineDeletedPaths(
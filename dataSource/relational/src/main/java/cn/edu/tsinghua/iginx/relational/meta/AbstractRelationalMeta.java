@@ -181,4 +181,11 @@ public abstract class AbstractRelationalMeta {
 
   /** jdbc获取元数据是否支持反斜杠的识别 */
   public abstract boolean jdbcSupportSpecialChar();
+
+  /**
+   * 获取写入数据的方式，statement 为拼接 SQL，prepared 为多行参数化语句，copy 为 COPY 二进制导入（仅 PostgreSQL）
+   *
+   * @return 写入数据的方式
+   */
+  public abstract String getInsertMode();
 }
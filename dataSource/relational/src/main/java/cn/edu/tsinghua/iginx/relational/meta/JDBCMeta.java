@@ -19,6 +19,8 @@
  */
 package cn.edu.tsinghua.iginx.relational.meta;
 
+import static cn.edu.tsinghua.iginx.relational.tools.Constants.INSERT_MODE_PREPARED;
+
 import cn.edu.tsinghua.iginx.metadata.entity.StorageEngineMeta;
 import cn.edu.tsinghua.iginx.relational.datatype.transformer.IDataTypeTransformer;
 import cn.edu.tsinghua.iginx.relational.datatype.transformer.JDBCDataTypeTransformer;
@@ -61,6 +63,8 @@ public class JDBCMeta extends AbstractRelationalMeta {
 
   private final boolean jdbcSupportBackslash;
 
+  private final String insertMode;
+
   public JDBCMeta(StorageEngineMeta meta, Properties properties) {
     super(meta);
     quote = properties.getProperty("quote").charAt(0);
@@ -79,6 +83,7 @@ public class JDBCMeta extends AbstractRelationalMeta {
     notRegexOp = properties.getProperty("not_regex_like_symbol");
     jdbcSupportBackslash =
         Boolean.parseBoolean(properties.getProperty("jdbc_support_special_char"));
+    insertMode = properties.getProperty("insert_mode", INSERT_MODE_PREPARED);
   }
 
   public JDBCMeta(StorageEngineMeta meta, String propertiesPath) throws IOException {
@@ -182,4 +187,9 @@ public class JDBCMeta extends AbstractRelationalMeta {
   public boolean jdbcSupportSpecialChar() {
     return jdbcSupportBackslash;
   }
+
+  @Override
+  public String getInsertMode() {
+    return insertMode;
+  }
 }
@@ -0,0 +1,402 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.relational.tools;
+
+import static cn.edu.tsinghua.iginx.relational.tools.Constants.INSERT_MODE_COPY;
+import static cn.edu.tsinghua.iginx.relational.tools.Constants.INSERT_MODE_STATEMENT;
+import static cn.edu.tsinghua.iginx.relational.tools.Constants.KEY_NAME;
+
+import cn.edu.tsinghua.iginx.relational.meta.AbstractRelationalMeta;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 将 TableBatch 写入关系数据库，写入方式由 AbstractRelationalMeta#getInsertMode 决定：
+ *
+ * <p>statement：拼接带有全部值的 INSERT 语句；prepared：多行参数化 INSERT，同一次写入中相同形状的语句只 prepare 一次；copy：通过 COPY ...
+ * FROM STDIN (FORMAT binary) 导入临时表，再 INSERT ... SELECT 合并到目标表，连接不是 PostgreSQL 时退化为 prepared。
+ */
+public class BatchInserter implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchInserter.class);
+
+  // 单条语句中参数个数的上限
+  private static final int MAX_PARAMETERS = 32767;
+
+  private static final byte[] COPY_SIGNATURE =
+      "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+
+  private static final String STAGE_TABLE_PREFIX = "iginx_stage_";
+
+  private final AbstractRelationalMeta relationalMeta;
+
+  private final Connection conn;
+
+  private final Map<String, PreparedStatement> preparedStatements = new HashMap<>();
+
+  public BatchInserter(AbstractRelationalMeta relationalMeta, Connection conn) {
+    this.relationalMeta = relationalMeta;
+    this.conn = conn;
+  }
+
+  public void insert(Collection<TableBatch> batches) throws SQLException {
+    switch (relationalMeta.getInsertMode()) {
+      case INSERT_MODE_STATEMENT:
+        insertByStatement(batches);
+        break;
+      case INSERT_MODE_COPY:
+        if (conn.isWrapperFor(PGConnection.class)) {
+          insertByCopy(batches);
+          break;
+        }
+        insertByPreparedStatement(batches);
+        break;
+      default:
+        insertByPreparedStatement(batches);
+    }
+  }
+
+  private void insertByStatement(Collection<TableBatch> batches) throws SQLException {
+    try (Statement stmt = conn.createStatement()) {
+      for (TableBatch batch : batches) {
+        if (batch.isEmpty()) {
+          continue;
+        }
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < batch.getRowCount(); i++) {
+          if (i != 0) {
+            values.append(", ");
+          }
+          values.append('(').append(batch.getKey(i));
+          Object[] row = batch.getRow(i);
+          for (int j = 0; j < row.length; j++) {
+            values.append(", ").append(toSQLValue(row[j], batch.getDataTypes().get(j)));
+          }
+          values.append(')');
+        }
+        stmt.addBatch(buildInsert(batch, values.toString()));
+      }
+      stmt.executeBatch();
+    }
+  }
+
+  private static String toSQLValue(Object value, DataType dataType) {
+    if (value == null) {
+      return "null";
+    }
+    if (dataType == DataType.BINARY) {
+      return "'" + new String((byte[]) value, StandardCharsets.UTF_8) + "'";
+    }
+    return value.toString();
+  }
+
+  private void insertByPreparedStatement(Collection<TableBatch> batches) throws SQLException {
+    for (TableBatch batch : batches) {
+      if (batch.isEmpty()) {
+        continue;
+      }
+      int width = batch.getColumnNames().size() + 1;
+      int rowCount = batch.getRowCount();
+      int rowsPerStatement = Math.max(1, Math.min(rowCount, MAX_PARAMETERS / width));
+      int fullCount = rowCount - rowCount % rowsPerStatement;
+
+      if (fullCount > 0) {
+        PreparedStatement stmt = prepare(batch, rowsPerStatement);
+        for (int start = 0; start < fullCount; start += rowsPerStatement) {
+          setParameters(stmt, batch, start, rowsPerStatement);
+          stmt.addBatch();
+        }
+        stmt.executeBatch();
+      }
+      if (fullCount < rowCount) {
+        PreparedStatement stmt = prepare(batch, rowCount - fullCount);
+        setParameters(stmt, batch, fullCount, rowCount - fullCount);
+        stmt.executeUpdate();
+      }
+    }
+  }
+
+  private PreparedStatement prepare(TableBatch batch, int rowCount) throws SQLException {
+    String sql = buildPreparedInsert(batch, rowCount);
+    PreparedStatement stmt = preparedStatements.get(sql);
+    if (stmt == null) {
+      stmt = conn.prepareStatement(sql);
+      preparedStatements.put(sql, stmt);
+    }
+    return stmt;
+  }
+
+  String buildPreparedInsert(TableBatch batch, int rowCount) {
+    StringBuilder placeholder = new StringBuilder("(?");
+    for (int i = 0; i < batch.getColumnNames().size(); i++) {
+      placeholder.append(", ?");
+    }
+    placeholder.append(')');
+    StringBuilder values = new StringBuilder();
+    for (int i = 0; i < rowCount; i++) {
+      if (i != 0) {
+        values.append(", ");
+      }
+      values.append(placeholder);
+    }
+    return buildInsert(batch, values.toString());
+  }
+
+  private static void setParameters(PreparedStatement stmt, TableBatch batch, int start, int count)
+      throws SQLException {
+    List<DataType> dataTypes = batch.getDataTypes();
+    int index = 1;
+    for (int i = start; i < start + count; i++) {
+      stmt.setLong(index++, batch.getKey(i));
+      Object[] row = batch.getRow(i);
+      for (int j = 0; j < row.length; j++) {
+        setParameter(stmt, index++, row[j], dataTypes.get(j));
+      }
+    }
+  }
+
+  private static void setParameter(PreparedStatement stmt, int index, Object value, DataType type)
+      throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, toSQLType(type));
+      return;
+    }
+    switch (type) {
+      case BOOLEAN:
+        stmt.setBoolean(index, (boolean) value);
+        break;
+      case INTEGER:
+        stmt.setInt(index, (int) value);
+        break;
+      case LONG:
+        stmt.setLong(index, (long) value);
+        break;
+      case FLOAT:
+        stmt.setFloat(index, (float) value);
+        break;
+      case DOUBLE:
+        stmt.setDouble(index, (double) value);
+        break;
+      case BINARY:
+        stmt.setString(index, new String((byte[]) value, StandardCharsets.UTF_8));
+        break;
+      default:
+        stmt.setObject(index, value);
+    }
+  }
+
+  private static int toSQLType(DataType dataType) {
+    switch (dataType) {
+      case BOOLEAN:
+        return Types.BOOLEAN;
+      case INTEGER:
+        return Types.INTEGER;
+      case LONG:
+        return Types.BIGINT;
+      case FLOAT:
+        return Types.REAL;
+      case DOUBLE:
+        return Types.DOUBLE;
+      default:
+        return Types.VARCHAR;
+    }
+  }
+
+  /** 在一个事务中将每张表导入临时表并合并，临时表在提交时删除 */
+  private void insertByCopy(Collection<TableBatch> batches) throws SQLException {
+    boolean autoCommit = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+    try (Statement stmt = conn.createStatement()) {
+      int stageIndex = 0;
+      for (TableBatch batch : batches) {
+        if (batch.isEmpty()) {
+          continue;
+        }
+        String stageTable = getQuotName(STAGE_TABLE_PREFIX + stageIndex++);
+        stmt.execute(buildCreateStage(batch, stageTable));
+        conn.unwrap(PGConnection.class)
+            .getCopyAPI()
+            .copyIn(
+                String.format(
+                    "COPY %s (%s) FROM STDIN (FORMAT binary)", stageTable, getColumns(batch)),
+                new ByteArrayInputStream(toCopyBinary(batch)));
+        stmt.execute(buildInsertFromStage(batch, stageTable));
+      }
+      conn.commit();
+    } catch (SQLException | IOException e) {
+      try {
+        conn.rollback();
+      } catch (SQLException ex) {
+        LOGGER.error("encounter error when rollback copy: ", ex);
+      }
+      throw e instanceof SQLException ? (SQLException) e : new SQLException(e);
+    } finally {
+      conn.setAutoCommit(autoCommit);
+    }
+  }
+
+  String buildCreateStage(TableBatch batch, String stageTable) {
+    StringBuilder columns = new StringBuilder();
+    columns.append(getQuotName(KEY_NAME)).append(" BIGINT");
+    for (int i = 0; i < batch.getColumnNames().size(); i++) {
+      columns
+          .append(", ")
+          .append(getQuotName(batch.getColumnNames().get(i)))
+          .append(' ')
+          .append(
+              relationalMeta.getDataTypeTransformer().toEngineType(batch.getDataTypes().get(i)));
+    }
+    return String.format("CREATE TEMP TABLE %s (%s) ON COMMIT DROP;", stageTable, columns);
+  }
+
+  String buildInsertFromStage(TableBatch batch, String stageTable) {
+    String columns = getColumns(batch);
+    return String.format(
+        "INSERT INTO %s (%s) SELECT %s FROM %s%s;",
+        getQuotName(batch.getTableName()), columns, columns, stageTable, buildUpsert(batch));
+  }
+
+  /** 按 PostgreSQL COPY 二进制格式编码，列的编码与 toEngineType 得到的类型一致 */
+  static byte[] toCopyBinary(TableBatch batch) throws IOException {
+    List<DataType> dataTypes = batch.getDataTypes();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.write(COPY_SIGNATURE);
+    out.writeInt(0); // flags
+    out.writeInt(0); // header extension length
+    for (int i = 0; i < batch.getRowCount(); i++) {
+      Object[] row = batch.getRow(i);
+      out.writeShort(row.length + 1);
+      out.writeInt(Long.BYTES);
+      out.writeLong(batch.getKey(i));
+      for (int j = 0; j < row.length; j++) {
+        Object value = row[j];
+        if (value == null) {
+          out.writeInt(-1);
+          continue;
+        }
+        switch (dataTypes.get(j)) {
+          case BOOLEAN:
+            out.writeInt(1);
+            out.writeByte((boolean) value ? 1 : 0);
+            break;
+          case INTEGER:
+            out.writeInt(Integer.BYTES);
+            out.writeInt((int) value);
+            break;
+          case LONG:
+            out.writeInt(Long.BYTES);
+            out.writeLong((long) value);
+            break;
+          case FLOAT:
+            out.writeInt(Float.BYTES);
+            out.writeFloat((float) value);
+            break;
+          case DOUBLE:
+            out.writeInt(Double.BYTES);
+            out.writeDouble((double) value);
+            break;
+          case BINARY:
+            byte[] binary = (byte[]) value;
+            out.writeInt(binary.length);
+            out.write(binary);
+            break;
+          default:
+            throw new IOException("unsupported data type: " + dataTypes.get(j));
+        }
+      }
+    }
+    out.writeShort(-1); // trailer
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  // INSERT INTO XXX ("key", XXX, ...) VALUES (...), ... ON CONFLICT ("key") DO UPDATE SET XXX =
+  // excluded.XXX, ...;
+  private String buildInsert(TableBatch batch, String values) {
+    return String.format(
+        "INSERT INTO %s (%s) VALUES %s%s;",
+        getQuotName(batch.getTableName()), getColumns(batch), values, buildUpsert(batch));
+  }
+
+  private String buildUpsert(TableBatch batch) {
+    StringBuilder upsert = new StringBuilder(relationalMeta.getUpsertStatement());
+    boolean first = true;
+    for (String columnName : batch.getColumnNames()) {
+      if (columnName.equals(KEY_NAME)) {
+        continue;
+      }
+      if (!first) {
+        upsert.append(", ");
+      }
+      first = false;
+      upsert.append(
+          String.format(
+              relationalMeta.getUpsertConflictStatement(),
+              getQuotName(columnName),
+              getQuotName(columnName)));
+    }
+    return upsert.toString();
+  }
+
+  private String getColumns(TableBatch batch) {
+    StringBuilder columns = new StringBuilder(getQuotName(KEY_NAME));
+    for (String columnName : batch.getColumnNames()) {
+      columns.append(", ").append(getQuotName(columnName));
+    }
+    return columns.toString();
+  }
+
+  private String getQuotName(String name) {
+    return relationalMeta.getQuote() + name + relationalMeta.getQuote();
+  }
+
+  @Override
+  public void close() throws SQLException {
+    SQLException exception = null;
+    for (PreparedStatement stmt : preparedStatements.values()) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        exception = e;
+      }
+    }
+    preparedStatements.clear();
+    if (exception != null) {
+      throw exception;
+    }
+  }
+}
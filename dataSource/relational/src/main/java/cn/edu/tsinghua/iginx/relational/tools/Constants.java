@@ -45,11 +45,29 @@ public abstract class Constants {
 
   public static final String DROP_COLUMN_STATEMENT = "ALTER TABLE %s DROP COLUMN %s;";
 
+  // 写入方式：拼接 SQL、参数化语句、PostgreSQL 的 COPY 二进制导入
+  public static final String INSERT_MODE_STATEMENT = "statement";
+
+  public static final String INSERT_MODE_PREPARED = "prepared";
+
+  public static final String INSERT_MODE_COPY = "copy";
+
   public static final Map<String, String> metaPathMap = new HashMap<>();
 
+  // IGinX 聚合函数 -> SQL 聚合函数
+  public static final Map<String, String> aggregateFunctionMap = new HashMap<>();
+
   // relative path to <module>/resources
   static {
     metaPathMap.put("mysql", "mysql-meta-template.properties");
     metaPathMap.put("postgresql", "postgresql-meta-template.properties");
   }
+
+  static {
+    aggregateFunctionMap.put("count", "COUNT");
+    aggregateFunctionMap.put("sum", "SUM");
+    aggregateFunctionMap.put("avg", "AVG");
+    aggregateFunctionMap.put("max", "MAX");
+    aggregateFunctionMap.put("min", "MIN");
+  }
 }
@@ -0,0 +1,116 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.relational.tools;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** 一张表在一个写入分段中的数据，按行存放原始值，没有数据的 key 不产生行 */
+public class TableBatch {
+
+  private final String tableName;
+
+  private final List<String> columnNames = new ArrayList<>();
+
+  private final List<DataType> dataTypes = new ArrayList<>();
+
+  private final List<Long> keys = new ArrayList<>();
+
+  private final List<Object[]> rows = new ArrayList<>();
+
+  // 分段中每个 key 对应的行号，-1 表示还没有数据
+  private int[] rowIndices = new int[0];
+
+  public TableBatch(String tableName) {
+    this.tableName = tableName;
+  }
+
+  /**
+   * 添加一列，需在写入数据之前调用
+   *
+   * @param columnName 带 tag 的完整列名
+   * @return 列号
+   */
+  public int addColumn(String columnName, DataType dataType) {
+    int index = columnNames.indexOf(columnName);
+    if (index >= 0) {
+      return index;
+    }
+    columnNames.add(columnName);
+    dataTypes.add(dataType);
+    return columnNames.size() - 1;
+  }
+
+  /** 清空数据，开始一个包含 size 个 key 的新分段 */
+  public void reset(int size) {
+    keys.clear();
+    rows.clear();
+    if (rowIndices.length < size) {
+      rowIndices = new int[size];
+    }
+    Arrays.fill(rowIndices, -1);
+  }
+
+  /**
+   * 写入一个值
+   *
+   * @param offset key 在当前分段中的下标
+   */
+  public void put(int offset, long key, int column, Object value) {
+    int row = rowIndices[offset];
+    if (row < 0) {
+      row = rows.size();
+      rowIndices[offset] = row;
+      keys.add(key);
+      rows.add(new Object[columnNames.size()]);
+    }
+    rows.get(row)[column] = value;
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  public List<DataType> getDataTypes() {
+    return dataTypes;
+  }
+
+  public int getRowCount() {
+    return rows.size();
+  }
+
+  public long getKey(int row) {
+    return keys.get(row);
+  }
+
+  public Object[] getRow(int row) {
+    return rows.get(row);
+  }
+
+  public boolean isEmpty() {
+    return rows.isEmpty();
+  }
+}
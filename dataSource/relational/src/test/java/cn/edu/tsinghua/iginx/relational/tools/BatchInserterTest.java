@@ -0,0 +1,135 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.relational.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.relational.meta.JDBCMeta;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchInserterTest {
+
+  private JDBCMeta meta;
+
+  @Before
+  public void setUp() throws IOException {
+    try (InputStream is =
+        BatchInserterTest.class.getResourceAsStream("/postgresql-meta-template.properties")) {
+      meta = new JDBCMeta(null, is);
+    }
+  }
+
+  private static TableBatch createBatch() {
+    TableBatch batch = new TableBatch("us");
+    assertEquals(0, batch.addColumn("a", DataType.LONG));
+    assertEquals(1, batch.addColumn("b", DataType.BINARY));
+    assertEquals(0, batch.addColumn("a", DataType.LONG));
+    batch.reset(3);
+    batch.put(2, 12L, 0, 3L);
+    batch.put(0, 10L, 1, "x".getBytes(StandardCharsets.UTF_8));
+    batch.put(2, 12L, 1, "yz".getBytes(StandardCharsets.UTF_8));
+    return batch;
+  }
+
+  @Test
+  public void testTableBatch() {
+    TableBatch batch = createBatch();
+    assertEquals(2, batch.getRowCount());
+    assertEquals(12L, batch.getKey(0));
+    assertEquals(3L, batch.getRow(0)[0]);
+    assertEquals(10L, batch.getKey(1));
+    assertNull(batch.getRow(1)[0]);
+
+    batch.reset(1);
+    assertTrue(batch.isEmpty());
+    batch.put(0, 20L, 0, 5L);
+    assertFalse(batch.isEmpty());
+    assertEquals(20L, batch.getKey(0));
+  }
+
+  @Test
+  public void testBuildPreparedInsert() {
+    BatchInserter inserter = new BatchInserter(meta, null);
+    assertEquals(
+        "INSERT INTO \"us\" (\"RELATIONAL+KEY\", \"a\", \"b\") VALUES (?, ?, ?), (?, ?, ?)"
+            + "ON CONFLICT (\"RELATIONAL+KEY\") DO UPDATE SET"
+            + " \"a\" = EXCLUDED.\"a\", \"b\" = EXCLUDED.\"b\";",
+        inserter.buildPreparedInsert(createBatch(), 2));
+  }
+
+  @Test
+  public void testBuildStage() {
+    BatchInserter inserter = new BatchInserter(meta, null);
+    TableBatch batch = createBatch();
+    assertEquals(
+        "CREATE TEMP TABLE \"s\" (\"RELATIONAL+KEY\" BIGINT, \"a\" BIGINT, \"b\" TEXT)"
+            + " ON COMMIT DROP;",
+        inserter.buildCreateStage(batch, "\"s\""));
+    assertEquals(
+        "INSERT INTO \"us\" (\"RELATIONAL+KEY\", \"a\", \"b\")"
+            + " SELECT \"RELATIONAL+KEY\", \"a\", \"b\" FROM \"s\""
+            + "ON CONFLICT (\"RELATIONAL+KEY\") DO UPDATE SET"
+            + " \"a\" = EXCLUDED.\"a\", \"b\" = EXCLUDED.\"b\";",
+        inserter.buildInsertFromStage(batch, "\"s\""));
+  }
+
+  @Test
+  public void testToCopyBinary() throws IOException {
+    DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(BatchInserter.toCopyBinary(createBatch())));
+    byte[] signature = new byte[11];
+    in.readFully(signature);
+    assertArrayEquals("PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1), signature);
+    assertEquals(0, in.readInt());
+    assertEquals(0, in.readInt());
+
+    // key = 12, a = 3, b = "yz"
+    assertEquals(3, in.readShort());
+    assertEquals(8, in.readInt());
+    assertEquals(12L, in.readLong());
+    assertEquals(8, in.readInt());
+    assertEquals(3L, in.readLong());
+    assertEquals(2, in.readInt());
+    assertEquals('y', in.readByte());
+    assertEquals('z', in.readByte());
+
+    // key = 10, a = null, b = "x"
+    assertEquals(3, in.readShort());
+    assertEquals(8, in.readInt());
+    assertEquals(10L, in.readLong());
+    assertEquals(-1, in.readInt());
+    assertEquals(1, in.readInt());
+    assertEquals('x', in.readByte());
+
+    assertEquals(-1, in.readShort());
+    assertEquals(-1, in.read());
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.logical.optimizer.cbo;
+
+import cn.edu.tsinghua.iginx.engine.logical.optimizer.Optimizer;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.FilterType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.JoinAlgType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
+import cn.edu.tsinghua.iginx.metadata.IMetaManager;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于代价的优化器，在规则优化之后执行。
+ *
+ * <p>对内连接链调整连接顺序和构建侧，在两侧输入均已按连接列升序排列时选用排序归并连接，并为计划中的每个算子记录估算的代价，供 EXPLAIN 展示。
+ */
+public class CostBasedOptimizer implements Optimizer {
+
+  private static final class InstanceHolder {
+    static final CostBasedOptimizer instance = new CostBasedOptimizer();
+  }
+
+  public static CostBasedOptimizer getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  private final IMetaManager metaManager;
+
+  public CostBasedOptimizer() {
+    this(DefaultMetaManager.getInstance());
+  }
+
+  public CostBasedOptimizer(IMetaManager metaManager) {
+    this.metaManager = metaManager;
+  }
+
+  @Override
+  public Operator optimize(Operator root) {
+    CostEstimator estimator = new CostEstimator(metaManager);
+    root = reorderJoins(root, estimator);
+    chooseSortedMergeJoin(root);
+    // 连接算法可能已改变，重新估算整棵树
+    new CostEstimator(metaManager).estimate(root);
+    return root;
+  }
+
+  private Operator reorderJoins(Operator operator, CostEstimator estimator) {
+    if (JoinReorder.isReorderable(operator)) {
+      JoinReorder joinReorder = new JoinReorder(estimator);
+      joinReorder.collect((InnerJoin) operator);
+      List<Operator> leaves = joinReorder.getLeaves();
+      for (int i = 0; i < leaves.size(); i++) {
+        Operator leaf = leaves.get(i);
+        Operator newLeaf = reorderJoins(leaf, estimator);
+        if (newLeaf != leaf) {
+          // 叶子所在的原连接树仍需引用新的子树
+          replaceChild(operator, leaf, newLeaf);
+          joinReorder.setLeaf(i, newLeaf);
+        }
+      }
+      Operator reordered = joinReorder.reorder(estimator.estimate(operator).getCost());
+      return reordered == null ? operator : reordered;
+    }
+
+    for (Operator child : getChildren(operator)) {
+      Operator newChild = reorderJoins(child, estimator);
+      if (newChild != child) {
+        replaceChild(operator, child, newChild);
+      }
+    }
+    return operator;
+  }
+
+  /** 两侧输入均已按连接列升序排列的等值连接改用排序归并连接 */
+  private void chooseSortedMergeJoin(Operator operator) {
+    for (Operator child : getChildren(operator)) {
+      chooseSortedMergeJoin(child);
+    }
+    if (operator.getType() != OperatorType.InnerJoin) {
+      return;
+    }
+    InnerJoin innerJoin = (InnerJoin) operator;
+    if (innerJoin.isNaturalJoin()
+        || !innerJoin.getJoinColumns().isEmpty()
+        || !innerJoin.getExtraJoinPrefix().isEmpty()
+        || innerJoin.getFilter() == null
+        || innerJoin.getFilter().getType() != FilterType.Path) {
+      return;
+    }
+    Pair<String, String> joinPaths =
+        FilterUtils.getJoinColumnFromPathFilter((PathFilter) innerJoin.getFilter());
+    if (joinPaths == null
+        || innerJoin.getSourceA().getType() != SourceType.Operator
+        || innerJoin.getSourceB().getType() != SourceType.Operator) {
+      return;
+    }
+    Operator childA = ((OperatorSource) innerJoin.getSourceA()).getOperator();
+    Operator childB = ((OperatorSource) innerJoin.getSourceB()).getOperator();
+    if ((isSortedAscBy(childA, joinPaths.k, innerJoin.getPrefixA())
+            && isSortedAscBy(childB, joinPaths.v, innerJoin.getPrefixB()))
+        || (isSortedAscBy(childA, joinPaths.v, innerJoin.getPrefixA())
+            && isSortedAscBy(childB, joinPaths.k, innerJoin.getPrefixB()))) {
+      innerJoin.setJoinAlgType(JoinAlgType.SortedMergeJoin);
+    }
+  }
+
+  private static boolean isSortedAscBy(Operator operator, String path, String prefix) {
+    if (prefix == null || !path.startsWith(prefix + ".")) {
+      return false;
+    }
+    List<String> sortByCols;
+    List<Boolean> ascendingList;
+    if (operator.getType() == OperatorType.Sort) {
+      sortByCols = ((Sort) operator).getSortByCols();
+      ascendingList = ((Sort) operator).getAscendingList();
+    } else if (operator.getType() == OperatorType.TopN) {
+      sortByCols = ((TopN) operator).getSortByCols();
+      ascendingList = ((TopN) operator).getAscendingList();
+    } else {
+      return false;
+    }
+    return !sortByCols.isEmpty() && sortByCols.get(0).equals(path) && ascendingList.get(0);
+  }
+
+  private static List<Operator> getChildren(Operator operator) {
+    List<Operator> children = new ArrayList<>();
+    List<Source> sources = new ArrayList<>();
+    if (OperatorType.isUnaryOperator(operator.getType())) {
+      sources.add(((UnaryOperator) operator).getSource());
+    } else if (OperatorType.isBinaryOperator(operator.getType())) {
+      sources.add(((BinaryOperator) operator).getSourceA());
+      sources.add(((BinaryOperator) operator).getSourceB());
+    } else if (OperatorType.isMultipleOperator(operator.getType())) {
+      sources.addAll(((MultipleOperator) operator).getSources());
+    }
+    for (Source source : sources) {
+      if (source.getType() == SourceType.Operator) {
+        children.add(((OperatorSource) source).getOperator());
+      }
+    }
+    return children;
+  }
+
+  /** 在以 operator 为根的子树中，将 child 替换为 newChild */
+  private static boolean replaceChild(Operator operator, Operator child, Operator newChild) {
+    if (OperatorType.isUnaryOperator(operator.getType())) {
+      UnaryOperator unaryOperator = (UnaryOperator) operator;
+      if (isSourceOf(unaryOperator.getSource(), child)) {
+        unaryOperator.setSource(new OperatorSource(newChild));
+        return true;
+      }
+    } else if (OperatorType.isBinaryOperator(operator.getType())) {
+      BinaryOperator binaryOperator = (BinaryOperator) operator;
+      if (isSourceOf(binaryOperator.getSourceA(), child)) {
+        binaryOperator.setSourceA(new OperatorSource(newChild));
+        return true;
+      }
+      if (isSourceOf(binaryOperator.getSourceB(), child)) {
+        binaryOperator.setSourceB(new OperatorSource(newChild));
+        return true;
+      }
+    } else if (OperatorType.isMultipleOperator(operator.getType())) {
+      List<Source> sources = ((MultipleOperator) operator).getSources();
+      for (int i = 0; i < sources.size(); i++) {
+        if (isSourceOf(sources.get(i), child)) {
+          sources.set(i, new OperatorSource(newChild));
+          return true;
+        }
+      }
+    }
+    if (JoinReorder.isReorderable(operator)) {
+      // 叶子可能位于连接链的更深处
+      for (Operator joinChild : getChildren(operator)) {
+        if (JoinReorder.isReorderable(joinChild) && replaceChild(joinChild, child, newChild)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSourceOf(Source source, Operator operator) {
+    return source.getType() == SourceType.Operator
+        && ((OperatorSource) source).getOperator() == operator;
+  }
+}
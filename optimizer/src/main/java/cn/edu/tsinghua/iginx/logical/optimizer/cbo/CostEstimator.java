@@ -0,0 +1,351 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.logical.optimizer.cbo;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.OperatorCost;
+import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.JoinAlgType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.metadata.IMetaManager;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于写入统计信息的代价估算器。
+ *
+ * <p>叶子节点的行数由本节点记录的列写入次数与分片 key 区间估算得到，其余算子按固定的选择率向上推导。代价为以行为单位的累计处理量，哈希连接构建侧超出内存上限时额外计入溢写的读写开销。
+ */
+public class CostEstimator {
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  /** 缺少统计信息时叶子节点的默认行数 */
+  static final double DEFAULT_ROW_COUNT = 10000;
+
+  /** 缺少统计信息时每行的默认字节数 */
+  static final double DEFAULT_ROW_WIDTH = 64;
+
+  private static final double EQUAL_SELECTIVITY = 0.1;
+
+  private static final double DEFAULT_SELECTIVITY = 0.3;
+
+  private static final double AGGREGATE_FACTOR = 0.1;
+
+  private static final double DISTINCT_FACTOR = 0.5;
+
+  /** 构建哈希表时每行相对于探测的开销 */
+  private static final double HASH_BUILD_FACTOR = 2.0;
+
+  private final IMetaManager metaManager;
+
+  private final Map<Operator, Estimate> estimates = new IdentityHashMap<>();
+
+  public CostEstimator(IMetaManager metaManager) {
+    this.metaManager = metaManager;
+  }
+
+  /** 估算以 operator 为根的子树的代价，并记录在子树的每个算子上 */
+  public OperatorCost estimate(Operator operator) {
+    Estimate estimate = getEstimate(operator);
+    return new OperatorCost(estimate.rows, estimate.cost);
+  }
+
+  public double estimateRowCount(Operator operator) {
+    return getEstimate(operator).rows;
+  }
+
+  double estimateRowWidth(Operator operator) {
+    return getEstimate(operator).width;
+  }
+
+  /** 估算以给定算法执行内连接自身的代价，不含子节点的代价。构建侧为 B。 */
+  double estimateJoinCost(JoinAlgType joinAlgType, double rowsA, double rowsB, double widthB) {
+    switch (joinAlgType) {
+      case NestedLoopJoin:
+        return rowsA * rowsB;
+      case SortedMergeJoin:
+        return rowsA + rowsB;
+      case HashJoin:
+      default:
+        double cost = rowsB * HASH_BUILD_FACTOR + rowsA;
+        if (rowsB * widthB > config.getHashJoinMemoryThreshold() * 1024) {
+          // 超出内存上限时两侧都需写出并重新读入
+          cost += 2 * (rowsA + rowsB);
+        }
+        return cost;
+    }
+  }
+
+  private Estimate getEstimate(Operator operator) {
+    Estimate estimate = estimates.get(operator);
+    if (estimate == null) {
+      estimate = calculate(operator);
+      estimates.put(operator, estimate);
+      operator.setEstimatedCost(new OperatorCost(estimate.rows, estimate.cost));
+    }
+    return estimate;
+  }
+
+  private Estimate calculate(Operator operator) {
+    OperatorType type = operator.getType();
+    if (OperatorType.isUnaryOperator(type)) {
+      Source source = ((UnaryOperator) operator).getSource();
+      if (source.getType() != SourceType.Operator) {
+        return calculateLeaf(operator, source);
+      }
+      Estimate child = getEstimate(((OperatorSource) source).getOperator());
+      return calculateUnary(operator, child);
+    } else if (OperatorType.isBinaryOperator(type)) {
+      BinaryOperator binaryOperator = (BinaryOperator) operator;
+      Estimate childA = getChildEstimate(binaryOperator.getSourceA());
+      Estimate childB = getChildEstimate(binaryOperator.getSourceB());
+      return calculateBinary(binaryOperator, childA, childB);
+    } else if (OperatorType.isMultipleOperator(type)) {
+      double rows = 0, width = 0, cost = 0;
+      for (Source source : ((MultipleOperator) operator).getSources()) {
+        Estimate child = getChildEstimate(source);
+        rows = Math.max(rows, child.rows);
+        width += child.width;
+        cost += child.cost;
+      }
+      return new Estimate(rows, width, cost + rows);
+    }
+    return new Estimate(DEFAULT_ROW_COUNT, DEFAULT_ROW_WIDTH, DEFAULT_ROW_COUNT);
+  }
+
+  private Estimate getChildEstimate(Source source) {
+    if (source.getType() == SourceType.Operator) {
+      return getEstimate(((OperatorSource) source).getOperator());
+    }
+    return new Estimate(DEFAULT_ROW_COUNT, DEFAULT_ROW_WIDTH, DEFAULT_ROW_COUNT);
+  }
+
+  private Estimate calculateLeaf(Operator operator, Source source) {
+    if (operator.getType() != OperatorType.Project || source.getType() != SourceType.Fragment) {
+      // 常量或空数据源
+      return new Estimate(1, DEFAULT_ROW_WIDTH, 1);
+    }
+    KeyInterval keyInterval = ((FragmentSource) source).getFragment().getKeyInterval();
+    List<ColumnCalDO> statistics =
+        metaManager.getColumnStatistics(((Project) operator).getPatterns());
+    if (statistics == null || statistics.isEmpty()) {
+      return new Estimate(DEFAULT_ROW_COUNT, DEFAULT_ROW_WIDTH, DEFAULT_ROW_COUNT);
+    }
+    double rows = 0, width = 0;
+    for (ColumnCalDO statistic : statistics) {
+      if (statistic.getCount() <= 0) {
+        continue;
+      }
+      rows =
+          Math.max(
+              rows,
+              statistic.getCount()
+                  * overlapRatio(keyInterval, statistic.getFirstKey(), statistic.getLastKey()));
+      width += 1.0 * statistic.getTotalByte() / statistic.getCount();
+    }
+    rows = Math.max(rows, 1);
+    return new Estimate(rows, width > 0 ? width : DEFAULT_ROW_WIDTH, rows);
+  }
+
+  /** 分片 key 区间与列已写入的 key 范围的重叠比例，假设数据在 key 范围内均匀分布 */
+  private static double overlapRatio(KeyInterval keyInterval, long firstKey, long lastKey) {
+    if (lastKey < firstKey) {
+      return 0;
+    }
+    double begin = Math.max((double) keyInterval.getStartKey(), (double) firstKey);
+    double end = Math.min((double) keyInterval.getEndKey() - 1, (double) lastKey);
+    if (end < begin) {
+      return 0;
+    }
+    return (end - begin + 1) / ((double) lastKey - (double) firstKey + 1);
+  }
+
+  private Estimate calculateUnary(Operator operator, Estimate child) {
+    double rows;
+    switch (operator.getType()) {
+      case Select:
+        rows = child.rows * selectivity(((Select) operator).getFilter());
+        break;
+      case Limit:
+        rows = Math.min(child.rows, ((Limit) operator).getLimit());
+        break;
+      case TopN:
+        rows = Math.min(child.rows, ((TopN) operator).getLimit());
+        break;
+      case Sort:
+        return new Estimate(
+            child.rows, child.width, child.cost + child.rows * log2(Math.max(child.rows, 2)));
+      case SetTransform:
+        rows = 1;
+        break;
+      case GroupBy:
+      case Downsample:
+        rows = child.rows * AGGREGATE_FACTOR;
+        break;
+      case Distinct:
+        rows = child.rows * DISTINCT_FACTOR;
+        break;
+      default:
+        rows = child.rows;
+    }
+    rows = Math.max(rows, 1);
+    return new Estimate(rows, child.width, child.cost + child.rows);
+  }
+
+  private Estimate calculateBinary(BinaryOperator operator, Estimate childA, Estimate childB) {
+    double rows;
+    double cost;
+    double width = childA.width + childB.width;
+    switch (operator.getType()) {
+      case InnerJoin:
+        InnerJoin innerJoin = (InnerJoin) operator;
+        rows = estimateJoinRows(innerJoin, childA.rows, childB.rows);
+        cost = estimateJoinCost(innerJoin.getJoinAlgType(), childA.rows, childB.rows, childB.width);
+        break;
+      case OuterJoin:
+        OuterJoin outerJoin = (OuterJoin) operator;
+        rows = Math.max(childA.rows, childB.rows);
+        cost = estimateJoinCost(outerJoin.getJoinAlgType(), childA.rows, childB.rows, childB.width);
+        break;
+      case CrossJoin:
+        rows = childA.rows * childB.rows;
+        cost = rows;
+        break;
+      case MarkJoin:
+      case SingleJoin:
+        rows = childA.rows;
+        width = childA.width;
+        cost = estimateJoinCost(JoinAlgType.HashJoin, childA.rows, childB.rows, childB.width);
+        break;
+      case Union:
+        rows = childA.rows + childB.rows;
+        width = Math.max(childA.width, childB.width);
+        cost = rows;
+        break;
+      case Intersect:
+        rows = Math.min(childA.rows, childB.rows);
+        width = childA.width;
+        cost = childA.rows + childB.rows;
+        break;
+      case Except:
+        rows = childA.rows;
+        width = childA.width;
+        cost = childA.rows + childB.rows;
+        break;
+      default:
+        // 按 key 连接的 Join、PathUnion 等
+        rows = Math.max(childA.rows, childB.rows);
+        cost = childA.rows + childB.rows;
+    }
+    rows = Math.max(rows, 1);
+    return new Estimate(rows, width, childA.cost + childB.cost + cost);
+  }
+
+  /** 估算内连接的结果行数。含等值条件时按主外键连接估算，否则按笛卡尔积乘以选择率估算 */
+  static double estimateJoinRows(InnerJoin innerJoin, double rowsA, double rowsB) {
+    if (innerJoin.isNaturalJoin()
+        || !innerJoin.getJoinColumns().isEmpty()
+        || !innerJoin.getExtraJoinPrefix().isEmpty()
+        || FilterUtils.canUseHashJoin(innerJoin.getFilter())) {
+      return Math.max(rowsA, rowsB);
+    }
+    return Math.max(rowsA * rowsB * selectivity(innerJoin.getFilter()), 1);
+  }
+
+  static double selectivity(Filter filter) {
+    if (filter == null) {
+      return 1;
+    }
+    switch (filter.getType()) {
+      case And:
+        double and = 1;
+        for (Filter child : ((AndFilter) filter).getChildren()) {
+          and *= selectivity(child);
+        }
+        return and;
+      case Or:
+        double or = 0;
+        for (Filter child : ((OrFilter) filter).getChildren()) {
+          or += selectivity(child);
+        }
+        return Math.min(or, 1);
+      case Not:
+        return 1 - selectivity(((NotFilter) filter).getChild());
+      case Bool:
+        return ((BoolFilter) filter).isTrue() ? 1 : 0;
+      case Value:
+        return Op.isEqualOp(((ValueFilter) filter).getOp())
+            ? EQUAL_SELECTIVITY
+            : DEFAULT_SELECTIVITY;
+      case Path:
+        return Op.isEqualOp(((PathFilter) filter).getOp())
+            ? EQUAL_SELECTIVITY
+            : DEFAULT_SELECTIVITY;
+      default:
+        return DEFAULT_SELECTIVITY;
+    }
+  }
+
+  private static double log2(double value) {
+    return Math.log(value) / Math.log(2);
+  }
+
+  private static class Estimate {
+
+    final double rows;
+
+    final double width;
+
+    final double cost;
+
+    Estimate(double rows, double width, double cost) {
+      this.rows = rows;
+      this.width = width;
+      this.cost = cost;
+    }
+  }
+}
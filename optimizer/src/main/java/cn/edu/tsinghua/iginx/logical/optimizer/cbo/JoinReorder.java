@@ -0,0 +1,274 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.logical.optimizer.cbo;
+
+import static cn.edu.tsinghua.iginx.constant.GlobalConstant.KEY_NAME;
+
+import cn.edu.tsinghua.iginx.engine.logical.utils.LogicalFilterUtils;
+import cn.edu.tsinghua.iginx.engine.logical.utils.OperatorUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Reorder;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 对由 ON 条件连接的内连接链调整连接顺序。
+ *
+ * <p>从估算行数最小的表开始，每次贪心地选择与已连接部分存在连接条件且连接结果最小的表，生成左深树，并将较小的一侧作为哈希连接的构建侧（B 侧）。 各个 ON
+ * 条件被拆分后挂在其涉及的表全部连接完成的最低一层连接上。新的连接树代价更低时才替换原树，并在其上添加 Reorder 以保持原有的列顺序。
+ *
+ * <p>只处理每张表的列都以其前缀开头、且每个连接条件中的列都能唯一归属到某张表的情况，其余情况保持原树不变。
+ */
+class JoinReorder {
+
+  /** 新连接树代价低于原树的该比例时才替换 */
+  private static final double IMPROVEMENT_RATIO = 0.9;
+
+  private final CostEstimator estimator;
+
+  private final List<Operator> leaves = new ArrayList<>();
+
+  private final List<String> prefixes = new ArrayList<>();
+
+  private final List<Filter> conditions = new ArrayList<>();
+
+  JoinReorder(CostEstimator estimator) {
+    this.estimator = estimator;
+  }
+
+  static boolean isReorderable(Operator operator) {
+    if (operator.getType() != OperatorType.InnerJoin) {
+      return false;
+    }
+    InnerJoin innerJoin = (InnerJoin) operator;
+    return !innerJoin.isNaturalJoin()
+        && innerJoin.getJoinColumns().isEmpty()
+        && innerJoin.getExtraJoinPrefix().isEmpty()
+        && innerJoin.getTagFilter() == null
+        && innerJoin.getFilter() != null
+        && innerJoin.getSourceA().getType() == SourceType.Operator
+        && innerJoin.getSourceB().getType() == SourceType.Operator;
+  }
+
+  /** 收集以 root 为根的内连接链的所有表及连接条件，root 需满足 isReorderable */
+  void collect(InnerJoin root) {
+    collect(((OperatorSource) root.getSourceA()).getOperator(), root.getPrefixA());
+    collect(((OperatorSource) root.getSourceB()).getOperator(), root.getPrefixB());
+    conditions.addAll(LogicalFilterUtils.splitFilter(root.getFilter()));
+  }
+
+  private void collect(Operator operator, String prefix) {
+    if (isReorderable(operator)) {
+      collect((InnerJoin) operator);
+    } else {
+      leaves.add(operator);
+      prefixes.add(prefix);
+    }
+  }
+
+  List<Operator> getLeaves() {
+    return leaves;
+  }
+
+  void setLeaf(int index, Operator leaf) {
+    leaves.set(index, leaf);
+  }
+
+  /**
+   * 计算新的连接顺序
+   *
+   * @param originCost 原连接树的代价
+   * @return 新的连接树，无法调整或代价没有明显降低时返回 null
+   */
+  Operator reorder(double originCost) {
+    if (leaves.size() < 2 || !checkPrefixes()) {
+      return null;
+    }
+    // 每个连接条件涉及的表
+    List<BitSet> conditionTables = new ArrayList<>();
+    for (Filter condition : conditions) {
+      BitSet tables = getTables(condition);
+      if (tables == null) {
+        return null;
+      }
+      conditionTables.add(tables);
+    }
+
+    int n = leaves.size();
+    double[] rows = new double[n];
+    int start = 0;
+    for (int i = 0; i < n; i++) {
+      rows[i] = estimator.estimateRowCount(leaves.get(i));
+      if (rows[i] < rows[start]) {
+        start = i;
+      }
+    }
+
+    BitSet joined = new BitSet(n);
+    joined.set(start);
+    boolean[] attached = new boolean[conditions.size()];
+    Operator root = leaves.get(start);
+    double rootRows = rows[start];
+    while (joined.cardinality() < n) {
+      // 选择与已连接部分有连接条件且连接结果最小的表，避免产生笛卡尔积
+      int next = -1;
+      for (int i = 0; i < n; i++) {
+        if (joined.get(i) || !isConnected(joined, i, conditionTables)) {
+          continue;
+        }
+        if (next == -1 || rows[i] < rows[next]) {
+          next = i;
+        }
+      }
+      if (next == -1) {
+        return null;
+      }
+      joined.set(next);
+
+      List<Filter> joinConditions = new ArrayList<>();
+      for (int i = 0; i < conditions.size(); i++) {
+        if (!attached[i] && isSubset(conditionTables.get(i), joined)) {
+          joinConditions.add(conditions.get(i));
+          attached[i] = true;
+        }
+      }
+      Filter filter =
+          joinConditions.size() == 1 ? joinConditions.get(0) : new AndFilter(joinConditions);
+
+      InnerJoin join;
+      if (rows[next] <= rootRows) {
+        join =
+            new InnerJoin(
+                new OperatorSource(root),
+                new OperatorSource(leaves.get(next)),
+                prefixes.get(start),
+                prefixes.get(next),
+                filter,
+                new ArrayList<>());
+      } else {
+        join =
+            new InnerJoin(
+                new OperatorSource(leaves.get(next)),
+                new OperatorSource(root),
+                prefixes.get(next),
+                prefixes.get(start),
+                filter,
+                new ArrayList<>());
+      }
+      join.reChooseJoinAlg();
+      root = join;
+      rootRows = estimator.estimateRowCount(join);
+    }
+
+    if (estimator.estimate(root).getCost() >= originCost * IMPROVEMENT_RATIO) {
+      return null;
+    }
+    // 保持原有的列顺序，同一张表的列之间不重新排序
+    List<String> patterns = new ArrayList<>();
+    List<Boolean> keepOrder = new ArrayList<>();
+    for (String prefix : prefixes) {
+      patterns.add(prefix + ".*");
+      keepOrder.add(true);
+    }
+    Reorder reorder = new Reorder(new OperatorSource(root), patterns, keepOrder, false);
+    estimator.estimate(reorder);
+    return reorder;
+  }
+
+  /** 各表的前缀互不相同且互不包含，且各表的列都以其前缀开头 */
+  private boolean checkPrefixes() {
+    Set<String> visited = new HashSet<>();
+    for (int i = 0; i < leaves.size(); i++) {
+      String prefix = prefixes.get(i);
+      if (prefix == null || prefix.isEmpty() || !visited.add(prefix)) {
+        return false;
+      }
+      List<String> patterns =
+          OperatorUtils.getPatternFromOperatorChildren(leaves.get(i), new ArrayList<>());
+      if (patterns.isEmpty()) {
+        return false;
+      }
+      for (String pattern : patterns) {
+        if (!pattern.startsWith(prefix + ".")) {
+          return false;
+        }
+      }
+    }
+    for (String prefixA : prefixes) {
+      for (String prefixB : prefixes) {
+        if (prefixB.startsWith(prefixA + ".")) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** 获取连接条件涉及的表，存在无法归属到某张表的列时返回 null */
+  private BitSet getTables(Filter condition) {
+    Set<String> paths = LogicalFilterUtils.getPathsFromFilter(condition);
+    if (paths.isEmpty()) {
+      return null;
+    }
+    BitSet tables = new BitSet(leaves.size());
+    for (String path : paths) {
+      // key 列由连接算子按前缀生成，不存在于表中
+      if (path.endsWith("." + KEY_NAME)) {
+        return null;
+      }
+      int table = -1;
+      for (int i = 0; i < prefixes.size(); i++) {
+        if (path.startsWith(prefixes.get(i) + ".")) {
+          table = i;
+          break;
+        }
+      }
+      if (table == -1) {
+        return null;
+      }
+      tables.set(table);
+    }
+    return tables;
+  }
+
+  private static boolean isConnected(BitSet joined, int table, List<BitSet> conditionTables) {
+    for (BitSet tables : conditionTables) {
+      if (tables.get(table) && tables.intersects(joined)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSubset(BitSet tables, BitSet joined) {
+    BitSet copy = (BitSet) tables.clone();
+    copy.andNot(joined);
+    return copy.isEmpty();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.logical.optimizer.rules;
+
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.logical.optimizer.core.RuleCall;
+import com.google.auto.service.AutoService;
+
+/**
+ * 将 Limit 与其下方的 Sort 合并为 TopN，执行时只需保留 limit + offset 行，而不必缓存并排序全部输入。
+ *
+ * <p>limit + offset 过大时堆的开销接近全量排序，且无法像 Sort 一样溢写，此时不做合并。
+ */
+@AutoService(Rule.class)
+public class LimitSortToTopNRule extends Rule {
+
+  private static final long MAX_TOP_N_SIZE = 1 << 20;
+
+  public LimitSortToTopNRule() {
+    /*
+     * we want to match the topology like:
+     *         Limit
+     *           |
+     *          Sort
+     */
+    super("LimitSortToTopNRule", operand(Limit.class, operand(Sort.class, any())));
+  }
+
+  @Override
+  public boolean matches(RuleCall call) {
+    Limit limit = (Limit) call.getMatchedRoot();
+    return (long) limit.getLimit() + limit.getOffset() <= MAX_TOP_N_SIZE;
+  }
+
+  @Override
+  public void onMatch(RuleCall call) {
+    Limit limit = (Limit) call.getMatchedRoot();
+    Sort sort = (Sort) ((OperatorSource) limit.getSource()).getOperator();
+    TopN topN =
+        new TopN(
+            sort.getSource(),
+            sort.getSortByExpressions(),
+            sort.getSortTypes(),
+            limit.getLimit(),
+            limit.getOffset());
+    call.transformTo(topN);
+  }
+}
@@ -19,21 +19,29 @@
  */
 package cn.edu.tsinghua.iginx.physical.optimizer.naive;
 
+import cn.edu.tsinghua.iginx.conf.Config;
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.MemoryPhysicalTaskDispatcher;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.PartialAggregateUtils;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.PhysicalOptimizer;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.ReplicaDispatcher;
 import cn.edu.tsinghua.iginx.engine.physical.task.*;
+import cn.edu.tsinghua.iginx.engine.shared.Constants;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
 import cn.edu.tsinghua.iginx.engine.shared.constraint.ConstraintManager;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
 import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
 import cn.edu.tsinghua.iginx.engine.shared.source.Source;
 import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
 import cn.edu.tsinghua.iginx.physical.optimizer.rule.Rule;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 
 public class NaivePhysicalOptimizer implements PhysicalOptimizer {
@@ -90,6 +98,14 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
       case Operator: // 构建内存中的计划
         OperatorSource operatorSource = (OperatorSource) source;
         Operator sourceOperator = operatorSource.getOperator();
+        if (operator.getType() == OperatorType.SetTransform
+            || operator.getType() == OperatorType.Downsample) {
+          PhysicalTask aggregateTask =
+              constructTwoPhaseAggregateTask(operator, sourceOperator, context);
+          if (aggregateTask != null) {
+            return aggregateTask;
+          }
+        }
         PhysicalTask sourceTask = constructTask(operatorSource.getOperator(), context);
         // push down Select operator
         if (ConfigDescriptor.getInstance().getConfig().isEnablePushDown()
@@ -105,6 +121,7 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
               }
               break;
             case SetTransform:
+            case Downsample:
               sourceTask.getOperators().add(operator);
               return sourceTask;
             default:
@@ -125,6 +142,122 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
     }
   }
 
+  /**
+   * 将 SetTransform 或 Downsample 拆分为两阶段聚合：每个分片的存储任务计算部分聚合结果，存储引擎可通过 IStorage 的
+   * executeProjectWithSetTransform 或 executeProjectWithDownsample 直接计算，否则在存储任务中由内存执行器计算；再由内存任务按分片的
+   * key 顺序合并。
+   *
+   * <p>仅当输入为多个非叠加分片按 key 连接、合并得到的原始数据，且同一 key 区间内的分片列范围互不相交时适用，否则返回 null。
+   */
+  private PhysicalTask constructTwoPhaseAggregateTask(
+      UnaryOperator operator, Operator sourceOperator, RequestContext context) {
+    Config config = ConfigDescriptor.getInstance().getConfig();
+    if (!config.isEnablePushDown() || !config.isEnableTwoPhaseAggregate()) {
+      return null;
+    }
+    List<FunctionCall> functionCallList;
+    if (operator.getType() == OperatorType.SetTransform) {
+      functionCallList = ((SetTransform) operator).getFunctionCallList();
+    } else {
+      Downsample downsample = (Downsample) operator;
+      // 未指定区间时窗口的起点由各分片的第一行决定，滑动窗口中一行属于多个窗口，均无法在分片上对齐窗口
+      if (downsample.notSetInterval()
+          || downsample.getPrecision() != downsample.getSlideDistance()) {
+        return null;
+      }
+      functionCallList = downsample.getFunctionCallList();
+    }
+    if (!PartialAggregateUtils.isSupportTwoPhaseAggregate(functionCallList)) {
+      return null;
+    }
+    List<Project> projects = new ArrayList<>();
+    if (!collectFragmentProjects(sourceOperator, projects)
+        || projects.size() < 2
+        || hasIntersectedFragments(projects)) {
+      return null;
+    }
+    projects.sort(
+        Comparator.comparingLong(project -> getFragment(project).getKeyInterval().getStartKey()));
+
+    List<PhysicalTask> parentTasks = new ArrayList<>();
+    for (Project project : projects) {
+      List<Operator> operators = new ArrayList<>();
+      operators.add(project);
+      List<FunctionCall> partialCalls =
+          PartialAggregateUtils.getPartialFunctionCalls(functionCallList);
+      if (operator.getType() == OperatorType.SetTransform) {
+        operators.add(new SetTransform(new OperatorSource(project), partialCalls));
+      } else {
+        Downsample downsample = (Downsample) operator;
+        operators.add(
+            new Downsample(
+                new OperatorSource(project),
+                downsample.getPrecision(),
+                downsample.getSlideDistance(),
+                partialCalls,
+                downsample.getKeyRange().copy()));
+      }
+      parentTasks.add(new StoragePhysicalTask(operators, context));
+    }
+    List<Operator> operators = new ArrayList<>();
+    operators.add(operator);
+    PhysicalTask task = new PartialAggregateMergePhysicalTask(operators, parentTasks, context);
+    for (PhysicalTask parentTask : parentTasks) {
+      parentTask.setFollowerTask(task);
+    }
+    return task;
+  }
+
+  /** 收集由 PathUnion 和按 key 的 Join 组合起来的、直接作用于非叠加分片的 Project */
+  private boolean collectFragmentProjects(Operator operator, List<Project> projects) {
+    switch (operator.getType()) {
+      case Project:
+        Project project = (Project) operator;
+        if (project.getTagFilter() != null
+            || project.getSource().getType() != SourceType.Fragment
+            || getFragment(project).isDummyFragment()) {
+          return false;
+        }
+        projects.add(project);
+        return true;
+      case Join:
+        if (!((Join) operator).getJoinBy().equals(Constants.KEY)) {
+          return false;
+        }
+        // fall through
+      case PathUnion:
+        BinaryOperator binaryOperator = (BinaryOperator) operator;
+        return collectFragmentProjects(
+                ((OperatorSource) binaryOperator.getSourceA()).getOperator(), projects)
+            && collectFragmentProjects(
+                ((OperatorSource) binaryOperator.getSourceB()).getOperator(), projects);
+      default:
+        return false;
+    }
+  }
+
+  /** key 区间与列范围均相交的分片会产生重叠的数据，无法按分片的 key 顺序合并部分结果 */
+  private boolean hasIntersectedFragments(List<Project> projects) {
+    for (int i = 0; i < projects.size(); i++) {
+      FragmentMeta fragment = getFragment(projects.get(i));
+      for (int j = i + 1; j < projects.size(); j++) {
+        FragmentMeta other = getFragment(projects.get(j));
+        KeyInterval keyInterval = fragment.getKeyInterval();
+        KeyInterval otherKeyInterval = other.getKeyInterval();
+        if (keyInterval.getStartKey() < otherKeyInterval.getEndKey()
+            && otherKeyInterval.getStartKey() < keyInterval.getEndKey()
+            && fragment.getColumnsInterval().isIntersect(other.getColumnsInterval())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private FragmentMeta getFragment(Project project) {
+    return ((FragmentSource) project.getSource()).getFragment();
+  }
+
   private PhysicalTask constructBinaryTask(BinaryOperator operator, RequestContext context) {
     OperatorSource sourceA = (OperatorSource) operator.getSourceA();
     OperatorSource sourceB = (OperatorSource) operator.getSourceB();
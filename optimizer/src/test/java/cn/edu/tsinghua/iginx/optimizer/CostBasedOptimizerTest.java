@@ -0,0 +1,182 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.optimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Reorder;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.JoinAlgType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.logical.optimizer.cbo.CostBasedOptimizer;
+import cn.edu.tsinghua.iginx.metadata.MetaManagerMock;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CostBasedOptimizerTest {
+
+  private final MetaManagerMock metaManager = MetaManagerMock.getInstance();
+
+  private final CostBasedOptimizer optimizer = new CostBasedOptimizer(metaManager);
+
+  @Before
+  public void setUp() {
+    metaManager.setColumnStatistics(
+        Arrays.asList(
+            buildStatistics("us.a.k", 100000),
+            buildStatistics("us.b.k", 1000),
+            buildStatistics("us.b.k2", 1000),
+            buildStatistics("us.c.k2", 10)));
+  }
+
+  @After
+  public void tearDown() {
+    metaManager.setColumnStatistics(new ArrayList<>());
+  }
+
+  private static ColumnCalDO buildStatistics(String column, int count) {
+    ColumnCalDO columnCalDO = new ColumnCalDO();
+    columnCalDO.setColumn(column);
+    columnCalDO.merge(0L, 0L, (long) count - 1, count, 8L * count);
+    return columnCalDO;
+  }
+
+  private static Project buildProject(String prefix) {
+    FragmentMeta fragment = new FragmentMeta(null, null, 0, Long.MAX_VALUE);
+    return new Project(
+        new FragmentSource(fragment), Collections.singletonList(prefix + ".*"), null);
+  }
+
+  /*
+          innerJoin(us.b.k2 = us.c.k2)
+           /                \
+    innerJoin(us.a.k = us.b.k) projectC
+        /    \
+   projectA projectB
+  */
+  @Test
+  public void testReorderJoins() {
+    Project projectA = buildProject("us.a");
+    Project projectB = buildProject("us.b");
+    Project projectC = buildProject("us.c");
+    InnerJoin joinAB =
+        new InnerJoin(
+            new OperatorSource(projectA),
+            new OperatorSource(projectB),
+            "us.a",
+            "us.b",
+            new PathFilter("us.a.k", Op.E, "us.b.k"),
+            new ArrayList<>());
+    InnerJoin joinABC =
+        new InnerJoin(
+            new OperatorSource(joinAB),
+            new OperatorSource(projectC),
+            "us.a",
+            "us.c",
+            new PathFilter("us.b.k2", Op.E, "us.c.k2"),
+            new ArrayList<>());
+
+    Operator root = optimizer.optimize(joinABC);
+
+    // 先连接最小的 C 与 B，再连接 A，且较小的一侧作为构建侧
+    assertEquals(OperatorType.Reorder, root.getType());
+    assertEquals(Arrays.asList("us.a.*", "us.b.*", "us.c.*"), ((Reorder) root).getPatterns());
+    InnerJoin top = (InnerJoin) ((OperatorSource) ((Reorder) root).getSource()).getOperator();
+    assertSame(projectA, ((OperatorSource) top.getSourceA()).getOperator());
+    assertEquals("us.a", top.getPrefixA());
+    assertEquals(new PathFilter("us.a.k", Op.E, "us.b.k"), top.getFilter());
+    InnerJoin bottom = (InnerJoin) ((OperatorSource) top.getSourceB()).getOperator();
+    assertSame(projectB, ((OperatorSource) bottom.getSourceA()).getOperator());
+    assertSame(projectC, ((OperatorSource) bottom.getSourceB()).getOperator());
+    assertEquals("us.b", bottom.getPrefixA());
+    assertEquals("us.c", bottom.getPrefixB());
+    assertEquals(JoinAlgType.HashJoin, bottom.getJoinAlgType());
+
+    assertNotNull(root.getEstimatedCost());
+    assertEquals(100000, root.getEstimatedCost().getRowCount(), 1);
+    assertEquals(10, projectC.getEstimatedCost().getRowCount(), 1);
+  }
+
+  @Test
+  public void testKeepJoinOrderWithoutStatistics() {
+    metaManager.setColumnStatistics(new ArrayList<>());
+    InnerJoin join =
+        new InnerJoin(
+            new OperatorSource(buildProject("us.a")),
+            new OperatorSource(buildProject("us.b")),
+            "us.a",
+            "us.b",
+            new PathFilter("us.a.k", Op.E, "us.b.k"),
+            new ArrayList<>());
+
+    Operator root = optimizer.optimize(join);
+
+    assertSame(join, root);
+    assertNotNull(join.getEstimatedCost());
+  }
+
+  @Test
+  public void testChooseSortedMergeJoin() {
+    List<Expression> sortByA = Collections.singletonList(new BaseExpression("us.a.k"));
+    List<Expression> sortByB = Collections.singletonList(new BaseExpression("us.b.k"));
+    Sort sortA =
+        new Sort(
+            new OperatorSource(buildProject("us.a")),
+            sortByA,
+            Collections.singletonList(Sort.SortType.ASC));
+    Sort sortB =
+        new Sort(
+            new OperatorSource(buildProject("us.b")),
+            sortByB,
+            Collections.singletonList(Sort.SortType.ASC));
+    InnerJoin join =
+        new InnerJoin(
+            new OperatorSource(sortA),
+            new OperatorSource(sortB),
+            "us.a",
+            "us.b",
+            new PathFilter("us.b.k", Op.E, "us.a.k"),
+            new ArrayList<>());
+
+    optimizer.optimize(join);
+
+    assertEquals(JoinAlgType.SortedMergeJoin, join.getJoinAlgType());
+    assertTrue(join.getEstimatedCost().getCost() > 0);
+  }
+}
@@ -107,4 +107,33 @@ public class RBOTest {
 
     ruleCollection.unbanRulesByName(bannedRules);
   }
+
+  @Test
+  public void testLimitSortToTopNRule() {
+    List<String> bannedRules = RBOTestUtils.banRuleExceptGivenRule("LimitSortToTopNRule");
+    Operator root = TreeBuilder.buildLimitSortTree(100, 10);
+    String expected =
+        "[Reorder] Order: *\n"
+            + "  [Limit] Limit: 100, Offset: 10\n"
+            + "    [Sort] SortBy: test.a, SortType: DESC\n"
+            + "      [Project] Patterns: test.a,test.b\n";
+    String actual = TreePrinter.getTreeInfo(root);
+    Assert.assertEquals(expected, actual);
+
+    Operator rootAfterRBO = rbo.optimize(root);
+    expected =
+        "[Reorder] Order: *\n"
+            + "  [TopN] SortBy: test.a, SortType: DESC, Limit: 100, Offset: 10\n"
+            + "    [Project] Patterns: test.a,test.b\n";
+    actual = TreePrinter.getTreeInfo(rootAfterRBO);
+    Assert.assertEquals(expected, actual);
+
+    // limit 过大时不合并
+    root = TreeBuilder.buildLimitSortTree(Integer.MAX_VALUE, 10);
+    expected = TreePrinter.getTreeInfo(root);
+    rootAfterRBO = rbo.optimize(root);
+    actual = TreePrinter.getTreeInfo(rootAfterRBO);
+    Assert.assertEquals(expected, actual);
+    ruleCollection.unbanRulesByName(bannedRules);
+  }
 }
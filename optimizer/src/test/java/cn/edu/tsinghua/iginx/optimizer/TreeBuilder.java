@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.optimizer;
 
 import cn.edu.tsinghua.iginx.engine.shared.Constants;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
@@ -123,6 +124,19 @@ public class TreeBuilder {
     return new Reorder(new OperatorSource(select), Collections.singletonList("*"));
   }
 
+  public static Operator buildLimitSortTree(int limit, int offset) {
+    Project project =
+        new Project(EmptySource.EMPTY_SOURCE, Arrays.asList("test.a", "test.b"), null);
+    Sort sort =
+        new Sort(
+            new OperatorSource(project),
+            Collections.singletonList(new BaseExpression("test.a")),
+            Collections.singletonList(Sort.SortType.DESC));
+    Limit limitOp = new Limit(new OperatorSource(sort), limit, offset);
+
+    return new Reorder(new OperatorSource(limitOp), Collections.singletonList("*"));
+  }
+
   /**
    * 这棵树会被FFragmentPruningByFilterRule优化，优化前有10个Project-Fragment，优化后1个Project-Fragment。
    *
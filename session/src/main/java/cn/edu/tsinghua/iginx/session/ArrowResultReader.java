@@ -0,0 +1,122 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.session;
+
+import static cn.edu.tsinghua.iginx.utils.ByteUtils.getByteBufferFromObjectByDataType;
+import static cn.edu.tsinghua.iginx.utils.ByteUtils.getBytesFromByteBufferByDataType;
+
+import cn.edu.tsinghua.iginx.exception.SessionException;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+
+/**
+ * 按列读取服务端以 Arrow IPC 流格式返回的查询结果。
+ *
+ * <p>数据按 record batch 依次载入，每行的值直接从列向量中取出，无需逐行解析 ByteBuffer 和 Bitmap。
+ */
+class ArrowResultReader implements AutoCloseable {
+
+  private static final BufferAllocator ROOT_ALLOCATOR = new RootAllocator();
+
+  private final BufferAllocator allocator;
+
+  private final ArrowStreamReader reader;
+
+  private final VectorSchemaRoot root;
+
+  private int index;
+
+  ArrowResultReader(ByteBuffer data) throws SessionException {
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    this.allocator = ROOT_ALLOCATOR.newChildAllocator("arrow-result", 0, Long.MAX_VALUE);
+    this.reader = new ArrowStreamReader(new ByteArrayInputStream(bytes), allocator);
+    try {
+      this.root = reader.getVectorSchemaRoot();
+    } catch (IOException e) {
+      close();
+      throw new SessionException("failed to read arrow schema", e);
+    }
+    this.index = 0;
+  }
+
+  boolean hasNext() throws SessionException {
+    try {
+      while (index >= root.getRowCount()) {
+        if (!reader.loadNextBatch()) {
+          return false;
+        }
+        index = 0;
+      }
+      return true;
+    } catch (IOException e) {
+      throw new SessionException("failed to read arrow record batch", e);
+    }
+  }
+
+  Object[] next() throws SessionException {
+    if (!hasNext()) {
+      return null;
+    }
+    int columnCount = root.getFieldVectors().size();
+    Object[] values = new Object[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      values[i] = root.getVector(i).getObject(index);
+    }
+    index++;
+    return values;
+  }
+
+  List<byte[]> nextAsBytes(List<DataType> dataTypeList) throws SessionException {
+    Object[] values = next();
+    if (values == null) {
+      return null;
+    }
+    List<byte[]> bytesValues = new ArrayList<>(values.length);
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        bytesValues.add(new byte[0]);
+      } else {
+        DataType dataType = dataTypeList.get(i);
+        bytesValues.add(
+            getBytesFromByteBufferByDataType(
+                getByteBufferFromObjectByDataType(values[i], dataType), dataType));
+      }
+    }
+    return bytesValues;
+  }
+
+  @Override
+  public void close() {
+    try {
+      reader.close();
+    } catch (IOException ignored) {
+    }
+    allocator.close();
+  }
+}
@@ -25,9 +25,8 @@ import static cn.edu.tsinghua.iginx.utils.ByteUtils.getValueFromByteBufferByData
 import cn.edu.tsinghua.iginx.exception.SessionException;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.thrift.ExportCSV;
-import cn.edu.tsinghua.iginx.thrift.QueryDataSetV2;
+import cn.edu.tsinghua.iginx.thrift.FetchResultsResp;
 import cn.edu.tsinghua.iginx.utils.Bitmap;
-import cn.edu.tsinghua.iginx.utils.Pair;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -54,6 +53,11 @@ public class QueryDataSet {
 
   private List<ByteBuffer> bitmapList;
 
+  // 以 Arrow 格式返回结果时使用，此时 valuesList 和 bitmapList 为空
+  private final boolean useArrow;
+
+  private ArrowResultReader arrowReader;
+
   private String exportStreamDir;
 
   private ExportCSV exportCSV;
@@ -82,6 +86,32 @@ public class QueryDataSet {
     this.fetchSize = fetchSize;
     this.valuesList = valuesList;
     this.bitmapList = bitmapList;
+    this.useArrow = false;
+    this.exportStreamDir = exportStreamDir;
+    this.exportCSV = exportCSV;
+    this.state = State.UNKNOWN;
+    this.index = 0;
+    this.warningMsg = warningMsg;
+  }
+
+  public QueryDataSet(
+      Session session,
+      long queryId,
+      List<String> columnList,
+      List<DataType> dataTypeList,
+      int fetchSize,
+      ByteBuffer arrowData,
+      String warningMsg,
+      String exportStreamDir,
+      ExportCSV exportCSV)
+      throws SessionException {
+    this.session = session;
+    this.queryId = queryId;
+    this.columnList = columnList;
+    this.dataTypeList = dataTypeList;
+    this.fetchSize = fetchSize;
+    this.useArrow = true;
+    this.arrowReader = arrowData == null ? null : new ArrowResultReader(arrowData);
     this.exportStreamDir = exportStreamDir;
     this.exportCSV = exportCSV;
     this.state = State.UNKNOWN;
@@ -90,9 +120,26 @@ public class QueryDataSet {
   }
 
   public void close() throws SessionException {
+    closeArrowReader();
     session.closeQuery(queryId);
   }
 
+  private void closeArrowReader() {
+    if (arrowReader != null) {
+      arrowReader.close();
+      arrowReader = null;
+    }
+  }
+
+  private void fetchArrow() throws SessionException {
+    closeArrowReader();
+    FetchResultsResp resp = session.fetchResult(queryId, fetchSize);
+    if (resp.isSetArrowData()) {
+      arrowReader = new ArrowResultReader(resp.bufferForArrowData());
+    }
+    state = resp.isHasMoreResults() ? State.HAS_MORE : State.NO_MORE;
+  }
+
   private void fetch() throws SessionException {
     if (bitmapList != null && index != bitmapList.size()) { // 只有之前的被消费完才有可能继续取数据
       return;
@@ -101,15 +148,25 @@ public class QueryDataSet {
     valuesList = null;
     index = 0;
 
-    Pair<QueryDataSetV2, Boolean> pair = session.fetchResult(queryId, fetchSize);
-    if (pair.k != null) {
-      bitmapList = pair.k.bitmapList;
-      valuesList = pair.k.valuesList;
+    FetchResultsResp resp = session.fetchResult(queryId, fetchSize);
+    if (resp.isSetQueryDataSet()) {
+      bitmapList = resp.getQueryDataSet().bitmapList;
+      valuesList = resp.getQueryDataSet().valuesList;
     }
-    state = pair.v ? State.HAS_MORE : State.NO_MORE;
+    state = resp.isHasMoreResults() ? State.HAS_MORE : State.NO_MORE;
   }
 
   public boolean hasMore() throws SessionException {
+    if (useArrow) {
+      while (arrowReader == null || !arrowReader.hasNext()) {
+        if (state != State.HAS_MORE && state != State.UNKNOWN) {
+          closeArrowReader();
+          return false;
+        }
+        fetchArrow();
+      }
+      return true;
+    }
     if (valuesList != null && index < valuesList.size()) {
       return true;
     }
@@ -126,6 +183,9 @@ public class QueryDataSet {
     if (!hasMore()) {
       return null;
     }
+    if (useArrow) {
+      return arrowReader.next();
+    }
     // nextRow 只会返回本地的 row，如果本地没有，在进行 hasMore 操作时候，就一定也已经取回来了
     ByteBuffer valuesBuffer = valuesList.get(index);
     ByteBuffer bitmapBuffer = bitmapList.get(index);
@@ -144,6 +204,9 @@ public class QueryDataSet {
     if (!hasMore()) {
       return null;
     }
+    if (useArrow) {
+      return arrowReader.nextAsBytes(dataTypeList);
+    }
     // nextRow 只会返回本地的 row，如果本地没有，在进行 hasMore 操作时候，就一定也已经取回来了
     ByteBuffer valuesBuffer = valuesList.get(index);
     ByteBuffer bitmapBuffer = bitmapList.get(index);
@@ -1023,8 +1023,15 @@ public class Session {
   }
 
   public QueryDataSet executeQuery(String statement, int fetchSize) throws SessionException {
+    return executeQuery(statement, fetchSize, false);
+  }
+
+  /** useArrow 为 true 时，服务端以 Arrow IPC 格式按列返回结果，适合导出等结果集较大的查询 */
+  public QueryDataSet executeQuery(String statement, int fetchSize, boolean useArrow)
+      throws SessionException {
     ExecuteStatementReq req = new ExecuteStatementReq(sessionId, statement);
     req.setFetchSize(fetchSize);
+    req.setUseArrow(useArrow);
     Reference<ExecuteStatementResp> ref = new Reference<>();
     executeWithCheck(() -> (ref.resp = client.executeStatement(req)).status);
 
@@ -1036,6 +1043,18 @@ public class Session {
     String dir = ref.resp.getExportStreamDir();
     ExportCSV exportCSV = ref.resp.getExportCSV();
 
+    if (ref.resp.isSetArrowData()) {
+      return new QueryDataSet(
+          this,
+          queryId,
+          columns,
+          dataTypes,
+          fetchSize,
+          ref.resp.bufferForArrowData(),
+          warningMessage,
+          dir,
+          exportCSV);
+    }
     return new QueryDataSet(
         this,
         queryId,
@@ -1049,13 +1068,13 @@ public class Session {
         exportCSV);
   }
 
-  Pair<QueryDataSetV2, Boolean> fetchResult(long queryId, int fetchSize) throws SessionException {
+  FetchResultsResp fetchResult(long queryId, int fetchSize) throws SessionException {
     FetchResultsReq req = new FetchResultsReq(sessionId, queryId);
     req.setFetchSize(fetchSize);
     Reference<FetchResultsResp> ref = new Reference<>();
     executeWithCheck(() -> (ref.resp = client.fetchResults(req)).status);
 
-    return new Pair<>(ref.resp.getQueryDataSet(), ref.resp.isHasMoreResults());
+    return ref.resp;
   }
 
   public Pair<List<String>, Long> executeLoadCSV(String statement, ByteBuffer csvFile)
@@ -24,7 +24,7 @@ import pandas as pd
 
 from .thrift.rpc.ttypes import SqlType, AggregateType, ExecuteSqlResp
 from .utils.bitmap import Bitmap
-from .utils.byte_utils import get_long_array, get_values_by_data_type, BytesParser
+from .utils.byte_utils import get_long_array, get_values_by_data_type, BytesParser, value_to_bytes
 from .thrift.rpc.ttypes import DataType
 
 def map_dtype(dtype):
@@ -262,7 +262,7 @@ class StatementExecuteDataSet(object):
         UNKNOWN = 3
 
     def __init__(self, session, query_id, columns, types, fetch_size, values_list, bitmap_list, exportStreamDir=None,
-                 exportCSV=None):
+                 exportCSV=None, arrow_data=None):
         self.__session = session
         self.__query_id = query_id
         self.__columns = columns
@@ -274,9 +274,21 @@ class StatementExecuteDataSet(object):
         self.__exportStreamDir = exportStreamDir
         self.__exportCSV = exportCSV
         self.__index = 0
+        # 以 Arrow 格式返回结果时，按列解码后的行缓存在 values_list 中，bitmap_list 不再使用
+        self.__use_arrow = arrow_data is not None
+        if self.__use_arrow:
+            self.__values_list = StatementExecuteDataSet.decode_arrow(arrow_data)
+
+    @staticmethod
+    def decode_arrow(arrow_data):
+        import pyarrow as pa
+
+        table = pa.ipc.open_stream(arrow_data).read_all()
+        columns = [column.to_pylist() for column in table.columns]
+        return [list(row) for row in zip(*columns)]
 
     def fetch(self):
-        if self.__bitmap_list and self.__index != len(self.__bitmap_list):
+        if self.__values_list and self.__index != len(self.__values_list):
             return
 
         self.__bitmap_list = None
@@ -290,7 +302,10 @@ class StatementExecuteDataSet(object):
         else:
             self.__state = StatementExecuteDataSet.State.NO_MORE
 
-        if tp[1]:
+        if self.__use_arrow:
+            if tp[2] is not None:
+                self.__values_list = StatementExecuteDataSet.decode_arrow(tp[2])
+        elif tp[1]:
             self.__bitmap_list = tp[1].bitmapList
             self.__values_list = tp[1].valuesList
 
@@ -311,6 +326,11 @@ class StatementExecuteDataSet(object):
         if not self.has_more():
             return None
 
+        if self.__use_arrow:
+            values = self.__values_list[self.__index]
+            self.__index += 1
+            return values
+
         values_buffer = self.__values_list[self.__index]
         bitmap_buffer = self.__bitmap_list[self.__index]
         self.__index += 1
@@ -329,6 +349,15 @@ class StatementExecuteDataSet(object):
         if not self.has_more():
             return None
 
+        if self.__use_arrow:
+            values = self.__values_list[self.__index]
+            self.__index += 1
+            bytes_list = [b'' if value is None else value_to_bytes(value, type)
+                          for value, type in zip(values, self.__types)]
+            if remove_key:
+                bytes_list = bytes_list[1:]
+            return bytes_list
+
         values_buffer = self.__values_list[self.__index]
         bitmap_buffer = self.__bitmap_list[self.__index]
         self.__index += 1
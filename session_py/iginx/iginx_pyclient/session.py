@@ -509,10 +509,17 @@ class Session(object):
         Session.verify_status(resp.status)
         return resp
 
-    def execute_statement(self, statement, fetch_size=2147483647):
-        req = ExecuteStatementReq(sessionId=self.__session_id, statement=statement, fetchSize=fetch_size)
+    def execute_statement(self, statement, fetch_size=2147483647, use_arrow=False):
+        """
+        use_arrow 为 True 时服务端以 Arrow IPC 格式按列返回结果，需要安装 pyarrow
+        """
+        req = ExecuteStatementReq(sessionId=self.__session_id, statement=statement, fetchSize=fetch_size,
+                                  useArrow=use_arrow)
         resp = self.__client.executeStatement(req)
         Session.verify_status(resp.status)
+        if resp.arrowData is not None:
+            return StatementExecuteDataSet(self, resp.queryId, resp.columns, resp.dataTypeList, fetch_size,
+                                           None, None, resp.exportStreamDir, resp.exportCSV, resp.arrowData)
         return StatementExecuteDataSet(self, resp.queryId, resp.columns, resp.dataTypeList, fetch_size,
                                        resp.queryDataSet.valuesList, resp.queryDataSet.bitmapList, resp.exportStreamDir,
                                        resp.exportCSV)
@@ -737,7 +744,7 @@ class Session(object):
         req = FetchResultsReq(sessionId=self.__session_id, queryId=query_id, fetchSize=fetch_size)
         resp = self.__client.fetchResults(req)
         Session.verify_status(resp.status)
-        return (resp.hasMoreResults, resp.queryDataSet)
+        return (resp.hasMoreResults, resp.queryDataSet, resp.arrowData)
 
     def _close_statement(self, query_id):
         req = CloseStatementReq(sessionId=self.__session_id, queryId=query_id)
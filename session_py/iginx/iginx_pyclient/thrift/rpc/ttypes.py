@@ -5494,15 +5494,17 @@ class ExecuteStatementReq(object):
      - statement
      - fetchSize
      - timeout
+     - useArrow
 
     """
 
 
-    def __init__(self, sessionId=None, statement=None, fetchSize=None, timeout=None,):
+    def __init__(self, sessionId=None, statement=None, fetchSize=None, timeout=None, useArrow=None,):
         self.sessionId = sessionId
         self.statement = statement
         self.fetchSize = fetchSize
         self.timeout = timeout
+        self.useArrow = useArrow
 
     def read(self, iprot):
         if iprot._fast_decode is not None and isinstance(iprot.trans, TTransport.CReadableTransport) and self.thrift_spec is not None:
@@ -5533,6 +5535,11 @@ class ExecuteStatementReq(object):
                     self.timeout = iprot.readI64()
                 else:
                     iprot.skip(ftype)
+            elif fid == 5:
+                if ftype == TType.BOOL:
+                    self.useArrow = iprot.readBool()
+                else:
+                    iprot.skip(ftype)
             else:
                 iprot.skip(ftype)
             iprot.readFieldEnd()
@@ -5559,6 +5566,10 @@ class ExecuteStatementReq(object):
             oprot.writeFieldBegin('timeout', TType.I64, 4)
             oprot.writeI64(self.timeout)
             oprot.writeFieldEnd()
+        if self.useArrow is not None:
+            oprot.writeFieldBegin('useArrow', TType.BOOL, 5)
+            oprot.writeBool(self.useArrow)
+            oprot.writeFieldEnd()
         oprot.writeFieldStop()
         oprot.writeStructEnd()
 
@@ -5594,11 +5605,12 @@ class ExecuteStatementResp(object):
      - warningMsg
      - exportStreamDir
      - exportCSV
+     - arrowData
 
     """
 
 
-    def __init__(self, status=None, type=None, queryId=None, columns=None, tagsList=None, dataTypeList=None, queryDataSet=None, warningMsg=None, exportStreamDir=None, exportCSV=None,):
+    def __init__(self, status=None, type=None, queryId=None, columns=None, tagsList=None, dataTypeList=None, queryDataSet=None, warningMsg=None, exportStreamDir=None, exportCSV=None, arrowData=None,):
         self.status = status
         self.type = type
         self.queryId = queryId
@@ -5609,6 +5621,7 @@ class ExecuteStatementResp(object):
         self.warningMsg = warningMsg
         self.exportStreamDir = exportStreamDir
         self.exportCSV = exportCSV
+        self.arrowData = arrowData
 
     def read(self, iprot):
         if iprot._fast_decode is not None and isinstance(iprot.trans, TTransport.CReadableTransport) and self.thrift_spec is not None:
@@ -5693,6 +5706,11 @@ class ExecuteStatementResp(object):
                     self.exportCSV.read(iprot)
                 else:
                     iprot.skip(ftype)
+            elif fid == 11:
+                if ftype == TType.STRING:
+                    self.arrowData = iprot.readBinary()
+                else:
+                    iprot.skip(ftype)
             else:
                 iprot.skip(ftype)
             iprot.readFieldEnd()
@@ -5756,6 +5774,10 @@ class ExecuteStatementResp(object):
             oprot.writeFieldBegin('exportCSV', TType.STRUCT, 10)
             self.exportCSV.write(oprot)
             oprot.writeFieldEnd()
+        if self.arrowData is not None:
+            oprot.writeFieldBegin('arrowData', TType.STRING, 11)
+            oprot.writeBinary(self.arrowData)
+            oprot.writeFieldEnd()
         oprot.writeFieldStop()
         oprot.writeStructEnd()
 
@@ -6175,14 +6197,16 @@ class FetchResultsResp(object):
      - status
      - hasMoreResults
      - queryDataSet
+     - arrowData
 
     """
 
 
-    def __init__(self, status=None, hasMoreResults=None, queryDataSet=None,):
+    def __init__(self, status=None, hasMoreResults=None, queryDataSet=None, arrowData=None,):
         self.status = status
         self.hasMoreResults = hasMoreResults
         self.queryDataSet = queryDataSet
+        self.arrowData = arrowData
 
     def read(self, iprot):
         if iprot._fast_decode is not None and isinstance(iprot.trans, TTransport.CReadableTransport) and self.thrift_spec is not None:
@@ -6210,6 +6234,11 @@ class FetchResultsResp(object):
                     self.queryDataSet.read(iprot)
                 else:
                     iprot.skip(ftype)
+            elif fid == 4:
+                if ftype == TType.STRING:
+                    self.arrowData = iprot.readBinary()
+                else:
+                    iprot.skip(ftype)
             else:
                 iprot.skip(ftype)
             iprot.readFieldEnd()
@@ -6232,6 +6261,10 @@ class FetchResultsResp(object):
             oprot.writeFieldBegin('queryDataSet', TType.STRUCT, 3)
             self.queryDataSet.write(oprot)
             oprot.writeFieldEnd()
+        if self.arrowData is not None:
+            oprot.writeFieldBegin('arrowData', TType.STRING, 4)
+            oprot.writeBinary(self.arrowData)
+            oprot.writeFieldEnd()
         oprot.writeFieldStop()
         oprot.writeStructEnd()
 
@@ -9484,6 +9517,7 @@ ExecuteStatementReq.thrift_spec = (
     (2, TType.STRING, 'statement', 'UTF8', None, ),  # 2
     (3, TType.I32, 'fetchSize', None, None, ),  # 3
     (4, TType.I64, 'timeout', None, None, ),  # 4
+    (5, TType.BOOL, 'useArrow', None, None, ),  # 5
 )
 all_structs.append(ExecuteStatementResp)
 ExecuteStatementResp.thrift_spec = (
@@ -9498,6 +9532,7 @@ ExecuteStatementResp.thrift_spec = (
     (8, TType.STRING, 'warningMsg', 'UTF8', None, ),  # 8
     (9, TType.STRING, 'exportStreamDir', 'UTF8', None, ),  # 9
     (10, TType.STRUCT, 'exportCSV', [ExportCSV, None], None, ),  # 10
+    (11, TType.STRING, 'arrowData', 'BINARY', None, ),  # 11
 )
 all_structs.append(ExportCSV)
 ExportCSV.thrift_spec = (
@@ -9536,6 +9571,7 @@ FetchResultsResp.thrift_spec = (
     (1, TType.STRUCT, 'status', [Status, None], None, ),  # 1
     (2, TType.BOOL, 'hasMoreResults', None, None, ),  # 2
     (3, TType.STRUCT, 'queryDataSet', [QueryDataSetV2, None], None, ),  # 3
+    (4, TType.STRING, 'arrowData', 'BINARY', None, ),  # 4
 )
 all_structs.append(LoadCSVReq)
 LoadCSVReq.thrift_spec = (
@@ -93,6 +93,12 @@ def row_values_to_bytes(values, types):
     return struct.pack(format_str, *values_to_be_packed)
 
 
+def value_to_bytes(value, type):
+    if type == DataType.BINARY:
+        return value
+    return row_values_to_bytes([value], [type])
+
+
 def column_values_to_bytes(values, type):
     format_str_list = [">"]
     values_to_be_packed = []
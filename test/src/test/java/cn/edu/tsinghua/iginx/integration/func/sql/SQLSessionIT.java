@@ -6886,6 +6886,7 @@ public class SQLSessionIT {
         new HashSet<>(
             Arrays.asList(
                 "cachedTimeseriesProb",
+                "columnStatisticsSampleThreshold",
                 "parallelFilterThreshold",
                 "memoryTaskThreadPoolSize",
                 "statisticsCollectorClassName",
@@ -6902,10 +6903,16 @@ public class SQLSessionIT {
                 "enableRestService",
                 "parallelGroupByPoolNum",
                 "enablePushDown",
+                "enableTwoPhaseAggregate",
                 "loadBalanceCheckInterval",
                 "parallelApplyFuncGroupsThreshold",
                 "timePrecision",
                 "useStreamExecutor",
+                "useBatchExecutor",
+                "batchExecutorBatchSize",
+                "hashJoinMemoryThreshold",
+                "hashJoinSpillPartitionNum",
+                "sortMemoryThreshold",
                 "parallelGroupByRowsThreshold",
                 "enableMonitor",
                 "databaseClassNames",
@@ -6918,6 +6925,9 @@ public class SQLSessionIT {
                 "maxAsyncRetryTimes",
                 "enableInstantCompaction",
                 "maxCachedPhysicalTaskPerStorage",
+                "enableStoragePrefetch",
+                "storagePrefetchBatchSize",
+                "storagePrefetchMemoryThreshold",
                 "restIp",
                 "physicalTaskThreadPoolSizePerStorage",
                 "disorderMargin",
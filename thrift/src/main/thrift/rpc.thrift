@@ -476,6 +476,7 @@ struct ExecuteStatementReq {
     2: required string statement
     3: optional i32 fetchSize
     4: optional i64 timeout
+    5: optional bool useArrow
 }
 
 struct ExecuteStatementResp {
@@ -489,6 +490,7 @@ struct ExecuteStatementResp {
     8: optional string warningMsg;
     9: optional string exportStreamDir
     10: optional ExportCSV exportCSV
+    11: optional binary arrowData
 }
 
 struct ExportCSV {
@@ -522,6 +524,7 @@ struct FetchResultsResp {
     1: required Status status
     2: required bool hasMoreResults
     3: optional QueryDataSetV2 queryDataSet
+    4: optional binary arrowData
 }
 
 struct LoadCSVReq {